@@ -0,0 +1,110 @@
+package com.drunkapp.resources;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The blocked application check made on each foreground change, comparing
+ * the compiled matcher with the linear scan over the blocked packages that
+ * the monitor used to do.
+ * 
+ * @author Liam
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockMatcherBenchmark {
+
+	/**
+	 * Number of applications on the device, one in five of them blocked.
+	 */
+	@Param({ "100", "1000", "10000" })
+	public int size;
+
+	/**
+	 * Blocked package names.
+	 */
+	private String[] blocked;
+
+	/**
+	 * Every package name, blocked or not, looked up in turn.
+	 */
+	private String[] packages;
+
+	/**
+	 * Activity class in each package.
+	 */
+	private String[] classes;
+
+	/**
+	 * Matcher compiled from the blocked packages.
+	 */
+	private BlockMatcher matcher;
+
+	/**
+	 * Index of the next package to look up.
+	 */
+	private int next;
+
+	/**
+	 * Makes up the packages and compiles the matcher.
+	 */
+	@Setup
+	public void setUp() {
+		packages = new String[size];
+		classes = new String[size];
+		blocked = new String[size / 5];
+		for (int i = 0; i < size; i++) {
+			// New strings, so that equals cannot take the identity shortcut
+			packages[i] = new String("com.example.vendor" + (i % 50) + ".app" + i);
+			classes[i] = packages[i] + ".MainActivity";
+			if (i % 5 == 0) {
+				blocked[i / 5] = "com.example.vendor" + (i % 50) + ".app" + i;
+			}
+		}
+		matcher = BlockMatcher.compile(blocked, new ArrayList<String>());
+	}
+
+	/**
+	 * 
+	 * @return Whether or not the next package is blocked
+	 */
+	@Benchmark
+	public boolean matcher() {
+		int i = next++ % packages.length;
+		return matcher.isBlocked(packages[i], classes[i]);
+	}
+
+	/**
+	 * 
+	 * @return Whether or not the next package is blocked
+	 */
+	@Benchmark
+	public boolean linearScan() {
+		String p = packages[next++ % packages.length];
+		boolean found = false;
+		// Like the old loop, this carries on after a match
+		for (String b : blocked) {
+			if (b.equals(p)) {
+				found = true;
+			}
+		}
+		return found;
+	}
+}
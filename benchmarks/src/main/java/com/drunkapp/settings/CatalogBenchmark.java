@@ -0,0 +1,153 @@
+package com.drunkapp.settings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Work done on the catalog in memory: filtering out the blocked
+ * applications, bringing the catalog in line with a scan (what getNewApps
+ * used to do) and sorting by label. Sorting is also measured with the old
+ * comparator, which lower-cased both labels on every comparison, and with
+ * applications whose sort keys have not been built yet, as after a scan.
+ * 
+ * @author Liam
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatalogBenchmark {
+
+	/**
+	 * The order RunnableApp.compareTo() used before sort keys were added.
+	 */
+	private static final Comparator<RunnableApp> LOWER_CASE_ORDER = new Comparator<RunnableApp>() {
+		@Override
+		public int compare(RunnableApp a, RunnableApp b) {
+			return a.getLabel().toString().toLowerCase()
+					.compareTo(b.getLabel().toString().toLowerCase());
+		}
+	};
+
+	/**
+	 * Number of applications in the catalog.
+	 */
+	@Param({ "100", "1000", "10000" })
+	public int size;
+
+	/**
+	 * The catalog.
+	 */
+	private ArrayList<RunnableApp> known;
+
+	/**
+	 * The catalog as a scan would find it after a few changes: one
+	 * application in a hundred removed and as many new ones installed.
+	 */
+	private ArrayList<RunnableApp> found;
+
+	/**
+	 * Makes up the catalog and the scan.
+	 */
+	@Setup
+	public void setUp() {
+		known = SyntheticCatalog.create(size, 1);
+		found = new ArrayList<RunnableApp>(size);
+
+		for (int i = 0; i < known.size(); i++) {
+			RunnableApp a = known.get(i);
+			if (i % 100 == 99) {
+				found.add(new RunnableApp("New " + i, false, "org.example.new" + i, "org.example.new" + i
+						+ ".Main"));
+			} else {
+				found.add(new RunnableApp(a.getLabel(), false, a.getPackageName(), a.getClassName()));
+			}
+		}
+		Collections.shuffle(found, new Random(2));
+	}
+
+	/**
+	 * 
+	 * @return Snapshot holding the blocked applications and packages
+	 */
+	@Benchmark
+	public CatalogSnapshot blockedFilter() {
+		return new CatalogSnapshot(known, 1);
+	}
+
+	/**
+	 * 
+	 * @return The merged catalog
+	 */
+	@Benchmark
+	public ArrayList<RunnableApp> diff() {
+		return CatalogDiff.merge(known, found, null);
+	}
+
+	/**
+	 * 
+	 * @return The catalog sorted by a TreeSet, as the scan does
+	 */
+	@Benchmark
+	public TreeSet<RunnableApp> treeSetSort() {
+		return new TreeSet<RunnableApp>(found);
+	}
+
+	/**
+	 * 
+	 * @return A sorted copy of the catalog
+	 */
+	@Benchmark
+	public ArrayList<RunnableApp> listSort() {
+		ArrayList<RunnableApp> sorted = new ArrayList<RunnableApp>(found);
+		Collections.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * 
+	 * @return A sorted copy of the catalog, each application building its
+	 *         sort key as it is first compared
+	 */
+	@Benchmark
+	public ArrayList<RunnableApp> coldListSort() {
+		ArrayList<RunnableApp> sorted = new ArrayList<RunnableApp>(found.size());
+		for (RunnableApp a : found) {
+			sorted.add(new RunnableApp(a.getLabel(), a.isSelected(), a.getPackageName(),
+					a.getClassName()));
+		}
+		Collections.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * 
+	 * @return A copy of the catalog sorted with the old lower-casing
+	 *         comparator
+	 */
+	@Benchmark
+	public ArrayList<RunnableApp> lowerCaseListSort() {
+		ArrayList<RunnableApp> sorted = new ArrayList<RunnableApp>(found);
+		Collections.sort(sorted, LOWER_CASE_ORDER);
+		return sorted;
+	}
+}
@@ -0,0 +1,160 @@
+package com.drunkapp.settings;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing and reading the catalog file, which is what writeAppsToFile and
+ * getAppsFromFile spend their time on, compared with the legacy file of
+ * serialized RunnableApp objects.
+ * 
+ * @author Liam
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatalogFormatBenchmark {
+
+	/**
+	 * Number of applications in the catalog.
+	 */
+	@Param({ "100", "1000", "10000" })
+	public int size;
+
+	/**
+	 * The catalog.
+	 */
+	private ArrayList<RunnableApp> apps;
+
+	/**
+	 * Catalog file written from apps.
+	 */
+	private File file;
+
+	/**
+	 * Legacy file written from apps.
+	 */
+	private File legacyFile;
+
+	/**
+	 * Makes up the catalog and writes it to a file in each format.
+	 * 
+	 * @throws IOException If the files could not be written
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		apps = SyntheticCatalog.create(size, 1);
+		file = File.createTempFile("catalog", ".bin");
+		legacyFile = File.createTempFile("catalog", ".ser");
+
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			CatalogFormat.write(apps, 1, out);
+		} finally {
+			out.close();
+		}
+
+		ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(
+				new FileOutputStream(legacyFile)));
+		try {
+			for (RunnableApp a : apps) {
+				oos.writeObject(a);
+			}
+		} finally {
+			oos.close();
+		}
+	}
+
+	/**
+	 * Deletes the catalog files.
+	 */
+	@TearDown
+	public void tearDown() {
+		file.delete();
+		legacyFile.delete();
+	}
+
+	/**
+	 * 
+	 * @return The written bytes
+	 * @throws IOException Not thrown, as the stream is in memory
+	 */
+	@Benchmark
+	public byte[] write() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CatalogFormat.write(apps, 1, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * 
+	 * @return Every application in the file
+	 * @throws IOException If the file could not be read
+	 */
+	@Benchmark
+	public ArrayList<RunnableApp> read() throws IOException {
+		return CatalogFormat.read(file);
+	}
+
+	/**
+	 * 
+	 * @return The blocked packages in the file
+	 * @throws IOException If the file could not be read
+	 */
+	@Benchmark
+	public String[] readBlockedPackages() throws IOException {
+		return CatalogFormat.readBlockedPackages(file);
+	}
+
+	/**
+	 * Reads the legacy file the way getAppsFromFile used to, one object at a
+	 * time until the end of the file.
+	 * 
+	 * @return Every application in the file
+	 * @throws IOException If the file could not be read
+	 * @throws ClassNotFoundException Not thrown, as RunnableApp is present
+	 */
+	@Benchmark
+	public ArrayList<RunnableApp> readLegacy() throws IOException, ClassNotFoundException {
+		ArrayList<RunnableApp> read = new ArrayList<RunnableApp>();
+		ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(
+				new FileInputStream(legacyFile)));
+		try {
+			while (true) {
+				read.add((RunnableApp) ois.readObject());
+			}
+		} catch (EOFException e) {
+			// The end of the file
+		} finally {
+			ois.close();
+		}
+		return read;
+	}
+}
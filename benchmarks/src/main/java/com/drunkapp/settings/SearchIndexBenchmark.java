@@ -0,0 +1,72 @@
+package com.drunkapp.settings;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Searching the settings list as the user types, from a single letter that
+ * matches every application (each package name starts with "com") to a
+ * query that matches nothing.
+ * 
+ * @author Liam
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchIndexBenchmark {
+
+	/**
+	 * Number of applications in the index.
+	 */
+	@Param({ "1000", "10000" })
+	public int size;
+
+	/**
+	 * Text typed by the user.
+	 */
+	@Param({ "c", "cam", "camera mu", "vendor12", "zzz" })
+	public String query;
+
+	/**
+	 * Index of the applications.
+	 */
+	private SearchIndex index;
+
+	/**
+	 * Indexes the applications, with their sort keys built as they would be
+	 * once the list has been shown.
+	 */
+	@Setup
+	public void setUp() {
+		index = new SearchIndex();
+		for (RunnableApp a : SyntheticCatalog.create(size, 1)) {
+			index.add(a);
+		}
+		index.search("");
+	}
+
+	/**
+	 * 
+	 * @return Matching applications, sorted by label
+	 */
+	@Benchmark
+	public ArrayList<RunnableApp> search() {
+		return index.search(query);
+	}
+}
@@ -0,0 +1,56 @@
+package com.drunkapp.settings;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Makes up catalogs that look like a real device's, for the benchmarks.
+ * Most packages have one launcher activity, some have two, and roughly one
+ * application in five is selected to be blocked.
+ * 
+ * @author Liam
+ * 
+ */
+final class SyntheticCatalog {
+
+	/**
+	 * Words that labels are made up from.
+	 */
+	private static final String[] WORDS = { "Maps", "Mail", "Camera", "Photos", "Music",
+			"Chat", "Notes", "News", "Weather", "Clock", "Files", "Games", "Social",
+			"Radio", "Banking", "Shop", "Fitness", "Video", "Reader", "Calendar" };
+
+	/**
+	 * Static methods only.
+	 */
+	private SyntheticCatalog() {
+	}
+
+	/**
+	 * Makes up a catalog. The same size and seed always give the same
+	 * catalog.
+	 * 
+	 * @param size Number of applications
+	 * @param seed Seed for the random numbers
+	 * @return ArrayList of the applications, in no particular order
+	 */
+	static ArrayList<RunnableApp> create(int size, long seed) {
+		Random random = new Random(seed);
+		ArrayList<RunnableApp> apps = new ArrayList<RunnableApp>(size);
+		int pkg = 0;
+
+		while (apps.size() < size) {
+			String packageName = "com.example.vendor" + (pkg % 50) + ".app" + pkg;
+			int activities = random.nextInt(8) == 0 ? 2 : 1;
+
+			for (int i = 0; i < activities && apps.size() < size; i++) {
+				String label = WORDS[random.nextInt(WORDS.length)] + " "
+						+ WORDS[random.nextInt(WORDS.length)] + " " + pkg;
+				apps.add(new RunnableApp(label, random.nextInt(5) == 0, packageName,
+						packageName + ".MainActivity" + i));
+			}
+			pkg++;
+		}
+		return apps;
+	}
+}
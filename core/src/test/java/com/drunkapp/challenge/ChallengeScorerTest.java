@@ -0,0 +1,177 @@
+package com.drunkapp.challenge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Scoring of the sobriety test: guesses, misses, timeouts, the median and
+ * the pass thresholds.
+ *
+ * @author Liam
+ *
+ */
+public class ChallengeScorerTest {
+
+	private static final long MS = 1000000L;
+
+	private static final float RADIUS = 50;
+
+	/**
+	 * Records a tap on the centre of a target shown at time 0.
+	 */
+	private static boolean hit(ChallengeScorer s, long reactionMillis) {
+		return s.recordTap(0, reactionMillis * MS, 0, 0, RADIUS);
+	}
+
+	@Test
+	public void fastAccurateTapsPass() {
+		ChallengeScorer s = new ChallengeScorer();
+		for (int i = 0; i < ChallengeScorer.STANDARD_TRIALS; i++) {
+			assertTrue(hit(s, 300));
+		}
+
+		assertTrue(s.isComplete());
+		assertTrue(s.isPassed());
+		assertEquals(300, s.getMedianReactionMillis());
+	}
+
+	@Test
+	public void tapTooSoonAfterTheTargetIsAGuess() {
+		ChallengeScorer s = new ChallengeScorer(1, 500, 1);
+
+		assertFalse(s.recordTap(0, ChallengeScorer.MIN_REACTION_NANOS - 1, 0, 0, RADIUS));
+		assertEquals(0, s.getHits());
+		assertEquals(1, s.getEarlyTaps());
+		assertFalse(s.isPassed());
+	}
+
+	@Test
+	public void tapAtTheMinimumReactionCounts() {
+		ChallengeScorer s = new ChallengeScorer(1, 500, 1);
+
+		assertTrue(s.recordTap(0, ChallengeScorer.MIN_REACTION_NANOS, 0, 0, RADIUS));
+		assertTrue(s.isPassed());
+	}
+
+	@Test
+	public void tapOutsideTheRadiusMisses() {
+		ChallengeScorer s = new ChallengeScorer(2, 500, 0.5f);
+
+		assertTrue(s.recordTap(0, 300 * MS, 30, 40, RADIUS));
+		assertFalse(s.recordTap(0, 300 * MS, 30, 40.1f, RADIUS));
+		assertEquals(1, s.getHits());
+		assertEquals(2, s.getRecorded());
+	}
+
+	@Test
+	public void earlyTapsAndTimeoutsUseUpTrials() {
+		ChallengeScorer s = new ChallengeScorer(3, 500, 0);
+		s.recordEarlyTap();
+		s.recordTimeout();
+		s.recordTimeout();
+
+		assertTrue(s.isComplete());
+		assertEquals(1, s.getEarlyTaps());
+		assertEquals(2, s.getTimeouts());
+		assertEquals(0, s.getHits());
+	}
+
+	@Test
+	public void noHitsHasNoMedianAndNeverPasses() {
+		// Even with no minimum hit rate
+		ChallengeScorer s = new ChallengeScorer(2, 500, 0);
+		s.recordTimeout();
+		s.recordTimeout();
+
+		assertEquals(-1, s.getMedianReactionNanos());
+		assertEquals(-1, s.getMedianReactionMillis());
+		assertFalse(s.isPassed());
+	}
+
+	@Test
+	public void medianOfAnOddNumberOfHitsIsTheMiddleOne() {
+		ChallengeScorer s = new ChallengeScorer(3, 500, 0);
+		hit(s, 900);
+		hit(s, 200);
+		hit(s, 400);
+
+		assertEquals(400, s.getMedianReactionMillis());
+	}
+
+	@Test
+	public void medianOfAnEvenNumberOfHitsIsTheMeanOfTheMiddleTwo() {
+		ChallengeScorer s = new ChallengeScorer(4, 500, 0);
+		hit(s, 900);
+		hit(s, 200);
+		hit(s, 400);
+		hit(s, 300);
+
+		assertEquals(350, s.getMedianReactionMillis());
+	}
+
+	@Test
+	public void medianExactlyAtTheLimitPasses() {
+		ChallengeScorer s = new ChallengeScorer(1, 500, 1);
+		hit(s, 500);
+		assertTrue(s.isPassed());
+
+		s = new ChallengeScorer(1, 500, 1);
+		s.recordTap(0, 500 * MS + 1, 0, 0, RADIUS);
+		assertFalse(s.isPassed());
+	}
+
+	@Test
+	public void hitRateExactlyAtTheLimitPasses() {
+		ChallengeScorer s = new ChallengeScorer();
+		for (int i = 0; i < 4; i++) {
+			hit(s, 300);
+		}
+		s.recordTimeout();
+
+		assertEquals(ChallengeScorer.STANDARD_MIN_HIT_RATE, s.getHitRate(), 0);
+		assertTrue(s.isPassed());
+	}
+
+	@Test
+	public void hitRateBelowTheLimitFails() {
+		ChallengeScorer s = new ChallengeScorer();
+		for (int i = 0; i < 3; i++) {
+			hit(s, 300);
+		}
+		s.recordTimeout();
+		s.recordEarlyTap();
+
+		assertFalse(s.isPassed());
+	}
+
+	@Test
+	public void notPassedUntilComplete() {
+		ChallengeScorer s = new ChallengeScorer(2, 500, 0.5f);
+		hit(s, 300);
+
+		assertFalse(s.isComplete());
+		assertFalse(s.isPassed());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void rejectsTapsAfterTheLastTrial() {
+		ChallengeScorer s = new ChallengeScorer(1, 500, 1);
+		hit(s, 300);
+		hit(s, 300);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void rejectsTimeoutsAfterTheLastTrial() {
+		ChallengeScorer s = new ChallengeScorer(1, 500, 1);
+		s.recordEarlyTap();
+		s.recordTimeout();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNoTrials() {
+		new ChallengeScorer(0, 500, 1);
+	}
+}
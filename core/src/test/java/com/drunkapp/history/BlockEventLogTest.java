@@ -0,0 +1,231 @@
+package com.drunkapp.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Counting blocks into the summary, rotating the segments, and reading the
+ * log back after it has been saved.
+ *
+ * @author Liam
+ *
+ */
+public class BlockEventLogTest {
+
+	private static final String A = "com.example.a";
+
+	private static final String B = "com.example.b";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ScheduledExecutorService executor;
+
+	private BlockEventLog log;
+
+	@Before
+	public void setUp() throws Exception {
+		executor = Executors.newSingleThreadScheduledExecutor();
+		log = open();
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void countsEachDayOnItsOwnAcrossMidnight() throws Exception {
+		Calendar today = today();
+		Calendar tomorrow = today();
+		tomorrow.add(Calendar.DAY_OF_MONTH, 1);
+
+		log.record(at(today, 23, 59), A, "a.Main", 10);
+		log.record(at(today, 23, 59) + 30000, A, "a.Main", 10);
+		log.record(at(tomorrow, 0, 0) + 30000, A, "a.Main", 10);
+		log.record(at(tomorrow, 0, 1), B, "b.Main", 10);
+		flush();
+
+		assertEquals(counts(A, 2), log.getSummary().getDay(dayOf(today)));
+		assertEquals(counts(A, 1, B, 1), log.getSummary().getDay(dayOf(tomorrow)));
+	}
+
+	@Test
+	public void mergesCountsFromEachBatch() throws Exception {
+		long now = System.currentTimeMillis();
+
+		log.record(now, A, "a.Main", 10);
+		flush();
+		log.record(now, A, "a.Main", 10);
+		log.record(now, A, "a.Other", 10);
+		log.record(now, B, "b.Main", 10);
+		flush();
+
+		assertEquals(counts(A, 3, B, 1), log.getSummary().getDay(dayOf(today())));
+	}
+
+	@Test
+	public void dropsDaysOlderThanTheSummaryKeeps() throws Exception {
+		Calendar old = today();
+		old.add(Calendar.DAY_OF_MONTH, -100);
+
+		log.record(old.getTimeInMillis(), A, "a.Main", 10);
+		log.record(System.currentTimeMillis(), B, "b.Main", 10);
+		flush();
+
+		assertTrue(log.getSummary().getDay(dayOf(old)).isEmpty());
+		assertEquals(counts(B, 1), log.getSummary().getDay(dayOf(today())));
+	}
+
+	@Test
+	public void dropsTheOldestEventsWhenTheBufferIsFull() throws Exception {
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < 300; i++) {
+			log.record(now, "p" + i, "Main", 10);
+		}
+		assertEquals(44, log.getDroppedCount());
+		flush();
+
+		Map<String, Integer> day = log.getSummary().getDay(dayOf(today()));
+		assertEquals(256, day.size());
+		assertFalse(day.containsKey("p43"));
+		assertTrue(day.containsKey("p44"));
+		assertTrue(day.containsKey("p299"));
+	}
+
+	@Test
+	public void reloadsTheSavedSummaryAndKeepsCounting() throws Exception {
+		long now = System.currentTimeMillis();
+		log.record(now, A, "a.Main", 10);
+		log.record(now, B, "b.Main", 10);
+		flush();
+
+		assertTrue(new File(folder.getRoot(), "block_summary").exists());
+		assertFalse(new File(folder.getRoot(), "block_summary.tmp").exists());
+
+		log = open();
+		assertEquals(counts(A, 1, B, 1), log.getSummary().getDay(dayOf(today())));
+
+		log.record(now, A, "a.Main", 10);
+		flush();
+		assertEquals(counts(A, 2, B, 1), open().getSummary().getDay(dayOf(today())));
+	}
+
+	@Test
+	public void rebuildsALostSummaryFromTheSegments() throws Exception {
+		long now = System.currentTimeMillis();
+		log.record(now, A, "a.Main", 10);
+		flush();
+		log.record(now, A, "a.Main", 10);
+		log.record(now, B, "b.Main", 10);
+		flush();
+
+		assertTrue(new File(folder.getRoot(), "block_summary").delete());
+		assertEquals(counts(A, 2, B, 1), open().getSummary().getDay(dayOf(today())));
+	}
+
+	@Test
+	public void rotatesSegmentsAndKeepsTheNewestFour() throws Exception {
+		// Each record is about 1 KB, so each batch is about 50 KB and a
+		// segment is full after two of them
+		char[] name = new char[1000];
+		Arrays.fill(name, 'x');
+		String className = new String(name);
+		long now = System.currentTimeMillis();
+
+		for (int batch = 0; batch < 20; batch++) {
+			for (int i = 0; i < 50; i++) {
+				log.record(now, A, className, 10);
+			}
+			flush();
+		}
+
+		assertEquals(counts(A, 1000), log.getSummary().getDay(dayOf(today())));
+		assertEquals(new TreeSet<String>(Arrays.asList("block_log_6", "block_log_7",
+				"block_log_8", "block_log_9")), segments());
+		for (String segment : segments()) {
+			long length = new File(folder.getRoot(), segment).length();
+			assertTrue(segment + " is " + length + " bytes", length < 2 * 64 * 1024);
+		}
+
+		// Only the blocks still in the kept segments can be counted again
+		assertTrue(new File(folder.getRoot(), "block_summary").delete());
+		assertEquals(counts(A, 400), open().getSummary().getDay(dayOf(today())));
+	}
+
+	private BlockEventLog open() throws Exception {
+		BlockEventLog opened = new BlockEventLog(folder.getRoot(), executor);
+		// Waits for the summary to be loaded
+		executor.submit(new Runnable() {
+			@Override
+			public void run() {
+			}
+		}).get();
+		return opened;
+	}
+
+	private void flush() throws Exception {
+		final BlockEventLog flushed = log;
+		executor.submit(new Runnable() {
+			@Override
+			public void run() {
+				flushed.writeBuffered();
+			}
+		}).get();
+	}
+
+	private TreeSet<String> segments() {
+		TreeSet<String> names = new TreeSet<String>();
+		for (String name : folder.getRoot().list()) {
+			if (name.startsWith("block_log_")) {
+				names.add(name);
+			}
+		}
+		return names;
+	}
+
+	private static Calendar today() {
+		Calendar c = Calendar.getInstance();
+		c.set(Calendar.HOUR_OF_DAY, 12);
+		c.set(Calendar.MINUTE, 0);
+		c.set(Calendar.SECOND, 0);
+		c.set(Calendar.MILLISECOND, 0);
+		return c;
+	}
+
+	private static long at(Calendar day, int hour, int minute) {
+		Calendar c = (Calendar) day.clone();
+		c.set(Calendar.HOUR_OF_DAY, hour);
+		c.set(Calendar.MINUTE, minute);
+		return c.getTimeInMillis();
+	}
+
+	private static int dayOf(Calendar c) {
+		return c.get(Calendar.YEAR) * 10000 + (c.get(Calendar.MONTH) + 1) * 100
+				+ c.get(Calendar.DAY_OF_MONTH);
+	}
+
+	private static Map<String, Integer> counts(Object... pairs) {
+		HashMap<String, Integer> counts = new HashMap<String, Integer>();
+		for (int i = 0; i < pairs.length; i += 2) {
+			counts.put((String) pairs[i], (Integer) pairs[i + 1]);
+		}
+		return counts;
+	}
+}
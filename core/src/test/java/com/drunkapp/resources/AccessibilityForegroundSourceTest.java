@@ -0,0 +1,86 @@
+package com.drunkapp.resources;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Windows seen by the accessibility service while no source is started are
+ * checked as soon as one starts.
+ *
+ * @author Liam
+ *
+ */
+public class AccessibilityForegroundSourceTest {
+
+	private final AccessibilityForegroundSource source = new AccessibilityForegroundSource();
+
+	/**
+	 * Packages reported to the listener, in order.
+	 */
+	private final ArrayList<String> reports = new ArrayList<String>();
+
+	private final ForegroundSource.Listener listener = new ForegroundSource.Listener() {
+		@Override
+		public boolean onForegroundChanged(String packageName, String className) {
+			reports.add(packageName);
+			return false;
+		}
+	};
+
+	@Before
+	public void setUp() {
+		AccessibilityForegroundSource.setConnected(true);
+	}
+
+	@After
+	public void tearDown() {
+		source.release();
+		AccessibilityForegroundSource.setConnected(false);
+	}
+
+	@Test
+	public void startReportsTheWindowAlreadyInFront() {
+		AccessibilityForegroundSource.dispatchWindowChanged("com.a", "com.a.Main");
+		AccessibilityForegroundSource.dispatchWindowChanged("com.b", "com.b.Main");
+		source.start(listener);
+
+		assertEquals(Arrays.asList("com.b"), reports);
+	}
+
+	@Test
+	public void restartReportsTheWindowThatCameUpWhileStopped() {
+		source.start(listener);
+		AccessibilityForegroundSource.dispatchWindowChanged("com.a", "com.a.Main");
+		source.stop();
+		AccessibilityForegroundSource.dispatchWindowChanged("com.b", "com.b.Main");
+		source.start(listener);
+
+		assertEquals(Arrays.asList("com.a", "com.b"), reports);
+	}
+
+	@Test
+	public void restartReportsTheSameWindowAgain() {
+		source.start(listener);
+		AccessibilityForegroundSource.dispatchWindowChanged("com.a", "com.a.Main");
+		source.stop();
+		source.start(listener);
+		AccessibilityForegroundSource.dispatchWindowChanged("com.a", "com.a.Main");
+
+		assertEquals(Arrays.asList("com.a", "com.a"), reports);
+	}
+
+	@Test
+	public void nothingIsReportedAfterTheServiceDisconnects() {
+		AccessibilityForegroundSource.dispatchWindowChanged("com.a", "com.a.Main");
+		AccessibilityForegroundSource.setConnected(false);
+		source.start(listener);
+
+		assertEquals(0, reports.size());
+	}
+}
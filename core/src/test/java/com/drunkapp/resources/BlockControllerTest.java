@@ -0,0 +1,117 @@
+package com.drunkapp.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Decisions made on each foreground change, and the allocation-free path
+ * that the monitor takes through them.
+ *
+ * @author Liam
+ *
+ */
+public class BlockControllerTest {
+
+	private static final String BLOCKED = "com.example.blocked";
+
+	private static final String ALLOWED = "com.example.allowed";
+
+	private final BlockMatcher matcher = BlockMatcher.compile(new String[] { BLOCKED },
+			new ArrayList<String>());
+
+	private final BlockController controller = new BlockController(new BlockPolicy(500, 5000));
+
+	private BlockController.Action report(String packageName, long now) {
+		return controller.onForegroundChanged(packageName, packageName + ".Main", matcher, now);
+	}
+
+	@Test
+	public void allowedPackagesAreAllowed() {
+		assertEquals(BlockController.Action.ALLOW, report(ALLOWED, 0));
+		assertEquals(BlockController.Action.ALLOW, report(ALLOWED, 10));
+	}
+
+	@Test
+	public void firstBlockShowsTheMessage() {
+		assertEquals(BlockController.Action.BLOCK_AND_NOTIFY, report(BLOCKED, 0));
+	}
+
+	@Test
+	public void reportsOnTheWayOutAreSuppressed() {
+		report(BLOCKED, 0);
+
+		assertEquals(BlockController.Action.SUPPRESS, report(BLOCKED, 100));
+		assertEquals(BlockController.Action.SUPPRESS, report(BLOCKED, 499));
+		// Still in front after the window, so it is sent home again
+		assertEquals(BlockController.Action.BLOCK, report(BLOCKED, 500));
+	}
+
+	@Test
+	public void reopeningIsANewAttemptButTheMessageCoolsDown() {
+		report(BLOCKED, 0);
+		report(ALLOWED, 100);
+
+		assertEquals(BlockController.Action.BLOCK, report(BLOCKED, 200));
+		report(ALLOWED, 300);
+		assertEquals(BlockController.Action.BLOCK_AND_NOTIFY, report(BLOCKED, 5200));
+	}
+
+	@Test
+	public void changingTheRulesIsSeenAtOnce() {
+		assertEquals(BlockController.Action.ALLOW, report(ALLOWED, 0));
+
+		BlockMatcher stricter = BlockMatcher.compile(new String[] { BLOCKED, ALLOWED },
+				new ArrayList<String>());
+		assertEquals(BlockController.Action.BLOCK_AND_NOTIFY,
+				controller.onForegroundChanged(ALLOWED, ALLOWED + ".Main", stricter, 10));
+	}
+
+	@Test
+	public void decidingDoesNotAllocate() {
+		Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		Assume.assumeTrue(bean.isThreadAllocatedMemorySupported());
+		bean.setThreadAllocatedMemoryEnabled(true);
+
+		// Names as the sources report them, made up front
+		String[] packages = { BLOCKED, ALLOWED, "com.android.launcher", "org.example.reader" };
+		String[] classes = new String[packages.length];
+		for (int i = 0; i < classes.length; i++) {
+			classes[i] = packages[i] + ".Main";
+		}
+		long thread = Thread.currentThread().getId();
+
+		// Warms up every branch, including the lookups the decider caches
+		int sink = decide(packages, classes, 1000, 0);
+		long overhead = bean.getThreadAllocatedBytes(thread);
+		overhead = bean.getThreadAllocatedBytes(thread) - overhead;
+
+		long before = bean.getThreadAllocatedBytes(thread);
+		sink += decide(packages, classes, 100000, 1000000);
+		long allocated = bean.getThreadAllocatedBytes(thread) - before - overhead;
+
+		assertFalse(sink == 42);
+		assertEquals("Bytes allocated deciding 100000 foreground changes", 0, allocated);
+	}
+
+	/**
+	 * Reports a run of foreground changes, each package staying in front
+	 * for a few reports as it would while the monitor polls.
+	 */
+	private int decide(String[] packages, String[] classes, int count, long start) {
+		int sink = 0;
+		for (int i = 0; i < count; i++) {
+			int p = (i / 3) % classes.length;
+			sink += controller.onForegroundChanged(packages[p], classes[p], matcher,
+					start + i * 100L).ordinal();
+		}
+		return sink;
+	}
+}
@@ -0,0 +1,175 @@
+package com.drunkapp.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Exact, prefix and activity rules, and hash collisions in the package
+ * table.
+ * 
+ * @author Liam
+ * 
+ */
+public class BlockMatcherTest {
+
+	private static BlockMatcher rules(String... rules) {
+		return BlockMatcher.compile(new String[0], Arrays.asList(rules));
+	}
+
+	@Test
+	public void emptyBlocksNothing() {
+		assertFalse(BlockMatcher.EMPTY.isBlocked("com.facebook.katana", "com.facebook.katana.Login"));
+		assertEquals(-1, BlockMatcher.EMPTY.getId("com.facebook.katana"));
+		assertEquals(0, BlockMatcher.EMPTY.getRuleCount());
+	}
+
+	@Test
+	public void blockedPackageBlocksEveryActivity() {
+		BlockMatcher m = BlockMatcher.compile(new String[] { "com.facebook.katana" },
+				new ArrayList<String>());
+
+		assertTrue(m.isBlocked("com.facebook.katana", "com.facebook.katana.Login"));
+		assertTrue(m.isBlocked("com.facebook.katana", null));
+		assertFalse(m.isBlocked("com.facebook.orca", "com.facebook.orca.Main"));
+		assertFalse(m.isBlocked("com.facebook", null));
+		assertFalse(m.isBlocked("com.facebook.katana.lite", null));
+	}
+
+	@Test
+	public void prefixMatchesPackageAndBelow() {
+		BlockMatcher m = rules("com.facebook.*");
+
+		assertTrue(m.isBlocked("com.facebook", null));
+		assertTrue(m.isBlocked("com.facebook.katana", null));
+		assertTrue(m.isBlocked("com.facebook.orca.beta", null));
+		assertFalse(m.isBlocked("com.facebookx", null));
+		assertFalse(m.isBlocked("com.facebookx.app", null));
+		assertFalse(m.isBlocked("com.face", null));
+		assertFalse(m.isBlocked("com", null));
+		assertFalse(m.isBlocked("org.facebook", null));
+	}
+
+	@Test
+	public void nestedAndSiblingPrefixes() {
+		BlockMatcher m = rules("com.snapchat.*", "com.snap.*", "org.*");
+
+		assertTrue(m.isBlocked("com.snap", null));
+		assertTrue(m.isBlocked("com.snap.app", null));
+		assertTrue(m.isBlocked("com.snapchat.android", null));
+		assertTrue(m.isBlocked("org.example", null));
+		assertFalse(m.isBlocked("com.snapcha", null));
+		assertFalse(m.isBlocked("com.snapchatter", null));
+		assertFalse(m.isBlocked("organic.app", null));
+	}
+
+	@Test
+	public void activityRulesOnlyBlockThatActivity() {
+		BlockMatcher m = rules("com.whatsapp/com.whatsapp.Conversation", "com.android.chrome/.Incognito");
+
+		assertTrue(m.isBlocked("com.whatsapp", "com.whatsapp.Conversation"));
+		assertFalse(m.isBlocked("com.whatsapp", "com.whatsapp.Settings"));
+		assertFalse(m.isBlocked("com.whatsapp", null));
+		assertTrue(m.isBlocked("com.android.chrome", "com.android.chrome.Incognito"));
+		assertFalse(m.isBlocked("com.android.chrome", "com.android.chrome.Main"));
+	}
+
+	@Test
+	public void wholePackageWinsOverActivityRules() {
+		BlockMatcher m = BlockMatcher.compile(new String[] { "com.whatsapp" },
+				Arrays.asList("com.whatsapp/.Conversation"));
+
+		assertTrue(m.isBlocked("com.whatsapp", "com.whatsapp.Settings"));
+		assertTrue(m.isBlocked("com.whatsapp", "com.whatsapp.Conversation"));
+	}
+
+	@Test
+	public void trailingSlashBlocksWholePackage() {
+		BlockMatcher m = rules("com.foo/", " com.bar// ");
+
+		assertTrue(m.isBlocked("com.foo", "com.foo.Main"));
+		assertTrue(m.isBlocked("com.bar", null));
+		assertEquals(-1, m.getId("com.foo/"));
+		assertEquals(2, m.getRuleCount());
+	}
+
+	@Test
+	public void ignoresCommentsBlanksAndMalformedRules() {
+		BlockMatcher m = rules("", "   ", "# com.facebook.katana", "*", "/", "/com.foo.Main");
+
+		assertEquals(0, m.getRuleCount());
+		assertFalse(m.isBlocked("com.facebook.katana", null));
+		assertFalse(m.isBlocked("", null));
+		assertFalse(m.isBlocked("com.foo", "com.foo.Main"));
+	}
+
+	@Test
+	public void countsPackagesAndRules() {
+		BlockMatcher m = BlockMatcher.compile(new String[] { "a.b", "c.d" },
+				Arrays.asList("e.*", "f.g/.H", "# comment"));
+
+		assertEquals(4, m.getRuleCount());
+	}
+
+	@Test
+	public void collidingPackageNamesAreKeptApart() {
+		// "Aa" and "BB" have the same hash code, so every string made of
+		// them does too
+		List<String> names = new ArrayList<String>();
+		collide("", 8, names);
+		assertEquals(256, names.size());
+		assertEquals(1, hashCodes(names).size());
+
+		String[] blocked = new String[names.size() / 2];
+		for (int i = 0; i < blocked.length; i++) {
+			blocked[i] = names.get(2 * i);
+		}
+		BlockMatcher m = BlockMatcher.compile(blocked, new ArrayList<String>());
+
+		HashSet<Integer> ids = new HashSet<Integer>();
+		for (int i = 0; i < names.size(); i++) {
+			String name = new String(names.get(i));
+			assertEquals(name, i % 2 == 0, m.isBlocked(name, null));
+			if (i % 2 == 0) {
+				assertTrue(ids.add(m.getId(name)));
+			}
+			else {
+				assertEquals(-1, m.getId(name));
+			}
+		}
+	}
+
+	@Test
+	public void idsFollowRuleOrder() {
+		BlockMatcher m = BlockMatcher.compile(new String[] { "a.one", "a.two" },
+				Arrays.asList("a.three/.Main", "a.one/.Other"));
+
+		assertEquals(0, m.getId("a.one"));
+		assertEquals(1, m.getId("a.two"));
+		assertEquals(2, m.getId("a.three"));
+	}
+
+	private static void collide(String prefix, int pairs, List<String> out) {
+		if (pairs == 0) {
+			out.add(prefix);
+			return;
+		}
+		collide(prefix + "Aa", pairs - 1, out);
+		collide(prefix + "BB", pairs - 1, out);
+	}
+
+	private static HashSet<Integer> hashCodes(List<String> names) {
+		HashSet<Integer> codes = new HashSet<Integer>();
+		for (String n : names) {
+			codes.add(n.hashCode());
+		}
+		return codes;
+	}
+}
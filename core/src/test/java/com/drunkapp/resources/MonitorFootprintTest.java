@@ -0,0 +1,165 @@
+package com.drunkapp.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+import org.junit.Test;
+
+/**
+ * Estimated retained size of what the monitor keeps for its blocking
+ * decisions: the BlockController and the compiled BlockMatcher. The sizes
+ * assume a 64 bit VM with compressed references, so they are estimates,
+ * but they catch a change that makes the block set grow out of proportion
+ * to the list of blocked applications.
+ *
+ * @author Liam
+ *
+ */
+public class MonitorFootprintTest {
+
+	private static final int HEADER = 12;
+
+	private static final int REFERENCE = 4;
+
+	@Test
+	public void estimatesKnownShapes() {
+		assertEquals(16, retainedSize(new int[0]));
+		assertEquals(24, retainedSize(new int[1]));
+		assertEquals(16 + 16, retainedSize((Object) new String[4]));
+		assertEquals(24 + 32, retainedSize("com.example"));
+	}
+
+	@Test
+	public void controllerAndMatcherStayWithinBudget() {
+		BlockController controller = new BlockController(BlockPolicy.DEFAULT);
+		BlockMatcher matcher = BlockMatcher.compile(packages(200), rules(20));
+
+		// Report a foreground change so that the controller holds on to
+		// everything it keeps while running
+		controller.onForegroundChanged("com.example.vendor0.app0", "Main", matcher, 1000);
+
+		long size = retainedSize(controller, matcher);
+		assertTrue("Controller and matcher for 200 apps retain " + size + " bytes",
+				size < 48 * 1024);
+	}
+
+	@Test
+	public void matcherGrowsLinearlyWithTheBlockedApps() {
+		long small = retainedSize(BlockMatcher.compile(packages(100), rules(0)));
+		long large = retainedSize(BlockMatcher.compile(packages(1000), rules(0)));
+
+		// Every package name is kept, so a tenfold list costs at most about
+		// ten times as much
+		assertTrue(small + " bytes for 100 apps, " + large + " for 1000", large < 12 * small);
+	}
+
+	private static String[] packages(int count) {
+		String[] packages = new String[count];
+		for (int i = 0; i < count; i++) {
+			packages[i] = "com.example.vendor" + i % 50 + ".app" + i;
+		}
+		return packages;
+	}
+
+	private static ArrayList<String> rules(int count) {
+		ArrayList<String> rules = new ArrayList<String>();
+		for (int i = 0; i < count; i++) {
+			rules.add(i % 2 == 0 ? "org.example" + i + ".*" : "net.example" + i + "/.Main");
+		}
+		return rules;
+	}
+
+	/**
+	 * Adds up the estimated sizes of every object reachable from the roots,
+	 * counting each object once. Only the application's own classes, arrays
+	 * and strings are expected in the graph.
+	 */
+	private static long retainedSize(Object... roots) {
+		IdentityHashMap<Object, Boolean> seen = new IdentityHashMap<Object, Boolean>();
+		ArrayList<Object> pending = new ArrayList<Object>();
+		for (Object root : roots) {
+			pending.add(root);
+		}
+
+		long total = 0;
+		while (!pending.isEmpty()) {
+			Object o = pending.remove(pending.size() - 1);
+			if (o == null || seen.put(o, Boolean.TRUE) != null) {
+				continue;
+			}
+			total += shallowSize(o, pending);
+		}
+		return total;
+	}
+
+	private static long shallowSize(Object o, ArrayList<Object> pending) {
+		Class<?> type = o.getClass();
+
+		if (type == String.class) {
+			// The String itself and its byte array, with compact strings
+			return align(HEADER + 12) + align(16 + ((String) o).length());
+		}
+		if (type.isArray()) {
+			int length = Array.getLength(o);
+			Class<?> component = type.getComponentType();
+			if (!component.isPrimitive()) {
+				for (int i = 0; i < length; i++) {
+					pending.add(Array.get(o, i));
+				}
+			}
+			return align(16 + (long) length * sizeOf(component));
+		}
+		if (type.isEnum() || type.getSuperclass() != null && type.getSuperclass().isEnum()) {
+			// Constants are shared by the whole process
+			return 0;
+		}
+		if (!type.getName().startsWith("com.drunkapp.")) {
+			throw new AssertionError("No size estimate for " + type.getName());
+		}
+
+		long size = HEADER;
+		for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+			for (Field f : c.getDeclaredFields()) {
+				if (Modifier.isStatic(f.getModifiers())) {
+					continue;
+				}
+				size += sizeOf(f.getType());
+				if (!f.getType().isPrimitive()) {
+					f.setAccessible(true);
+					try {
+						pending.add(f.get(o));
+					} catch (IllegalAccessException e) {
+						throw new AssertionError(e);
+					}
+				}
+			}
+		}
+		return align(size);
+	}
+
+	private static int sizeOf(Class<?> type) {
+		if (type == long.class || type == double.class) {
+			return 8;
+		}
+		if (type == int.class || type == float.class) {
+			return 4;
+		}
+		if (type == short.class || type == char.class) {
+			return 2;
+		}
+		if (type == byte.class || type == boolean.class) {
+			return 1;
+		}
+		return REFERENCE;
+	}
+
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+}
@@ -0,0 +1,58 @@
+package com.drunkapp.resources;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Poll intervals, backing off and the checks on their tuning.
+ *
+ * @author Liam
+ *
+ */
+public class PollingConfigTest {
+
+	@Test
+	public void backsOffUpToTheSlowInterval() {
+		PollingConfig config = new PollingConfig(100, 800, 2);
+
+		assertEquals(200, config.backOff(100));
+		assertEquals(800, config.backOff(400));
+		assertEquals(800, config.backOff(800));
+		assertEquals(75.0, config.getIdlePollsPerMinute(), 1e-9);
+		assertEquals(800, config.getWorstCaseLatency());
+	}
+
+	@Test
+	public void idlePollsPerMinuteSetTheSlowInterval() {
+		PollingConfig config = PollingConfig.withIdlePollsPerMinute(100, 20);
+
+		assertEquals(100, config.getFastInterval());
+		assertEquals(3000, config.getSlowInterval());
+	}
+
+	@Test
+	public void slowIntervalIsNeverBelowTheFastOne() {
+		assertEquals(500, PollingConfig.withIdlePollsPerMinute(500, 600).getSlowInterval());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsZeroPollsPerMinute() {
+		PollingConfig.withIdlePollsPerMinute(100, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNegativePollsPerMinute() {
+		PollingConfig.withIdlePollsPerMinute(100, -1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsASlowIntervalBelowTheFastOne() {
+		new PollingConfig(800, 100, 2);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsABackoffFactorBelowOne() {
+		new PollingConfig(100, 800, 0);
+	}
+}
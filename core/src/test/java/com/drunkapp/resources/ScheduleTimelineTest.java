@@ -0,0 +1,158 @@
+package com.drunkapp.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/**
+ * The edges of the schedule's windows: exact start and end instants, windows
+ * running past midnight, windows that touch, the end of the timeline and
+ * daylight saving changes.
+ *
+ * @author Liam
+ *
+ */
+public class ScheduleTimelineTest {
+
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+	private static final TimeZone LONDON = TimeZone.getTimeZone("Europe/London");
+
+	private static final long MINUTE = 60 * 1000L;
+
+	private static final long HOUR = 60 * MINUTE;
+
+	/**
+	 * @return The instant of a wall clock time in a time zone
+	 */
+	private static long at(TimeZone tz, int year, int month, int day, int hour, int minute) {
+		Calendar c = Calendar.getInstance(tz);
+		c.clear();
+		c.set(year, month - 1, day, hour, minute);
+		return c.getTimeInMillis();
+	}
+
+	/**
+	 * @return The instant of a wall clock time in October 2026, UTC. The
+	 *         16th is a Friday.
+	 */
+	private static long oct(int day, int hour, int minute) {
+		return at(UTC, 2026, 10, day, hour, minute);
+	}
+
+	private static ScheduleTimeline compile(String schedule, TimeZone tz, long from) {
+		return ScheduleTimeline.compile(WeeklySchedule.parse(schedule), tz, from);
+	}
+
+	@Test
+	public void startIsActiveAndEndIsNot() {
+		ScheduleTimeline t = compile("FRI 21:00-23:00", UTC, oct(16, 12, 0));
+
+		assertFalse(t.isActive(oct(16, 21, 0) - 1));
+		assertTrue(t.isActive(oct(16, 21, 0)));
+		assertTrue(t.isActive(oct(16, 23, 0) - 1));
+		assertFalse(t.isActive(oct(16, 23, 0)));
+	}
+
+	@Test
+	public void nextChangeAtTheEdges() {
+		ScheduleTimeline t = compile("FRI 21:00-23:00", UTC, oct(16, 12, 0));
+
+		assertEquals(oct(16, 21, 0), t.getNextChange(oct(16, 12, 0)));
+		assertEquals(oct(16, 21, 0), t.getNextChange(oct(16, 21, 0) - 1));
+		assertEquals(oct(16, 23, 0), t.getNextChange(oct(16, 21, 0)));
+
+		// Next Friday's window starts after the end of the timeline
+		assertEquals(oct(23, 0, 0), t.getNextChange(oct(16, 23, 0)));
+	}
+
+	@Test
+	public void nextStartSkipsTheCurrentWindow() {
+		ScheduleTimeline t = compile("FRI 21:00-23:00, SAT 21:00-23:00", UTC, oct(16, 12, 0));
+
+		assertEquals(oct(16, 21, 0), t.getNextStart(oct(16, 12, 0)));
+		assertEquals(oct(17, 21, 0), t.getNextStart(oct(16, 21, 0)));
+		assertEquals(oct(17, 21, 0), t.getNextStart(oct(16, 22, 0)));
+		assertEquals(oct(23, 0, 0), t.getNextStart(oct(17, 21, 0)));
+	}
+
+	@Test
+	public void windowRunsPastMidnight() {
+		ScheduleTimeline t = compile("FRI 21:00-06:00", UTC, oct(16, 12, 0));
+
+		assertTrue(t.isActive(oct(17, 0, 0)));
+		assertTrue(t.isActive(oct(17, 6, 0) - 1));
+		assertFalse(t.isActive(oct(17, 6, 0)));
+	}
+
+	@Test
+	public void windowStartedTheDayBefore() {
+		ScheduleTimeline t = compile("FRI 21:00-06:00", UTC, oct(17, 3, 0));
+
+		assertTrue(t.isActive(oct(17, 3, 0)));
+		assertEquals(oct(17, 6, 0), t.getNextChange(oct(17, 3, 0)));
+	}
+
+	@Test
+	public void touchingWindowsAreMerged() {
+		ScheduleTimeline t = compile("FRI 21:00-00:00, SAT 00:00-02:00", UTC, oct(16, 22, 0));
+
+		assertTrue(t.isActive(oct(17, 0, 0)));
+		assertEquals(oct(17, 2, 0), t.getNextChange(oct(16, 22, 0)));
+	}
+
+	@Test
+	public void coversAWeekInOneTimeZone() {
+		long from = oct(16, 12, 0);
+		ScheduleTimeline t = compile("FRI 21:00-23:00", UTC, from);
+
+		assertFalse(t.covers(from - 1, UTC));
+		assertTrue(t.covers(from, UTC));
+		assertTrue(t.covers(oct(23, 0, 0) - 1, UTC));
+		assertFalse(t.covers(oct(23, 0, 0), UTC));
+		assertFalse(t.covers(from, LONDON));
+	}
+
+	@Test
+	public void clocksGoingForwardShortenTheWindow() {
+		// At 01:00 on 29 March 2026 the clocks in London go forward an hour
+		long from = at(LONDON, 2026, 3, 28, 12, 0);
+		ScheduleTimeline t = compile("SUN 00:30-03:00", LONDON, from);
+
+		long start = at(LONDON, 2026, 3, 29, 0, 30);
+		long end = at(LONDON, 2026, 3, 29, 3, 0);
+		assertEquals(start, t.getNextChange(from));
+		assertEquals(end, t.getNextChange(start));
+		assertEquals(90 * MINUTE, end - start);
+	}
+
+	@Test
+	public void skippedStartIsMovedOnByTheGap() {
+		long from = at(LONDON, 2026, 3, 28, 12, 0);
+		ScheduleTimeline t = compile("SUN 01:30-04:00", LONDON, from);
+
+		// 01:30 never happens, so blocking starts at 02:30 summer time
+		long start = at(UTC, 2026, 3, 29, 1, 30);
+		assertFalse(t.isActive(start - 1));
+		assertTrue(t.isActive(start));
+		assertEquals(start, t.getNextChange(from));
+	}
+
+	@Test
+	public void clocksGoingBackLengthenTheWindow() {
+		// At 02:00 on 25 October 2026 the clocks in London go back an hour
+		long from = at(LONDON, 2026, 10, 24, 12, 0);
+		ScheduleTimeline t = compile("SUN 00:00-03:00", LONDON, from);
+
+		long start = at(LONDON, 2026, 10, 25, 0, 0);
+		long end = t.getNextChange(start);
+		assertTrue(t.isActive(start));
+		assertEquals(at(UTC, 2026, 10, 25, 3, 0), end);
+		assertEquals(4 * HOUR, end - start);
+	}
+}
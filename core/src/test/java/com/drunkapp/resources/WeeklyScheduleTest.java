@@ -0,0 +1,69 @@
+package com.drunkapp.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Calendar;
+
+import org.junit.Test;
+
+/**
+ * Reading a schedule typed by the user and writing it back.
+ *
+ * @author Liam
+ *
+ */
+public class WeeklyScheduleTest {
+
+	@Test
+	public void roundTrips() {
+		String text = "FRI 21:00-06:00, SAT 21:00-06:00";
+		assertEquals(text, WeeklySchedule.parse(text).toString());
+	}
+
+	@Test
+	public void readsLowerCaseAndSpaces() {
+		WeeklySchedule s = WeeklySchedule.parse(" fri 21:30-23:00 ,");
+
+		assertEquals(1, s.getWindows().size());
+		WeeklySchedule.Window w = s.getWindows().get(0);
+		assertEquals(Calendar.FRIDAY, w.getDay());
+		assertEquals(21 * 60 + 30, w.getStartMinute());
+		assertEquals(23 * 60, w.getEndMinute());
+		assertFalse(w.endsNextDay());
+	}
+
+	@Test
+	public void endNotAfterStartIsTheNextDay() {
+		assertTrue(WeeklySchedule.parse("SAT 21:00-06:00").getWindows().get(0).endsNextDay());
+		assertTrue(WeeklySchedule.parse("SAT 21:00-21:00").getWindows().get(0).endsNextDay());
+	}
+
+	@Test
+	public void blankIsNoSchedule() {
+		assertNull(WeeklySchedule.parse(""));
+		assertNull(WeeklySchedule.parse(" , "));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnknownDay() {
+		WeeklySchedule.parse("FRY 21:00-06:00");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsHourOutOfRange() {
+		WeeklySchedule.parse("FRI 24:00-06:00");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsMissingDash() {
+		WeeklySchedule.parse("FRI 21:00 06:00");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNonNumericTime() {
+		WeeklySchedule.parse("FRI 2a:00-06:00");
+	}
+}
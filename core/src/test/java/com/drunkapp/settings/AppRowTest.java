@@ -0,0 +1,150 @@
+package com.drunkapp.settings;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Binding the rows of the application list, and reusing them for other
+ * applications as the list scrolls.
+ *
+ * @author Liam
+ *
+ */
+public class AppRowTest {
+
+	private final RunnableApp maps = new RunnableApp("Maps", false, "com.example.maps",
+			"com.example.maps.Main");
+
+	private final RunnableApp camera = new RunnableApp("Camera", true, "com.example.camera",
+			"com.example.camera.Main");
+
+	private HashMap<String, RunnableApp> changed;
+
+	private FakeViews views;
+
+	private AppRow row;
+
+	@Before
+	public void setUp() {
+		changed = new HashMap<String, RunnableApp>();
+		views = new FakeViews();
+		row = new AppRow(views, changed);
+	}
+
+	@Test
+	public void bindingShowsTheApp() {
+		row.bind(camera);
+
+		assertEquals("Camera", views.label);
+		assertTrue(views.checked);
+		assertEquals(1, views.icons.size());
+		assertSame(camera, views.icons.get(0));
+		assertSame(camera, row.getApp());
+	}
+
+	@Test
+	public void bindingTheSameAppAgainKeepsItsIcon() {
+		row.bind(maps);
+		row.bind(maps);
+		row.bind(maps);
+
+		assertEquals(1, views.icons.size());
+		assertEquals("Maps", views.label);
+	}
+
+	@Test
+	public void reusingTheRowShowsTheNewApp() {
+		row.bind(maps);
+		row.bind(camera);
+
+		assertEquals(2, views.icons.size());
+		assertSame(camera, views.icons.get(1));
+		assertEquals("Camera", views.label);
+		assertTrue(views.checked);
+
+		row.bind(maps);
+		assertEquals(3, views.icons.size());
+		assertFalse(views.checked);
+	}
+
+	@Test
+	public void clickTogglesTheAppShownWhenClicked() {
+		row.bind(maps);
+		row.bind(camera);
+		row.toggle();
+
+		assertFalse(camera.isSelected());
+		assertFalse(maps.isSelected());
+		assertFalse(views.checked);
+		assertEquals(1, changed.size());
+		assertSame(camera, changed.get(camera.getComponentKey()));
+	}
+
+	@Test
+	public void selectionSurvivesTheRowBeingReused() {
+		row.bind(maps);
+		row.toggle();
+		row.bind(camera);
+		row.bind(maps);
+
+		assertTrue(views.checked);
+		assertTrue(maps.isSelected());
+	}
+
+	@Test
+	public void togglingTwiceRecordsTheAppOnce() {
+		row.bind(maps);
+		row.toggle();
+		row.toggle();
+
+		assertFalse(maps.isSelected());
+		assertEquals(1, changed.size());
+	}
+
+	@Test
+	public void rowsShareTheChanges() {
+		FakeViews otherViews = new FakeViews();
+		AppRow other = new AppRow(otherViews, changed);
+
+		row.bind(maps);
+		other.bind(camera);
+		row.toggle();
+		other.toggle();
+
+		assertEquals(2, changed.size());
+		assertTrue(views.checked);
+		assertFalse(otherViews.checked);
+	}
+
+	private static class FakeViews implements AppRow.Views {
+
+		final ArrayList<RunnableApp> icons = new ArrayList<RunnableApp>();
+
+		CharSequence label;
+
+		boolean checked;
+
+		@Override
+		public void loadIcon(RunnableApp app) {
+			icons.add(app);
+		}
+
+		@Override
+		public void setLabel(CharSequence l) {
+			label = l;
+		}
+
+		@Override
+		public void setChecked(boolean c) {
+			checked = c;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package com.drunkapp.settings;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Merging a scan into the known applications.
+ *
+ * @author Liam
+ *
+ */
+public class CatalogDiffTest {
+
+	private static RunnableApp app(String label, boolean selected, String p, long updated) {
+		RunnableApp a = new RunnableApp(label, selected, p, p + ".Main");
+		a.setLastUpdateTime(updated);
+		return a;
+	}
+
+	@Test
+	public void keepsSelectionAndTakesWhatWasFound() {
+		List<RunnableApp> known = Arrays.asList(app("Old", true, "com.a", 1));
+		List<RunnableApp> found = Arrays.asList(app("New", false, "com.a", 2));
+
+		ArrayList<RunnableApp> merged = CatalogDiff.merge(known, found, null);
+
+		assertEquals(1, merged.size());
+		RunnableApp a = merged.get(0);
+		assertTrue(a.isSelected());
+		assertEquals("New", a.getLabel());
+		assertEquals(2, a.getLastUpdateTime());
+		assertEquals(found.get(0).getIconKey(), a.getIconKey());
+	}
+
+	@Test
+	public void dropsMissingAndAppendsNew() {
+		List<RunnableApp> known = Arrays.asList(app("A", false, "com.a", 1), app("B", true, "com.b", 1));
+		List<RunnableApp> found = Arrays.asList(app("C", false, "com.c", 1), app("B", false, "com.b", 1));
+
+		ArrayList<RunnableApp> merged = CatalogDiff.merge(known, found, null);
+
+		assertEquals(2, merged.size());
+		assertEquals("com.b", merged.get(0).getPackageName());
+		assertTrue(merged.get(0).isSelected());
+		assertEquals("com.c", merged.get(1).getPackageName());
+	}
+
+	@Test
+	public void packageScanLeavesOtherPackagesAlone() {
+		List<RunnableApp> known = Arrays.asList(app("A", true, "com.a", 1), app("B", false, "com.b", 1));
+		List<RunnableApp> found = new ArrayList<RunnableApp>();
+
+		ArrayList<RunnableApp> merged = CatalogDiff.merge(known, found, "com.b");
+
+		assertEquals(1, merged.size());
+		assertEquals("com.a", merged.get(0).getPackageName());
+	}
+}
@@ -0,0 +1,247 @@
+package com.drunkapp.settings;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Round trips and damaged files for the binary catalog format.
+ * 
+ * @author Liam
+ * 
+ */
+public class CatalogFormatTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void roundTripKeepsEveryField() throws IOException {
+		List<RunnableApp> apps = Arrays.asList(
+				new RunnableApp("Facebook", true, "com.facebook.katana", "com.facebook.katana.LoginActivity"),
+				new RunnableApp("Messenger", false, "com.facebook.orca", "com.facebook.orca.Main"),
+				new RunnableApp("Café 日本", false, "org.example.cafe", "org.example.cafe.Main"),
+				new RunnableApp("Facebook Pages", true, "com.facebook.katana", "com.facebook.katana.Pages"),
+				new RunnableApp(null, false, "org.example.nolabel", "org.example.nolabel.Main"));
+
+		List<RunnableApp> read = CatalogFormat.read(write(apps));
+
+		assertEquals(apps.size(), read.size());
+		for (int i = 0; i < apps.size(); i++) {
+			RunnableApp expected = apps.get(i);
+			RunnableApp actual = read.get(i);
+			String label = expected.getLabel() == null ? "" : expected.getLabel().toString();
+
+			assertEquals(label, actual.getLabel());
+			assertEquals(expected.isSelected(), actual.isSelected());
+			assertEquals(expected.getPackageName(), actual.getPackageName());
+			assertEquals(expected.getClassName(), actual.getClassName());
+		}
+	}
+
+	@Test
+	public void roundTripLargeCatalog() throws IOException {
+		ArrayList<RunnableApp> apps = new ArrayList<RunnableApp>();
+		for (int i = 0; i < 10000; i++) {
+			apps.add(new RunnableApp("App " + i, i % 7 == 0, "com.example.app" + i / 2,
+					"com.example.app" + i / 2 + ".Activity" + i % 2));
+		}
+
+		List<RunnableApp> read = CatalogFormat.read(write(apps));
+
+		assertEquals(apps.size(), read.size());
+		for (int i = 0; i < apps.size(); i++) {
+			assertEquals(apps.get(i).getComponentKey(), read.get(i).getComponentKey());
+			assertEquals(apps.get(i).isSelected(), read.get(i).isSelected());
+		}
+	}
+
+	@Test
+	public void generationIsStoredInTheHeader() throws IOException {
+		File file = folder.newFile();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			CatalogFormat.write(sample(), 42, out);
+		} finally {
+			out.close();
+		}
+
+		assertEquals(42, CatalogFormat.readGeneration(file));
+	}
+
+	@Test
+	public void emptyCatalog() throws IOException {
+		File file = write(new ArrayList<RunnableApp>());
+
+		assertTrue(CatalogFormat.read(file).isEmpty());
+		assertEquals(0, CatalogFormat.readBlockedPackages(file).length);
+	}
+
+	@Test
+	public void blockedPackagesAreListedOnce() throws IOException {
+		List<RunnableApp> apps = Arrays.asList(
+				new RunnableApp("A", true, "com.a", "com.a.One"),
+				new RunnableApp("A2", true, "com.a", "com.a.Two"),
+				new RunnableApp("B", false, "com.b", "com.b.Main"),
+				new RunnableApp("C", true, "com.c", "com.c.Main"));
+
+		String[] blocked = CatalogFormat.readBlockedPackages(write(apps));
+
+		assertArrayEquals(new String[] { "com.a", "com.c" }, blocked);
+	}
+
+	@Test
+	public void rejectsWrongMagic() throws IOException {
+		File file = write(sample());
+		overwriteInt(file, 0, 0x12345678);
+
+		assertUnreadable(file);
+	}
+
+	@Test
+	public void rejectsNewerVersion() throws IOException {
+		File file = write(sample());
+		overwriteInt(file, 4, CatalogFormat.VERSION + 1);
+
+		assertUnreadable(file);
+	}
+
+	@Test
+	public void rejectsNegativeCounts() throws IOException {
+		for (int position = 8; position <= 16; position += 4) {
+			File file = write(sample());
+			overwriteInt(file, position, -1);
+
+			assertUnreadable(file);
+		}
+	}
+
+	@Test
+	public void rejectsCountsTooLargeForTheFile() throws IOException {
+		for (int position = 8; position <= 16; position += 4) {
+			for (int count : new int[] { 1000, Integer.MAX_VALUE }) {
+				File file = write(sample());
+				overwriteInt(file, position, count);
+
+				assertUnreadable(file);
+			}
+		}
+	}
+
+	@Test
+	public void rejectsOutOfRangeStringId() throws IOException {
+		File file = write(sample());
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		int recordsOffset;
+		try {
+			raf.seek(24);
+			recordsOffset = raf.readInt();
+		} finally {
+			raf.close();
+		}
+		overwriteInt(file, recordsOffset, 1000);
+
+		try {
+			CatalogFormat.read(file);
+			fail("Read a record naming a string that does not exist");
+		} catch (IOException expected) {
+		}
+	}
+
+	@Test
+	public void rejectsEveryTruncation() throws IOException {
+		File file = write(sample());
+		byte[] bytes = readAll(file);
+
+		for (int length = 0; length < bytes.length; length++) {
+			File cut = folder.newFile("cut" + length);
+			FileOutputStream out = new FileOutputStream(cut);
+			try {
+				out.write(bytes, 0, length);
+			} finally {
+				out.close();
+			}
+
+			try {
+				CatalogFormat.read(cut);
+				fail("Read a catalog cut to " + length + " of " + bytes.length + " bytes");
+			} catch (IOException expected) {
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsLabelTooLongToStore() throws IOException {
+		char[] label = new char[0x10000];
+		Arrays.fill(label, 'a');
+
+		CatalogFormat.write(Arrays.asList(new RunnableApp(new String(label), false, "com.a", "com.a.Main")),
+				1, new ByteArrayOutputStream());
+	}
+
+	private static List<RunnableApp> sample() {
+		return Arrays.asList(
+				new RunnableApp("One", true, "com.one", "com.one.Main"),
+				new RunnableApp("Two", false, "com.two", "com.two.Main"),
+				new RunnableApp("Three", true, "com.three", "com.three.Main"));
+	}
+
+	private File write(List<RunnableApp> apps) throws IOException {
+		File file = folder.newFile();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			CatalogFormat.write(apps, 1, out);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static void overwriteInt(File file, long position, int value) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(position);
+			raf.writeInt(value);
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static byte[] readAll(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			byte[] bytes = new byte[(int) raf.length()];
+			raf.readFully(bytes);
+			return bytes;
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static void assertUnreadable(File file) {
+		try {
+			CatalogFormat.read(file);
+			fail("Read a damaged catalog");
+		} catch (IOException expected) {
+		}
+		try {
+			CatalogFormat.readBlockedPackages(file);
+			fail("Read blocked packages from a damaged catalog");
+		} catch (IOException expected) {
+		}
+	}
+}
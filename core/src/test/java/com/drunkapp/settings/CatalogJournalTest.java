@@ -0,0 +1,238 @@
+package com.drunkapp.settings;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Appending, replaying and recovering the catalog journal.
+ * 
+ * @author Liam
+ * 
+ */
+public class CatalogJournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+
+	private CatalogJournal journal;
+
+	private List<RunnableApp> base;
+
+	@Before
+	public void setUp() throws IOException {
+		file = new File(folder.getRoot(), "journal");
+		journal = new CatalogJournal(file);
+		base = Arrays.asList(
+				new RunnableApp("One", false, "com.one", "com.one.Main"),
+				new RunnableApp("Two", true, "com.two", "com.two.Main"),
+				new RunnableApp("Three", false, "com.three", "com.three.Main"));
+	}
+
+	@Test
+	public void replaysToggleAddAndRemove() throws IOException {
+		ArrayList<RunnableApp> next = copy(base);
+		next.get(0).setSelected(true);
+		next.remove(2);
+		next.add(new RunnableApp("Four", true, "com.four", "com.four.Main"));
+
+		journal.append(base, next, Arrays.asList("com.one/com.one.Main",
+				"com.three/com.three.Main", "com.four/com.four.Main"), 7);
+
+		assertEquals(7, journal.getGeneration());
+		assertSame(next, journal.replay(copy(base), 7));
+	}
+
+	@Test
+	public void toggleCostsAFewBytes() throws IOException {
+		ArrayList<RunnableApp> next = copy(base);
+		next.get(1).setSelected(false);
+
+		journal.append(base, next, Collections.singleton("com.two/com.two.Main"), 1);
+
+		assertTrue("Journal is " + journal.length() + " bytes", journal.length() < 64);
+	}
+
+	@Test
+	public void relabelReplacesInPlace() throws IOException {
+		ArrayList<RunnableApp> next = copy(base);
+		next.set(1, new RunnableApp("Deux", true, "com.two", "com.two.Main"));
+
+		journal.append(base, next, Collections.singleton("com.two/com.two.Main"), 1);
+
+		List<RunnableApp> replayed = journal.replay(copy(base), 1);
+		assertEquals("Deux", replayed.get(1).getLabel());
+		assertSame(next, replayed);
+	}
+
+	@Test
+	public void unchangedKeysWriteNothing() throws IOException {
+		journal.append(base, copy(base), Collections.singleton("com.one/com.one.Main"), 1);
+
+		assertFalse(file.exists());
+		assertTrue(journal.isEmpty());
+	}
+
+	@Test
+	public void laterAppendsBuildOnEarlierOnes() throws IOException {
+		ArrayList<RunnableApp> first = copy(base);
+		first.get(0).setSelected(true);
+		journal.append(base, first, Collections.singleton("com.one/com.one.Main"), 1);
+
+		ArrayList<RunnableApp> second = copy(first);
+		second.get(0).setSelected(false);
+		second.get(2).setSelected(true);
+		journal.append(first, second, Arrays.asList("com.one/com.one.Main",
+				"com.three/com.three.Main"), 1);
+
+		assertSame(second, journal.replay(copy(base), 1));
+	}
+
+	@Test
+	public void journalForAnOlderCatalogIsIgnored() throws IOException {
+		ArrayList<RunnableApp> next = copy(base);
+		next.remove(0);
+		journal.append(base, next, Collections.singleton("com.one/com.one.Main"), 1);
+
+		// Compaction wrote generation 2 but died before deleting the
+		// journal, and the app was reinstalled since
+		List<RunnableApp> replayed = journal.replay(copy(base), 2);
+
+		assertSame(base, replayed);
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void appendRestartsAStaleJournal() throws IOException {
+		ArrayList<RunnableApp> first = copy(base);
+		first.remove(0);
+		journal.append(base, first, Collections.singleton("com.one/com.one.Main"), 1);
+
+		ArrayList<RunnableApp> second = copy(base);
+		second.get(2).setSelected(true);
+		journal.append(base, second, Collections.singleton("com.three/com.three.Main"), 2);
+
+		assertEquals(2, journal.getGeneration());
+		assertSame(second, journal.replay(copy(base), 2));
+	}
+
+	@Test
+	public void tornRecordIsCutOff() throws IOException {
+		ArrayList<RunnableApp> first = copy(base);
+		first.get(0).setSelected(true);
+		journal.append(base, first, Collections.singleton("com.one/com.one.Main"), 1);
+		long good = journal.length();
+
+		ArrayList<RunnableApp> second = copy(first);
+		second.get(2).setSelected(true);
+		journal.append(first, second, Collections.singleton("com.three/com.three.Main"), 1);
+
+		// Lose the last byte of the second record
+		setLength(journal.length() - 1);
+
+		assertSame(first, journal.replay(copy(base), 1));
+		assertEquals(good, journal.length());
+	}
+
+	@Test
+	public void corruptRecordStopsReplay() throws IOException {
+		ArrayList<RunnableApp> first = copy(base);
+		first.get(0).setSelected(true);
+		journal.append(base, first, Collections.singleton("com.one/com.one.Main"), 1);
+		long good = journal.length();
+
+		ArrayList<RunnableApp> second = copy(first);
+		second.get(2).setSelected(true);
+		journal.append(first, second, Collections.singleton("com.three/com.three.Main"), 1);
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(raf.length() - 1);
+			int last = raf.read();
+			raf.seek(raf.length() - 1);
+			raf.write(last ^ 0xFF);
+		} finally {
+			raf.close();
+		}
+
+		assertSame(first, journal.replay(copy(base), 1));
+		assertEquals(good, journal.length());
+	}
+
+	@Test
+	public void tornHeaderDiscardsJournal() throws IOException {
+		ArrayList<RunnableApp> next = copy(base);
+		next.get(0).setSelected(true);
+		journal.append(base, next, Collections.singleton("com.one/com.one.Main"), 1);
+		setLength(5);
+
+		assertSame(base, journal.replay(copy(base), 1));
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void oversizedRecordIsRejectedBeforeWriting() throws IOException {
+		ArrayList<RunnableApp> first = copy(base);
+		first.get(0).setSelected(true);
+		journal.append(base, first, Collections.singleton("com.one/com.one.Main"), 1);
+		long good = journal.length();
+
+		char[] label = new char[CatalogJournal.MAX_RECORD_SIZE];
+		Arrays.fill(label, 'x');
+		ArrayList<RunnableApp> second = copy(first);
+		second.get(1).setSelected(false);
+		second.add(new RunnableApp(new String(label), false, "com.big", "com.big.Main"));
+
+		try {
+			journal.append(first, second, Arrays.asList("com.two/com.two.Main",
+					"com.big/com.big.Main"), 1);
+			fail("Appended a record that replay would drop");
+		} catch (IOException expected) {
+		}
+
+		assertEquals(good, journal.length());
+		assertSame(first, journal.replay(copy(base), 1));
+	}
+
+	private void setLength(long length) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(length);
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static ArrayList<RunnableApp> copy(List<RunnableApp> apps) {
+		ArrayList<RunnableApp> copy = new ArrayList<RunnableApp>(apps.size());
+		for (RunnableApp a : apps) {
+			copy.add(new RunnableApp(a));
+		}
+		return copy;
+	}
+
+	private static void assertSame(List<RunnableApp> expected, List<RunnableApp> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getComponentKey(), actual.get(i).getComponentKey());
+			assertEquals(String.valueOf(expected.get(i).getLabel()), String.valueOf(actual.get(i).getLabel()));
+			assertEquals(expected.get(i).isSelected(), actual.get(i).isSelected());
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package com.drunkapp.settings;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.drunkapp.simulation.FakePackageManager;
+
+/**
+ * Cold and warm scans over a fake package manager, counting the labels that
+ * have to be loaded from it.
+ * 
+ * @author Liam
+ * 
+ */
+public class LabelCacheTest {
+
+	private static final int APPS = 500;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+
+	private FakePackageManager pm;
+
+	private int updateTimeQueries;
+
+	private final LabelCache.Loader loader = new LabelCache.Loader() {
+		@Override
+		public long getLastUpdateTime(String packageName) {
+			updateTimeQueries++;
+			return pm.getLastUpdateTime(packageName);
+		}
+
+		@Override
+		public CharSequence loadLabel(String packageName, String className) {
+			return pm.loadLabel(packageName, className);
+		}
+	};
+
+	@Before
+	public void setUp() {
+		file = new File(folder.getRoot(), "labels");
+		pm = FakePackageManager.withApps(APPS);
+	}
+
+	@Test
+	public void warmScanLoadsNoLabels() {
+		LabelCache cold = new LabelCache(file);
+		assertEquals(APPS, scan(cold, "en_GB"));
+		assertEquals(0, cold.getHits());
+		assertEquals(APPS, cold.getMisses());
+
+		// A new cache, as after the process is restarted
+		LabelCache warm = new LabelCache(file);
+		assertEquals(0, scan(warm, "en_GB"));
+		assertEquals(APPS, warm.getHits());
+		assertEquals(0, warm.getMisses());
+	}
+
+	@Test
+	public void labelsComeFromTheCache() {
+		LabelCache cache = new LabelCache(file);
+		scan(cache, "en_GB");
+
+		assertEquals("MainActivity", new LabelCache(file).getLabel("com.example.app3",
+				"com.example.app3.MainActivity", "en_GB", loader));
+	}
+
+	@Test
+	public void onlyUpdatedPackagesAreReloaded() {
+		scan(new LabelCache(file), "en_GB");
+		pm.update("com.example.app7").update("com.example.app8");
+
+		LabelCache cache = new LabelCache(file);
+		assertEquals(2, scan(cache, "en_GB"));
+		assertEquals(APPS - 2, cache.getHits());
+	}
+
+	@Test
+	public void localeChangeReloadsEverything() {
+		scan(new LabelCache(file), "en_GB");
+
+		assertEquals(APPS, scan(new LabelCache(file), "fr_FR"));
+		assertEquals(0, scan(new LabelCache(file), "fr_FR"));
+	}
+
+	@Test
+	public void removedAppsAreDroppedAfterAFullScan() {
+		LabelCache cache = new LabelCache(file);
+		scan(cache, "en_GB");
+
+		pm.uninstall("com.example.app5");
+		scan(cache, "en_GB");
+		pm.install("com.example.app5", "com.example.app5.MainActivity");
+
+		assertEquals(1, scan(new LabelCache(file), "en_GB"));
+	}
+
+	@Test
+	public void updateTimeIsAskedOncePerPackagePerScan() {
+		pm.install("com.example.app0", "com.example.app0.Second");
+		LabelCache cache = new LabelCache(file);
+
+		scan(cache, "en_GB");
+		assertEquals(APPS, updateTimeQueries);
+		scan(cache, "en_GB");
+		assertEquals(2 * APPS, updateTimeQueries);
+	}
+
+	@Test
+	public void unreadableFileStartsCold() throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(new byte[] { 0, 0, 0, 1, 0 });
+		} finally {
+			out.close();
+		}
+
+		assertEquals(APPS, scan(new LabelCache(file), "en_GB"));
+	}
+
+	/**
+	 * Looks up every launchable activity and saves the cache, as a full
+	 * scan does.
+	 * 
+	 * @return Number of labels loaded from the package manager
+	 */
+	private int scan(LabelCache cache, String locale) {
+		int before = pm.getLabelLoads();
+		for (String component : pm.getLaunchableComponents()) {
+			int slash = component.indexOf('/');
+			cache.getLabel(component.substring(0, slash), component.substring(slash + 1), locale,
+					loader);
+		}
+		cache.save(true);
+		return pm.getLabelLoads() - before;
+	}
+}
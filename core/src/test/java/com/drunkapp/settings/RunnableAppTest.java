@@ -0,0 +1,143 @@
+package com.drunkapp.settings;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Stable IDs, and the allocation-free reads that AppListAdapter makes for
+ * every row it binds.
+ * 
+ * @author Liam
+ * 
+ */
+public class RunnableAppTest {
+
+	@Test
+	public void stableIdDependsOnlyOnPackageAndClass() {
+		RunnableApp a = new RunnableApp("Maps", false, "com.google.android.apps.maps",
+				"com.google.android.maps.MapsActivity");
+		RunnableApp b = new RunnableApp("Karten", true, "com.google.android.apps.maps",
+				"com.google.android.maps.MapsActivity");
+
+		assertEquals(a.getStableId(), b.getStableId());
+		assertEquals(a.getStableId(), new RunnableApp(a).getStableId());
+		assertNotEquals(0, a.getStableId());
+	}
+
+	@Test
+	public void stableIdSurvivesReordering() {
+		ArrayList<RunnableApp> apps = apps(500);
+		ArrayList<Long> before = new ArrayList<Long>();
+		for (RunnableApp a : apps) {
+			before.add(a.getStableId());
+		}
+
+		ArrayList<RunnableApp> shuffled = new ArrayList<RunnableApp>(apps);
+		Collections.shuffle(shuffled, new Random(1));
+		for (RunnableApp a : shuffled) {
+			assertEquals(before.get(apps.indexOf(a)).longValue(), a.getStableId());
+		}
+	}
+
+	@Test
+	public void stableIdsAreDistinct() {
+		HashSet<Long> ids = new HashSet<Long>();
+		for (RunnableApp a : apps(10000)) {
+			assertTrue(a.getComponentKey(), ids.add(a.getStableId()));
+		}
+
+		// The separator keeps the package and class apart
+		assertNotEquals(new RunnableApp("", false, "com.ab", "c").getStableId(),
+				new RunnableApp("", false, "com.a", "bc").getStableId());
+	}
+
+	@Test
+	public void changingClassChangesStableId() {
+		RunnableApp a = new RunnableApp("Chat", false, "com.example", "com.example.Chat");
+		long id = a.getStableId();
+
+		a.setClassName("com.example.Main");
+
+		assertNotEquals(id, a.getStableId());
+		assertEquals(new RunnableApp("", false, "com.example", "com.example.Main").getStableId(),
+				a.getStableId());
+	}
+
+	@Test
+	public void iconKeyChangesWithTheUpdateTime() {
+		RunnableApp a = new RunnableApp("Chat", false, "com.example", "com.example.Chat");
+		a.setLastUpdateTime(1);
+		String key = a.getIconKey();
+
+		assertSame(key, a.getIconKey());
+		assertEquals(key, new RunnableApp(a).getIconKey());
+
+		a.setLastUpdateTime(2);
+		assertNotEquals(key, a.getIconKey());
+
+		String updated = a.getIconKey();
+		a.setClassName("com.example.Main");
+		assertNotEquals(updated, a.getIconKey());
+	}
+
+	@Test
+	public void bindingRowsDoesNotAllocate() {
+		Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		Assume.assumeTrue(bean.isThreadAllocatedMemorySupported());
+		bean.setThreadAllocatedMemoryEnabled(true);
+
+		ArrayList<RunnableApp> apps = apps(500);
+		long thread = Thread.currentThread().getId();
+
+		// The first pass works out every ID, as the first layout does
+		long sink = scroll(apps, 1);
+		long overhead = bean.getThreadAllocatedBytes(thread);
+		overhead = bean.getThreadAllocatedBytes(thread) - overhead;
+
+		long before = bean.getThreadAllocatedBytes(thread);
+		sink += scroll(apps, 100);
+		long allocated = bean.getThreadAllocatedBytes(thread) - before - overhead;
+
+		assertFalse(sink == 42);
+		assertEquals("Bytes allocated scrolling 100 times through 500 apps", 0, allocated);
+	}
+
+	/**
+	 * Reads what the adapter reads for each row: its ID, icon key, label and
+	 * selection.
+	 */
+	private static long scroll(ArrayList<RunnableApp> apps, int times) {
+		long sink = 0;
+		for (int t = 0; t < times; t++) {
+			for (int i = 0; i < apps.size(); i++) {
+				RunnableApp a = apps.get(i);
+				sink += a.getStableId() + a.getIconKey().length() + a.getLabel().length()
+						+ (a.isSelected() ? 1 : 0);
+			}
+		}
+		return sink;
+	}
+
+	private static ArrayList<RunnableApp> apps(int count) {
+		ArrayList<RunnableApp> apps = new ArrayList<RunnableApp>(count);
+		for (int i = 0; i < count; i++) {
+			String p = "com.example.vendor" + i % 50 + ".app" + i / 2;
+			apps.add(new RunnableApp("App " + i, i % 3 == 0, p, p + ".Activity" + i % 2));
+		}
+		return apps;
+	}
+}
@@ -0,0 +1,104 @@
+package com.drunkapp.settings;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Prefix search over the words of the labels and package names.
+ *
+ * @author Liam
+ *
+ */
+public class SearchIndexTest {
+
+	private final SearchIndex index = new SearchIndex();
+
+	@Before
+	public void setUp() {
+		index.add(new RunnableApp("Google Maps", false, "com.google.android.apps.maps", "com.google.Maps"));
+		index.add(new RunnableApp("Gmail", false, "com.google.android.gm", "com.google.Gmail"));
+		index.add(new RunnableApp("Café Finder", false, "org.example.cafe", "org.example.Cafe"));
+		index.add(new RunnableApp("ÉCOLE", false, "fr.example.ecole", "fr.example.Ecole"));
+		index.add(new RunnableApp("Maps+ (beta)", false, "org.example.maps", "org.example.Maps"));
+	}
+
+	private List<String> labels(String query) {
+		ArrayList<String> result = new ArrayList<String>();
+		for (RunnableApp a : index.search(query)) {
+			result.add(a.getLabel().toString());
+		}
+		return result;
+	}
+
+	@Test
+	public void matchesThePrefixOfAnyWord() {
+		assertEquals(Arrays.asList("Google Maps", "Maps+ (beta)"), labels("ma"));
+		assertEquals(Arrays.asList("Maps+ (beta)"), labels("bet"));
+		assertEquals(Arrays.asList("Gmail", "Google Maps"), labels("g"));
+	}
+
+	@Test
+	public void doesNotMatchTheMiddleOfAWord() {
+		assertTrue(labels("aps").isEmpty());
+	}
+
+	@Test
+	public void everyWordOfTheQueryMustMatch() {
+		assertEquals(Arrays.asList("Google Maps"), labels("goo ma"));
+		assertEquals(Arrays.asList("Google Maps"), labels("MA  goo"));
+		assertTrue(labels("goo mail").isEmpty());
+	}
+
+	@Test
+	public void matchesPackageNames() {
+		assertEquals(Arrays.asList("Gmail"), labels("gm"));
+		assertEquals(Arrays.asList("Café Finder", "Maps+ (beta)"), labels("org"));
+	}
+
+	@Test
+	public void ignoresCase() {
+		assertEquals(Arrays.asList("Gmail"), labels("GMAIL"));
+		assertEquals(Arrays.asList("ÉCOLE"), labels("ecol"));
+	}
+
+	@Test
+	public void ignoresAccents() {
+		assertEquals(Arrays.asList("Café Finder"), labels("cafe"));
+		assertEquals(Arrays.asList("Café Finder"), labels("CAFÉ"));
+		assertEquals(Arrays.asList("ÉCOLE"), labels("école"));
+		assertEquals(Arrays.asList("zolc"), SearchIndex.tokenize("Żółć"));
+	}
+
+	@Test
+	public void emptyQueryMatchesEverything() {
+		List<String> all = Arrays.asList("Café Finder", "ÉCOLE", "Gmail", "Google Maps", "Maps+ (beta)");
+
+		assertEquals(all, labels(""));
+		assertEquals(all, labels("   "));
+		assertEquals(all, labels("+ ()"));
+	}
+
+	@Test
+	public void removedApplicationsAreNotFound() {
+		index.remove("com.google.android.gm/com.google.Gmail");
+
+		assertEquals(Arrays.asList("Google Maps"), labels("g"));
+		assertTrue(labels("gm").isEmpty());
+	}
+
+	@Test
+	public void addingAgainReplacesTheOldWords() {
+		index.add(new RunnableApp("Inbox", false, "com.google.android.gm", "com.google.Gmail"));
+
+		assertTrue(labels("gmail").isEmpty());
+		assertEquals(Arrays.asList("Inbox"), labels("inb"));
+		assertEquals(5, labels("").size());
+	}
+}
@@ -0,0 +1,113 @@
+package com.drunkapp.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tasks run in time order on the virtual clock, with ties run in the order
+ * they were posted.
+ *
+ * @author Liam
+ *
+ */
+public class EventQueueTest {
+
+	private final EventQueue queue = new EventQueue(new VirtualClock(0));
+
+	/**
+	 * Name and clock time of each task that ran, in order.
+	 */
+	private final ArrayList<String> runs = new ArrayList<String>();
+
+	private Runnable task(final String name) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				runs.add(name + "@" + queue.getClock().currentTimeMillis());
+			}
+		};
+	}
+
+	@Test
+	public void runsInTimeOrder() {
+		queue.postAt(task("c"), 300);
+		queue.postAt(task("a"), 100);
+		queue.postAt(task("b"), 200);
+		queue.runUntil(1000);
+
+		assertEquals(Arrays.asList("a@100", "b@200", "c@300"), runs);
+		assertEquals(1000, queue.getClock().currentTimeMillis());
+	}
+
+	@Test
+	public void tiesRunInPostOrder() {
+		for (int i = 0; i < 10; i++) {
+			queue.postAt(task(Integer.toString(i)), 100);
+		}
+		queue.runUntil(100);
+
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i + "@100", runs.get(i));
+		}
+	}
+
+	@Test
+	public void onlyRunsWhatIsDue() {
+		queue.postAt(task("a"), 100);
+		queue.postAt(task("b"), 101);
+		queue.runUntil(100);
+
+		assertEquals(Arrays.asList("a@100"), runs);
+
+		queue.runUntil(101);
+		assertEquals(Arrays.asList("a@100", "b@101"), runs);
+	}
+
+	@Test
+	public void aTimeInThePastRunsNow() {
+		queue.runUntil(500);
+		queue.postAt(task("late"), 100);
+		queue.runUntil(500);
+
+		assertEquals(Arrays.asList("late@500"), runs);
+	}
+
+	@Test
+	public void tasksPostedByTasksRunWhenDue() {
+		queue.postAt(new Runnable() {
+			@Override
+			public void run() {
+				queue.postDelayed(task("later"), 50);
+			}
+		}, 100);
+
+		queue.runUntil(149);
+		assertTrue(runs.isEmpty());
+
+		queue.runUntil(200);
+		assertEquals(Arrays.asList("later@150"), runs);
+	}
+
+	@Test
+	public void removeCallbacksRemovesEveryRun() {
+		Runnable removed = task("removed");
+		queue.postAt(removed, 100);
+		queue.postAt(task("kept"), 150);
+		queue.postAt(removed, 200);
+		queue.removeCallbacks(removed);
+		queue.runUntil(1000);
+
+		assertEquals(Arrays.asList("kept@150"), runs);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void clockCannotGoBack() {
+		queue.runUntil(100);
+		queue.runUntil(50);
+	}
+}
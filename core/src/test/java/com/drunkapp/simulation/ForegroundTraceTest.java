@@ -0,0 +1,131 @@
+package com.drunkapp.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Reading traces in the text form and making them up.
+ *
+ * @author Liam
+ *
+ */
+public class ForegroundTraceTest {
+
+	private static final List<String> COMPONENTS = Arrays.asList("com.a/.Main", "com.b/.Main",
+			"com.c/com.c.Main");
+
+	private static ForegroundTrace read(String text) throws IOException {
+		return ForegroundTrace.read(new BufferedReader(new StringReader(text)));
+	}
+
+	private static void assertRejected(String text, String message) {
+		try {
+			read(text);
+			fail("Read " + text);
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+		}
+	}
+
+	@Test
+	public void readsSwitchesAndSkipsComments() throws IOException {
+		ForegroundTrace trace = read("# A trace\n"
+				+ "\n"
+				+ "0 com.android.launcher/com.android.launcher2.Launcher\n"
+				+ "  1500   com.facebook.katana/.LoginActivity  \n");
+
+		List<ForegroundTrace.Switch> switches = trace.getSwitches();
+		assertEquals(2, switches.size());
+		assertEquals(0, switches.get(0).time);
+		assertEquals("com.android.launcher2.Launcher", switches.get(0).className);
+		assertEquals(1500, switches.get(1).time);
+		assertEquals("com.facebook.katana", switches.get(1).packageName);
+		assertEquals("com.facebook.katana.LoginActivity", switches.get(1).className);
+		assertEquals(1500, trace.getEndTime());
+	}
+
+	@Test
+	public void aTimeOnItsOwnEndsTheTrace() throws IOException {
+		ForegroundTrace trace = read("100 com.a/.Main\n5000\n");
+
+		assertEquals(1, trace.getSwitches().size());
+		assertEquals(5000, trace.getEndTime());
+	}
+
+	@Test
+	public void badTimeGivesTheLine() {
+		assertRejected("0 com.a/.Main\nsoon com.b/.Main\n", "Line 2: ");
+	}
+
+	@Test
+	public void missingClassIsRejected() {
+		assertRejected("# comment\n100 com.a\n", "Line 2: Expected package/class");
+		assertRejected("100 com.a/\n", "Line 1: Expected package/class");
+		assertRejected("100 /.Main\n", "Line 1: Expected package/class");
+	}
+
+	@Test
+	public void switchesOutOfOrderAreRejected() {
+		assertRejected("200 com.a/.Main\n100 com.b/.Main\n", "Line 2: ");
+	}
+
+	@Test
+	public void endBeforeTheLastSwitchIsRejected() {
+		assertRejected("200 com.a/.Main\n100\n", "Line 2: ");
+	}
+
+	@Test
+	public void syntheticTraceIsTheSameForTheSameSeed() {
+		ForegroundTrace a = ForegroundTrace.synthetic(7, COMPONENTS, 1000, 5000);
+		ForegroundTrace b = ForegroundTrace.synthetic(7, COMPONENTS, 1000, 5000);
+		ForegroundTrace c = ForegroundTrace.synthetic(8, COMPONENTS, 1000, 5000);
+
+		assertEquals(describe(a), describe(b));
+		assertFalse(describe(a).equals(describe(c)));
+	}
+
+	@Test
+	public void syntheticTraceNeverRepeatsOrSharesATime() {
+		ForegroundTrace trace = ForegroundTrace.synthetic(1, COMPONENTS, 1000, 5000);
+		List<ForegroundTrace.Switch> switches = trace.getSwitches();
+
+		assertEquals(1000, switches.size());
+		assertEquals(0, switches.get(0).time);
+		assertEquals("com.a.Main", firstSwitchTo(switches, "com.a").className);
+		for (int i = 1; i < switches.size(); i++) {
+			ForegroundTrace.Switch previous = switches.get(i - 1);
+			ForegroundTrace.Switch s = switches.get(i);
+			assertTrue(s.time > previous.time);
+			assertFalse(s.packageName.equals(previous.packageName));
+		}
+		assertTrue(trace.getEndTime() > switches.get(switches.size() - 1).time);
+	}
+
+	private static ForegroundTrace.Switch firstSwitchTo(List<ForegroundTrace.Switch> switches,
+			String packageName) {
+		for (ForegroundTrace.Switch s : switches) {
+			if (s.packageName.equals(packageName)) {
+				return s;
+			}
+		}
+		throw new AssertionError(packageName + " never came to the front");
+	}
+
+	private static String describe(ForegroundTrace trace) {
+		StringBuilder sb = new StringBuilder();
+		for (ForegroundTrace.Switch s : trace.getSwitches()) {
+			sb.append(s.time).append(' ').append(s.className).append('\n');
+		}
+		return sb.append(trace.getEndTime()).toString();
+	}
+}
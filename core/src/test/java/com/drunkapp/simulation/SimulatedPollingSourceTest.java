@@ -0,0 +1,92 @@
+package com.drunkapp.simulation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.drunkapp.resources.ForegroundSource;
+import com.drunkapp.resources.PollingConfig;
+
+/**
+ * A blocked activity that stays at the front, e.g. because going home was
+ * intercepted, is reported on every poll until it goes, while an allowed
+ * one is only reported when it changes.
+ *
+ * @author Liam
+ *
+ */
+public class SimulatedPollingSourceTest {
+
+	private static final String BLOCKED = "com.example.blocked";
+
+	private final FakeActivityManager am = new FakeActivityManager();
+
+	private final EventQueue queue = new EventQueue(new VirtualClock(0));
+
+	private final SimulatedPollingSource source = new SimulatedPollingSource(am, queue,
+			new PollingConfig(100, 800, 2));
+
+	/**
+	 * Packages reported to the listener, in order.
+	 */
+	private final ArrayList<String> reports = new ArrayList<String>();
+
+	private final ForegroundSource.Listener listener = new ForegroundSource.Listener() {
+		@Override
+		public boolean onForegroundChanged(String packageName, String className) {
+			reports.add(packageName);
+			return packageName.equals(BLOCKED);
+		}
+	};
+
+	@Before
+	public void setUp() {
+		am.moveToFront("com.example.allowed", "com.example.allowed.Main");
+	}
+
+	@Test
+	public void allowedActivityIsReportedOnce() {
+		source.start(listener);
+		queue.runUntil(5000);
+
+		assertEquals(1, reports.size());
+	}
+
+	@Test
+	public void blockedActivityIsReportedOnEveryPoll() {
+		am.moveToFront(BLOCKED, BLOCKED + ".Main");
+		source.start(listener);
+
+		// Polls at 0, 100, ..., 1000, all at the fast interval
+		queue.runUntil(1000);
+		assertEquals(11, reports.size());
+		for (String p : reports) {
+			assertEquals(BLOCKED, p);
+		}
+	}
+
+	@Test
+	public void reportsStopOnceTheBlockedActivityGoes() {
+		am.moveToFront(BLOCKED, BLOCKED + ".Main");
+		source.start(listener);
+		queue.runUntil(300);
+		am.startHome();
+		queue.runUntil(5000);
+
+		assertEquals(5, reports.size());
+		assertEquals(FakePackageManager.HOME_PACKAGE, reports.get(4));
+	}
+
+	@Test
+	public void stoppingForgetsTheBlock() {
+		am.moveToFront(BLOCKED, BLOCKED + ".Main");
+		source.start(listener);
+		source.stop();
+		queue.runUntil(5000);
+
+		assertEquals(1, reports.size());
+	}
+}
@@ -0,0 +1,68 @@
+package com.drunkapp.simulation;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Latency percentiles by nearest rank.
+ *
+ * @author Liam
+ *
+ */
+public class SimulationReportTest {
+
+	private final SimulationReport report = new SimulationReport("test");
+
+	@Test
+	public void nothingBlockedHasNoPercentile() {
+		assertEquals(-1, report.getLatencyPercentile(50));
+	}
+
+	@Test
+	public void usesTheNearestRank() {
+		for (long l : new long[] { 7, 3, 10, 1, 9, 2, 8, 4, 6, 5 }) {
+			report.recordLatency(l);
+		}
+
+		assertEquals(1, report.getLatencyPercentile(0));
+		assertEquals(1, report.getLatencyPercentile(10));
+		assertEquals(2, report.getLatencyPercentile(10.1));
+		assertEquals(5, report.getLatencyPercentile(50));
+		assertEquals(9, report.getLatencyPercentile(90));
+		assertEquals(10, report.getLatencyPercentile(95));
+		assertEquals(10, report.getLatencyPercentile(100));
+	}
+
+	@Test
+	public void singleLatencyIsEveryPercentile() {
+		report.recordLatency(42);
+
+		assertEquals(42, report.getLatencyPercentile(0));
+		assertEquals(42, report.getLatencyPercentile(99.9));
+	}
+
+	@Test
+	public void keepsEveryLatencyPastTheFirstArray() {
+		for (long l = 1000; l > 0; l--) {
+			report.recordLatency(l);
+		}
+
+		assertEquals(1, report.getLatencyPercentile(0));
+		assertEquals(500, report.getLatencyPercentile(50));
+		assertEquals(999, report.getLatencyPercentile(99.9));
+		assertEquals(1000, report.getLatencyPercentile(100));
+	}
+
+	@Test
+	public void recordingAfterReadingIsIncluded() {
+		report.recordLatency(5);
+		report.recordLatency(1);
+		assertEquals(5, report.getLatencyPercentile(100));
+
+		report.recordLatency(10);
+		report.recordLatency(0);
+		assertEquals(0, report.getLatencyPercentile(0));
+		assertEquals(10, report.getLatencyPercentile(100));
+	}
+}
@@ -0,0 +1,118 @@
+package com.drunkapp.simulation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.drunkapp.resources.BlockMatcher;
+import com.drunkapp.resources.BlockPolicy;
+import com.drunkapp.resources.PollingConfig;
+
+/**
+ * Latency, missed blocks and false blocks when replaying short traces.
+ *
+ * @author Liam
+ *
+ */
+public class TraceSimulatorTest {
+
+	private static final String BLOCKED = "com.example.blocked";
+
+	private static final String ALLOWED = "com.example.allowed";
+
+	private final TraceSimulator simulator = new TraceSimulator(
+			BlockMatcher.compile(new String[] { BLOCKED }, new ArrayList<String>()),
+			BlockPolicy.DEFAULT).setHomeLatency(50);
+
+	private static ForegroundTrace fromHome() {
+		return new ForegroundTrace().add(0, FakePackageManager.HOME_PACKAGE,
+				FakePackageManager.HOME_CLASS);
+	}
+
+	@Test
+	public void pushLatencyIsTheDeliveryDelayPlusGoingHome() {
+		ForegroundTrace trace = fromHome().add(1000, BLOCKED, ".Main").setEndTime(10000);
+
+		SimulationReport r = simulator.runPush(trace, 30);
+
+		assertEquals(1, r.getBlockedVisits());
+		assertEquals(1, r.getBlocks());
+		assertEquals(1, r.getNotifications());
+		assertEquals(80, r.getLatencyPercentile(100));
+		assertEquals(0, r.getMissedBlocks());
+		assertEquals(0, r.getFalseBlocks());
+		assertEquals(10000, r.getSimulatedTime());
+	}
+
+	@Test
+	public void pollingLatencyWaitsForTheNextPoll() {
+		ForegroundTrace trace = fromHome().add(1050, BLOCKED, ".Main").setEndTime(10000);
+
+		SimulationReport r = simulator.runPolling(trace, new PollingConfig(100, 100, 1));
+
+		// Seen by the poll at 1100, home at 1150
+		assertEquals(1, r.getBlocks());
+		assertEquals(100, r.getLatencyPercentile(100));
+		assertEquals(0, r.getMissedBlocks());
+		assertEquals(0, r.getFalseBlocks());
+	}
+
+	@Test
+	public void blockLandingAfterTheUserLeftIsMissedAndFalse() {
+		// Gone again before the change is delivered
+		ForegroundTrace trace = fromHome().add(1000, BLOCKED, ".Main")
+				.add(1010, ALLOWED, ".Main").setEndTime(10000);
+
+		SimulationReport r = simulator.runPush(trace, 30);
+
+		assertEquals(1, r.getBlocks());
+		assertEquals(1, r.getMissedBlocks());
+		assertEquals(1, r.getFalseBlocks());
+		assertEquals(-1, r.getLatencyPercentile(50));
+	}
+
+	@Test
+	public void blockedAtTheEndOfTheTraceIsMissed() {
+		ForegroundTrace trace = fromHome().add(1000, BLOCKED, ".Main").setEndTime(1020);
+
+		SimulationReport r = simulator.runPush(trace, 30);
+
+		assertEquals(1, r.getBlockedVisits());
+		assertEquals(0, r.getBlocks());
+		assertEquals(1, r.getMissedBlocks());
+	}
+
+	@Test
+	public void allowedSwitchesAreNeverBlocked() {
+		ForegroundTrace trace = fromHome().add(1000, ALLOWED, ".Main")
+				.add(2000, ALLOWED, ".Other").setEndTime(10000);
+
+		SimulationReport r = simulator.runPolling(trace, PollingConfig.DEFAULT);
+
+		assertEquals(3, r.getSwitches());
+		assertEquals(0, r.getBlockedVisits());
+		assertEquals(0, r.getBlocks());
+		assertEquals(0, r.getFalseBlocks());
+	}
+
+	@Test
+	public void sameTraceGivesTheSameReport() {
+		FakePackageManager pm = FakePackageManager.withApps(10);
+		ArrayList<String> components = new ArrayList<String>(pm.getLaunchableComponents());
+		components.add(FakePackageManager.HOME_PACKAGE + "/" + FakePackageManager.HOME_CLASS);
+		ForegroundTrace trace = ForegroundTrace.synthetic(3, components, 2000, 5000);
+		TraceSimulator s = new TraceSimulator(BlockMatcher.compile(
+				new String[] { pm.getPackageName(0), pm.getPackageName(1) },
+				Arrays.asList(pm.getPackageName(2) + ".*")), BlockPolicy.DEFAULT);
+
+		for (PollingConfig config : new PollingConfig[] { PollingConfig.DEFAULT,
+				new PollingConfig(250, 2000, 2) }) {
+			assertEquals(s.runPolling(trace, config).toString(),
+					s.runPolling(trace, config).toString());
+		}
+		assertEquals(s.runPush(trace, 30).toString(), s.runPush(trace, 30).toString());
+	}
+}
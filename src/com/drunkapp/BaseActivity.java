@@ -1,13 +1,25 @@
 package com.drunkapp;
 
+import java.util.ArrayList;
+
 import android.app.Activity;
+import android.app.AlertDialog;
+import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.view.View;
+import android.widget.EditText;
 import android.widget.Toast;
 
-import com.drunkapp.resources.ActivityHandlerThread;
-import com.drunkapp.resources.ScreenChangeHandler;
+import com.drunkapp.challenge.ChallengeActivity;
+import com.drunkapp.diagnostics.DiagnosticsActivity;
+import com.drunkapp.resources.MonitorEngine;
+import com.drunkapp.resources.MonitorService;
+import com.drunkapp.resources.WeeklySchedule;
+import com.drunkapp.settings.AppCatalog;
+import com.drunkapp.settings.BlockProfile;
 
 
 /**
@@ -18,22 +30,20 @@ import com.drunkapp.resources.ScreenChangeHandler;
  */
 public class BaseActivity extends Activity {
 
-	/**
-	 * Thread that checks running activities against the list of allowed
-	 * applications.
-	 */
-	private ActivityHandlerThread aht;
-
-	/**
-	 * Resource for managing changes to the screen (on or off).
-	 */
-	private ScreenChangeHandler sch;
-
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
 
 		setContentView(R.layout.activity_base);
+
+		// The diagnostics are hidden behind a long press on the welcome text
+		findViewById(R.id.welcome_content).setOnLongClickListener(new View.OnLongClickListener() {
+			@Override
+			public boolean onLongClick(View v) {
+				startActivity(new Intent(getApplicationContext(), DiagnosticsActivity.class));
+				return true;
+			}
+		});
 	}
 
 	public void onSettingsClick(View v) {
@@ -41,22 +51,265 @@ public class BaseActivity extends Activity {
 				com.drunkapp.settings.Settings.class));
 	}
 
-	public void onStartClick(View v) {
-		aht = new ActivityHandlerThread(this);
-		aht.start();
+	/**
+	 * Lets the user switch between the saved block lists, or save the
+	 * applications selected in the settings as a new one. Switching takes
+	 * effect straight away, but while blocking is running it has to pass the
+	 * sobriety test first. The profiles may not have been read yet, so they
+	 * are fetched in the background first.
+	 */
+	public void onProfilesClick(View v) {
+		final AppCatalog catalog = AppCatalog.getInstance(this);
+
+		new AsyncTask<Void, Void, ArrayList<String>>() {
+			@Override
+			protected ArrayList<String> doInBackground(Void... params) {
+				return catalog.getProfileNames();
+			}
+
+			@Override
+			protected void onPostExecute(ArrayList<String> names) {
+				if (!isFinishing()) {
+					showProfilesDialog(catalog, names);
+				}
+			}
+		}.execute();
+	}
+
+	/**
+	 * Shows the saved block lists, with the active one checked.
+	 * 
+	 * @param catalog Catalog that the profiles are kept in, already loaded
+	 * @param names Names of the saved profiles
+	 */
+	private void showProfilesDialog(final AppCatalog catalog, final ArrayList<String> names) {
+		BlockProfile active = catalog.getActiveProfile();
+		final String activeName = active == null ? null : active.getName();
+
+		// The first item uses the selections made in the settings
+		CharSequence[] items = new CharSequence[names.size() + 1];
+		items[0] = getString(R.string.selected_apps);
+		int checked = 0;
+		for (int i = 0; i < names.size(); i++) {
+			items[i + 1] = names.get(i);
+			if (names.get(i).equals(activeName)) {
+				checked = i + 1;
+			}
+		}
+
+		AlertDialog.Builder builder = new AlertDialog.Builder(this)
+			.setTitle(R.string.choose_profile)
+			.setSingleChoiceItems(items, checked, new DialogInterface.OnClickListener() {
+				@Override
+				public void onClick(DialogInterface dialog, int which) {
+					dialog.dismiss();
+					String name = which == 0 ? null : names.get(which - 1);
+					if (name == null ? activeName == null : name.equals(activeName)) {
+						return;
+					}
+
+					// Another block list could let blocked applications
+					// through, so that has to pass the sobriety test too
+					if (MonitorService.getStatus() != MonitorEngine.State.STOPPED) {
+						startActivity(ChallengeActivity.newProfileIntent(BaseActivity.this,
+								ChallengeActivity.ACTION_SET_PROFILE, name));
+						return;
+					}
+					catalog.setActiveProfile(name);
+				}
+			})
+			.setNeutralButton(R.string.save_profile, new DialogInterface.OnClickListener() {
+				@Override
+				public void onClick(DialogInterface dialog, int which) {
+					showSaveProfileDialog(catalog);
+				}
+			});
+		if (!names.isEmpty()) {
+			builder.setNegativeButton(R.string.delete_profile, new DialogInterface.OnClickListener() {
+				@Override
+				public void onClick(DialogInterface dialog, int which) {
+					showDeleteProfileDialog(catalog, names, activeName);
+				}
+			});
+		}
+		builder.show();
+	}
+
+	/**
+	 * Asks which saved block list to delete. Deleting the active one goes
+	 * back to the applications selected in the settings, so while blocking
+	 * is running that has to pass the sobriety test first.
+	 * 
+	 * @param catalog Catalog that the profiles are kept in, already loaded
+	 * @param names Names of the saved profiles
+	 * @param active Name of the active profile, or null if none is active
+	 */
+	private void showDeleteProfileDialog(final AppCatalog catalog, final ArrayList<String> names,
+			final String active) {
+		new AlertDialog.Builder(this)
+			.setTitle(R.string.delete_profile)
+			.setItems(names.toArray(new CharSequence[names.size()]), new DialogInterface.OnClickListener() {
+				@Override
+				public void onClick(DialogInterface dialog, int which) {
+					String name = names.get(which);
+					if (name.equals(active)
+							&& MonitorService.getStatus() != MonitorEngine.State.STOPPED) {
+						startActivity(ChallengeActivity.newProfileIntent(BaseActivity.this,
+								ChallengeActivity.ACTION_DELETE_PROFILE, name));
+						return;
+					}
+
+					new AsyncTask<String, Void, Void>() {
+						@Override
+						protected Void doInBackground(String... params) {
+							catalog.deleteProfile(params[0]);
+							return null;
+						}
+					}.execute(name);
+				}
+			})
+			.setNegativeButton(android.R.string.cancel, null)
+			.show();
+	}
+
+	/**
+	 * Asks for a name and saves the applications selected in the settings
+	 * under it.
+	 * 
+	 * @param catalog Catalog that the profile is saved in
+	 */
+	private void showSaveProfileDialog(final AppCatalog catalog) {
+		final EditText name = new EditText(this);
+		name.setHint(R.string.profile_name_hint);
+
+		new AlertDialog.Builder(this)
+			.setTitle(R.string.save_profile)
+			.setView(name)
+			.setPositiveButton(android.R.string.ok, new DialogInterface.OnClickListener() {
+				@Override
+				public void onClick(DialogInterface dialog, int which) {
+					String profile = name.getText().toString().trim();
+					if (profile.length() == 0) {
+						return;
+					}
+
+					// Saving may need to load the catalog first
+					new AsyncTask<String, Void, Void>() {
+						@Override
+						protected Void doInBackground(String... params) {
+							catalog.saveProfile(params[0]);
+							return null;
+						}
+					}.execute(profile);
+				}
+			})
+			.setNegativeButton(android.R.string.cancel, null)
+			.show();
+	}
+
+	/**
+	 * Lets the user set the times that blocking is active. Once a schedule
+	 * is set, blocking starts by itself when each window opens, so the user
+	 * does not have to remember to press Start. The saved schedule may not
+	 * have been read yet, so it is fetched in the background first.
+	 */
+	public void onScheduleClick(View v) {
+		final MonitorEngine engine = MonitorEngine.getInstance();
+		final Context context = getApplicationContext();
+
+		new AsyncTask<Void, Void, WeeklySchedule>() {
+			@Override
+			protected WeeklySchedule doInBackground(Void... params) {
+				return engine.getSchedule(context);
+			}
+
+			@Override
+			protected void onPostExecute(WeeklySchedule schedule) {
+				if (!isFinishing()) {
+					showScheduleDialog(engine, schedule);
+				}
+			}
+		}.execute();
+	}
+
+	/**
+	 * Shows the schedule as text for the user to edit. Clearing the text
+	 * removes the schedule, so blocking only starts when Start is pressed.
+	 * 
+	 * @param engine Engine that the schedule is set on
+	 * @param schedule The current schedule, or null if there is none
+	 */
+	private void showScheduleDialog(final MonitorEngine engine, WeeklySchedule schedule) {
+		final EditText text = new EditText(this);
+		text.setHint(R.string.schedule_hint);
+		if (schedule != null) {
+			text.setText(schedule.toString());
+		}
 
-		// Starts a receiver that waits for changes to the screen (on or off)
-		sch = new ScreenChangeHandler(aht, this);
-		sch.startScreenChangeListener();
+		new AlertDialog.Builder(this)
+			.setTitle(R.string.schedule)
+			.setView(text)
+			.setPositiveButton(android.R.string.ok, new DialogInterface.OnClickListener() {
+				@Override
+				public void onClick(DialogInterface dialog, int which) {
+					WeeklySchedule s;
+					try {
+						s = WeeklySchedule.parse(text.getText().toString());
+					} catch (IllegalArgumentException e) {
+						Toast.makeText(BaseActivity.this, R.string.schedule_invalid, Toast.LENGTH_LONG).show();
+						return;
+					}
+
+					// Changing the schedule while blocking runs could pause it,
+					// so that has to pass the sobriety test too
+					if (MonitorService.getStatus() != MonitorEngine.State.STOPPED) {
+						startActivity(ChallengeActivity.newIntent(BaseActivity.this,
+								ChallengeActivity.ACTION_SET_SCHEDULE, s));
+						return;
+					}
+
+					engine.setSchedule(BaseActivity.this, s);
+					if (s != null) {
+						// The service pauses itself outside the windows
+						MonitorService.start(BaseActivity.this);
+						Toast.makeText(BaseActivity.this, R.string.schedule_set, Toast.LENGTH_LONG).show();
+					}
+					else {
+						Toast.makeText(BaseActivity.this, R.string.schedule_cleared, Toast.LENGTH_LONG).show();
+					}
+				}
+			})
+			.setNegativeButton(android.R.string.cancel, null)
+			.show();
+	}
+
+	public void onStartClick(View v) {
+		// Blocking runs in a service, so it carries on after this activity
+		// is closed.
+		MonitorService.start(this);
 		
 		// Inform user that it the thread has now started.
 		Toast.makeText(this, "Your apps are safe, go get hammered!", Toast.LENGTH_LONG).show();
 	}
 
-	@Override
-	protected void onDestroy() {
-		super.onDestroy();
-		aht.cancel();
-		sch.stopScreenChangeListener();
+	/**
+	 * Stops blocking, which the user has to pass the sobriety test for if
+	 * it is running.
+	 */
+	public void onStopClick(View v) {
+		if (MonitorService.getStatus() == MonitorEngine.State.STOPPED) {
+			Toast.makeText(this, "DrunkApp isn't running", Toast.LENGTH_SHORT).show();
+			return;
+		}
+
+		startActivity(ChallengeActivity.newIntent(this, ChallengeActivity.ACTION_STOP, null));
+	}
+
+	/**
+	 * Opens the sobriety test, which pauses blocking for a while if it is
+	 * passed.
+	 */
+	public void onTakeBreakClick(View v) {
+		startActivity(ChallengeActivity.newIntent(this, ChallengeActivity.ACTION_UNLOCK, null));
 	}
 }
@@ -0,0 +1,48 @@
+package com.drunkapp;
+
+import android.annotation.TargetApi;
+import android.app.Application;
+import android.os.Build;
+import android.os.StrictMode;
+
+import com.drunkapp.resources.MonitorEngine;
+import com.drunkapp.settings.AppCatalog;
+
+/**
+ * Application for the process. Starts reading the catalog and the monitor's
+ * schedule in the background as soon as the process starts, whether that is
+ * for the BaseActivity, the MonitorService or a package change, so that the
+ * UI thread does not have to wait for the disk or the PackageManager.
+ *
+ * In debug builds StrictMode logs any disk access that is left on the UI
+ * thread.
+ *
+ * @author Liam
+ *
+ */
+public class DrunkApplication extends Application {
+
+	@Override
+	public void onCreate() {
+		super.onCreate();
+
+		if (BuildConfig.DEBUG && Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
+			enableStrictMode();
+		}
+
+		AppCatalog.getInstance(this).prepare();
+		MonitorEngine.getInstance().prepare(this);
+	}
+
+	/**
+	 * Logs disk reads and writes made on the UI thread.
+	 */
+	@TargetApi(Build.VERSION_CODES.GINGERBREAD)
+	private static void enableStrictMode() {
+		StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+				.detectDiskReads()
+				.detectDiskWrites()
+				.penaltyLog()
+				.build());
+	}
+}
@@ -0,0 +1,215 @@
+package com.drunkapp.challenge;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.drunkapp.R;
+import com.drunkapp.resources.MonitorEngine;
+import com.drunkapp.resources.MonitorService;
+import com.drunkapp.resources.WeeklySchedule;
+import com.drunkapp.settings.AppCatalog;
+
+/**
+ * Reaction time and tap accuracy test that has to be passed to take a break
+ * from blocking. Passing unlocks blocking for UNLOCK_TIME, after which it
+ * comes back on by itself.
+ *
+ * Anything else that would stop blocking while it is running, i.e. stopping
+ * it, changing the schedule or changing the block list, goes through the
+ * test too, and is only done if the test is passed. Use newIntent() or
+ * newProfileIntent() to start the test for one of them.
+ *
+ * @author Liam
+ *
+ */
+public class ChallengeActivity extends Activity implements TargetView.Listener {
+
+	/**
+	 * Time in milliseconds that passing unlocks blocking for.
+	 */
+	private static final long UNLOCK_TIME = 15 * 60 * 1000;
+
+	/**
+	 * Extra holding what to do if the test is passed, one of the ACTION_
+	 * constants.
+	 */
+	private static final String EXTRA_ACTION = "com.drunkapp.extra.ACTION";
+
+	/**
+	 * Extra holding the schedule to set, as text.
+	 */
+	private static final String EXTRA_SCHEDULE = "com.drunkapp.extra.SCHEDULE";
+
+	/**
+	 * Extra holding the name of the block profile to switch to or delete.
+	 */
+	private static final String EXTRA_PROFILE = "com.drunkapp.extra.PROFILE";
+
+	/**
+	 * Unlocks blocking for UNLOCK_TIME.
+	 */
+	public static final String ACTION_UNLOCK = "unlock";
+
+	/**
+	 * Stops blocking until it is started again.
+	 */
+	public static final String ACTION_STOP = "stop";
+
+	/**
+	 * Replaces the schedule.
+	 */
+	public static final String ACTION_SET_SCHEDULE = "set_schedule";
+
+	/**
+	 * Switches to another block profile.
+	 */
+	public static final String ACTION_SET_PROFILE = "set_profile";
+
+	/**
+	 * Deletes a block profile.
+	 */
+	public static final String ACTION_DELETE_PROFILE = "delete_profile";
+
+	/**
+	 * TextView that the progress is shown in.
+	 */
+	private TextView status;
+
+	/**
+	 * View that runs the trials.
+	 */
+	private TargetView target;
+
+	/**
+	 * Makes an intent that starts the test.
+	 *
+	 * @param c Any context
+	 * @param action What to do if the test is passed, one of the ACTION_
+	 *            constants
+	 * @param schedule Schedule to set for ACTION_SET_SCHEDULE, or null to
+	 *            remove the schedule
+	 * @return The intent
+	 */
+	public static Intent newIntent(Context c, String action, WeeklySchedule schedule) {
+		Intent intent = new Intent(c, ChallengeActivity.class);
+		intent.putExtra(EXTRA_ACTION, action);
+		intent.putExtra(EXTRA_SCHEDULE, schedule == null ? "" : schedule.toString());
+		return intent;
+	}
+
+	/**
+	 * Makes an intent that starts the test for a change to the block
+	 * profiles.
+	 *
+	 * @param c Any context
+	 * @param action ACTION_SET_PROFILE or ACTION_DELETE_PROFILE
+	 * @param profile Name of the profile, or null with ACTION_SET_PROFILE to
+	 *            use the selections made in the settings screen
+	 * @return The intent
+	 */
+	public static Intent newProfileIntent(Context c, String action, String profile) {
+		Intent intent = new Intent(c, ChallengeActivity.class);
+		intent.putExtra(EXTRA_ACTION, action);
+		intent.putExtra(EXTRA_PROFILE, profile);
+		return intent;
+	}
+
+	@Override
+	protected void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+
+		setContentView(R.layout.activity_challenge);
+		status = (TextView) findViewById(R.id.challenge_status);
+		target = (TargetView) findViewById(R.id.challenge_target);
+		target.setListener(this);
+	}
+
+	@Override
+	protected void onResume() {
+		super.onResume();
+
+		// Leaving the test part way through means starting it again
+		status.setText(R.string.challenge_instructions);
+		target.start(new ChallengeScorer());
+	}
+
+	@Override
+	protected void onPause() {
+		super.onPause();
+
+		target.cancel();
+	}
+
+	@Override
+	public void onTrialFinished(ChallengeScorer scorer) {
+		if (!scorer.isComplete()) {
+			status.setText("Hits: " + scorer.getHits() + " of " + scorer.getRecorded()
+					+ ", " + (scorer.getTrials() - scorer.getRecorded()) + " to go");
+			return;
+		}
+
+		if (scorer.isPassed()) {
+			onPassed();
+		} else if (scorer.getHits() == 0) {
+			Toast.makeText(this, "Nice try mate, you didn't hit any of the "
+					+ scorer.getTrials() + " targets", Toast.LENGTH_LONG).show();
+		} else {
+			Toast.makeText(this, "Nice try mate, " + scorer.getHits() + " of "
+					+ scorer.getTrials() + " hit with a median of "
+					+ scorer.getMedianReactionMillis() + "ms", Toast.LENGTH_LONG).show();
+		}
+		finish();
+	}
+
+	/**
+	 * Does what the test was started for, now that it has been passed.
+	 */
+	private void onPassed() {
+		String action = getIntent().getStringExtra(EXTRA_ACTION);
+
+		if (ACTION_STOP.equals(action)) {
+			MonitorService.stop(this);
+			Toast.makeText(this, "Fair enough, DrunkApp has stopped", Toast.LENGTH_LONG).show();
+		} else if (ACTION_SET_SCHEDULE.equals(action)) {
+			// The text was written by WeeklySchedule, so it is valid
+			WeeklySchedule schedule = WeeklySchedule.parse(getIntent().getStringExtra(EXTRA_SCHEDULE));
+			MonitorEngine.getInstance().setSchedule(this, schedule);
+			Toast.makeText(this, "Fair enough, the schedule has been changed", Toast.LENGTH_LONG).show();
+		} else if (ACTION_SET_PROFILE.equals(action) || ACTION_DELETE_PROFILE.equals(action)) {
+			changeProfile(action, getIntent().getStringExtra(EXTRA_PROFILE));
+			Toast.makeText(this, "Fair enough, the block list has been changed", Toast.LENGTH_LONG).show();
+		} else {
+			MonitorEngine.getInstance().unlockFor(UNLOCK_TIME);
+			Toast.makeText(this, "Fair enough, you've got 15 minutes", Toast.LENGTH_LONG).show();
+		}
+	}
+
+	/**
+	 * Switches to or deletes a block profile. The profiles may not have been
+	 * read yet, so this is done in the background.
+	 *
+	 * @param action ACTION_SET_PROFILE or ACTION_DELETE_PROFILE
+	 * @param profile Name of the profile, or null to switch to the
+	 *            selections made in the settings screen
+	 */
+	private void changeProfile(final String action, String profile) {
+		final AppCatalog catalog = AppCatalog.getInstance(getApplicationContext());
+
+		new AsyncTask<String, Void, Void>() {
+			@Override
+			protected Void doInBackground(String... params) {
+				if (ACTION_SET_PROFILE.equals(action)) {
+					catalog.setActiveProfile(params[0]);
+				} else {
+					catalog.deleteProfile(params[0]);
+				}
+				return null;
+			}
+		}.execute(profile);
+	}
+}
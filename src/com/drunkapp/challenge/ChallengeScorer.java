@@ -0,0 +1,267 @@
+package com.drunkapp.challenge;
+
+import java.util.Arrays;
+
+/**
+ * Scores a reaction time and tap accuracy challenge. Each trial shows a
+ * target, and the user has to tap inside it as quickly as they can. The
+ * challenge is passed if enough of the trials were hits and the median
+ * reaction time of the hits is fast enough.
+ *
+ * Times are all in nanoseconds on the same monotonic clock. The time a
+ * target was shown should be the time of the display frame it was first
+ * drawn in, and the time of a tap the time the touch happened rather than
+ * the time it was delivered, so that the phone's own delays do not count
+ * against the user. The scorer does not look at any clock itself, so the
+ * same events always give the same score.
+ *
+ * Tapping before the target is shown, or so soon after that it cannot have
+ * been a reaction to it, uses up a trial as a miss. Otherwise tapping the
+ * screen over and over would pass.
+ *
+ * @author Liam
+ *
+ */
+public class ChallengeScorer {
+
+	/**
+	 * Reactions quicker than this, in nanoseconds, are taken to be guesses.
+	 */
+	public static final long MIN_REACTION_NANOS = 100 * 1000000L;
+
+	/**
+	 * Number of trials in the standard challenge.
+	 */
+	public static final int STANDARD_TRIALS = 5;
+
+	/**
+	 * Slowest median reaction in milliseconds that passes the standard
+	 * challenge.
+	 */
+	public static final long STANDARD_MAX_MEDIAN_MILLIS = 500;
+
+	/**
+	 * Lowest proportion of hits that passes the standard challenge.
+	 */
+	public static final float STANDARD_MIN_HIT_RATE = 0.8f;
+
+	/**
+	 * Number of trials in the challenge.
+	 */
+	private final int trials;
+
+	/**
+	 * Slowest median reaction in nanoseconds that passes.
+	 */
+	private final long maxMedianNanos;
+
+	/**
+	 * Lowest proportion of hits that passes.
+	 */
+	private final float minHitRate;
+
+	/**
+	 * Reaction time of each hit, in nanoseconds. Only the first hits
+	 * entries are used.
+	 */
+	private final long[] reactions;
+
+	/**
+	 * Number of trials that have been recorded.
+	 */
+	private int recorded;
+
+	/**
+	 * Number of trials that were hits.
+	 */
+	private int hits;
+
+	/**
+	 * Number of trials lost to tapping too early.
+	 */
+	private int earlyTaps;
+
+	/**
+	 * Number of trials where the target was not tapped in time.
+	 */
+	private int timeouts;
+
+	/**
+	 * Constructor for the standard challenge.
+	 */
+	public ChallengeScorer() {
+		this(STANDARD_TRIALS, STANDARD_MAX_MEDIAN_MILLIS, STANDARD_MIN_HIT_RATE);
+	}
+
+	/**
+	 * Parameterised constructor.
+	 *
+	 * @param trials Number of trials in the challenge
+	 * @param maxMedianMillis Slowest median reaction in milliseconds that
+	 *            passes
+	 * @param minHitRate Lowest proportion of hits, from 0 to 1, that passes
+	 */
+	public ChallengeScorer(int trials, long maxMedianMillis, float minHitRate) {
+		if (trials < 1) {
+			throw new IllegalArgumentException("At least one trial is needed");
+		}
+		this.trials = trials;
+		this.maxMedianNanos = maxMedianMillis * 1000000L;
+		this.minHitRate = minHitRate;
+		reactions = new long[trials];
+	}
+
+	/**
+	 * Records a tap on a target that was being shown.
+	 *
+	 * @param shownNanos Time of the frame that the target was first drawn in
+	 * @param tapNanos Time of the tap
+	 * @param dx Horizontal distance of the tap from the target's centre
+	 * @param dy Vertical distance of the tap from the target's centre
+	 * @param radius Radius of the target
+	 * @return Whether or not the tap was a hit
+	 */
+	public boolean recordTap(long shownNanos, long tapNanos, float dx, float dy, float radius) {
+		checkNotComplete();
+
+		recorded++;
+
+		long reaction = tapNanos - shownNanos;
+		if (reaction < MIN_REACTION_NANOS) {
+			// Nobody reacts that quickly, they were tapping before they saw it
+			earlyTaps++;
+			return false;
+		}
+		if (dx * dx + dy * dy > radius * radius) {
+			return false;
+		}
+		reactions[hits++] = reaction;
+		return true;
+	}
+
+	/**
+	 * Records a tap before the target was shown.
+	 */
+	public void recordEarlyTap() {
+		checkNotComplete();
+		earlyTaps++;
+		recorded++;
+	}
+
+	/**
+	 * Records a target that was not tapped in time.
+	 */
+	public void recordTimeout() {
+		checkNotComplete();
+		timeouts++;
+		recorded++;
+	}
+
+	/**
+	 * Throws if every trial has already been recorded.
+	 */
+	private void checkNotComplete() {
+		if (isComplete()) {
+			throw new IllegalStateException("All " + trials + " trials have been recorded");
+		}
+	}
+
+	/**
+	 *
+	 * @return Whether or not every trial has been recorded
+	 */
+	public boolean isComplete() {
+		return recorded >= trials;
+	}
+
+	/**
+	 *
+	 * @return Number of trials in the challenge
+	 */
+	public int getTrials() {
+		return trials;
+	}
+
+	/**
+	 *
+	 * @return Number of trials that have been recorded
+	 */
+	public int getRecorded() {
+		return recorded;
+	}
+
+	/**
+	 *
+	 * @return Number of trials that were hits
+	 */
+	public int getHits() {
+		return hits;
+	}
+
+	/**
+	 *
+	 * @return Number of trials lost to tapping too early
+	 */
+	public int getEarlyTaps() {
+		return earlyTaps;
+	}
+
+	/**
+	 *
+	 * @return Number of trials where the target was not tapped in time
+	 */
+	public int getTimeouts() {
+		return timeouts;
+	}
+
+	/**
+	 *
+	 * @return Proportion of all the trials, recorded or not, that were hits
+	 */
+	public float getHitRate() {
+		return hits / (float) trials;
+	}
+
+	/**
+	 *
+	 * @return Median reaction time of the hits in nanoseconds, or -1 if
+	 *         there have not been any
+	 */
+	public long getMedianReactionNanos() {
+		if (hits == 0) {
+			return -1;
+		}
+
+		long[] sorted = new long[hits];
+		System.arraycopy(reactions, 0, sorted, 0, hits);
+		Arrays.sort(sorted);
+
+		int middle = hits / 2;
+		if (hits % 2 == 1) {
+			return sorted[middle];
+		}
+		return (sorted[middle - 1] + sorted[middle]) / 2;
+	}
+
+	/**
+	 *
+	 * @return Median reaction time of the hits in milliseconds, or -1 if
+	 *         there have not been any
+	 */
+	public long getMedianReactionMillis() {
+		long median = getMedianReactionNanos();
+		return median < 0 ? -1 : median / 1000000L;
+	}
+
+	/**
+	 *
+	 * @return Whether or not every trial has been recorded and the results
+	 *         are good enough to pass
+	 */
+	public boolean isPassed() {
+		if (!isComplete() || hits == 0) {
+			return false;
+		}
+		return getHitRate() >= minHitRate && getMedianReactionNanos() <= maxMedianNanos;
+	}
+}
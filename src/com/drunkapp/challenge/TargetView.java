@@ -0,0 +1,340 @@
+package com.drunkapp.challenge;
+
+import java.util.Random;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * View that runs the trials of a challenge. After a random delay a target
+ * is drawn somewhere on the view, and the user has to tap it before it
+ * times out. Each trial is recorded in a ChallengeScorer.
+ *
+ * From Jelly Bean the target is shown from a Choreographer frame callback,
+ * so the time it was shown is the time of the display frame that first
+ * draws it. Taps are timed with the time the touch happened rather than
+ * the time it was delivered. Both come from the same monotonic clock, so
+ * neither the wait for the next frame nor the input pipeline's delay is
+ * counted as part of the user's reaction. Before Jelly Bean the time the
+ * target was first drawn is used, which is up to a frame early.
+ *
+ * @author Liam
+ *
+ */
+public class TargetView extends View {
+
+	/**
+	 * Told about the progress of the challenge.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called on the main thread after each trial has been recorded.
+		 *
+		 * @param scorer Scorer that the trial was recorded in
+		 */
+		void onTrialFinished(ChallengeScorer scorer);
+	}
+
+	/**
+	 * Shortest wait in milliseconds before a target is shown.
+	 */
+	private static final int MIN_DELAY = 1000;
+
+	/**
+	 * Longest wait in milliseconds before a target is shown.
+	 */
+	private static final int MAX_DELAY = 3000;
+
+	/**
+	 * Time in milliseconds that a target is shown for before the trial is
+	 * a miss.
+	 */
+	private static final long TIMEOUT = 2000;
+
+	/**
+	 * Radius of the target as a proportion of the view's shorter side.
+	 */
+	private static final float RADIUS_FRACTION = 0.12f;
+
+	/**
+	 * Handler used for the delays and time outs.
+	 */
+	private final Handler handler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * Chooses the delays and where the targets go.
+	 */
+	private final Random random = new Random();
+
+	/**
+	 * Paint used to draw the target.
+	 */
+	private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+	/**
+	 * Shows the target on the next frame, or null before Jelly Bean.
+	 */
+	private final FrameTimer frameTimer;
+
+	/**
+	 * Scorer for the challenge that is running, or null if none is.
+	 */
+	private ChallengeScorer scorer;
+
+	/**
+	 * Listener to be told about each trial.
+	 */
+	private Listener listener;
+
+	/**
+	 * Whether or not the target is being shown.
+	 */
+	private boolean showing;
+
+	/**
+	 * Time in nanoseconds that the target was first drawn, or 0 if it has
+	 * not been drawn yet.
+	 */
+	private long shownNanos;
+
+	/**
+	 * Horizontal position of the target's centre.
+	 */
+	private float targetX;
+
+	/**
+	 * Vertical position of the target's centre.
+	 */
+	private float targetY;
+
+	/**
+	 * Radius of the target.
+	 */
+	private float radius;
+
+	/**
+	 * Shows the target once the delay is up.
+	 */
+	private final Runnable showTask = new Runnable() {
+		@Override
+		public void run() {
+			placeTarget();
+			if (frameTimer != null) {
+				frameTimer.post();
+			} else {
+				showTarget(0);
+			}
+			handler.postDelayed(timeoutTask, TIMEOUT);
+		}
+	};
+
+	/**
+	 * Records a miss if the target has not been tapped in time.
+	 */
+	private final Runnable timeoutTask = new Runnable() {
+		@Override
+		public void run() {
+			scorer.recordTimeout();
+			finishTrial();
+		}
+	};
+
+	/**
+	 * Parameterised constructor.
+	 *
+	 * @param c Context the view is in
+	 */
+	public TargetView(Context c) {
+		this(c, null);
+	}
+
+	/**
+	 * Constructor used when inflating the view from a layout.
+	 *
+	 * @param c Context the view is in
+	 * @param attrs Attributes from the layout
+	 */
+	public TargetView(Context c, AttributeSet attrs) {
+		super(c, attrs);
+
+		paint.setColor(Color.RED);
+		frameTimer = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+				? new FrameTimer(this)
+				: null;
+	}
+
+	/**
+	 *
+	 * @param l Listener to be told about each trial
+	 */
+	public void setListener(Listener l) {
+		listener = l;
+	}
+
+	/**
+	 * Starts a challenge, cancelling any that is already running.
+	 *
+	 * @param s Scorer to record the trials in
+	 */
+	public void start(ChallengeScorer s) {
+		cancel();
+		scorer = s;
+		scheduleTrial();
+	}
+
+	/**
+	 * Stops the challenge that is running, if there is one.
+	 */
+	public void cancel() {
+		handler.removeCallbacks(showTask);
+		handler.removeCallbacks(timeoutTask);
+		if (frameTimer != null) {
+			frameTimer.cancel();
+		}
+		scorer = null;
+		showing = false;
+		invalidate();
+	}
+
+	/**
+	 * Waits a random time before showing the next target.
+	 */
+	private void scheduleTrial() {
+		handler.postDelayed(showTask, MIN_DELAY + random.nextInt(MAX_DELAY - MIN_DELAY));
+	}
+
+	/**
+	 * Chooses where the next target goes, keeping it all on the view.
+	 */
+	private void placeTarget() {
+		int width = getWidth();
+		int height = getHeight();
+
+		radius = Math.min(width, height) * RADIUS_FRACTION;
+		targetX = radius + random.nextFloat() * (width - 2 * radius);
+		targetY = radius + random.nextFloat() * (height - 2 * radius);
+	}
+
+	/**
+	 * Shows the target.
+	 *
+	 * @param frameTimeNanos Time of the frame that will draw it, or 0 to use
+	 *            the time it is drawn
+	 */
+	void showTarget(long frameTimeNanos) {
+		showing = true;
+		shownNanos = frameTimeNanos;
+		invalidate();
+	}
+
+	/**
+	 * Hides the target, reports the trial and starts the next one.
+	 */
+	private void finishTrial() {
+		handler.removeCallbacks(showTask);
+		handler.removeCallbacks(timeoutTask);
+		if (frameTimer != null) {
+			frameTimer.cancel();
+		}
+		showing = false;
+		invalidate();
+
+		ChallengeScorer s = scorer;
+		if (listener != null) {
+			listener.onTrialFinished(s);
+		}
+		// The listener may have cancelled the challenge
+		if (scorer == s && !s.isComplete()) {
+			scheduleTrial();
+		}
+	}
+
+	@Override
+	protected void onDraw(Canvas canvas) {
+		super.onDraw(canvas);
+
+		if (showing) {
+			if (shownNanos == 0) {
+				shownNanos = SystemClock.uptimeMillis() * 1000000L;
+			}
+			canvas.drawCircle(targetX, targetY, radius, paint);
+		}
+	}
+
+	@Override
+	public boolean onTouchEvent(MotionEvent event) {
+		if (event.getAction() != MotionEvent.ACTION_DOWN || scorer == null) {
+			return true;
+		}
+
+		if (showing && shownNanos != 0) {
+			scorer.recordTap(shownNanos, event.getEventTime() * 1000000L,
+					event.getX() - targetX, event.getY() - targetY, radius);
+		} else {
+			// The target is not on screen yet, so this cannot be a reaction
+			scorer.recordEarlyTap();
+		}
+		finishTrial();
+		return true;
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		cancel();
+		super.onDetachedFromWindow();
+	}
+
+	/**
+	 * Shows the target from a frame callback, so that it knows which frame
+	 * it was drawn in. Only used from Jelly Bean.
+	 */
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+	private static class FrameTimer implements Choreographer.FrameCallback {
+
+		/**
+		 * View to show the target on.
+		 */
+		private final TargetView view;
+
+		/**
+		 * Parameterised constructor.
+		 *
+		 * @param v View to show the target on
+		 */
+		FrameTimer(TargetView v) {
+			view = v;
+		}
+
+		/**
+		 * Shows the target on the next frame.
+		 */
+		void post() {
+			Choreographer.getInstance().postFrameCallback(this);
+		}
+
+		/**
+		 * Cancels showing the target if it has not been shown yet.
+		 */
+		void cancel() {
+			Choreographer.getInstance().removeFrameCallback(this);
+		}
+
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			// Invalidating here is drawn in this same frame
+			view.showTarget(frameTimeNanos);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package com.drunkapp.diagnostics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free counter that can be incremented from any thread.
+ * 
+ * @author Liam
+ * 
+ */
+public final class Counter {
+
+	/**
+	 * Name shown in the diagnostics.
+	 */
+	private final String name;
+
+	/**
+	 * Current count.
+	 */
+	private final AtomicLong count = new AtomicLong();
+
+	/**
+	 * Parameterised constructor.
+	 * 
+	 * @param n Name shown in the diagnostics
+	 */
+	public Counter(String n) {
+		name = n;
+	}
+
+	/**
+	 * Adds one to the count.
+	 */
+	public void increment() {
+		count.incrementAndGet();
+	}
+
+	/**
+	 * 
+	 * @return Current count
+	 */
+	public long get() {
+		return count.get();
+	}
+
+	/**
+	 * 
+	 * @return Name shown in the diagnostics
+	 */
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return name + ": " + count.get();
+	}
+}
@@ -0,0 +1,158 @@
+package com.drunkapp.diagnostics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import android.app.Activity;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.drunkapp.R;
+import com.drunkapp.history.BlockEventLog;
+import com.drunkapp.history.BlockSummary;
+import com.drunkapp.resources.FallbackForegroundSource;
+import com.drunkapp.resources.ForegroundSource;
+import com.drunkapp.resources.MonitorEngine;
+import com.drunkapp.resources.PollingForegroundSource;
+import com.drunkapp.settings.AppCatalog;
+
+/**
+ * Hidden screen that shows the monitor's metrics, for tuning and for
+ * checking up on bug reports. It is opened by long pressing the welcome
+ * text on the BaseActivity.
+ * 
+ * @author Liam
+ * 
+ */
+public class DiagnosticsActivity extends Activity {
+
+	/**
+	 * Name of the file that the metrics are saved to.
+	 */
+	private static final String FILE_NAME = "drunkapp_metrics.txt";
+
+	/**
+	 * TextView that the metrics are shown in.
+	 */
+	private TextView text;
+
+	@Override
+	protected void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+
+		setContentView(R.layout.activity_diagnostics);
+		text = (TextView) findViewById(R.id.diagnostics_text);
+	}
+
+	@Override
+	protected void onResume() {
+		super.onResume();
+
+		text.setText(buildReport());
+	}
+
+	public void onRefreshClick(View v) {
+		text.setText(buildReport());
+	}
+
+	public void onSaveClick(View v) {
+		new SaveTask().execute(buildReport());
+	}
+
+	/**
+	 * Builds a plain text report of the current metrics.
+	 * 
+	 * @return The report
+	 */
+	private String buildReport() {
+		AppCatalog catalog = AppCatalog.getInstance(this);
+		StringBuilder sb = new StringBuilder();
+
+		MonitorEngine engine = MonitorEngine.getInstance();
+		sb.append("Monitor state: ").append(engine.getState()).append('\n');
+		appendSource(sb, engine.getSource());
+		MonitorMetrics.getInstance().dump(sb);
+		sb.append("Label cache hits: ").append(catalog.getLabelCacheHits()).append('\n');
+		sb.append("Label cache misses: ").append(catalog.getLabelCacheMisses()).append('\n');
+		sb.append("Unsaved catalog changes: ").append(catalog.hasUnsavedChanges()).append('\n');
+
+		BlockEventLog log = BlockEventLog.getInstance(getFilesDir());
+		BlockSummary summary = log.getSummary();
+		sb.append("Dropped block events: ").append(log.getDroppedCount()).append('\n');
+		sb.append("Blocks per day:\n");
+		if (summary != null) {
+			summary.dump(sb);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Adds which source is reporting foreground changes and, if it has
+	 * polled, how it is tuned and how many polls it has made.
+	 * 
+	 * @param sb Report to add to
+	 * @param source The monitor's source, or null if it is stopped
+	 */
+	private static void appendSource(StringBuilder sb, ForegroundSource source) {
+		if (!(source instanceof FallbackForegroundSource)) {
+			return;
+		}
+
+		FallbackForegroundSource fallback = (FallbackForegroundSource) source;
+		sb.append("Foreground source: ")
+				.append(fallback.isPolling() ? "polling" : "accessibility").append('\n');
+
+		PollingForegroundSource polling = fallback.getPollingSource();
+		if (polling != null) {
+			sb.append("Polling: ").append(polling.getConfig()).append('\n');
+			sb.append("Polls: ").append(polling.getPollCount()).append('\n');
+		}
+	}
+
+	/**
+	 * Writes a report to external storage if it is available, otherwise to
+	 * the application's own files, without blocking the UI thread.
+	 */
+	private class SaveTask extends AsyncTask<String, Void, File> {
+
+		@Override
+		protected File doInBackground(String... params) {
+			File dir = getExternalFilesDir(null);
+			if (dir == null) {
+				dir = getFilesDir();
+			}
+
+			File file = new File(dir, FILE_NAME);
+			FileOutputStream out = null;
+
+			try {
+				out = new FileOutputStream(file);
+				out.write(params[0].getBytes("UTF-8"));
+				return file;
+			} catch (IOException e) {
+				e.printStackTrace();
+				return null;
+			} finally {
+				if (out != null) {
+					try {
+						out.close();
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+
+		@Override
+		protected void onPostExecute(File file) {
+			String message = file != null
+					? "Saved to " + file.getAbsolutePath()
+					: "Could not save the metrics";
+			Toast.makeText(DiagnosticsActivity.this, message, Toast.LENGTH_LONG).show();
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package com.drunkapp.diagnostics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations with fixed buckets. Recording a value
+ * costs a short search of the bucket bounds and a few atomic adds, and never
+ * allocates.
+ * 
+ * @author Liam
+ * 
+ */
+public final class Histogram {
+
+	/**
+	 * Upper bounds of the buckets in microseconds. Values above the last
+	 * bound go into an extra overflow bucket.
+	 */
+	private static final long[] BOUNDS = { 10, 25, 50, 100, 250, 500, 1000,
+			2500, 5000, 10000, 25000, 50000, 100000, 250000, 500000, 1000000 };
+
+	/**
+	 * Name shown in the diagnostics.
+	 */
+	private final String name;
+
+	/**
+	 * Count of values in each bucket.
+	 */
+	private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+
+	/**
+	 * Number of values recorded.
+	 */
+	private final AtomicLong count = new AtomicLong();
+
+	/**
+	 * Sum of the values recorded, in microseconds.
+	 */
+	private final AtomicLong sum = new AtomicLong();
+
+	/**
+	 * Largest value recorded, in microseconds.
+	 */
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Parameterised constructor.
+	 * 
+	 * @param n Name shown in the diagnostics
+	 */
+	public Histogram(String n) {
+		name = n;
+	}
+
+	/**
+	 * Records a duration measured with System.nanoTime().
+	 * 
+	 * @param nanos The duration in nanoseconds
+	 */
+	public void recordNanos(long nanos) {
+		recordMicros(nanos / 1000);
+	}
+
+	/**
+	 * Records a duration measured with SystemClock.uptimeMillis().
+	 * 
+	 * @param millis The duration in milliseconds
+	 */
+	public void recordMillis(long millis) {
+		recordMicros(millis * 1000);
+	}
+
+	/**
+	 * Records a duration.
+	 * 
+	 * @param micros The duration in microseconds
+	 */
+	public void recordMicros(long micros) {
+		int i = 0;
+		while (i < BOUNDS.length && micros > BOUNDS[i]) {
+			i++;
+		}
+
+		buckets.incrementAndGet(i);
+		count.incrementAndGet();
+		sum.addAndGet(micros);
+
+		long m = max.get();
+		while (micros > m && !max.compareAndSet(m, micros)) {
+			m = max.get();
+		}
+	}
+
+	/**
+	 * 
+	 * @return Number of values recorded
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Estimates a percentile from the buckets. The result is the upper bound
+	 * of the bucket that the percentile falls in.
+	 * 
+	 * @param p Percentile between 0 and 100
+	 * @return The estimated percentile in microseconds, or 0 if nothing has
+	 *         been recorded
+	 */
+	public long getPercentile(double p) {
+		long total = count.get();
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = (long) Math.ceil(total * p / 100.0);
+		long seen = 0;
+		for (int i = 0; i < BOUNDS.length; i++) {
+			seen += buckets.get(i);
+			if (seen >= rank) {
+				return BOUNDS[i];
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * 
+	 * @return Name shown in the diagnostics
+	 */
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		long n = count.get();
+		StringBuilder sb = new StringBuilder(name).append(": n=").append(n);
+
+		if (n > 0) {
+			sb.append(" mean=").append(sum.get() / n).append("us")
+					.append(" p50<=").append(getPercentile(50)).append("us")
+					.append(" p90<=").append(getPercentile(90)).append("us")
+					.append(" p99<=").append(getPercentile(99)).append("us")
+					.append(" max=").append(max.get()).append("us");
+		}
+		return sb.toString();
+	}
+}
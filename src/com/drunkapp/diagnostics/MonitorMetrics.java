@@ -0,0 +1,116 @@
+package com.drunkapp.diagnostics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide registry of the monitor's metrics. Every metric is updated
+ * without locking, so recording from the monitor's hot path is cheap.
+ * 
+ * @author Liam
+ * 
+ */
+public final class MonitorMetrics {
+
+	/**
+	 * The single instance used by the whole process.
+	 */
+	private static final MonitorMetrics INSTANCE = new MonitorMetrics();
+
+	/**
+	 * Time taken to ask the ActivityManager for the top task.
+	 */
+	public final Histogram pollDuration = new Histogram("Poll duration");
+
+	/**
+	 * Time taken to decide whether or not a foreground package is allowed.
+	 */
+	public final Histogram decisionDuration = new Histogram("Decision duration");
+
+	/**
+	 * Time from a foreground change being detected to the home intent being
+	 * sent.
+	 */
+	public final Histogram detectionToBlock = new Histogram("Detection to home intent");
+
+	/**
+	 * Number of times the catalog or its blocked packages were read from
+	 * disk.
+	 */
+	public final Counter catalogReloads = new Counter("Catalog reloads");
+
+	/**
+	 * Number of SecurityExceptions swallowed while polling.
+	 */
+	public final Counter securityExceptions = new Counter("Swallowed SecurityExceptions");
+
+	/**
+	 * Number of repeat blocks of the same package that were suppressed.
+	 */
+	public final Counter suppressedBlocks = new Counter("Suppressed repeat blocks");
+
+	/**
+	 * Number of foreground changes checked.
+	 */
+	public final Counter foregroundChanges = new Counter("Foreground changes");
+
+	/**
+	 * Number of times each package was blocked.
+	 */
+	private final ConcurrentHashMap<String, AtomicLong> blocks = new ConcurrentHashMap<String, AtomicLong>();
+
+	/**
+	 * 
+	 * @return The metrics for this process
+	 */
+	public static MonitorMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Use getInstance().
+	 */
+	private MonitorMetrics() {
+	}
+
+	/**
+	 * Records that a package was blocked.
+	 * 
+	 * @param packageName Name of the blocked package
+	 */
+	public void recordBlock(String packageName) {
+		AtomicLong count = blocks.get(packageName);
+
+		if (count == null) {
+			AtomicLong created = new AtomicLong();
+			count = blocks.putIfAbsent(packageName, created);
+			if (count == null) {
+				count = created;
+			}
+		}
+		count.incrementAndGet();
+	}
+
+	/**
+	 * Writes every metric as plain text, one per line.
+	 * 
+	 * @param sb Builder to write to
+	 */
+	public void dump(StringBuilder sb) {
+		sb.append(pollDuration).append('\n');
+		sb.append(decisionDuration).append('\n');
+		sb.append(detectionToBlock).append('\n');
+		sb.append(foregroundChanges).append('\n');
+		sb.append(catalogReloads).append('\n');
+		sb.append(securityExceptions).append('\n');
+		sb.append(suppressedBlocks).append('\n');
+
+		sb.append("Blocks per package:\n");
+		TreeMap<String, AtomicLong> sorted = new TreeMap<String, AtomicLong>(blocks);
+		for (Map.Entry<String, AtomicLong> e : sorted.entrySet()) {
+			sb.append("  ").append(e.getKey()).append(": ").append(e.getValue().get()).append('\n');
+		}
+	}
+}
@@ -0,0 +1,458 @@
+package com.drunkapp.history;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Log of every application that has been blocked.
+ * 
+ * Recording a block only copies it into a fixed size ring buffer, so the
+ * monitor never waits for the disk. The buffer is written out in batches on
+ * a background thread, to append-only segment files of length-prefixed
+ * records. When a segment grows past SEGMENT_SIZE a new one is started, and
+ * only the newest MAX_SEGMENTS are kept. A BlockSummary of blocks per
+ * application per day is updated as each batch is written.
+ * 
+ * The log only needs the directory it is kept in, so it does not depend on
+ * Android and can be tested on the JVM.
+ * 
+ * @author Liam
+ * 
+ */
+public class BlockEventLog {
+
+	/**
+	 * Number of events the ring buffer holds. If the buffer fills up before
+	 * it is written out, the oldest events are dropped.
+	 */
+	private static final int CAPACITY = 256;
+
+	/**
+	 * Time in milliseconds that events are held before being written, so
+	 * that a burst of blocks is written together.
+	 */
+	private static final long FLUSH_DELAY = 2000;
+
+	/**
+	 * Size in bytes after which a new segment is started.
+	 */
+	private static final long SEGMENT_SIZE = 64 * 1024;
+
+	/**
+	 * Largest size in bytes that a valid record can have.
+	 */
+	private static final int MAX_RECORD_SIZE = 4096;
+
+	/**
+	 * Number of segments that are kept.
+	 */
+	private static final int MAX_SEGMENTS = 4;
+
+	/**
+	 * Number of days of summaries that are kept.
+	 */
+	private static final int SUMMARY_DAYS = 90;
+
+	/**
+	 * Prefix of the name of each segment file, followed by its number.
+	 */
+	private static final String SEGMENT_PREFIX = "block_log_";
+
+	/**
+	 * Name of the file that the summary is saved to.
+	 */
+	private static final String SUMMARY_FILE_NAME = "block_summary";
+
+	/**
+	 * The single instance used by the whole process.
+	 */
+	private static BlockEventLog instance;
+
+	/**
+	 * Directory that the segments and the summary are kept in.
+	 */
+	private final File dir;
+
+	/**
+	 * Background thread that writes the events.
+	 */
+	private final ScheduledExecutorService executor;
+
+	/**
+	 * Time of each buffered event, in milliseconds since the epoch.
+	 */
+	private final long[] times = new long[CAPACITY];
+
+	/**
+	 * Package name of each buffered event.
+	 */
+	private final String[] packageNames = new String[CAPACITY];
+
+	/**
+	 * Activity class name of each buffered event.
+	 */
+	private final String[] classNames = new String[CAPACITY];
+
+	/**
+	 * Time from detection to block of each buffered event, in microseconds.
+	 */
+	private final long[] latencies = new long[CAPACITY];
+
+	/**
+	 * Index of the oldest buffered event.
+	 */
+	private int head;
+
+	/**
+	 * Number of buffered events.
+	 */
+	private int size;
+
+	/**
+	 * Number of events dropped because the buffer was full.
+	 */
+	private long dropped;
+
+	/**
+	 * Whether or not a flush has been scheduled.
+	 */
+	private boolean flushScheduled;
+
+	/**
+	 * Blocks per application per day, or null until it has been loaded.
+	 * Only replaced on the background thread.
+	 */
+	private volatile BlockSummary summary;
+
+	/**
+	 * Number of the segment being appended to. Only used on the background
+	 * thread.
+	 */
+	private int segment = -1;
+
+	/**
+	 * Reused to work out the day of each event. Only used on the background
+	 * thread.
+	 */
+	private final Calendar calendar = Calendar.getInstance();
+
+	/**
+	 * Writes out the buffered events.
+	 */
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			writeBuffered();
+		}
+	};
+
+	/**
+	 * Returns the log for this process.
+	 * 
+	 * @param filesDir The application's files directory, from
+	 *            Context.getFilesDir()
+	 * @return The shared BlockEventLog
+	 */
+	public static synchronized BlockEventLog getInstance(File filesDir) {
+		if (instance == null) {
+			instance = new BlockEventLog(filesDir,
+					Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							return new Thread(r, "BlockEventLog");
+						}
+					}));
+		}
+		return instance;
+	}
+
+	/**
+	 * Constructor that takes the directory the log is kept in and the
+	 * thread it is written on. The summary is loaded in the background.
+	 * 
+	 * @param d Directory that the segments and the summary are kept in
+	 * @param e Background thread that writes the events
+	 */
+	BlockEventLog(File d, ScheduledExecutorService e) {
+		dir = d;
+		executor = e;
+
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				loadSummary();
+			}
+		});
+	}
+
+	/**
+	 * Records a block. This never allocates or touches the disk, apart from
+	 * scheduling a flush for the first event of a batch.
+	 * 
+	 * @param time Time of the block in milliseconds since the epoch
+	 * @param packageName Package that was blocked
+	 * @param className Activity that was blocked
+	 * @param latencyMicros Time from detection to block in microseconds
+	 */
+	public synchronized void record(long time, String packageName, String className, long latencyMicros) {
+		if (size == CAPACITY) {
+			head = (head + 1) % CAPACITY;
+			size--;
+			dropped++;
+		}
+
+		int i = (head + size) % CAPACITY;
+		times[i] = time;
+		packageNames[i] = packageName;
+		classNames[i] = className;
+		latencies[i] = latencyMicros;
+		size++;
+
+		if (!flushScheduled) {
+			flushScheduled = true;
+			executor.schedule(flushTask, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * 
+	 * @return Blocks per application per day, or null if it has not been
+	 *         loaded yet
+	 */
+	public BlockSummary getSummary() {
+		return summary;
+	}
+
+	/**
+	 * 
+	 * @return Number of events dropped because they could not be written
+	 *         out quickly enough
+	 */
+	public synchronized long getDroppedCount() {
+		return dropped;
+	}
+
+	/**
+	 * Takes the buffered events and appends them to the current segment as
+	 * a single write, then updates and saves the summary. Only run on the
+	 * background thread.
+	 */
+	void writeBuffered() {
+		long[] t;
+		String[] p;
+		String[] c;
+		long[] l;
+
+		// Copy the events out so that the monitor is not held up while they
+		// are written
+		synchronized (this) {
+			t = new long[size];
+			p = new String[size];
+			c = new String[size];
+			l = new long[size];
+
+			for (int n = 0; n < size; n++) {
+				int i = (head + n) % CAPACITY;
+				t[n] = times[i];
+				p[n] = packageNames[i];
+				c[n] = classNames[i];
+				l[n] = latencies[i];
+				packageNames[i] = null;
+				classNames[i] = null;
+			}
+			head = 0;
+			size = 0;
+			flushScheduled = false;
+		}
+
+		ByteArrayOutputStream batch = new ByteArrayOutputStream();
+		ByteArrayOutputStream record = new ByteArrayOutputStream();
+		DataOutputStream batchOut = new DataOutputStream(batch);
+		DataOutputStream recordOut = new DataOutputStream(record);
+
+		try {
+			for (int n = 0; n < t.length; n++) {
+				record.reset();
+				recordOut.writeLong(t[n]);
+				recordOut.writeUTF(p[n]);
+				recordOut.writeUTF(c[n] == null ? "" : c[n]);
+				recordOut.writeLong(l[n]);
+
+				batchOut.writeInt(record.size());
+				record.writeTo(batchOut);
+
+				summary.add(dayOf(t[n]), p[n]);
+			}
+
+			append(batch.toByteArray());
+			summary.trimBefore(dayOf(System.currentTimeMillis() - SUMMARY_DAYS * 24L * 60 * 60 * 1000));
+			saveSummary();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Appends bytes to the current segment, starting a new segment first if
+	 * the current one is full.
+	 * 
+	 * @param bytes Bytes to be appended
+	 * @throws IOException If the bytes could not be written
+	 */
+	private void append(byte[] bytes) throws IOException {
+		if (segment < 0) {
+			segment = Math.max(newestSegment(), 0);
+		}
+
+		File file = new File(dir, SEGMENT_PREFIX + segment);
+		if (file.length() >= SEGMENT_SIZE) {
+			segment++;
+			file = new File(dir, SEGMENT_PREFIX + segment);
+
+			File oldest = new File(dir, SEGMENT_PREFIX + (segment - MAX_SEGMENTS));
+			if (oldest.exists() && !oldest.delete()) {
+				throw new IOException("Could not delete " + oldest);
+			}
+		}
+
+		FileOutputStream out = new FileOutputStream(file, true);
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * 
+	 * @return Number of the newest segment, or -1 if there are none
+	 */
+	private int newestSegment() {
+		int newest = -1;
+		String[] names = dir.list();
+		if (names == null) {
+			return newest;
+		}
+
+		for (String name : names) {
+			if (name.startsWith(SEGMENT_PREFIX)) {
+				try {
+					newest = Math.max(newest, Integer.parseInt(name.substring(SEGMENT_PREFIX.length())));
+				} catch (NumberFormatException e) {
+					// Not a segment.
+				}
+			}
+		}
+		return newest;
+	}
+
+	/**
+	 * Loads the saved summary. If there is no saved summary it is rebuilt
+	 * from the segments, which only happens once. Only run on the background
+	 * thread.
+	 */
+	private void loadSummary() {
+		File file = new File(dir, SUMMARY_FILE_NAME);
+
+		if (file.exists()) {
+			try {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+				try {
+					summary = BlockSummary.read(in);
+					return;
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		BlockSummary rebuilt = new BlockSummary();
+		int newest = newestSegment();
+		for (int s = Math.max(0, newest - MAX_SEGMENTS + 1); s <= newest; s++) {
+			readSegment(new File(dir, SEGMENT_PREFIX + s), rebuilt);
+		}
+		summary = rebuilt;
+	}
+
+	/**
+	 * Counts the events in a segment into a summary. A record that was only
+	 * partly written, e.g. because the process was killed, ends the segment.
+	 * 
+	 * @param file Segment to read
+	 * @param into Summary to count the events into
+	 */
+	private void readSegment(File file, BlockSummary into) {
+		if (!file.exists()) {
+			return;
+		}
+
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				while (true) {
+					int length = in.readInt();
+					if (length < 0 || length > MAX_RECORD_SIZE) {
+						throw new IOException("Corrupt record in " + file);
+					}
+					byte[] bytes = new byte[length];
+					in.readFully(bytes);
+
+					DataInputStream record = new DataInputStream(new ByteArrayInputStream(bytes));
+					long time = record.readLong();
+					into.add(dayOf(time), record.readUTF());
+				}
+			} finally {
+				in.close();
+			}
+		} catch (EOFException e) {
+			// End of the segment.
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Saves the summary, replacing the previous one.
+	 * 
+	 * @throws IOException If the summary could not be saved
+	 */
+	private void saveSummary() throws IOException {
+		File temp = new File(dir, SUMMARY_FILE_NAME + ".tmp");
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(temp));
+		try {
+			summary.write(out);
+		} finally {
+			out.close();
+		}
+
+		if (!temp.renameTo(new File(dir, SUMMARY_FILE_NAME))) {
+			throw new IOException("Could not replace " + SUMMARY_FILE_NAME);
+		}
+	}
+
+	/**
+	 * 
+	 * @param time Time in milliseconds since the epoch
+	 * @return The local day of the time, written as yyyymmdd
+	 */
+	private int dayOf(long time) {
+		calendar.setTimeInMillis(time);
+		return calendar.get(Calendar.YEAR) * 10000 + (calendar.get(Calendar.MONTH) + 1) * 100
+				+ calendar.get(Calendar.DAY_OF_MONTH);
+	}
+}
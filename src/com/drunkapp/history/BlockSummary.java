@@ -0,0 +1,129 @@
+package com.drunkapp.history;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Number of blocks of each application on each day. It is kept up to date
+ * as events are logged, so showing the history never means reading the
+ * whole log.
+ * 
+ * @author Liam
+ * 
+ */
+public final class BlockSummary {
+
+	/**
+	 * Version of the saved format.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Blocks per package, by day written as yyyymmdd.
+	 */
+	private final TreeMap<Integer, HashMap<String, Integer>> days = new TreeMap<Integer, HashMap<String, Integer>>();
+
+	/**
+	 * Counts a block.
+	 * 
+	 * @param day Day of the block, written as yyyymmdd
+	 * @param packageName Package that was blocked
+	 */
+	synchronized void add(int day, String packageName) {
+		HashMap<String, Integer> apps = days.get(day);
+		if (apps == null) {
+			apps = new HashMap<String, Integer>();
+			days.put(day, apps);
+		}
+
+		Integer count = apps.get(packageName);
+		apps.put(packageName, count == null ? 1 : count + 1);
+	}
+
+	/**
+	 * Drops the days before the given day.
+	 * 
+	 * @param firstDay First day to keep, written as yyyymmdd
+	 */
+	synchronized void trimBefore(int firstDay) {
+		days.headMap(firstDay).clear();
+	}
+
+	/**
+	 * 
+	 * @param day Day written as yyyymmdd
+	 * @return Blocks per package on the day, which is empty if there were
+	 *         none
+	 */
+	public synchronized Map<String, Integer> getDay(int day) {
+		HashMap<String, Integer> apps = days.get(day);
+		return apps == null ? new HashMap<String, Integer>() : new HashMap<String, Integer>(apps);
+	}
+
+	/**
+	 * Writes the summary as plain text, one day per line.
+	 * 
+	 * @param sb Builder to write to
+	 */
+	public synchronized void dump(StringBuilder sb) {
+		for (Map.Entry<Integer, HashMap<String, Integer>> d : days.entrySet()) {
+			sb.append(d.getKey()).append(':');
+			TreeMap<String, Integer> sorted = new TreeMap<String, Integer>(d.getValue());
+			for (Map.Entry<String, Integer> a : sorted.entrySet()) {
+				sb.append(' ').append(a.getKey()).append('=').append(a.getValue());
+			}
+			sb.append('\n');
+		}
+	}
+
+	/**
+	 * Writes the summary.
+	 * 
+	 * @param out Stream to write to
+	 * @throws IOException If the summary could not be written
+	 */
+	synchronized void write(DataOutputStream out) throws IOException {
+		out.writeInt(VERSION);
+		out.writeInt(days.size());
+
+		for (Map.Entry<Integer, HashMap<String, Integer>> d : days.entrySet()) {
+			out.writeInt(d.getKey());
+			out.writeInt(d.getValue().size());
+			for (Map.Entry<String, Integer> a : d.getValue().entrySet()) {
+				out.writeUTF(a.getKey());
+				out.writeInt(a.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Reads a summary written by write().
+	 * 
+	 * @param in Stream to read from
+	 * @return The summary
+	 * @throws IOException If the summary could not be read
+	 */
+	static BlockSummary read(DataInputStream in) throws IOException {
+		if (in.readInt() != VERSION) {
+			throw new IOException("Unknown summary version");
+		}
+
+		BlockSummary summary = new BlockSummary();
+		int dayCount = in.readInt();
+		for (int i = 0; i < dayCount; i++) {
+			HashMap<String, Integer> apps = new HashMap<String, Integer>();
+			int day = in.readInt();
+			int appCount = in.readInt();
+			for (int j = 0; j < appCount; j++) {
+				String packageName = in.readUTF();
+				apps.put(packageName, in.readInt());
+			}
+			summary.days.put(day, apps);
+		}
+		return summary;
+	}
+}
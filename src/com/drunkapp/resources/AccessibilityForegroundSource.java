@@ -0,0 +1,201 @@
+package com.drunkapp.resources;
+
+/**
+ * ForegroundSource that is pushed window changes by the
+ * ForegroundAccessibilityService. Nothing runs between changes, so this
+ * costs nothing while the user stays in the same application. It can only
+ * be used once the user has enabled the service in the accessibility
+ * settings.
+ * 
+ * @author Liam
+ * 
+ */
+public class AccessibilityForegroundSource implements ForegroundSource {
+
+	/**
+	 * Told when the accessibility service connects or disconnects.
+	 */
+	interface ConnectionListener {
+
+		/**
+		 * Called on the main thread when the service connects or
+		 * disconnects.
+		 * 
+		 * @param connected Whether or not the service is now connected
+		 */
+		void onConnectionChanged(boolean connected);
+	}
+
+	/**
+	 * Listener told about the service connecting and disconnecting, if any.
+	 */
+	private static volatile ConnectionListener connectionListener;
+
+	/**
+	 * The source that is currently started, if any.
+	 */
+	private static volatile AccessibilityForegroundSource active;
+
+	/**
+	 * Whether or not the accessibility service is connected.
+	 */
+	private static volatile boolean connected;
+
+	/**
+	 * Package name of the window last seen by the service, whether or not a
+	 * source was started, or null if none has been seen since it connected.
+	 */
+	private static String windowPackageName;
+
+	/**
+	 * Class name of the window last seen by the service.
+	 */
+	private static String windowClassName;
+
+	/**
+	 * Listener to be told about each change.
+	 */
+	private volatile Listener listener;
+
+	/**
+	 * Package name of the last reported activity.
+	 */
+	private String lastPackageName;
+
+	/**
+	 * Class name of the last reported activity.
+	 */
+	private String lastClassName;
+
+	/**
+	 * 
+	 * @return Whether or not the accessibility service is connected and able
+	 *         to push window changes
+	 */
+	public static boolean isAvailable() {
+		return connected;
+	}
+
+	/**
+	 * Called by the ForegroundAccessibilityService as it connects and
+	 * disconnects.
+	 * 
+	 * @param c Whether or not the service is connected
+	 */
+	static void setConnected(boolean c) {
+		connected = c;
+		if (!c) {
+			setWindow(null, null);
+		}
+
+		ConnectionListener l = connectionListener;
+		if (l != null) {
+			l.onConnectionChanged(c);
+		}
+	}
+
+	/**
+	 * Sets the listener told about the service connecting and disconnecting,
+	 * replacing any set before.
+	 * 
+	 * @param l The listener, or null for none
+	 */
+	static synchronized void setConnectionListener(ConnectionListener l) {
+		connectionListener = l;
+	}
+
+	/**
+	 * Removes the listener told about the service connecting and
+	 * disconnecting, if it is still the given one.
+	 * 
+	 * @param l The listener to remove
+	 */
+	static synchronized void clearConnectionListener(ConnectionListener l) {
+		if (connectionListener == l) {
+			connectionListener = null;
+		}
+	}
+
+	/**
+	 * Called by the ForegroundAccessibilityService on the main thread each
+	 * time a new window comes to the front. The window is kept while no
+	 * source is started, so that the next one to start can check it.
+	 * 
+	 * @param packageName Package name of the window
+	 * @param className Class name of the window
+	 */
+	static void dispatchWindowChanged(String packageName, String className) {
+		setWindow(packageName, className);
+
+		AccessibilityForegroundSource source = active;
+		if (source != null) {
+			source.onWindowChanged(packageName, className);
+		}
+	}
+
+	/**
+	 * 
+	 * @param packageName Package name of the window last seen, or null
+	 * @param className Class name of the window last seen, or null
+	 */
+	private static synchronized void setWindow(String packageName, String className) {
+		windowPackageName = packageName;
+		windowClassName = className;
+	}
+
+	/**
+	 * Starts reporting window changes, starting with the window that is
+	 * already in front. Otherwise a blocked application left on top while
+	 * the monitor was paused, e.g. during a break or outside a schedule,
+	 * could be used until the user moved to another window.
+	 */
+	@Override
+	public void start(Listener l) {
+		synchronized (this) {
+			listener = l;
+			lastPackageName = null;
+			lastClassName = null;
+			active = this;
+		}
+
+		String packageName;
+		String className;
+		synchronized (AccessibilityForegroundSource.class) {
+			packageName = windowPackageName;
+			className = windowClassName;
+		}
+		if (packageName != null && active == this) {
+			onWindowChanged(packageName, className);
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (active == this) {
+			active = null;
+		}
+	}
+
+	@Override
+	public void release() {
+		stop();
+	}
+
+	/**
+	 * Reports a window change to the listener unless it is the same
+	 * activity that was last reported.
+	 * 
+	 * @param packageName Package name of the window
+	 * @param className Class name of the window
+	 */
+	private void onWindowChanged(String packageName, String className) {
+		synchronized (this) {
+			if (packageName.equals(lastPackageName) && className.equals(lastClassName)) {
+				return;
+			}
+			lastPackageName = packageName;
+			lastClassName = className;
+		}
+		listener.onForegroundChanged(packageName, className);
+	}
+}
@@ -1,161 +1,235 @@
-package com.drunkapp.resources;
-
-import java.util.List;
-
-import android.app.Activity;
-import android.app.ActivityManager;
-import android.app.ActivityManager.RunningTaskInfo;
-import android.content.ComponentName;
-import android.content.Context;
-import android.content.Intent;
-import android.widget.Toast;
-
-import com.drunkapp.settings.RunnableApp;
-import com.drunkapp.settings.RunnableAppHandler;
-
-/**
- * Thread that monitors the applications that are running
- * on the device.  If the user starts an application that
- * is not permitted, it will be shut down.
- * 
- * @author Liam
- *
- */
-public class ActivityHandlerThread extends Thread {
-	
-	/**
-	 * The application context.
-	 */
-	private Activity activity;
-	
-	/**
-	 * ActivityManager that is used to get the running tasks.
-	 */
-	private ActivityManager am;
-	
-	/**
-	 * List of running tasks on the system.
-	 */
-	private List<RunningTaskInfo> tasks; 
-	
-	/**
-	 * RunnableAppHandler for fetching applications from shared file.
-	 */
-	private RunnableAppHandler rah;
-	
-	/**
-	 * Whether or not any instances of this thread can run.
-	 */
-	private static boolean cancelled;
-	
-	/**
-	 * Parameterised constructor
-	 * 
-	 * @param a The Activity that is using this class.
-	 */
-	public ActivityHandlerThread(Activity a) {
-		activity = a;
-		am = (ActivityManager) activity.getSystemService(Context.ACTIVITY_SERVICE);
-		rah = new RunnableAppHandler(activity);
-		cancelled = false;
-	}
-	
-	/**
-	 * Main processing method that checks the current activity
-	 * against allowed applications on the system.
-	 */
-	public void run() {
-		
-		/**
-		 * Thread will continue to run while the DrunkApp application
-		 * is still running on the system.
-		 */
-		while(!isCancelled()) {
-			/**
-			 *  Force the thread to sleep for 100 milliseconds to lighten 
-			 *  the load on the processor and battery.
-			 */
-			try {
-				sleep(100);
-			} catch (InterruptedException e) {}
-
-			tasks = null;
-
-			try {
-				tasks = am.getRunningTasks(1);
-			} catch (SecurityException e) {
-
-			}
-
-			if (tasks != null && !tasks.isEmpty()) {
-				ComponentName topActivity = tasks.get(0).topActivity;
-
-				boolean isAllowed = true;
-				
-				// Check to see if current activity is allowed.
-				for(RunnableApp a : rah.getBlockedApps()) {
-					if(topActivity.getPackageName().equals(a.getPackageName())) {
-						isAllowed = false;
-					}
-				}
-
-				// Go to the home screen
-				if(!isAllowed) {
-					activity.getApplicationContext().startActivity(new Intent()
-						.setAction(Intent.ACTION_MAIN)
-						.addCategory(Intent.CATEGORY_HOME)
-						.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK));
-					
-					// Display a message explaining why the application was blocked
-					activity.runOnUiThread(new Runnable() {
-						@Override
-						public void run() {
-							Toast.makeText(activity, "You're too drunk to use that app mate!", Toast.LENGTH_LONG).show();
-						}
-					});
-					
-					// Allow time for changes to take place
-					try {
-						sleep(1000);
-					} catch (InterruptedException e) {}
-				}
-			}
-		}
-	}
-	
-	/**
-	 * 
-	 * @return Whether or not the DrunkApp application is running.
-	 */
-	private boolean isCancelled() {
-		return cancelled;
-	}
-	
-	/**
-	 * Cancels the Thread
-	 */
-	public void cancel() {
-		cancelled = true;
-	}
-	
-	/**
-	 * This will return the fully qualified class name of the 
-	 * activity that is at the top of the current task.
-	 *  
-	 * @return The class name of the current activity.
-	 */
-	public String getCurrentTopActivity() {
-		try {
-			tasks = am.getRunningTasks(1);
-		} catch (SecurityException e) {
-
-		}
-
-		if (tasks != null && !tasks.isEmpty()) {
-			return tasks.get(0).topActivity.getClassName();
-		}
-		else {
-			return "";
-		}
-	}
-}
+package com.drunkapp.resources;
+
+import java.util.List;
+
+import android.app.ActivityManager;
+import android.app.ActivityManager.RunningTaskInfo;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.widget.Toast;
+
+import com.drunkapp.diagnostics.MonitorMetrics;
+import com.drunkapp.history.BlockEventLog;
+import com.drunkapp.settings.AppCatalog;
+
+/**
+ * Monitors the applications that are running on the device. If the user
+ * starts an application that is not permitted, it will be shut down.
+ * 
+ * Rather than checking on a timer, the blocking logic runs each time a
+ * ForegroundSource reports that a different activity has come to the front.
+ * The home intent and the message shown to the user are built once, so
+ * checking and blocking do not allocate. What to do about each change is
+ * decided by a BlockController, tuned by a BlockPolicy, and this class only
+ * carries it out.
+ * 
+ * @author Liam
+ * 
+ */
+public class ActivityHandlerThread implements ForegroundSource.Listener {
+
+	/**
+	 * Message shown when an application is blocked.
+	 */
+	private static final String BLOCK_MESSAGE = "You're too drunk to use that app mate!";
+
+	/**
+	 * The application context.
+	 */
+	private Context context;
+
+	/**
+	 * Handler used to show messages on the main thread.
+	 */
+	private Handler mainHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * ActivityManager that is used to get the running tasks.
+	 */
+	private ActivityManager am;
+
+	/**
+	 * List of running tasks on the system.
+	 */
+	private List<RunningTaskInfo> tasks;
+
+	/**
+	 * Shared catalog that the blocked applications are read from.
+	 */
+	private AppCatalog catalog;
+
+	/**
+	 * Source of the foreground changes that are checked.
+	 */
+	private ForegroundSource source;
+
+	/**
+	 * Decides what to do about each foreground change.
+	 */
+	private BlockController controller;
+
+	/**
+	 * Log that each block is recorded in.
+	 */
+	private BlockEventLog log;
+
+	/**
+	 * Metrics that each decision is recorded in.
+	 */
+	private final MonitorMetrics metrics = MonitorMetrics.getInstance();
+
+	/**
+	 * Intent that goes to the home screen, reused for every block.
+	 */
+	private final Intent homeIntent = new Intent()
+			.setAction(Intent.ACTION_MAIN)
+			.addCategory(Intent.CATEGORY_HOME)
+			.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+
+	/**
+	 * Toast explaining why an application was blocked, created the first
+	 * time it is shown. Only used on the main thread.
+	 */
+	private Toast toast;
+
+	/**
+	 * Shows the toast on the main thread.
+	 */
+	private final Runnable showMessage = new Runnable() {
+		@Override
+		public void run() {
+			if (toast == null) {
+				toast = Toast.makeText(context, BLOCK_MESSAGE, Toast.LENGTH_LONG);
+			}
+			toast.show();
+		}
+	};
+
+	/**
+	 * Parameterised constructor. Uses the accessibility service to find out
+	 * about foreground changes while it is enabled, otherwise falls back to
+	 * polling.
+	 * 
+	 * @param c Any context, only the application context is retained
+	 * @param p Tuning for polling while the accessibility service is off
+	 */
+	public ActivityHandlerThread(Context c, PollingConfig p) {
+		this(c, new FallbackForegroundSource(c, p));
+	}
+
+	/**
+	 * Parameterised constructor
+	 * 
+	 * @param c Any context, only the application context is retained
+	 * @param s Source of the foreground changes to check
+	 */
+	public ActivityHandlerThread(Context c, ForegroundSource s) {
+		this(c, s, BlockPolicy.DEFAULT);
+	}
+
+	/**
+	 * Parameterised constructor
+	 * 
+	 * @param c Any context, only the application context is retained
+	 * @param s Source of the foreground changes to check
+	 * @param p Tuning for what happens after a block
+	 */
+	public ActivityHandlerThread(Context c, ForegroundSource s, BlockPolicy p) {
+		context = c.getApplicationContext();
+		controller = new BlockController(p);
+		am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+		catalog = AppCatalog.getInstance(context);
+		log = BlockEventLog.getInstance(context.getFilesDir());
+		source = s;
+	}
+
+	/**
+	 * Starts checking foreground changes.
+	 */
+	public void start() {
+		source.start(this);
+	}
+
+	/**
+	 * Checks the new foreground activity against the blocked applications
+	 * and goes to the home screen if it is not allowed.
+	 */
+	@Override
+	public boolean onForegroundChanged(String packageName, String className) {
+		long detectedTime = System.nanoTime();
+		metrics.foregroundChanges.increment();
+
+		// Check to see if current activity is allowed.
+		BlockController.Action action = controller.onForegroundChanged(packageName, className,
+				catalog.getBlockMatcher(), SystemClock.uptimeMillis());
+		metrics.decisionDuration.recordNanos(System.nanoTime() - detectedTime);
+
+		if (action == BlockController.Action.ALLOW) {
+			return false;
+		}
+		if (action == BlockController.Action.SUPPRESS) {
+			metrics.suppressedBlocks.increment();
+			return true;
+		}
+
+		// Go to the home screen
+		context.startActivity(homeIntent);
+		long latency = System.nanoTime() - detectedTime;
+		metrics.detectionToBlock.recordNanos(latency);
+		metrics.recordBlock(packageName);
+		log.record(System.currentTimeMillis(), packageName, className, latency / 1000);
+
+		// Display a message explaining why the application was blocked
+		if (action == BlockController.Action.BLOCK_AND_NOTIFY) {
+			mainHandler.post(showMessage);
+		}
+		return true;
+	}
+
+	/**
+	 * 
+	 * @return Source of the foreground changes that are checked
+	 */
+	public ForegroundSource getSource() {
+		return source;
+	}
+
+	/**
+	 * Stops checking foreground changes. Checking can be started again with
+	 * start(), which keeps the cached decision and the source's thread.
+	 */
+	public void cancel() {
+		source.stop();
+	}
+
+	/**
+	 * Stops checking foreground changes for good and releases the source.
+	 */
+	public void release() {
+		source.release();
+	}
+
+	/**
+	 * This will return the fully qualified class name of the
+	 * activity that is at the top of the current task.
+	 * 
+	 * @return The class name of the current activity.
+	 */
+	public String getCurrentTopActivity() {
+		try {
+			tasks = am.getRunningTasks(1);
+		} catch (SecurityException e) {
+
+		}
+
+		if (tasks != null && !tasks.isEmpty()) {
+			return tasks.get(0).topActivity.getClassName();
+		}
+		else {
+			return "";
+		}
+	}
+}
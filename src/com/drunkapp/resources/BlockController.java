@@ -0,0 +1,136 @@
+package com.drunkapp.resources;
+
+/**
+ * Decides what the monitor does about each foreground change: nothing,
+ * send the user home, or send them home and tell them why. This is the
+ * ActivityHandlerThread's logic without its side effects, so that it can be
+ * replayed against a virtual clock on a plain JVM.
+ *
+ * Whether an activity is allowed is left to a BlockDecider. On top of that
+ * the BlockPolicy's suppression window and notification cooldown are
+ * applied, using the times passed in rather than reading a clock.
+ *
+ * @author Liam
+ *
+ */
+public class BlockController {
+
+	/**
+	 * What to do about a foreground change.
+	 */
+	public enum Action {
+		/**
+		 * The activity is allowed.
+		 */
+		ALLOW,
+
+		/**
+		 * The activity is blocked, but it is still on its way out from the
+		 * last block, so nothing needs to be done.
+		 */
+		SUPPRESS,
+
+		/**
+		 * Go to the home screen without a message, as one was shown for the
+		 * package very recently.
+		 */
+		BLOCK,
+
+		/**
+		 * Go to the home screen and explain why.
+		 */
+		BLOCK_AND_NOTIFY
+	}
+
+	/**
+	 * Decides whether or not each foreground activity is allowed.
+	 */
+	private final BlockDecider decider = new BlockDecider();
+
+	/**
+	 * Tuning for what happens after a block.
+	 */
+	private final BlockPolicy policy;
+
+	/**
+	 * Package that was last sent home, or null if another package has come
+	 * to the front since.
+	 */
+	private String lastBlockedPackage;
+
+	/**
+	 * Time of the last block in milliseconds.
+	 */
+	private long lastBlockTime;
+
+	/**
+	 * Package that the message was last shown for.
+	 */
+	private String lastNotifiedPackage;
+
+	/**
+	 * Time the message was last shown in milliseconds.
+	 */
+	private long lastNotifyTime;
+
+	/**
+	 * Parameterised constructor
+	 *
+	 * @param p Tuning for what happens after a block
+	 */
+	public BlockController(BlockPolicy p) {
+		policy = p;
+	}
+
+	/**
+	 * Decides what to do about a new foreground activity.
+	 *
+	 * @param packageName Package name of the foreground activity
+	 * @param className Class name of the foreground activity, or null if it
+	 *            is not known
+	 * @param matcher The current block rules
+	 * @param now Current time in milliseconds, from any clock that does not
+	 *            go backwards
+	 * @return What to do
+	 */
+	public synchronized Action onForegroundChanged(String packageName, String className,
+			BlockMatcher matcher, long now) {
+		boolean isAllowed = decider.isAllowed(packageName, className, matcher);
+
+		if (lastBlockedPackage != null && !packageName.equals(lastBlockedPackage)) {
+			// Something else has come to the front, so the next report of
+			// the blocked package is a new attempt to open it
+			lastBlockedPackage = null;
+		}
+
+		if (isAllowed) {
+			return Action.ALLOW;
+		}
+
+		if (packageName.equals(lastBlockedPackage)
+				&& now - lastBlockTime < policy.getSuppressionWindow()) {
+			// Still on its way out from the last block
+			return Action.SUPPRESS;
+		}
+		lastBlockedPackage = packageName;
+		lastBlockTime = now;
+
+		// Only explain the block if the message has not been shown for this
+		// package very recently
+		if (!packageName.equals(lastNotifiedPackage)
+				|| now - lastNotifyTime >= policy.getNotificationCooldown()) {
+			lastNotifiedPackage = packageName;
+			lastNotifyTime = now;
+			return Action.BLOCK_AND_NOTIFY;
+		}
+		return Action.BLOCK;
+	}
+
+	/**
+	 *
+	 * @return Tuning for what happens after a block
+	 */
+	public BlockPolicy getPolicy() {
+		return policy;
+	}
+}
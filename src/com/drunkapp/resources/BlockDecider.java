@@ -0,0 +1,59 @@
+package com.drunkapp.resources;
+
+/**
+ * Decides whether or not a foreground activity may be used. This holds the
+ * part of the monitor that does not depend on Android, so that it can be run
+ * and measured on a plain JVM.
+ * 
+ * The last decision is cached, so that a repeated report of the same
+ * activity does not check the rules again unless they have changed.
+ * 
+ * @author Liam
+ * 
+ */
+public class BlockDecider {
+
+	/**
+	 * Package name that the last decision was made for.
+	 */
+	private String lastPackageName;
+
+	/**
+	 * Class name that the last decision was made for.
+	 */
+	private String lastClassName;
+
+	/**
+	 * Matcher that the last decision was made against.
+	 */
+	private BlockMatcher lastMatcher;
+
+	/**
+	 * Whether or not the last activity checked was allowed.
+	 */
+	private boolean lastAllowed;
+
+	/**
+	 * Checks an activity against the block rules.
+	 * 
+	 * @param packageName Package name of the foreground activity
+	 * @param className Class name of the foreground activity, or null if it
+	 *            is not known
+	 * @param matcher Compiled block rules. A new matcher is compiled
+	 *            whenever the rules change, which drops the cached decision.
+	 * @return Whether or not the activity is allowed
+	 */
+	public synchronized boolean isAllowed(String packageName, String className, BlockMatcher matcher) {
+		if (matcher == lastMatcher && packageName.equals(lastPackageName)
+				&& (className == null ? lastClassName == null : className.equals(lastClassName))) {
+			return lastAllowed;
+		}
+
+		lastPackageName = packageName;
+		lastClassName = className;
+		lastMatcher = matcher;
+		lastAllowed = !matcher.isBlocked(packageName, className);
+
+		return lastAllowed;
+	}
+}
@@ -0,0 +1,346 @@
+package com.drunkapp.resources;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable matcher compiled from the block rules. Checking an activity
+ * against it takes one hash lookup plus a walk of the package name through
+ * a small trie, and never allocates.
+ * 
+ * Three kinds of rule are supported:
+ * <ul>
+ * <li>"com.example.app" blocks every activity of a package.</li>
+ * <li>"com.example.*" blocks com.example and every package below it.</li>
+ * <li>"com.example.app/com.example.app.Chat", or "com.example.app/.Chat",
+ * blocks a single activity.</li>
+ * </ul>
+ * 
+ * Package names used by the exact and activity rules are interned to int IDs
+ * in an open addressing table, and the rules are stored against those IDs.
+ * 
+ * @author Liam
+ * 
+ */
+public final class BlockMatcher {
+
+	/**
+	 * Matcher that blocks nothing.
+	 */
+	public static final BlockMatcher EMPTY = compile(new String[0], new ArrayList<String>());
+
+	/**
+	 * Interned package names, laid out by hash with linear probing. Empty
+	 * slots are null.
+	 */
+	private final String[] names;
+
+	/**
+	 * ID of the package in the same slot of names.
+	 */
+	private final int[] ids;
+
+	/**
+	 * Mask applied to a hash to find its first slot.
+	 */
+	private final int mask;
+
+	/**
+	 * Whether or not every activity of each package is blocked, by ID.
+	 */
+	private final boolean[] packageBlocked;
+
+	/**
+	 * Blocked activity class names of each package, by ID, or null if none
+	 * of the package's activities are blocked on their own.
+	 */
+	private final String[][] blockedActivities;
+
+	/**
+	 * Root of the trie of package prefix rules.
+	 */
+	private final PrefixNode prefixes;
+
+	/**
+	 * Number of rules the matcher was compiled from.
+	 */
+	private final int ruleCount;
+
+	/**
+	 * Compiles the blocked packages and any extra rules into a matcher.
+	 * Blank lines, lines starting with '#', a bare "*" and rules with no
+	 * package before their '/' are ignored. A trailing '/' is dropped, so
+	 * "com.example.app/" blocks the whole package.
+	 * 
+	 * @param blockedPackages Package names to block every activity of
+	 * @param rules Extra rules, in any of the forms described above
+	 * @return The compiled matcher
+	 */
+	public static BlockMatcher compile(String[] blockedPackages, Collection<String> rules) {
+		// Activity class names of each package, or an empty list if the
+		// whole package is blocked. Insertion order gives the IDs.
+		LinkedHashMap<String, ArrayList<String>> packages = new LinkedHashMap<String, ArrayList<String>>();
+		HashSet<String> whole = new HashSet<String>();
+		PrefixNode root = new PrefixNode();
+		int count = 0;
+
+		for (String p : blockedPackages) {
+			intern(packages, p);
+			whole.add(p);
+			count++;
+		}
+
+		for (String r : rules) {
+			String rule = r.trim();
+			while (rule.endsWith("/")) {
+				rule = rule.substring(0, rule.length() - 1);
+			}
+			if (rule.length() == 0 || rule.startsWith("#") || rule.equals("*")
+					|| rule.startsWith("/")) {
+				continue;
+			}
+
+			int slash = rule.indexOf('/');
+			if (rule.endsWith(".*")) {
+				root.add(rule.substring(0, rule.length() - 2));
+			}
+			else if (slash > 0) {
+				String p = rule.substring(0, slash);
+				String c = rule.substring(slash + 1);
+				if (c.startsWith(".")) {
+					c = p + c;
+				}
+				intern(packages, p).add(c);
+			}
+			else {
+				intern(packages, rule);
+				whole.add(rule);
+			}
+			count++;
+		}
+
+		return new BlockMatcher(packages, whole, root, count);
+	}
+
+	/**
+	 * Adds a package to the packages being compiled if it is not already
+	 * there.
+	 * 
+	 * @param packages Packages being compiled
+	 * @param p Package name
+	 * @return Blocked activity class names of the package
+	 */
+	private static ArrayList<String> intern(LinkedHashMap<String, ArrayList<String>> packages, String p) {
+		ArrayList<String> classes = packages.get(p);
+		if (classes == null) {
+			classes = new ArrayList<String>();
+			packages.put(p, classes);
+		}
+		return classes;
+	}
+
+	/**
+	 * Use compile().
+	 * 
+	 * @param packages Blocked activity class names of each package
+	 * @param whole Packages with every activity blocked
+	 * @param root Root of the trie of package prefix rules
+	 * @param count Number of rules
+	 */
+	private BlockMatcher(LinkedHashMap<String, ArrayList<String>> packages,
+			HashSet<String> whole, PrefixNode root, int count) {
+		int capacity = 2;
+		while (capacity < packages.size() * 2) {
+			capacity <<= 1;
+		}
+
+		names = new String[capacity];
+		ids = new int[capacity];
+		mask = capacity - 1;
+		packageBlocked = new boolean[packages.size()];
+		blockedActivities = new String[packages.size()][];
+		prefixes = root;
+		ruleCount = count;
+
+		int id = 0;
+		for (Map.Entry<String, ArrayList<String>> e : packages.entrySet()) {
+			String name = e.getKey();
+			int slot = spread(name.hashCode()) & mask;
+			while (names[slot] != null) {
+				slot = (slot + 1) & mask;
+			}
+			names[slot] = name;
+			ids[slot] = id;
+
+			packageBlocked[id] = whole.contains(name);
+			ArrayList<String> classes = e.getValue();
+			if (!classes.isEmpty()) {
+				blockedActivities[id] = classes.toArray(new String[classes.size()]);
+			}
+			id++;
+		}
+	}
+
+	/**
+	 * Checks an activity against the rules.
+	 * 
+	 * @param packageName Package name of the activity
+	 * @param className Class name of the activity, which may be null if it
+	 *            is not known
+	 * @return Whether or not the activity is blocked
+	 */
+	public boolean isBlocked(String packageName, String className) {
+		int id = getId(packageName);
+
+		if (id >= 0) {
+			if (packageBlocked[id]) {
+				return true;
+			}
+
+			String[] classes = blockedActivities[id];
+			if (classes != null && className != null) {
+				for (String c : classes) {
+					if (c.equals(className)) {
+						return true;
+					}
+				}
+			}
+		}
+
+		return prefixes.matches(packageName);
+	}
+
+	/**
+	 * Looks up the interned ID of a package named by an exact or activity
+	 * rule.
+	 * 
+	 * @param packageName Package name to look up
+	 * @return ID of the package, or -1 if no rule names it
+	 */
+	public int getId(String packageName) {
+		int slot = spread(packageName.hashCode()) & mask;
+		String name;
+
+		while ((name = names[slot]) != null) {
+			if (name.equals(packageName)) {
+				return ids[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * 
+	 * @return Number of rules the matcher was compiled from
+	 */
+	public int getRuleCount() {
+		return ruleCount;
+	}
+
+	/**
+	 * Mixes the high bits of a hash into the low bits, which are the only
+	 * ones used to pick a slot.
+	 * 
+	 * @param h Hash code
+	 * @return Mixed hash code
+	 */
+	private static int spread(int h) {
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Node of the trie of package prefix rules, with one edge per character.
+	 * Nodes are only changed while the matcher is being compiled.
+	 */
+	private static final class PrefixNode {
+
+		/**
+		 * Character on the edge to each child.
+		 */
+		private char[] keys = new char[0];
+
+		/**
+		 * Child reached by each character in keys.
+		 */
+		private PrefixNode[] children = new PrefixNode[0];
+
+		/**
+		 * Whether or not a rule ends at this node.
+		 */
+		private boolean terminal;
+
+		/**
+		 * Adds a prefix rule to the trie.
+		 * 
+		 * @param prefix Package name that the rule applies below
+		 */
+		void add(String prefix) {
+			PrefixNode node = this;
+
+			for (int i = 0; i < prefix.length(); i++) {
+				char c = prefix.charAt(i);
+				PrefixNode next = node.child(c);
+
+				if (next == null) {
+					next = new PrefixNode();
+					int n = node.keys.length;
+
+					char[] keys = new char[n + 1];
+					PrefixNode[] children = new PrefixNode[n + 1];
+					System.arraycopy(node.keys, 0, keys, 0, n);
+					System.arraycopy(node.children, 0, children, 0, n);
+					keys[n] = c;
+					children[n] = next;
+
+					node.keys = keys;
+					node.children = children;
+				}
+				node = next;
+			}
+			node.terminal = true;
+		}
+
+		/**
+		 * Checks whether a package is, or is below, a prefix in the trie.
+		 * The rule "com.example.*" matches com.example and
+		 * com.example.app, but not com.examples.
+		 * 
+		 * @param packageName Package name to check
+		 * @return Whether or not a prefix rule matches
+		 */
+		boolean matches(String packageName) {
+			PrefixNode node = this;
+
+			for (int i = 0; i < packageName.length(); i++) {
+				char c = packageName.charAt(i);
+				if (c == '.' && node.terminal && node != this) {
+					return true;
+				}
+
+				node = node.child(c);
+				if (node == null) {
+					return false;
+				}
+			}
+			return node.terminal && node != this;
+		}
+
+		/**
+		 * 
+		 * @param c Character on the edge
+		 * @return Child reached by the character, or null if there is none
+		 */
+		private PrefixNode child(char c) {
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] == c) {
+					return children[i];
+				}
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.drunkapp.resources;
+
+/**
+ * Tuning for what the monitor does after blocking an application.
+ * 
+ * The suppression window stops the same package from being sent home again
+ * while the home screen is still coming up, as some sources report the
+ * blocked activity more than once on its way out. The monitor keeps
+ * checking every other package during the window. The notification cooldown
+ * stops the user being shown the same message over and over while they keep
+ * trying to open the same application.
+ * 
+ * @author Liam
+ * 
+ */
+public final class BlockPolicy {
+
+	/**
+	 * Suppresses repeat blocks for 500 ms and repeat messages for 5 s.
+	 */
+	public static final BlockPolicy DEFAULT = new BlockPolicy(500, 5000);
+
+	/**
+	 * Time in milliseconds after a block during which the same package is
+	 * not sent home again.
+	 */
+	private final long suppressionWindow;
+
+	/**
+	 * Time in milliseconds after a message during which no message is shown
+	 * for the same package.
+	 */
+	private final long notificationCooldown;
+
+	/**
+	 * Parameterised constructor.
+	 * 
+	 * @param suppression Time in milliseconds after a block during which the
+	 *            same package is not sent home again
+	 * @param cooldown Time in milliseconds after a message during which no
+	 *            message is shown for the same package
+	 */
+	public BlockPolicy(long suppression, long cooldown) {
+		if (suppression < 0 || cooldown < 0) {
+			throw new IllegalArgumentException("Invalid times " + suppression + ", " + cooldown);
+		}
+		suppressionWindow = suppression;
+		notificationCooldown = cooldown;
+	}
+
+	/**
+	 * 
+	 * @return Time in milliseconds after a block during which the same
+	 *         package is not sent home again
+	 */
+	public long getSuppressionWindow() {
+		return suppressionWindow;
+	}
+
+	/**
+	 * 
+	 * @return Time in milliseconds after a message during which no message
+	 *         is shown for the same package
+	 */
+	public long getNotificationCooldown() {
+		return notificationCooldown;
+	}
+
+	@Override
+	public String toString() {
+		return "BlockPolicy[suppression=" + suppressionWindow + "ms, cooldown="
+				+ notificationCooldown + "ms]";
+	}
+}
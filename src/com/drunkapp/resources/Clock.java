@@ -0,0 +1,27 @@
+package com.drunkapp.resources;
+
+/**
+ * Source of the current time, so that anything that depends on the time of
+ * day can be run against a fake clock.
+ * 
+ * @author Liam
+ * 
+ */
+public interface Clock {
+
+	/**
+	 * Clock that reads the system time.
+	 */
+	Clock SYSTEM = new Clock() {
+		@Override
+		public long currentTimeMillis() {
+			return System.currentTimeMillis();
+		}
+	};
+
+	/**
+	 * 
+	 * @return The current time in milliseconds since the epoch
+	 */
+	long currentTimeMillis();
+}
@@ -0,0 +1,58 @@
+package com.drunkapp.resources;
+
+/**
+ * ForegroundSource that is driven by hand, so that the blocking logic can be
+ * exercised on the JVM without a device. Each call to moveToForeground() is
+ * reported to the listener synchronously on the calling thread.
+ * 
+ * @author Liam
+ * 
+ */
+public class FakeForegroundSource implements ForegroundSource {
+
+	/**
+	 * Listener to be told about each change, or null if stopped.
+	 */
+	private Listener listener;
+
+	@Override
+	public synchronized void start(Listener l) {
+		listener = l;
+	}
+
+	@Override
+	public synchronized void stop() {
+		listener = null;
+	}
+
+	@Override
+	public void release() {
+		stop();
+	}
+
+	/**
+	 * 
+	 * @return Whether or not the source has been started
+	 */
+	public synchronized boolean isStarted() {
+		return listener != null;
+	}
+
+	/**
+	 * Reports that the given activity has come to the front. Does nothing if
+	 * the source is stopped.
+	 * 
+	 * @param packageName Package name of the activity
+	 * @param className Class name of the activity
+	 */
+	public void moveToForeground(String packageName, String className) {
+		Listener l;
+		synchronized (this) {
+			l = listener;
+		}
+
+		if (l != null) {
+			l.onForegroundChanged(packageName, className);
+		}
+	}
+}
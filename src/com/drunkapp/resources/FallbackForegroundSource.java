@@ -0,0 +1,143 @@
+package com.drunkapp.resources;
+
+import android.content.Context;
+
+/**
+ * ForegroundSource that uses the AccessibilityForegroundSource while the
+ * accessibility service is connected, and polls while it is not. The user
+ * can turn the service on or off at any time, and the system can unbind it,
+ * so the source switches between the two as the service connects and
+ * disconnects rather than choosing once. Otherwise turning the service off
+ * would leave blocking listening to a source that never reports again.
+ * 
+ * The polling source holds a thread, so it is only created the first time
+ * it is needed.
+ * 
+ * @author Liam
+ * 
+ */
+public class FallbackForegroundSource implements ForegroundSource,
+		AccessibilityForegroundSource.ConnectionListener {
+
+	/**
+	 * Context used to create the polling source.
+	 */
+	private final Context context;
+
+	/**
+	 * Tuning for the polling source.
+	 */
+	private final PollingConfig config;
+
+	/**
+	 * Source used while the accessibility service is connected.
+	 */
+	private final AccessibilityForegroundSource accessibility = new AccessibilityForegroundSource();
+
+	/**
+	 * Source used while the accessibility service is not connected, or null
+	 * if it has not been needed yet.
+	 */
+	private PollingForegroundSource polling;
+
+	/**
+	 * The source currently reporting, or null if neither has been started.
+	 */
+	private ForegroundSource current;
+
+	/**
+	 * Listener to be told about each change.
+	 */
+	private Listener listener;
+
+	/**
+	 * Whether or not the source is started.
+	 */
+	private boolean started;
+
+	/**
+	 * Parameterised constructor.
+	 * 
+	 * @param c Any context, only the application context is retained
+	 * @param p Tuning for the polling source
+	 */
+	public FallbackForegroundSource(Context c, PollingConfig p) {
+		context = c.getApplicationContext();
+		config = p;
+	}
+
+	@Override
+	public synchronized void start(Listener l) {
+		listener = l;
+		started = true;
+		AccessibilityForegroundSource.setConnectionListener(this);
+		use(AccessibilityForegroundSource.isAvailable());
+	}
+
+	@Override
+	public synchronized void stop() {
+		started = false;
+		if (current != null) {
+			current.stop();
+		}
+	}
+
+	@Override
+	public synchronized void release() {
+		started = false;
+		AccessibilityForegroundSource.clearConnectionListener(this);
+		accessibility.release();
+		if (polling != null) {
+			polling.release();
+		}
+		current = null;
+	}
+
+	/**
+	 * 
+	 * @return The polling source, or null if it has not been needed yet
+	 */
+	public synchronized PollingForegroundSource getPollingSource() {
+		return polling;
+	}
+
+	/**
+	 * 
+	 * @return Whether or not the polling source is the one reporting
+	 */
+	public synchronized boolean isPolling() {
+		return current != null && current == polling;
+	}
+
+	@Override
+	public synchronized void onConnectionChanged(boolean connected) {
+		if (started) {
+			use(connected);
+		}
+	}
+
+	/**
+	 * Starts one of the sources, stopping the other if it was reporting.
+	 * 
+	 * @param useAccessibility Whether to use the accessibility source rather
+	 *            than polling
+	 */
+	private void use(boolean useAccessibility) {
+		ForegroundSource next;
+		if (useAccessibility) {
+			next = accessibility;
+		}
+		else {
+			if (polling == null) {
+				polling = new PollingForegroundSource(context, config);
+			}
+			next = polling;
+		}
+
+		if (current != null && current != next) {
+			current.stop();
+		}
+		current = next;
+		current.start(listener);
+	}
+}
@@ -0,0 +1,53 @@
+package com.drunkapp.resources;
+
+import android.accessibilityservice.AccessibilityService;
+import android.accessibilityservice.AccessibilityServiceInfo;
+import android.content.Intent;
+import android.view.accessibility.AccessibilityEvent;
+
+/**
+ * Accessibility service that is told by the system whenever a new window
+ * comes to the front, and passes each change on to the
+ * AccessibilityForegroundSource.
+ * 
+ * @author Liam
+ * 
+ */
+public class ForegroundAccessibilityService extends AccessibilityService {
+
+	/**
+	 * Only asks for window state changes, as nothing else is needed to know
+	 * which activity is in the foreground.
+	 */
+	@Override
+	protected void onServiceConnected() {
+		AccessibilityServiceInfo info = new AccessibilityServiceInfo();
+		info.eventTypes = AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED;
+		info.feedbackType = AccessibilityServiceInfo.FEEDBACK_GENERIC;
+		info.notificationTimeout = 0;
+		setServiceInfo(info);
+
+		AccessibilityForegroundSource.setConnected(true);
+	}
+
+	@Override
+	public void onAccessibilityEvent(AccessibilityEvent event) {
+		if (event.getEventType() != AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED
+				|| event.getPackageName() == null || event.getClassName() == null) {
+			return;
+		}
+
+		AccessibilityForegroundSource.dispatchWindowChanged(event
+				.getPackageName().toString(), event.getClassName().toString());
+	}
+
+	@Override
+	public void onInterrupt() {
+	}
+
+	@Override
+	public boolean onUnbind(Intent intent) {
+		AccessibilityForegroundSource.setConnected(false);
+		return super.onUnbind(intent);
+	}
+}
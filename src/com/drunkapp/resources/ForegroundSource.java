@@ -0,0 +1,50 @@
+package com.drunkapp.resources;
+
+/**
+ * Source of foreground changes on the device. Implementations report each
+ * time a different activity comes to the front, so that the blocking logic
+ * only has to run when something has actually changed.
+ * 
+ * @author Liam
+ * 
+ */
+public interface ForegroundSource {
+
+	/**
+	 * Receives foreground changes from a ForegroundSource.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called when a different activity comes to the front. Depending on
+		 * the source this may be called on any thread. A source that polls
+		 * also calls this again while a blocked activity stays at the front,
+		 * in case going to the home screen failed.
+		 * 
+		 * @param packageName Package name of the new foreground activity
+		 * @param className Class name of the new foreground activity
+		 * @return Whether or not the activity is blocked
+		 */
+		boolean onForegroundChanged(String packageName, String className);
+	}
+
+	/**
+	 * Starts reporting foreground changes to the given listener. Does
+	 * nothing if the source has already been started.
+	 * 
+	 * @param l Listener to be told about each change
+	 */
+	void start(Listener l);
+
+	/**
+	 * Stops reporting foreground changes. The source keeps any threads it
+	 * holds, so that it can be started again cheaply.
+	 */
+	void stop();
+
+	/**
+	 * Stops the source and releases any threads it holds. The source cannot
+	 * be started again afterwards.
+	 */
+	void release();
+}
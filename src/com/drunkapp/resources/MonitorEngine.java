@@ -0,0 +1,470 @@
+package com.drunkapp.resources;
+
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Owns the single ActivityHandlerThread for the process and moves it
+ * between the stopped, running and paused states.
+ * 
+ * The monitor is paused rather than thrown away while the screen is off, so
+ * that turning the screen back on resumes it straight away with the same
+ * thread, cached decision and catalog. Screen changes are debounced: the
+ * monitor resumes as soon as the screen turns on, but only pauses once the
+ * screen has stayed off for SCREEN_OFF_DELAY, so a quick off and on does
+ * nothing at all.
+ * 
+ * If a WeeklySchedule has been set, the monitor is also paused outside the
+ * schedule's windows, so nothing is polled at all until the next window
+ * starts. The schedule is compiled into a ScheduleTimeline, so the engine
+ * only looks at the clock when the screen turns on or the timeline says
+ * that blocking starts or stops.
+ * 
+ * Outside the schedule's windows the service does not need to be running
+ * at all. ScheduleReceiver starts it again when the next window opens, or
+ * when the device boots.
+ * 
+ * Blocking can also be unlocked for a while, e.g. once the user has passed
+ * a sobriety challenge. The monitor stays paused until the unlock runs out.
+ * 
+ * @author Liam
+ * 
+ */
+public class MonitorEngine {
+
+	/**
+	 * States that the engine can be in.
+	 */
+	public enum State {
+		/**
+		 * Not monitoring, and holding no threads.
+		 */
+		STOPPED,
+
+		/**
+		 * Checking each foreground change.
+		 */
+		RUNNING,
+
+		/**
+		 * Not checking foreground changes, but ready to resume.
+		 */
+		PAUSED
+	}
+
+	/**
+	 * Time in milliseconds that the screen must stay off before the monitor
+	 * is paused.
+	 */
+	private static final long SCREEN_OFF_DELAY = 1000;
+
+	/**
+	 * Tuning for polling while the accessibility service is off.
+	 */
+	private static final PollingConfig POLLING_CONFIG = PollingConfig.DEFAULT;
+
+	/**
+	 * Tag used for logging.
+	 */
+	private static final String TAG = "MonitorEngine";
+
+	/**
+	 * Name of the preferences that the schedule is saved in.
+	 */
+	private static final String PREFS_NAME = "drunkapp_monitor";
+
+	/**
+	 * Key of the saved schedule, written as text.
+	 */
+	private static final String KEY_SCHEDULE = "schedule";
+
+	/**
+	 * The single instance used by the whole process.
+	 */
+	private static MonitorEngine instance;
+
+	/**
+	 * Saves the schedule and sets the alarm for the next window, in the
+	 * order the schedule was changed, without holding up the caller.
+	 */
+	private final ExecutorService writer = Executors.newSingleThreadExecutor();
+
+	/**
+	 * Handler used to debounce screen changes.
+	 */
+	private final Handler handler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * Pauses the monitor once the screen has stayed off.
+	 */
+	private final Runnable pauseTask = new Runnable() {
+		@Override
+		public void run() {
+			pause();
+		}
+	};
+
+	/**
+	 * Starts or stops blocking when the schedule says so.
+	 */
+	private final Runnable scheduleTask = new Runnable() {
+		@Override
+		public void run() {
+			applySchedule();
+		}
+	};
+
+	/**
+	 * Resumes the monitor once an unlock runs out.
+	 */
+	private final Runnable relockTask = new Runnable() {
+		@Override
+		public void run() {
+			relock();
+		}
+	};
+
+	/**
+	 * Clock that the schedule is checked against.
+	 */
+	private final Clock clock;
+
+	/**
+	 * Times that blocking is active, or null if it is always active.
+	 */
+	private WeeklySchedule schedule;
+
+	/**
+	 * The schedule compiled for the coming week, or null if it needs to be
+	 * compiled.
+	 */
+	private ScheduleTimeline timeline;
+
+	/**
+	 * Whether or not the schedule allows blocking at the moment.
+	 */
+	private boolean inWindow = true;
+
+	/**
+	 * Whether or not the screen is on.
+	 */
+	private boolean screenOn = true;
+
+	/**
+	 * Time that blocking is unlocked until, from
+	 * SystemClock.elapsedRealtime(), or 0 if it is not unlocked.
+	 */
+	private long unlockedUntil;
+
+	/**
+	 * Whether or not the schedule has been read from the preferences.
+	 */
+	private boolean scheduleLoaded;
+
+	/**
+	 * The current state.
+	 */
+	private State state = State.STOPPED;
+
+	/**
+	 * The monitor, or null if the engine is stopped.
+	 */
+	private ActivityHandlerThread aht;
+
+	/**
+	 * 
+	 * @return The engine for this process
+	 */
+	public static synchronized MonitorEngine getInstance() {
+		if (instance == null) {
+			instance = new MonitorEngine();
+		}
+		return instance;
+	}
+
+	/**
+	 * Use getInstance().
+	 */
+	private MonitorEngine() {
+		this(Clock.SYSTEM);
+	}
+
+	/**
+	 * Constructor that takes the clock the schedule is checked against.
+	 * 
+	 * @param c Clock to use
+	 */
+	MonitorEngine(Clock c) {
+		clock = c;
+	}
+
+	/**
+	 * 
+	 * @return The current state
+	 */
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * 
+	 * @return Source of the foreground changes that are checked, or null if
+	 *         the engine is stopped
+	 */
+	public synchronized ForegroundSource getSource() {
+		return aht == null ? null : aht.getSource();
+	}
+
+	/**
+	 * Starts reading the saved schedule on a background thread, so that
+	 * start() does not have to read it on the UI thread.
+	 * 
+	 * @param c Any context, only the application context is retained
+	 */
+	public void prepare(Context c) {
+		final Context context = c.getApplicationContext();
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				loadScheduleOnce(context);
+			}
+		}, TAG).start();
+	}
+
+	/**
+	 * Reads the saved schedule, unless it has been read already.
+	 * 
+	 * @param c Context used to read the schedule
+	 */
+	private synchronized void loadScheduleOnce(Context c) {
+		if (!scheduleLoaded) {
+			schedule = loadSchedule(c);
+			scheduleLoaded = true;
+		}
+	}
+
+	/**
+	 * Starts monitoring. Does nothing unless the engine is stopped.
+	 * 
+	 * @param c Any context, only the application context is retained
+	 */
+	public synchronized void start(Context c) {
+		if (state != State.STOPPED) {
+			return;
+		}
+
+		loadScheduleOnce(c);
+
+		aht = new ActivityHandlerThread(c, POLLING_CONFIG);
+		aht.start();
+		state = State.RUNNING;
+
+		applySchedule();
+	}
+
+	/**
+	 * Sets the times that blocking is active, saving them for next time.
+	 * Takes effect straight away if the engine is running. The schedule is
+	 * saved, and the alarm for the start of the next window set, in the
+	 * background.
+	 * 
+	 * @param c Any context, only the application context is retained
+	 * @param s The schedule, or null for blocking to always be active
+	 */
+	public synchronized void setSchedule(Context c, final WeeklySchedule s) {
+		final Context context = c.getApplicationContext();
+		writer.execute(new Runnable() {
+			@Override
+			public void run() {
+				context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+						.putString(KEY_SCHEDULE, s == null ? "" : s.toString())
+						.commit();
+				ScheduleReceiver.arm(context, s);
+			}
+		});
+
+		schedule = s;
+		scheduleLoaded = true;
+		timeline = null;
+		applySchedule();
+	}
+
+	/**
+	 * 
+	 * @return Times that blocking is active, or null if it is always active
+	 */
+	public synchronized WeeklySchedule getSchedule() {
+		return schedule;
+	}
+
+	/**
+	 * Reads the saved schedule first if it has not been read yet, so this
+	 * should not be called on the UI thread.
+	 * 
+	 * @param c Context used to read the schedule
+	 * @return Times that blocking is active, or null if it is always active
+	 */
+	public synchronized WeeklySchedule getSchedule(Context c) {
+		loadScheduleOnce(c);
+		return schedule;
+	}
+
+	/**
+	 * Reads the saved schedule.
+	 * 
+	 * @param c Context used to read the schedule
+	 * @return The schedule, or null if none has been saved
+	 */
+	private static WeeklySchedule loadSchedule(Context c) {
+		String text = c.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+				.getString(KEY_SCHEDULE, "");
+		try {
+			return WeeklySchedule.parse(text);
+		} catch (IllegalArgumentException e) {
+			Log.w(TAG, "Ignoring invalid schedule " + text, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Pauses or resumes the monitor to match the schedule, and arranges to
+	 * be called again when the schedule next changes.
+	 */
+	private synchronized void applySchedule() {
+		handler.removeCallbacks(scheduleTask);
+
+		if (state == State.STOPPED) {
+			return;
+		}
+		if (schedule == null) {
+			// Clearing the schedule while outside a window must not leave
+			// the monitor paused
+			boolean wasInWindow = inWindow;
+			inWindow = true;
+			timeline = null;
+			if (!wasInWindow && screenOn) {
+				resume();
+			}
+			return;
+		}
+
+		long now = clock.currentTimeMillis();
+		TimeZone zone = TimeZone.getDefault();
+		if (timeline == null || !timeline.covers(now, zone)) {
+			timeline = ScheduleTimeline.compile(schedule, zone, now);
+		}
+
+		boolean wasInWindow = inWindow;
+		inWindow = timeline.isActive(now);
+		if (!inWindow) {
+			pause();
+		} else if (!wasInWindow && screenOn) {
+			resume();
+		}
+
+		handler.postDelayed(scheduleTask, timeline.getNextChange(now) - now);
+	}
+
+	/**
+	 * Stops monitoring and releases the monitor's thread.
+	 */
+	public synchronized void stop() {
+		handler.removeCallbacks(pauseTask);
+		handler.removeCallbacks(scheduleTask);
+		handler.removeCallbacks(relockTask);
+		unlockedUntil = 0;
+
+		if (state == State.STOPPED) {
+			return;
+		}
+
+		aht.release();
+		aht = null;
+		state = State.STOPPED;
+	}
+
+	/**
+	 * Pauses monitoring, keeping the monitor ready to resume. Does nothing
+	 * unless the engine is running.
+	 */
+	public synchronized void pause() {
+		if (state == State.RUNNING) {
+			aht.cancel();
+			state = State.PAUSED;
+		}
+	}
+
+	/**
+	 * Resumes monitoring after a pause. Does nothing unless the engine is
+	 * paused, the schedule allows blocking and blocking is not unlocked.
+	 */
+	public synchronized void resume() {
+		if (state == State.PAUSED && inWindow && !isUnlocked()) {
+			aht.start();
+			state = State.RUNNING;
+		}
+	}
+
+	/**
+	 * Pauses monitoring for a while, after which it resumes by itself.
+	 * Stopping the engine ends the unlock.
+	 * 
+	 * @param millis Time in milliseconds to unlock blocking for
+	 */
+	public synchronized void unlockFor(long millis) {
+		unlockedUntil = SystemClock.elapsedRealtime() + millis;
+		pause();
+
+		handler.removeCallbacks(relockTask);
+		handler.postDelayed(relockTask, millis);
+	}
+
+	/**
+	 * 
+	 * @return Whether or not blocking is unlocked at the moment
+	 */
+	public synchronized boolean isUnlocked() {
+		return unlockedUntil != 0 && SystemClock.elapsedRealtime() < unlockedUntil;
+	}
+
+	/**
+	 * Ends the unlock and resumes monitoring if the screen is on.
+	 */
+	private synchronized void relock() {
+		unlockedUntil = 0;
+		if (screenOn) {
+			resume();
+		}
+	}
+
+	/**
+	 * Called on the main thread when the screen is turned on or off.
+	 * 
+	 * @param on Whether or not the screen is now on
+	 */
+	public void onScreenChanged(boolean on) {
+		handler.removeCallbacks(pauseTask);
+
+		synchronized (this) {
+			screenOn = on;
+		}
+
+		if (on) {
+			// The handler does not run while the device sleeps, so check
+			// the schedule again before resuming. An unlock that ran out
+			// while asleep is checked by resume().
+			applySchedule();
+			resume();
+		} else {
+			handler.postDelayed(pauseTask, SCREEN_OFF_DELAY);
+		}
+	}
+}
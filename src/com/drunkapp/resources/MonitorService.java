@@ -0,0 +1,80 @@
+package com.drunkapp.resources;
+
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.IBinder;
+
+/**
+ * Headless service that keeps the MonitorEngine running after the user
+ * leaves the application. Nothing in the monitor holds on to an Activity,
+ * so while blocking runs the process only keeps the application context,
+ * the catalog and the compiled block rules in memory.
+ * 
+ * @author Liam
+ * 
+ */
+public class MonitorService extends Service {
+
+	/**
+	 * Listens for the screen turning on and off while the service runs.
+	 */
+	private ScreenChangeHandler sch;
+
+	/**
+	 * Starts blocking, if it is not already running.
+	 * 
+	 * @param c Any context
+	 */
+	public static void start(Context c) {
+		c.startService(new Intent(c, MonitorService.class));
+	}
+
+	/**
+	 * Stops blocking.
+	 * 
+	 * @param c Any context
+	 */
+	public static void stop(Context c) {
+		c.stopService(new Intent(c, MonitorService.class));
+	}
+
+	/**
+	 * 
+	 * @return The state of the monitor
+	 */
+	public static MonitorEngine.State getStatus() {
+		return MonitorEngine.getInstance().getState();
+	}
+
+	@Override
+	public int onStartCommand(Intent intent, int flags, int startId) {
+		MonitorEngine engine = MonitorEngine.getInstance();
+		engine.start(getApplicationContext());
+
+		// Starts a receiver that waits for changes to the screen (on or off)
+		if (sch == null) {
+			sch = new ScreenChangeHandler(engine, getApplicationContext());
+			sch.startScreenChangeListener();
+		}
+
+		// Restart the monitor if the process is killed to free memory
+		return START_STICKY;
+	}
+
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+
+		if (sch != null) {
+			sch.stopScreenChangeListener();
+			sch = null;
+		}
+		MonitorEngine.getInstance().stop();
+	}
+
+	@Override
+	public IBinder onBind(Intent intent) {
+		return null;
+	}
+}
@@ -0,0 +1,130 @@
+package com.drunkapp.resources;
+
+/**
+ * Tuning for the PollingForegroundSource. Polling starts at the fast
+ * interval after every foreground transition or screen on, and backs off by
+ * the given factor for as long as the top activity stays the same, until it
+ * reaches the slow interval.
+ * 
+ * The slow interval sets both the battery cost while the user stays in one
+ * application and the longest it can take to notice that a new application
+ * has been opened.
+ * 
+ * @author Liam
+ * 
+ */
+public final class PollingConfig {
+
+	/**
+	 * Polls every 100 ms after a change, backing off to every 800 ms.
+	 */
+	public static final PollingConfig DEFAULT = new PollingConfig(100, 800, 2);
+
+	/**
+	 * Interval in milliseconds used straight after a transition.
+	 */
+	private final long fastInterval;
+
+	/**
+	 * Longest interval in milliseconds between two polls.
+	 */
+	private final long slowInterval;
+
+	/**
+	 * Factor the interval is multiplied by after each unchanged poll.
+	 */
+	private final int backoffFactor;
+
+	/**
+	 * Parameterised constructor.
+	 * 
+	 * @param fast Interval in milliseconds used straight after a transition
+	 * @param slow Longest interval in milliseconds between two polls
+	 * @param factor Factor the interval is multiplied by after each
+	 *            unchanged poll
+	 */
+	public PollingConfig(long fast, long slow, int factor) {
+		if (fast <= 0 || slow < fast) {
+			throw new IllegalArgumentException("Invalid intervals " + fast + ", " + slow);
+		}
+		if (factor < 1) {
+			throw new IllegalArgumentException("Invalid backoff factor " + factor);
+		}
+		fastInterval = fast;
+		slowInterval = slow;
+		backoffFactor = factor;
+	}
+
+	/**
+	 * Creates a configuration that polls at most the given number of times a
+	 * minute once the foreground has settled.
+	 * 
+	 * @param fast Interval in milliseconds used straight after a transition
+	 * @param pollsPerMinute Polls per minute while nothing changes
+	 * @return The configuration
+	 * @throws IllegalArgumentException If the rate is not positive
+	 */
+	public static PollingConfig withIdlePollsPerMinute(long fast, int pollsPerMinute) {
+		if (pollsPerMinute <= 0) {
+			throw new IllegalArgumentException("Invalid polls per minute " + pollsPerMinute);
+		}
+		return new PollingConfig(fast, Math.max(fast, 60000L / pollsPerMinute), 2);
+	}
+
+	/**
+	 * 
+	 * @return Interval in milliseconds used straight after a transition
+	 */
+	public long getFastInterval() {
+		return fastInterval;
+	}
+
+	/**
+	 * 
+	 * @return Longest interval in milliseconds between two polls
+	 */
+	public long getSlowInterval() {
+		return slowInterval;
+	}
+
+	/**
+	 * 
+	 * @return Factor the interval is multiplied by after each unchanged poll
+	 */
+	public int getBackoffFactor() {
+		return backoffFactor;
+	}
+
+	/**
+	 * 
+	 * @return Number of polls per minute once the foreground has settled
+	 */
+	public double getIdlePollsPerMinute() {
+		return 60000.0 / slowInterval;
+	}
+
+	/**
+	 * 
+	 * @return Longest time in milliseconds between an application coming to
+	 *         the front and the poll that notices it
+	 */
+	public long getWorstCaseLatency() {
+		return slowInterval;
+	}
+
+	/**
+	 * 
+	 * @param current The interval that was just used
+	 * @return The interval to use after a poll that saw no change
+	 */
+	public long backOff(long current) {
+		return Math.min(current * backoffFactor, slowInterval);
+	}
+
+	@Override
+	public String toString() {
+		return "PollingConfig[" + fastInterval + "ms.." + slowInterval + "ms x"
+				+ backoffFactor + ", " + getIdlePollsPerMinute()
+				+ " idle polls/min, worst case " + getWorstCaseLatency() + "ms]";
+	}
+}
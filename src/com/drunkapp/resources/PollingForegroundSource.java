@@ -0,0 +1,220 @@
+package com.drunkapp.resources;
+
+import java.util.List;
+
+import android.app.ActivityManager;
+import android.app.ActivityManager.RunningTaskInfo;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import com.drunkapp.diagnostics.MonitorMetrics;
+
+/**
+ * ForegroundSource that polls the ActivityManager for the top task. This
+ * works on every device but costs CPU and battery for as long as it runs, so
+ * it is only used when no push based source is available.
+ * 
+ * Polls are run on a single HandlerThread. The interval starts short after
+ * each transition or start() and backs off while the top
+ * activity stays the same, as set out by the PollingConfig. While the top
+ * activity is blocked it is reported again on every poll, at the short
+ * interval, so that the block is retried if going home failed. Starting,
+ * stopping and polling all run on that thread, so there is never more than
+ * one poll pending. Posting a poll reuses a pooled Message, so the loop
+ * itself does not allocate. The thread is kept while the source is stopped
+ * and only let go by release().
+ * 
+ * @author Liam
+ * 
+ */
+public class PollingForegroundSource implements ForegroundSource, Runnable {
+
+	/**
+	 * ActivityManager that is used to get the running tasks.
+	 */
+	private final ActivityManager am;
+
+	/**
+	 * Tuning for the poll intervals.
+	 */
+	private final PollingConfig config;
+
+	/**
+	 * Thread that runs the polls.
+	 */
+	private final HandlerThread thread;
+
+	/**
+	 * Handler that the polls are posted to.
+	 */
+	private final Handler handler;
+
+	/**
+	 * Whether or not the source is started. Only used on the polling thread.
+	 */
+	private boolean running;
+
+	/**
+	 * Interval that was used to schedule the next poll. Only used on the
+	 * polling thread.
+	 */
+	private long interval;
+
+	/**
+	 * Starts the source and polls straight away, replacing any pending poll.
+	 */
+	private final Runnable startTask = new Runnable() {
+		@Override
+		public void run() {
+			running = true;
+			handler.removeCallbacks(PollingForegroundSource.this);
+			interval = config.getFastInterval();
+			PollingForegroundSource.this.run();
+		}
+	};
+
+	/**
+	 * Cancels the pending poll.
+	 */
+	private final Runnable stopTask = new Runnable() {
+		@Override
+		public void run() {
+			handler.removeCallbacks(PollingForegroundSource.this);
+			running = false;
+			lastTopActivity = null;
+			blocked = false;
+		}
+	};
+
+	/**
+	 * Listener to be told about each change.
+	 */
+	private volatile Listener listener;
+
+	/**
+	 * The top activity seen by the last poll.
+	 */
+	private ComponentName lastTopActivity;
+
+	/**
+	 * Whether or not the listener said the last reported activity is
+	 * blocked. Only used on the polling thread.
+	 */
+	private boolean blocked;
+
+	/**
+	 * Number of polls since the source was created.
+	 */
+	private volatile long pollCount;
+
+	/**
+	 * Metrics that each poll is recorded in.
+	 */
+	private final MonitorMetrics metrics = MonitorMetrics.getInstance();
+
+	/**
+	 * Parameterised constructor that uses the default PollingConfig.
+	 * 
+	 * @param c Context used to get the ActivityManager
+	 */
+	public PollingForegroundSource(Context c) {
+		this(c, PollingConfig.DEFAULT);
+	}
+
+	/**
+	 * Parameterised constructor.
+	 * 
+	 * @param c Context used to get the ActivityManager
+	 * @param p Tuning for the poll intervals
+	 */
+	public PollingForegroundSource(Context c, PollingConfig p) {
+		am = (ActivityManager) c.getSystemService(Context.ACTIVITY_SERVICE);
+		config = p;
+		thread = new HandlerThread("PollingForegroundSource");
+		thread.start();
+		handler = new Handler(thread.getLooper());
+	}
+
+	@Override
+	public void start(Listener l) {
+		listener = l;
+		handler.post(startTask);
+	}
+
+	@Override
+	public void stop() {
+		handler.post(stopTask);
+	}
+
+	@Override
+	public void release() {
+		// Anything posted after this is dropped
+		thread.quit();
+	}
+
+	/**
+	 * 
+	 * @return Tuning for the poll intervals
+	 */
+	public PollingConfig getConfig() {
+		return config;
+	}
+
+	/**
+	 * 
+	 * @return Number of polls since the source was created
+	 */
+	public long getPollCount() {
+		return pollCount;
+	}
+
+	/**
+	 * Polls the top task, reports it if it differs from the previous poll or
+	 * is still blocked, and schedules the next poll. Only ever run on the
+	 * polling thread.
+	 */
+	@Override
+	public void run() {
+		long startTime = System.nanoTime();
+		ComponentName topActivity = getTopActivity();
+		metrics.pollDuration.recordNanos(System.nanoTime() - startTime);
+		boolean changed = topActivity != null && !topActivity.equals(lastTopActivity);
+		pollCount++;
+
+		if (changed) {
+			lastTopActivity = topActivity;
+		}
+		if (changed || (blocked && topActivity != null)) {
+			blocked = listener.onForegroundChanged(topActivity.getPackageName(),
+					topActivity.getClassName());
+		}
+
+		interval = changed || blocked ? config.getFastInterval() : config.backOff(interval);
+
+		if (running) {
+			handler.postDelayed(this, interval);
+		}
+	}
+
+	/**
+	 * 
+	 * @return The activity at the top of the current task, or null if it
+	 *         could not be found
+	 */
+	ComponentName getTopActivity() {
+		List<RunningTaskInfo> tasks = null;
+
+		try {
+			tasks = am.getRunningTasks(1);
+		} catch (SecurityException e) {
+			metrics.securityExceptions.increment();
+		}
+
+		if (tasks != null && !tasks.isEmpty()) {
+			return tasks.get(0).topActivity;
+		}
+		return null;
+	}
+}
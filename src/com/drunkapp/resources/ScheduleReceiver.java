@@ -0,0 +1,115 @@
+package com.drunkapp.resources;
+
+import java.util.TimeZone;
+
+import android.annotation.TargetApi;
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+
+/**
+ * Starts blocking when a window of the WeeklySchedule opens, so that the
+ * user does not have to remember to press Start. An alarm is set for the
+ * start of the next window, and set again each time it goes off. Alarms do
+ * not survive a reboot, so the receiver also runs when the device boots,
+ * starting blocking straight away if a window is already open.
+ *
+ * Reading the saved schedule and compiling it can touch the disk, so that
+ * is done on a background thread rather than in onReceive(). From
+ * Honeycomb on the broadcast is kept open with goAsync() until it is done.
+ *
+ * @author Liam
+ *
+ */
+public class ScheduleReceiver extends BroadcastReceiver {
+
+	/**
+	 * Action of the alarm set for the start of the next window.
+	 */
+	static final String ACTION_WINDOW_START = "com.drunkapp.action.WINDOW_START";
+
+	@Override
+	public void onReceive(Context context, Intent intent) {
+		final Context app = context.getApplicationContext();
+		final Runnable finish = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+				? goAsyncHoneycomb()
+				: null;
+
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					startIfInWindow(app);
+				} finally {
+					if (finish != null) {
+						finish.run();
+					}
+				}
+			}
+		}, "ScheduleReceiver").start();
+	}
+
+	/**
+	 * Keeps the broadcast open after onReceive() returns.
+	 *
+	 * @return Task that finishes the broadcast
+	 */
+	@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+	private Runnable goAsyncHoneycomb() {
+		final PendingResult result = goAsync();
+		return new Runnable() {
+			@Override
+			public void run() {
+				result.finish();
+			}
+		};
+	}
+
+	/**
+	 * Starts blocking if a window of the saved schedule is open, and sets
+	 * the alarm for the next one. Reads the schedule, so this must not be
+	 * called on the UI thread.
+	 *
+	 * @param c The application context
+	 */
+	private static void startIfInWindow(Context c) {
+		WeeklySchedule schedule = MonitorEngine.getInstance().getSchedule(c);
+		if (schedule == null) {
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		if (ScheduleTimeline.compile(schedule, TimeZone.getDefault(), now).isActive(now)) {
+			MonitorService.start(c);
+		}
+		arm(c, schedule);
+	}
+
+	/**
+	 * Sets the alarm for the start of the next window, replacing any alarm
+	 * set before.
+	 *
+	 * @param c Any context
+	 * @param schedule The schedule, or null to cancel the alarm
+	 */
+	static void arm(Context c, WeeklySchedule schedule) {
+		AlarmManager alarms = (AlarmManager) c.getSystemService(Context.ALARM_SERVICE);
+		PendingIntent alarm = PendingIntent.getBroadcast(c, 0,
+				new Intent(ACTION_WINDOW_START, null, c, ScheduleReceiver.class),
+				PendingIntent.FLAG_UPDATE_CURRENT);
+
+		alarms.cancel(alarm);
+		if (schedule == null) {
+			return;
+		}
+
+		// If there is no window before the end of the timeline, the alarm
+		// goes off then and is set again from a new timeline
+		long now = System.currentTimeMillis();
+		ScheduleTimeline timeline = ScheduleTimeline.compile(schedule, TimeZone.getDefault(), now);
+		alarms.set(AlarmManager.RTC_WAKEUP, timeline.getNextStart(now), alarm);
+	}
+}
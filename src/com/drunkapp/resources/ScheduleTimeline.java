@@ -0,0 +1,233 @@
+package com.drunkapp.resources;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.TimeZone;
+
+/**
+ * A WeeklySchedule compiled into the instants at which blocking starts and
+ * stops over the next week. All of the calendar arithmetic, including
+ * daylight saving changes, is done once when the timeline is compiled, so
+ * checking the schedule afterwards is a binary search.
+ * 
+ * A timeline only covers a limited time. Once covers() returns false, a new
+ * one must be compiled.
+ * 
+ * @author Liam
+ * 
+ */
+public final class ScheduleTimeline {
+
+	/**
+	 * Number of days covered by a timeline.
+	 */
+	private static final int HORIZON_DAYS = 7;
+
+	/**
+	 * Start of each active interval, in order. Intervals never overlap.
+	 */
+	private final long[] starts;
+
+	/**
+	 * End of each active interval.
+	 */
+	private final long[] ends;
+
+	/**
+	 * First instant covered by the timeline.
+	 */
+	private final long validFrom;
+
+	/**
+	 * First instant after the end of the timeline.
+	 */
+	private final long validUntil;
+
+	/**
+	 * Time zone the timeline was compiled in.
+	 */
+	private final TimeZone zone;
+
+	/**
+	 * Compiles a schedule into a timeline.
+	 * 
+	 * @param schedule Schedule to compile
+	 * @param tz Time zone that the schedule's times are in
+	 * @param from First instant that the timeline must cover
+	 * @return The compiled timeline, covering from the given instant until
+	 *         midnight a week later
+	 */
+	public static ScheduleTimeline compile(WeeklySchedule schedule, TimeZone tz, long from) {
+		Calendar day = Calendar.getInstance(tz);
+		day.setTimeInMillis(from);
+		day.set(Calendar.HOUR_OF_DAY, 0);
+		day.set(Calendar.MINUTE, 0);
+		day.set(Calendar.SECOND, 0);
+		day.set(Calendar.MILLISECOND, 0);
+
+		Calendar end = (Calendar) day.clone();
+		end.add(Calendar.DAY_OF_MONTH, HORIZON_DAYS);
+		long until = end.getTimeInMillis();
+
+		// Start the day before, for windows that run past midnight
+		day.add(Calendar.DAY_OF_MONTH, -1);
+
+		ArrayList<long[]> intervals = new ArrayList<long[]>();
+		for (int d = 0; d <= HORIZON_DAYS; d++) {
+			int dayOfWeek = day.get(Calendar.DAY_OF_WEEK);
+
+			for (WeeklySchedule.Window w : schedule.getWindows()) {
+				if (w.getDay() != dayOfWeek) {
+					continue;
+				}
+
+				long start = instantAt(day, 0, w.getStartMinute());
+				long stop = instantAt(day, w.endsNextDay() ? 1 : 0, w.getEndMinute());
+				if (stop > from && start < until && stop > start) {
+					intervals.add(new long[] { start, stop });
+				}
+			}
+			day.add(Calendar.DAY_OF_MONTH, 1);
+		}
+
+		return new ScheduleTimeline(merge(intervals), from, until, tz);
+	}
+
+	/**
+	 * Works out the instant of a wall clock time. Adding days and setting
+	 * the time as fields, rather than adding milliseconds, keeps the time
+	 * right across daylight saving changes. A time that is skipped when the
+	 * clocks go forward is moved on by the length of the gap.
+	 * 
+	 * @param day Midnight at the start of the day
+	 * @param addDays Number of days after the day
+	 * @param minute Minute of the day
+	 * @return The instant in milliseconds since the epoch
+	 */
+	private static long instantAt(Calendar day, int addDays, int minute) {
+		Calendar c = (Calendar) day.clone();
+		c.add(Calendar.DAY_OF_MONTH, addDays);
+		c.set(Calendar.HOUR_OF_DAY, minute / 60);
+		c.set(Calendar.MINUTE, minute % 60);
+		return c.getTimeInMillis();
+	}
+
+	/**
+	 * Sorts intervals and merges any that overlap or touch.
+	 * 
+	 * @param intervals Intervals as {start, end} pairs
+	 * @return The merged intervals
+	 */
+	private static ArrayList<long[]> merge(ArrayList<long[]> intervals) {
+		Collections.sort(intervals, new Comparator<long[]>() {
+			@Override
+			public int compare(long[] a, long[] b) {
+				return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+			}
+		});
+
+		ArrayList<long[]> merged = new ArrayList<long[]>();
+		for (long[] i : intervals) {
+			long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+			if (last != null && i[0] <= last[1]) {
+				last[1] = Math.max(last[1], i[1]);
+			}
+			else {
+				merged.add(i);
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * Use compile().
+	 * 
+	 * @param intervals Merged active intervals
+	 * @param from First instant covered
+	 * @param until First instant after the end
+	 * @param tz Time zone the timeline was compiled in
+	 */
+	private ScheduleTimeline(ArrayList<long[]> intervals, long from, long until, TimeZone tz) {
+		starts = new long[intervals.size()];
+		ends = new long[intervals.size()];
+		for (int i = 0; i < starts.length; i++) {
+			starts[i] = intervals.get(i)[0];
+			ends[i] = intervals.get(i)[1];
+		}
+		validFrom = from;
+		validUntil = until;
+		zone = tz;
+	}
+
+	/**
+	 * Checks whether or not the timeline can answer for an instant in the
+	 * given time zone.
+	 * 
+	 * @param time Instant in milliseconds since the epoch
+	 * @param tz Current time zone
+	 * @return Whether or not the timeline covers the instant
+	 */
+	public boolean covers(long time, TimeZone tz) {
+		return time >= validFrom && time < validUntil && zone.getID().equals(tz.getID());
+	}
+
+	/**
+	 * 
+	 * @param time Instant in milliseconds since the epoch, which must be
+	 *            covered by the timeline
+	 * @return Whether or not blocking is active at the instant
+	 */
+	public boolean isActive(long time) {
+		int i = indexAt(time);
+		return i >= 0 && time < ends[i];
+	}
+
+	/**
+	 * 
+	 * @param time Instant in milliseconds since the epoch, which must be
+	 *            covered by the timeline
+	 * @return The next instant at which blocking starts or stops, or the end
+	 *         of the timeline if that is sooner
+	 */
+	public long getNextChange(long time) {
+		int i = indexAt(time);
+		long next;
+
+		if (i >= 0 && time < ends[i]) {
+			next = ends[i];
+		}
+		else if (i + 1 < starts.length) {
+			next = starts[i + 1];
+		}
+		else {
+			next = validUntil;
+		}
+		return Math.min(next, validUntil);
+	}
+
+	/**
+	 * 
+	 * @param time Instant in milliseconds since the epoch, which must be
+	 *            covered by the timeline
+	 * @return The next instant after the given one at which blocking starts,
+	 *         or the end of the timeline if there is none before then
+	 */
+	public long getNextStart(long time) {
+		int i = indexAt(time);
+		return i + 1 < starts.length ? starts[i + 1] : validUntil;
+	}
+
+	/**
+	 * 
+	 * @param time Instant in milliseconds since the epoch
+	 * @return Index of the last interval starting at or before the instant,
+	 *         or -1 if there is none
+	 */
+	private int indexAt(long time) {
+		int i = Arrays.binarySearch(starts, time);
+		return i >= 0 ? i : -i - 2;
+	}
+}
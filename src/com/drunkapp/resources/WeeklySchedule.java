@@ -0,0 +1,202 @@
+package com.drunkapp.resources;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Weekly times during which blocking is active, e.g. Friday and Saturday
+ * from 21:00 to 06:00. Times are local wall clock times, so a window starts
+ * at 21:00 whether or not the clocks have changed that week.
+ * 
+ * A schedule can be written as text, with windows separated by commas, e.g.
+ * "FRI 21:00-06:00, SAT 21:00-06:00".
+ * 
+ * @author Liam
+ * 
+ */
+public final class WeeklySchedule {
+
+	/**
+	 * Names of the days, indexed by Calendar.DAY_OF_WEEK - 1.
+	 */
+	private static final String[] DAYS = { "SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT" };
+
+	/**
+	 * A single weekly window during which blocking is active.
+	 */
+	public static final class Window {
+
+		/**
+		 * Day the window starts on, as a Calendar.DAY_OF_WEEK.
+		 */
+		private final int day;
+
+		/**
+		 * Minute of the day the window starts at.
+		 */
+		private final int startMinute;
+
+		/**
+		 * Minute of the day the window ends at. If this is not after the start
+		 * the window ends on the following day.
+		 */
+		private final int endMinute;
+
+		/**
+		 * Parameterised constructor.
+		 * 
+		 * @param d Day the window starts on, e.g. Calendar.FRIDAY
+		 * @param start Minute of the day the window starts at
+		 * @param end Minute of the day the window ends at, which is on the
+		 *            following day if it is not after the start
+		 */
+		public Window(int d, int start, int end) {
+			if (d < 1 || d > 7) {
+				throw new IllegalArgumentException("Invalid day " + d);
+			}
+			if (start < 0 || start >= 1440 || end < 0 || end >= 1440) {
+				throw new IllegalArgumentException("Invalid times " + start + ", " + end);
+			}
+			day = d;
+			startMinute = start;
+			endMinute = end;
+		}
+
+		/**
+		 * 
+		 * @return Day the window starts on, as a Calendar.DAY_OF_WEEK
+		 */
+		public int getDay() {
+			return day;
+		}
+
+		/**
+		 * 
+		 * @return Minute of the day the window starts at
+		 */
+		public int getStartMinute() {
+			return startMinute;
+		}
+
+		/**
+		 * 
+		 * @return Minute of the day the window ends at
+		 */
+		public int getEndMinute() {
+			return endMinute;
+		}
+
+		/**
+		 * 
+		 * @return Whether or not the window ends on the day after it starts
+		 */
+		public boolean endsNextDay() {
+			return endMinute <= startMinute;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "%s %02d:%02d-%02d:%02d", DAYS[day - 1],
+					startMinute / 60, startMinute % 60, endMinute / 60, endMinute % 60);
+		}
+	}
+
+	/**
+	 * The windows of the schedule.
+	 */
+	private final List<Window> windows;
+
+	/**
+	 * Parameterised constructor.
+	 * 
+	 * @param w The windows of the schedule
+	 */
+	public WeeklySchedule(List<Window> w) {
+		windows = Collections.unmodifiableList(new ArrayList<Window>(w));
+	}
+
+	/**
+	 * Reads a schedule written as text, e.g. "FRI 21:00-06:00, SAT
+	 * 21:00-06:00".
+	 * 
+	 * @param text The schedule as text
+	 * @return The schedule, or null if the text is blank
+	 * @throws IllegalArgumentException If the text is not a valid schedule
+	 */
+	public static WeeklySchedule parse(String text) {
+		ArrayList<Window> windows = new ArrayList<Window>();
+
+		for (String part : text.split(",")) {
+			String w = part.trim().toUpperCase(Locale.US);
+			if (w.length() == 0) {
+				continue;
+			}
+
+			// e.g. "FRI 21:00-06:00"
+			if (w.length() != 15 || w.charAt(3) != ' ' || w.charAt(9) != '-') {
+				throw new IllegalArgumentException("Invalid window " + part);
+			}
+
+			int day = -1;
+			for (int i = 0; i < DAYS.length; i++) {
+				if (DAYS[i].equals(w.substring(0, 3))) {
+					day = i + 1;
+				}
+			}
+			if (day < 0) {
+				throw new IllegalArgumentException("Invalid day in " + part);
+			}
+
+			windows.add(new Window(day, parseTime(w.substring(4, 9)), parseTime(w.substring(10))));
+		}
+
+		return windows.isEmpty() ? null : new WeeklySchedule(windows);
+	}
+
+	/**
+	 * Reads a time of day written as HH:MM.
+	 * 
+	 * @param time The time as text
+	 * @return Minute of the day
+	 */
+	private static int parseTime(String time) {
+		if (time.charAt(2) != ':') {
+			throw new IllegalArgumentException("Invalid time " + time);
+		}
+		try {
+			int hours = Integer.parseInt(time.substring(0, 2));
+			int minutes = Integer.parseInt(time.substring(3));
+			if (hours > 23 || minutes > 59) {
+				throw new IllegalArgumentException("Invalid time " + time);
+			}
+			return hours * 60 + minutes;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid time " + time);
+		}
+	}
+
+	/**
+	 * 
+	 * @return The windows of the schedule
+	 */
+	public List<Window> getWindows() {
+		return windows;
+	}
+
+	/**
+	 * Writes the schedule as text that parse() can read back.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Window w : windows) {
+			if (sb.length() > 0) {
+				sb.append(", ");
+			}
+			sb.append(w);
+		}
+		return sb.toString();
+	}
+}
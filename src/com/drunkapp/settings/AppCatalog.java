@@ -0,0 +1,513 @@
+package com.drunkapp.settings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.HashSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import android.content.Context;
+
+import com.drunkapp.resources.BlockMatcher;
+
+/**
+ * Process-wide repository that owns the catalog of runnable applications.
+ * 
+ * The catalog is read from the shared file once per process and then kept in
+ * memory. Readers take an immutable snapshot, which costs nothing but a
+ * volatile read, and a new snapshot is only published when the catalog
+ * actually changes. The CatalogWriter saves published snapshots on a
+ * background thread, coalescing changes that arrive close together.
+ * Installed, removed and updated packages are applied one package at a
+ * time as the PackageChangeReceiver is told about them.
+ * 
+ * The full catalog is loaded the first time it is needed. Until then the
+ * ActivityHandlerThread only needs the blocked packages, which are read from
+ * their own section of the file without decoding any labels. These are read
+ * on the background thread by prepare() as soon as the process starts, so
+ * the UI thread only has to wait for them if it needs them first.
+ * 
+ * @author Liam
+ * 
+ */
+public class AppCatalog {
+
+	/**
+	 * The single instance used by the whole process.
+	 */
+	private static AppCatalog instance;
+
+	/**
+	 * RunnableAppHandler for reading and writing the shared file.
+	 */
+	private final RunnableAppHandler handler;
+
+	/**
+	 * The most recently published snapshot, or null if the full catalog has
+	 * not been loaded yet.
+	 */
+	private volatile CatalogSnapshot snapshot;
+
+	/**
+	 * Blocked packages read from the file before the full catalog was loaded.
+	 */
+	private volatile String[] blockedPackages;
+
+	/**
+	 * Extra block rules, or null if they have not been read yet.
+	 */
+	private ArrayList<String> rules;
+
+	/**
+	 * Block rules compiled from the blocked packages and the extra rules, or
+	 * null if they have changed since they were last compiled.
+	 */
+	private volatile BlockMatcher matcher;
+
+	/**
+	 * Saved block profiles and which of them is active.
+	 */
+	private final ProfileStore profiles;
+
+	/**
+	 * Background thread for package changes, reconciling and writing.
+	 */
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+	/**
+	 * Writes published snapshots to the shared file in the background.
+	 */
+	private final CatalogWriter writer;
+
+	/**
+	 * Whether or not a full reconcile has been done in this process.
+	 */
+	private boolean reconcileRequested;
+
+	/**
+	 * Returns the catalog for this process, loading it on first use.
+	 * 
+	 * @param c Any context, only the application context is retained
+	 * @return The shared AppCatalog
+	 */
+	public static synchronized AppCatalog getInstance(Context c) {
+		if (instance == null) {
+			instance = new AppCatalog(c.getApplicationContext());
+		}
+		return instance;
+	}
+
+	/**
+	 * Constructor that takes an application context. Nothing is read until
+	 * the catalog is first used.
+	 * 
+	 * @param c Application context
+	 */
+	private AppCatalog(Context c) {
+		handler = new RunnableAppHandler(c);
+		profiles = new ProfileStore(c);
+		writer = new CatalogWriter(handler, executor);
+	}
+
+	/**
+	 * Starts reading everything the monitor needs to make its first decision
+	 * on the background thread: the profiles, the extra rules and the blocked
+	 * packages, compiled into a matcher. On the first run this also scans the
+	 * system and creates the shared file. Anything that needs the catalog
+	 * before this has finished waits for it, so it only saves time.
+	 */
+	public void prepare() {
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				getBlockMatcher();
+			}
+		});
+	}
+
+	/**
+	 * Returns the current snapshot of the catalog. Apart from the first call,
+	 * which loads the catalog, this never blocks and never touches the disk.
+	 * 
+	 * @return The most recently published snapshot
+	 */
+	public CatalogSnapshot getSnapshot() {
+		CatalogSnapshot current = snapshot;
+		if (current == null) {
+			current = load();
+		}
+		return current;
+	}
+
+	/**
+	 * Returns the distinct package names of the blocked applications. If the
+	 * full catalog has not been loaded, only the blocked section of the file
+	 * is read.
+	 * 
+	 * @return Package names that must not be run, which must not be modified
+	 */
+	public String[] getBlockedPackages() {
+		CatalogSnapshot current = snapshot;
+		if (current != null) {
+			return current.getBlockedPackages();
+		}
+
+		synchronized (this) {
+			if (snapshot != null) {
+				return snapshot.getBlockedPackages();
+			}
+			if (blockedPackages == null) {
+				if (handler.fileExists()) {
+					blockedPackages = handler.getBlockedPackagesFromFile();
+				} else {
+					blockedPackages = load().getBlockedPackages();
+				}
+			}
+			return blockedPackages;
+		}
+	}
+
+	/**
+	 * Returns the block rules compiled into a matcher. If a profile is active
+	 * its precompiled matcher is returned, otherwise the selections made in
+	 * the settings screen are used. The rules are only compiled again after
+	 * they change, so apart from then this costs a couple of volatile reads.
+	 * 
+	 * @return The compiled block rules
+	 */
+	public BlockMatcher getBlockMatcher() {
+		BlockProfile profile = getActiveProfile();
+		if (profile != null) {
+			return profile.getMatcher();
+		}
+
+		BlockMatcher current = matcher;
+		if (current != null) {
+			return current;
+		}
+
+		synchronized (this) {
+			if (matcher == null) {
+				matcher = BlockMatcher.compile(getBlockedPackages(), getRules());
+			}
+			return matcher;
+		}
+	}
+
+	/**
+	 * Returns the extra block rules, which cover whole groups of packages or
+	 * single activities, e.g. "com.facebook.*" or "com.android.chrome/.Main".
+	 * 
+	 * @return Copy of the extra block rules
+	 */
+	public synchronized ArrayList<String> getRules() {
+		if (rules == null) {
+			rules = handler.getRulesFromFile();
+		}
+		return new ArrayList<String>(rules);
+	}
+
+	/**
+	 * Replaces the extra block rules and saves them in the background. They
+	 * take effect straight away.
+	 * 
+	 * @param r The new rules
+	 */
+	public synchronized void setRules(List<String> r) {
+		final ArrayList<String> copy = new ArrayList<String>(r);
+		rules = copy;
+		matcher = null;
+		if (profiles.isLoaded()) {
+			profiles.recompile(copy);
+		}
+
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				handler.writeRulesToFile(copy);
+			}
+		});
+	}
+
+	/**
+	 * 
+	 * @return The active block profile, or null if the selections made in
+	 *         the settings screen are used
+	 */
+	public BlockProfile getActiveProfile() {
+		if (!profiles.isLoaded()) {
+			profiles.load(getRules());
+		}
+		return profiles.getActive();
+	}
+
+	/**
+	 * 
+	 * @return Names of the saved block profiles
+	 */
+	public ArrayList<String> getProfileNames() {
+		getActiveProfile();
+		return profiles.getNames();
+	}
+
+	/**
+	 * Saves the applications currently selected in the settings screen as a
+	 * named block profile, replacing any profile with the same name.
+	 * 
+	 * @param name Name of the profile
+	 */
+	public synchronized void saveProfile(String name) {
+		getActiveProfile();
+
+		ArrayList<String> keys = new ArrayList<String>();
+		for (RunnableApp a : getSnapshot().getBlockedApps()) {
+			keys.add(a.getComponentKey());
+		}
+		profiles.put(name, keys, getRules());
+		saveProfiles();
+	}
+
+	/**
+	 * Deletes a block profile. If it was active, the selections made in the
+	 * settings screen are used instead.
+	 * 
+	 * @param name Name of the profile
+	 */
+	public synchronized void deleteProfile(String name) {
+		getActiveProfile();
+		profiles.remove(name);
+		saveProfiles();
+	}
+
+	/**
+	 * Switches to a block profile. The profile was compiled when it was
+	 * loaded or saved, so a running monitor picks it up on its next check
+	 * without reading anything or being restarted.
+	 * 
+	 * @param name Name of the profile, or null to use the selections made in
+	 *            the settings screen
+	 * @return Whether or not the profile exists
+	 */
+	public boolean setActiveProfile(String name) {
+		getActiveProfile();
+		if (!profiles.setActive(name)) {
+			return false;
+		}
+		saveProfiles();
+		return true;
+	}
+
+	/**
+	 * Writes the profiles on the catalog's background thread.
+	 */
+	private void saveProfiles() {
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				profiles.save();
+			}
+		});
+	}
+
+	/**
+	 * Loads the catalog from the shared file, or scans the system for
+	 * applications if the file has not been created yet.
+	 * 
+	 * @return The loaded snapshot
+	 */
+	private synchronized CatalogSnapshot load() {
+		if (snapshot == null) {
+			ArrayList<RunnableApp> apps;
+			if (handler.fileExists()) {
+				apps = handler.getAppsFromFile();
+			} else {
+				apps = handler.getSystemApps();
+				handler.writeAppsToFile(apps);
+			}
+
+			snapshot = new CatalogSnapshot(apps, 0);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Returns an editable copy of the catalog. The catalog is kept up to
+	 * date by the PackageChangeReceiver, so this does not scan the system.
+	 * 
+	 * @return ArrayList of runnable applications
+	 */
+	public ArrayList<RunnableApp> getAllApps() {
+		return getSnapshot().copyApps();
+	}
+
+	/**
+	 * Does a full reconcile the first time it is called in each process, in
+	 * case any package changes were missed while the application was not
+	 * running. Must not be called on the UI thread.
+	 * 
+	 * @return Whether or not a reconcile was done
+	 */
+	public boolean reconcileOnce() {
+		synchronized (this) {
+			if (reconcileRequested) {
+				return false;
+			}
+			reconcileRequested = true;
+		}
+
+		reconcile();
+		return true;
+	}
+
+	/**
+	 * Copies the selections made in the settings screen onto the catalog.
+	 * Applications are matched by package and class name, so applications
+	 * that were added or removed in the meantime are left as they are. If no
+	 * selection has changed the call is a no-op, otherwise a new snapshot is
+	 * published straight away and written to the shared file in the
+	 * background, so this never waits for the disk.
+	 * 
+	 * @param apps Applications with their selections
+	 * @return Whether or not a new snapshot was published
+	 */
+	public synchronized boolean update(List<RunnableApp> apps) {
+		HashMap<String, RunnableApp> edited = new HashMap<String, RunnableApp>(apps.size() * 2);
+		for (RunnableApp a : apps) {
+			edited.put(a.getComponentKey(), a);
+		}
+
+		ArrayList<RunnableApp> next = getSnapshot().copyApps();
+		for (RunnableApp a : next) {
+			RunnableApp e = edited.get(a.getComponentKey());
+			if (e != null) {
+				a.setSelected(e.isSelected());
+			}
+		}
+
+		return publish(next);
+	}
+
+	/**
+	 * Updates the catalog with the current launchable activities of a single
+	 * package after it has been installed, removed or changed. The work is
+	 * done on the catalog's background thread.
+	 * 
+	 * @param packageName Name of the package that changed
+	 */
+	public void onPackageChanged(final String packageName) {
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				ArrayList<RunnableApp> found = handler.getSystemApps(packageName);
+
+				synchronized (AppCatalog.this) {
+					publish(CatalogDiff.merge(getSnapshot().getApps(), found, packageName));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Reloads every label in the new locale. The LabelCache is cleared by the
+	 * locale change, so this does the full reconcile on the catalog's
+	 * background thread.
+	 */
+	public void onLocaleChanged() {
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				reconcile();
+			}
+		});
+	}
+
+	/**
+	 * Returns the last update time of an application's package, as it was
+	 * when the catalog last scanned it. The PackageChangeReceiver rescans
+	 * packages as they are updated, so this changes whenever the package
+	 * does, without asking the PackageManager. Must not be called on the UI
+	 * thread.
+	 * 
+	 * @param app The application
+	 * @return Last update time, or 0 if it is not known
+	 */
+	public long getLastUpdateTime(RunnableApp app) {
+		return handler.getLastUpdateTime(app);
+	}
+
+	/**
+	 * 
+	 * @return Number of labels found in the label cache in this process
+	 */
+	public int getLabelCacheHits() {
+		return handler.getLabelCacheHits();
+	}
+
+	/**
+	 * 
+	 * @return Number of labels that had to be loaded in this process
+	 */
+	public int getLabelCacheMisses() {
+		return handler.getLabelCacheMisses();
+	}
+
+	/**
+	 * Scans every launchable activity on the system and brings the catalog
+	 * in line with it. This is only a fallback for changes that the
+	 * PackageChangeReceiver did not see.
+	 */
+	public void reconcile() {
+		ArrayList<RunnableApp> found = handler.getSystemApps();
+
+		synchronized (this) {
+			publish(CatalogDiff.merge(getSnapshot().getApps(), found, null));
+		}
+	}
+
+	/**
+	 * Publishes the given applications as a new snapshot, unless they are the
+	 * same as the current snapshot. The new snapshot is visible to readers
+	 * straight away and written to the shared file in the background. Must
+	 * be called while holding the lock.
+	 * 
+	 * @param apps The full list of applications
+	 * @return Whether or not a new snapshot was published
+	 */
+	private boolean publish(List<RunnableApp> apps) {
+		CatalogSnapshot current = getSnapshot();
+		HashSet<String> changed = current.changedKeys(apps);
+
+		if (changed.isEmpty()) {
+			return false;
+		}
+
+		CatalogSnapshot next = new CatalogSnapshot(apps, current.getVersion() + 1);
+		snapshot = next;
+		writer.schedule(current, next, changed);
+
+		if (!Arrays.equals(current.getBlockedPackages(), next.getBlockedPackages())) {
+			matcher = BlockMatcher.compile(next.getBlockedPackages(), getRules());
+		}
+
+		return true;
+	}
+
+	/**
+	 * Starts writing any changes that have not been saved yet, rather than
+	 * waiting for further changes. Does not wait for the write to finish.
+	 */
+	public void flush() {
+		writer.flush();
+	}
+
+	/**
+	 * 
+	 * @return Whether or not there are changes that have not been written to
+	 *         the shared file yet
+	 */
+	public boolean hasUnsavedChanges() {
+		return writer.isDirty();
+	}
+}
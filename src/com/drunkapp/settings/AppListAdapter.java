@@ -1,101 +1,283 @@
-package com.drunkapp.settings;
-
-import java.util.ArrayList;
-
-import android.app.Activity;
-import android.view.LayoutInflater;
-import android.view.View;
-import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
-import android.widget.CheckBox;
-import android.widget.TextView;
-
-import com.drunkapp.R;
-
-/**
- * Extends the AppAdapter class for use with a listView.
- * 
- * @author Liam
- *
- */
-public class AppListAdapter extends ArrayAdapter<RunnableApp> {
-
-	/**
-	 * Array list of runnable applications
-	 */
-	private ArrayList<RunnableApp> apps;
-	
-	/**
-	 * Activity that is using this adapter
-	 */
-	private Activity activity;
-	
-	/**
-	 * Calls super constructor
-	 * 
-	 * @param a Parent activity that is using this resource
-	 * @param listItemViewResourceId Resource id of the grid item view
-	 * @param items ArrayList of items to be displayed
-	 */
-	public AppListAdapter(Activity a, int listItemViewResourceId, ArrayList<RunnableApp> items) {
-		super(a, listItemViewResourceId, items);
-		
-		apps = new ArrayList<RunnableApp>();
-		apps = items;
-		activity = a;
-	}
-
-	@Override
-	public View getView(final int position, View convertView, ViewGroup parent) {
-		View row = convertView;
-
-		if (row == null) {
-			LayoutInflater inflater = activity.getLayoutInflater();
-			row = inflater.inflate(R.layout.special_list, parent, false);
-		}
-
-		// Set the text 
-		TextView listItem = (TextView) row.findViewById(R.id.list_text);
-		listItem.setText(apps.get(position).getLabel());
-
-		// Set the checkbox (checked or unchecked)
-		final CheckBox cbx = (CheckBox) row.findViewById(R.id.list_checkbox);
-		cbx.setChecked(apps.get(position).isSelected());
-		
-		// Set on click functionality - check the CheckBox
-		row.setOnClickListener(new View.OnClickListener() {
-			@Override
-			public void onClick(View v) {
-				cbx.setChecked(!cbx.isChecked());
-				apps.set(position, apps.get(position).setSelected(cbx.isChecked()));
-			}
-		});
-		
-		return row;
-	}
-
-	/**
-	 * Used to obtain an array list of the applications that have been selected
-	 * as allowed by the parent.
-	 * 
-	 * @return ArrayList of allowed applications
-	 */
-	public ArrayList<RunnableApp> getAllApps() {
-		return apps;
-	}
-	
-	@Override
-	public int getCount() {
-		return apps.size();
-	}
-	
-	@Override
-	public RunnableApp getItem(int position) {
-		return apps.get(position);
-	}
-	
-	@Override
-	public long getItemId(int position) {
-		return position;
-	}
-}
+package com.drunkapp.settings;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import android.app.Activity;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
+import android.widget.CheckBox;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.drunkapp.R;
+
+/**
+ * Extends the AppAdapter class for use with a listView.
+ * 
+ * @author Liam
+ *
+ */
+public class AppListAdapter extends ArrayAdapter<RunnableApp> {
+
+	/**
+	 * Array list of runnable applications
+	 */
+	private ArrayList<RunnableApp> allApps;
+
+	/**
+	 * Applications that are shown, which are all of them unless the list is
+	 * being searched.
+	 */
+	private ArrayList<RunnableApp> apps;
+
+	/**
+	 * Index of the applications used to search the list.
+	 */
+	private SearchIndex index = new SearchIndex();
+
+	/**
+	 * Current search query, which is empty if the list is not being searched.
+	 */
+	private String query = "";
+	
+	/**
+	 * Activity that is using this adapter
+	 */
+	private Activity activity;
+
+	/**
+	 * Loads the icons of the applications in the background.
+	 */
+	private IconLoader icons;
+
+	/**
+	 * Applications whose selection has been toggled since the changes were
+	 * last taken, keyed by component key.
+	 */
+	private HashMap<String, RunnableApp> changed = new HashMap<String, RunnableApp>();
+	
+	/**
+	 * Calls super constructor
+	 * 
+	 * @param a Parent activity that is using this resource
+	 * @param listItemViewResourceId Resource id of the grid item view
+	 * @param items ArrayList of items to be displayed
+	 */
+	public AppListAdapter(Activity a, int listItemViewResourceId, ArrayList<RunnableApp> items) {
+		super(a, listItemViewResourceId, items);
+		
+		allApps = items;
+		apps = items;
+		activity = a;
+		icons = IconLoader.getInstance(a);
+
+		for (RunnableApp app : items) {
+			index.add(app);
+		}
+	}
+
+	@Override
+	public View getView(int position, View convertView, ViewGroup parent) {
+		View row = convertView;
+		RowHolder holder;
+
+		if (row == null) {
+			LayoutInflater inflater = activity.getLayoutInflater();
+			row = inflater.inflate(R.layout.special_list, parent, false);
+
+			// Look the views up once and keep a single listener per row
+			holder = new RowHolder(row);
+			row.setTag(holder);
+			row.setOnClickListener(holder);
+		}
+		else {
+			holder = (RowHolder) row.getTag();
+		}
+
+		holder.bind(apps.get(position));
+
+		return row;
+	}
+
+	/**
+	 * Holds the views of a row and its AppRow, so that a recycled row can be
+	 * bound again without looking up its views or creating a new listener or
+	 * icon request. Loading an icon cancels the one the row was still
+	 * waiting for.
+	 */
+	private class RowHolder implements View.OnClickListener, AppRow.Views {
+
+		/**
+		 * Shows the icon of the application.
+		 */
+		private final ImageView icon;
+
+		/**
+		 * Shows icons in the row, reused each time the row is bound.
+		 */
+		private final IconLoader.Request iconRequest;
+
+		/**
+		 * Shows the label of the application.
+		 */
+		private final TextView label;
+
+		/**
+		 * Shows whether or not the application is selected.
+		 */
+		private final CheckBox checkbox;
+
+		/**
+		 * What the row is showing.
+		 */
+		private final AppRow row = new AppRow(this, changed);
+
+		/**
+		 * Parameterised constructor
+		 * 
+		 * @param row The row's view
+		 */
+		RowHolder(View row) {
+			icon = (ImageView) row.findViewById(R.id.list_icon);
+			iconRequest = icons.newRequest(icon);
+			label = (TextView) row.findViewById(R.id.list_text);
+			checkbox = (CheckBox) row.findViewById(R.id.list_checkbox);
+		}
+
+		/**
+		 * Shows an application in the row.
+		 * 
+		 * @param a Application to be shown
+		 */
+		void bind(RunnableApp a) {
+			row.bind(a);
+		}
+
+		@Override
+		public void loadIcon(RunnableApp a) {
+			icons.load(iconRequest, a);
+		}
+
+		@Override
+		public void setLabel(CharSequence text) {
+			label.setText(text);
+		}
+
+		@Override
+		public void setChecked(boolean checked) {
+			checkbox.setChecked(checked);
+		}
+
+		/**
+		 * Toggles the application that the row is showing at the time of the
+		 * click, rather than the one it showed when it was created.
+		 */
+		@Override
+		public void onClick(View v) {
+			row.toggle();
+		}
+	}
+
+	/**
+	 * Adds a batch of applications to the end of the list, redrawing the
+	 * list only once for the whole batch.
+	 * 
+	 * @param batch Applications to be added
+	 */
+	public void addApps(List<RunnableApp> batch) {
+		allApps.addAll(batch);
+		for (RunnableApp a : batch) {
+			index.add(a);
+		}
+		refresh();
+	}
+
+	/**
+	 * Removes a batch of applications from the list, redrawing the list only
+	 * once for the whole batch.
+	 * 
+	 * @param keys Component keys of the applications to be removed
+	 */
+	public void removeApps(Set<String> keys) {
+		Iterator<RunnableApp> it = allApps.iterator();
+		while (it.hasNext()) {
+			if (keys.contains(it.next().getComponentKey())) {
+				it.remove();
+			}
+		}
+		for (String key : keys) {
+			index.remove(key);
+		}
+		refresh();
+	}
+
+	/**
+	 * Only shows the applications matching a search query. Selections are
+	 * kept on the applications themselves, so they are not lost while the
+	 * list is being searched.
+	 * 
+	 * @param q Text typed by the user, or an empty string to show every
+	 *          application
+	 */
+	public void setQuery(String q) {
+		query = q.trim();
+		refresh();
+	}
+
+	/**
+	 * Works out which applications are shown and redraws the list.
+	 */
+	private void refresh() {
+		apps = query.length() == 0 ? allApps : index.search(query);
+		notifyDataSetChanged();
+	}
+
+	/**
+	 * Returns the applications whose selection has been toggled since this
+	 * was last called, and starts tracking changes afresh.
+	 * 
+	 * @return ArrayList of toggled applications, which is empty if nothing
+	 *         was toggled
+	 */
+	public ArrayList<RunnableApp> takeChangedApps() {
+		ArrayList<RunnableApp> toggled = new ArrayList<RunnableApp>(changed.values());
+		changed.clear();
+		return toggled;
+	}
+
+	/**
+	 * Used to obtain an array list of the applications that have been selected
+	 * as allowed by the parent.
+	 * 
+	 * @return ArrayList of allowed applications
+	 */
+	public ArrayList<RunnableApp> getAllApps() {
+		return allApps;
+	}
+	
+	@Override
+	public int getCount() {
+		return apps.size();
+	}
+	
+	@Override
+	public RunnableApp getItem(int position) {
+		return apps.get(position);
+	}
+	
+	@Override
+	public long getItemId(int position) {
+		return apps.get(position).getStableId();
+	}
+
+	@Override
+	public boolean hasStableIds() {
+		return true;
+	}
+}
@@ -0,0 +1,109 @@
+package com.drunkapp.settings;
+
+import java.util.Map;
+
+/**
+ * What a row of the application list is showing, and what clicking it does.
+ * The AppListAdapter keeps one per row and binds it again each time the row
+ * is reused. A reused row only asks for an icon when it is bound to a
+ * different application, and a click toggles the application the row is
+ * showing at the time of the click.
+ * 
+ * The row's views are reached through the Views interface, so none of this
+ * depends on Android and it can be tested on the JVM.
+ * 
+ * @author Liam
+ * 
+ */
+final class AppRow {
+
+	/**
+	 * The views of a row.
+	 */
+	interface Views {
+
+		/**
+		 * Starts loading the icon of an application, replacing any icon the
+		 * row was still waiting for.
+		 * 
+		 * @param app Application whose icon is shown
+		 */
+		void loadIcon(RunnableApp app);
+
+		/**
+		 * 
+		 * @param label Label of the application
+		 */
+		void setLabel(CharSequence label);
+
+		/**
+		 * 
+		 * @param checked Whether or not the application is selected
+		 */
+		void setChecked(boolean checked);
+	}
+
+	/**
+	 * The views of the row.
+	 */
+	private final Views views;
+
+	/**
+	 * Applications toggled since the changes were last taken, keyed by
+	 * component key. Shared by every row of the list.
+	 */
+	private final Map<String, RunnableApp> changed;
+
+	/**
+	 * Application that the row is currently showing.
+	 */
+	private RunnableApp app;
+
+	/**
+	 * Parameterised constructor
+	 * 
+	 * @param v The views of the row
+	 * @param c Applications toggled since the changes were last taken, which
+	 *            clicks are recorded in
+	 */
+	AppRow(Views v, Map<String, RunnableApp> c) {
+		views = v;
+		changed = c;
+	}
+
+	/**
+	 * Shows an application in the row.
+	 * 
+	 * @param a Application to be shown
+	 */
+	void bind(RunnableApp a) {
+		// Redrawing the list binds most rows to the same application
+		// again, which already has its icon or is waiting for it
+		if (a != app) {
+			views.loadIcon(a);
+		}
+
+		app = a;
+		views.setLabel(a.getLabel());
+		views.setChecked(a.isSelected());
+	}
+
+	/**
+	 * Toggles the application that the row is showing and records the
+	 * change.
+	 */
+	void toggle() {
+		app.setSelected(!app.isSelected());
+		views.setChecked(app.isSelected());
+		changed.put(app.getComponentKey(), app);
+	}
+
+	/**
+	 * 
+	 * @return Application that the row is showing, or null if it has not
+	 *         been bound yet
+	 */
+	RunnableApp getApp() {
+		return app;
+	}
+}
@@ -0,0 +1,89 @@
+package com.drunkapp.settings;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import com.drunkapp.resources.BlockMatcher;
+
+/**
+ * A named list of applications to block, such as "Night out" or "Strict".
+ * The selection is stored as the sorted component keys of the selected
+ * applications, and the profile's BlockMatcher is compiled as soon as the
+ * profile is created, so switching to it costs nothing. Profiles are
+ * immutable.
+ * 
+ * @author Liam
+ * 
+ */
+public final class BlockProfile {
+
+	/**
+	 * Name of the profile.
+	 */
+	private final String name;
+
+	/**
+	 * Sorted component keys of the selected applications.
+	 */
+	private final String[] keys;
+
+	/**
+	 * The selection compiled together with the extra block rules.
+	 */
+	private final BlockMatcher matcher;
+
+	/**
+	 * Parameterised constructor.
+	 * 
+	 * @param n Name of the profile
+	 * @param k Component keys of the selected applications
+	 * @param rules Extra block rules to compile with the selection
+	 */
+	BlockProfile(String n, Collection<String> k, List<String> rules) {
+		name = n;
+		keys = k.toArray(new String[k.size()]);
+		Arrays.sort(keys);
+
+		LinkedHashSet<String> packages = new LinkedHashSet<String>();
+		for (String key : keys) {
+			packages.add(key.substring(0, key.indexOf('/')));
+		}
+		matcher = BlockMatcher.compile(packages.toArray(new String[packages.size()]), rules);
+	}
+
+	/**
+	 * Compiles the profile again with different extra block rules.
+	 * 
+	 * @param rules The new rules
+	 * @return A copy of this profile using the new rules
+	 */
+	BlockProfile withRules(List<String> rules) {
+		return new BlockProfile(name, Arrays.asList(keys), rules);
+	}
+
+	/**
+	 * 
+	 * @return Name of the profile
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * 
+	 * @return The profile compiled into a matcher
+	 */
+	public BlockMatcher getMatcher() {
+		return matcher;
+	}
+
+	/**
+	 * 
+	 * @return Sorted component keys of the selected applications
+	 */
+	String[] getKeys() {
+		return keys;
+	}
+}
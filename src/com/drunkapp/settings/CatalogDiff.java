@@ -0,0 +1,65 @@
+package com.drunkapp.settings;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Compares lists of applications. This does not depend on Android, so that
+ * it can be run and measured on a plain JVM.
+ * 
+ * @author Liam
+ * 
+ */
+final class CatalogDiff {
+
+	/**
+	 * Static methods only.
+	 */
+	private CatalogDiff() {
+	}
+
+	/**
+	 * Brings a list of known applications in line with the applications
+	 * found on the system, using a hash of their package and class names so
+	 * the cost is linear in the size of both lists. Known applications keep
+	 * their position and selection but take the label and update time that
+	 * were found, known applications that were not found are dropped, and
+	 * new applications are added at the end.
+	 * 
+	 * @param known Applications currently in the catalog
+	 * @param found Applications found on the system
+	 * @param packageName If not null, only applications in this package were
+	 *            scanned and all others are kept as they are
+	 * @return ArrayList of merged applications
+	 */
+	static ArrayList<RunnableApp> merge(List<RunnableApp> known, List<RunnableApp> found, String packageName) {
+		HashMap<String, RunnableApp> byKey = new HashMap<String, RunnableApp>(found.size() * 2);
+		for (RunnableApp a : found) {
+			byKey.put(a.getComponentKey(), a);
+		}
+
+		ArrayList<RunnableApp> merged = new ArrayList<RunnableApp>(known.size() + found.size());
+		for (RunnableApp a : known) {
+			if (packageName != null && !packageName.equals(a.getPackageName())) {
+				merged.add(a);
+				continue;
+			}
+
+			RunnableApp f = byKey.remove(a.getComponentKey());
+			if (f != null) {
+				// Takes the new label and update time, but keeps the selection
+				RunnableApp m = new RunnableApp(f);
+				m.setSelected(a.isSelected());
+				merged.add(m);
+			}
+		}
+
+		for (RunnableApp a : found) {
+			if (byKey.containsKey(a.getComponentKey())) {
+				merged.add(a);
+			}
+		}
+		return merged;
+	}
+}
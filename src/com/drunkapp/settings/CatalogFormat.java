@@ -0,0 +1,350 @@
+package com.drunkapp.settings;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Reads and writes the binary catalog file.
+ * 
+ * The file starts with a fixed header holding a magic number, the format
+ * version, the record and string counts, the offsets of each section and
+ * the generation of the file, which tells a CatalogJournal whether its
+ * records were written against this file or an older one. It
+ * is followed by an index of string offsets, a table of the distinct package
+ * and class names, the blocked section (the string IDs of every blocked
+ * package) and finally one record per application. Labels are only stored
+ * in the records, so the blocked packages can be read straight from a mapped
+ * file without decoding any of them.
+ * 
+ * @author Liam
+ * 
+ */
+final class CatalogFormat {
+
+	/**
+	 * Magic number at the start of every catalog file ("DKCT").
+	 */
+	static final int MAGIC = 0x444B4354;
+
+	/**
+	 * Current version of the format.
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * Size of the header in bytes.
+	 */
+	private static final int HEADER_SIZE = 32;
+
+	/**
+	 * Smallest size of a record in bytes: two string IDs, the flags and an
+	 * empty label.
+	 */
+	private static final int MIN_RECORD_SIZE = 11;
+
+	/**
+	 * Record flag for an application that has been selected to be blocked.
+	 */
+	private static final int FLAG_SELECTED = 1;
+
+	/**
+	 * Character set used for every string in the file.
+	 */
+	private static final String CHARSET = "UTF-8";
+
+	/**
+	 * Static methods only.
+	 */
+	private CatalogFormat() {
+	}
+
+	/**
+	 * Writes the given applications to the stream in the catalog format.
+	 * 
+	 * @param apps Applications to be written
+	 * @param generation Generation of the file, which should be different
+	 *            from that of the file it replaces
+	 * @param out Stream to write to, which is flushed but not closed
+	 * @throws IOException If the stream could not be written to
+	 */
+	static void write(List<RunnableApp> apps, int generation, OutputStream out) throws IOException {
+		HashMap<String, Integer> ids = new HashMap<String, Integer>();
+		ArrayList<String> strings = new ArrayList<String>();
+		int[] packageIds = new int[apps.size()];
+		int[] classIds = new int[apps.size()];
+
+		for (int i = 0; i < apps.size(); i++) {
+			packageIds[i] = intern(apps.get(i).getPackageName(), ids, strings);
+			classIds[i] = intern(apps.get(i).getClassName(), ids, strings);
+		}
+
+		// Each blocked package is only listed once, however many of its
+		// activities are selected.
+		boolean[] blocked = new boolean[strings.size()];
+		int blockedCount = 0;
+		for (int i = 0; i < apps.size(); i++) {
+			if (apps.get(i).isSelected() && !blocked[packageIds[i]]) {
+				blocked[packageIds[i]] = true;
+				blockedCount++;
+			}
+		}
+
+		int stringsOffset = HEADER_SIZE + 4 * strings.size();
+		int[] stringOffsets = new int[strings.size()];
+		ByteArrayOutputStream table = new ByteArrayOutputStream();
+		DataOutputStream tableOut = new DataOutputStream(table);
+		for (int i = 0; i < strings.size(); i++) {
+			stringOffsets[i] = stringsOffset + tableOut.size();
+			writeString(strings.get(i), tableOut);
+		}
+
+		int blockedOffset = stringsOffset + tableOut.size();
+		int recordsOffset = blockedOffset + 4 * blockedCount;
+
+		DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(out));
+
+		dos.writeInt(MAGIC);
+		dos.writeInt(VERSION);
+		dos.writeInt(apps.size());
+		dos.writeInt(strings.size());
+		dos.writeInt(blockedCount);
+		dos.writeInt(blockedOffset);
+		dos.writeInt(recordsOffset);
+		dos.writeInt(generation);
+
+		for (int offset : stringOffsets) {
+			dos.writeInt(offset);
+		}
+		table.writeTo(dos);
+
+		for (int i = 0; i < blocked.length; i++) {
+			if (blocked[i]) {
+				dos.writeInt(i);
+			}
+		}
+
+		for (int i = 0; i < apps.size(); i++) {
+			RunnableApp a = apps.get(i);
+			dos.writeInt(packageIds[i]);
+			dos.writeInt(classIds[i]);
+			dos.writeByte(a.isSelected() ? FLAG_SELECTED : 0);
+			writeString(a.getLabel() == null ? "" : a.getLabel().toString(), dos);
+		}
+
+		dos.flush();
+	}
+
+	/**
+	 * Reads every application from a catalog file.
+	 * 
+	 * @param file The catalog file
+	 * @return ArrayList of the applications in the file
+	 * @throws IOException If the file could not be read or is not valid
+	 */
+	static ArrayList<RunnableApp> read(File file) throws IOException {
+		ByteBuffer buf = map(file);
+
+		try {
+			int recordCount = readHeader(buf);
+			int recordsOffset = buf.getInt(24);
+			String[] strings = new String[buf.getInt(12)];
+			ArrayList<RunnableApp> apps = new ArrayList<RunnableApp>(recordCount);
+
+			buf.position(recordsOffset);
+			for (int i = 0; i < recordCount; i++) {
+				String packageName = getString(buf, buf.getInt(), strings);
+				String className = getString(buf, buf.getInt(), strings);
+				boolean selected = (buf.get() & FLAG_SELECTED) != 0;
+				String label = readString(buf);
+
+				apps.add(new RunnableApp(label, selected, packageName, className));
+			}
+			return apps;
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated catalog file");
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("Corrupt catalog file");
+		} catch (IllegalArgumentException e) {
+			// A string offset past the end of the file
+			throw new IOException("Corrupt catalog file");
+		}
+	}
+
+	/**
+	 * Reads only the names of the blocked packages from a catalog file. The
+	 * file is mapped and only the header, the blocked section and the names
+	 * it refers to are decoded.
+	 * 
+	 * @param file The catalog file
+	 * @return Names of every blocked package
+	 * @throws IOException If the file could not be read or is not valid
+	 */
+	static String[] readBlockedPackages(File file) throws IOException {
+		ByteBuffer buf = map(file);
+
+		try {
+			readHeader(buf);
+			String[] strings = new String[buf.getInt(12)];
+			String[] blocked = new String[buf.getInt(16)];
+			int blockedOffset = buf.getInt(20);
+
+			for (int i = 0; i < blocked.length; i++) {
+				blocked[i] = getString(buf, buf.getInt(blockedOffset + 4 * i), strings);
+			}
+			return blocked;
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated catalog file");
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("Corrupt catalog file");
+		} catch (IllegalArgumentException e) {
+			// A string offset past the end of the file
+			throw new IOException("Corrupt catalog file");
+		}
+	}
+
+	/**
+	 * Reads the generation of a catalog file.
+	 * 
+	 * @param file The catalog file
+	 * @return Generation the file was written with
+	 * @throws IOException If the file could not be read or is not valid
+	 */
+	static int readGeneration(File file) throws IOException {
+		ByteBuffer buf = map(file);
+		readHeader(buf);
+		return buf.getInt(28);
+	}
+
+	/**
+	 * Maps the whole of a file into memory for reading.
+	 * 
+	 * @param file File to be mapped
+	 * @return Read only buffer over the file
+	 * @throws IOException If the file could not be mapped
+	 */
+	private static ByteBuffer map(File file) throws IOException {
+		FileInputStream fis = new FileInputStream(file);
+		try {
+			FileChannel channel = fis.getChannel();
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return buf;
+		} finally {
+			fis.close();
+		}
+	}
+
+	/**
+	 * Checks the magic number and version of a catalog file, that its
+	 * sections start within the file and that each count fits in its
+	 * section, so a damaged count can't be used to size an array.
+	 * 
+	 * @param buf Buffer over the whole file
+	 * @return Number of records in the file
+	 * @throws IOException If the header is not valid
+	 */
+	private static int readHeader(ByteBuffer buf) throws IOException {
+		if (buf.limit() < HEADER_SIZE || buf.getInt(0) != MAGIC) {
+			throw new IOException("Not a catalog file");
+		}
+		if (buf.getInt(4) != VERSION) {
+			throw new IOException("Unsupported catalog version " + buf.getInt(4));
+		}
+		if (buf.getInt(20) < HEADER_SIZE || buf.getInt(20) > buf.limit()
+				|| buf.getInt(24) < buf.getInt(20) || buf.getInt(24) > buf.limit()) {
+			throw new IOException("Truncated catalog file");
+		}
+
+		int recordCount = buf.getInt(8);
+		int stringCount = buf.getInt(12);
+		int blockedCount = buf.getInt(16);
+		if (recordCount < 0 || stringCount < 0 || blockedCount < 0
+				|| 4L * stringCount > buf.getInt(20) - HEADER_SIZE
+				|| 4L * blockedCount > buf.getInt(24) - buf.getInt(20)
+				|| (long) MIN_RECORD_SIZE * recordCount > buf.limit() - buf.getInt(24)) {
+			throw new IOException("Corrupt catalog file");
+		}
+		return recordCount;
+	}
+
+	/**
+	 * Returns a string from the string table, decoding it the first time it
+	 * is used.
+	 * 
+	 * @param buf Buffer over the whole file
+	 * @param id ID of the string
+	 * @param strings Strings that have already been decoded
+	 * @return The string
+	 */
+	private static String getString(ByteBuffer buf, int id, String[] strings) {
+		if (strings[id] == null) {
+			ByteBuffer view = buf.duplicate();
+			view.position(buf.getInt(HEADER_SIZE + 4 * id));
+			strings[id] = readString(view);
+		}
+		return strings[id];
+	}
+
+	/**
+	 * Reads a length prefixed string from the current position of a buffer.
+	 * 
+	 * @param buf Buffer to read from
+	 * @return The string
+	 */
+	private static String readString(ByteBuffer buf) {
+		byte[] bytes = new byte[buf.getShort() & 0xFFFF];
+		buf.get(bytes);
+
+		try {
+			return new String(bytes, CHARSET);
+		} catch (UnsupportedEncodingException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Writes a length prefixed string.
+	 * 
+	 * @param s String to write
+	 * @param out Stream to write to
+	 * @throws IOException If the stream could not be written to
+	 */
+	private static void writeString(String s, DataOutputStream out) throws IOException {
+		byte[] bytes = s.getBytes(CHARSET);
+		if (bytes.length > 0xFFFF) {
+			throw new IOException("String too long for catalog: " + s.length());
+		}
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Adds a string to the string table if it is not already there.
+	 * 
+	 * @param s String to add
+	 * @param ids IDs of the strings already in the table
+	 * @param strings The string table
+	 * @return ID of the string
+	 */
+	private static int intern(String s, HashMap<String, Integer> ids, ArrayList<String> strings) {
+		Integer id = ids.get(s);
+		if (id == null) {
+			id = Integer.valueOf(strings.size());
+			ids.put(s, id);
+			strings.add(s);
+		}
+		return id.intValue();
+	}
+}
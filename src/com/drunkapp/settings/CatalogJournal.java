@@ -0,0 +1,364 @@
+package com.drunkapp.settings;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of changes made to the catalog since its file was last
+ * written in full.
+ * 
+ * Each change is a small record: an application was put (added or
+ * relabelled), removed or had its selection changed. Records are framed by
+ * their length and a CRC32 of their contents, and appended with a single
+ * write. On load they are replayed over the catalog file in order. Replay
+ * stops at the first record that is truncated or fails its checksum, which
+ * is what a crash during an append leaves behind, and the journal is cut
+ * back to the last good record.
+ * 
+ * The journal starts with the generation of the catalog file that its
+ * records apply to. Compacting writes a catalog file with a new generation
+ * before deleting the journal, so if the process dies in between, the
+ * journal no longer matches and is thrown away instead of replaying older
+ * changes over a newer catalog.
+ * 
+ * @author Liam
+ * 
+ */
+final class CatalogJournal {
+
+	/**
+	 * Record that adds an application, or replaces its label and selection.
+	 */
+	private static final int PUT = 1;
+
+	/**
+	 * Record that removes an application.
+	 */
+	private static final int REMOVE = 2;
+
+	/**
+	 * Record that changes the selection of an application.
+	 */
+	private static final int SELECT = 3;
+
+	/**
+	 * Magic number at the start of every journal ("DKJN").
+	 */
+	private static final int MAGIC = 0x444B4A4E;
+
+	/**
+	 * Size of the header in bytes, holding the magic number and the
+	 * generation.
+	 */
+	private static final int HEADER_SIZE = 8;
+
+	/**
+	 * Largest size in bytes that a valid record can have.
+	 */
+	static final int MAX_RECORD_SIZE = 4096;
+
+	/**
+	 * The journal file.
+	 */
+	private final File file;
+
+	/**
+	 * Parameterised constructor.
+	 * 
+	 * @param f The journal file, which need not exist yet
+	 */
+	CatalogJournal(File f) {
+		file = f;
+	}
+
+	/**
+	 * 
+	 * @return Size of the journal in bytes
+	 */
+	long length() {
+		return file.length();
+	}
+
+	/**
+	 * 
+	 * @return Whether or not the journal holds any records
+	 */
+	boolean isEmpty() {
+		return file.length() <= HEADER_SIZE;
+	}
+
+	/**
+	 * 
+	 * @return Generation of the catalog file that the journal applies to,
+	 *         or -1 if the journal is empty or damaged
+	 */
+	int getGeneration() {
+		if (file.length() < HEADER_SIZE) {
+			return -1;
+		}
+
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(file));
+			try {
+				return in.readInt() == MAGIC ? in.readInt() : -1;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Deletes the journal, once everything in it has been written to the
+	 * catalog file. If this fails the records are simply replayed again.
+	 */
+	void delete() {
+		file.delete();
+	}
+
+	/**
+	 * Appends records for the applications that changed between two
+	 * versions of the catalog, and waits for them to reach the disk. If the
+	 * journal applies to a different catalog file it is started again.
+	 * 
+	 * @param previous The catalog as it was last saved
+	 * @param next The catalog to be saved
+	 * @param keys Component keys of the applications that changed
+	 * @param generation Generation of the catalog file the records apply to
+	 * @throws IOException If the records could not be written, or a record
+	 *             would be larger than MAX_RECORD_SIZE, in which case
+	 *             nothing is written and the catalog should be written in
+	 *             full instead
+	 */
+	void append(List<RunnableApp> previous, List<RunnableApp> next, Collection<String> keys,
+			int generation) throws IOException {
+		HashMap<String, RunnableApp> before = new HashMap<String, RunnableApp>(previous.size() * 2);
+		for (RunnableApp a : previous) {
+			before.put(a.getComponentKey(), a);
+		}
+
+		ByteArrayOutputStream batch = new ByteArrayOutputStream();
+		ByteArrayOutputStream record = new ByteArrayOutputStream();
+		DataOutputStream batchOut = new DataOutputStream(batch);
+		DataOutputStream recordOut = new DataOutputStream(record);
+		CRC32 crc = new CRC32();
+		HashMap<String, RunnableApp> after = new HashMap<String, RunnableApp>(next.size() * 2);
+
+		// Go through the new catalog in order, so that added applications
+		// are appended in the same order when replayed
+		for (RunnableApp b : next) {
+			String key = b.getComponentKey();
+			after.put(key, b);
+			if (!keys.contains(key)) {
+				continue;
+			}
+
+			RunnableApp a = before.get(key);
+			record.reset();
+			if (a != null && String.valueOf(a.getLabel()).equals(String.valueOf(b.getLabel()))) {
+				if (a.isSelected() == b.isSelected()) {
+					continue;
+				}
+				recordOut.writeByte(SELECT);
+				writeKey(b, recordOut);
+				recordOut.writeBoolean(b.isSelected());
+			}
+			else {
+				recordOut.writeByte(PUT);
+				writeKey(b, recordOut);
+				recordOut.writeBoolean(b.isSelected());
+				recordOut.writeUTF(String.valueOf(b.getLabel()));
+			}
+			frame(record, crc, batchOut);
+		}
+
+		for (String key : keys) {
+			RunnableApp a = before.get(key);
+			if (a != null && !after.containsKey(key)) {
+				record.reset();
+				recordOut.writeByte(REMOVE);
+				writeKey(a, recordOut);
+				frame(record, crc, batchOut);
+			}
+		}
+
+		if (batch.size() == 0) {
+			return;
+		}
+
+		boolean restart = getGeneration() != generation;
+		FileOutputStream out = new FileOutputStream(file, !restart);
+		try {
+			if (restart) {
+				DataOutputStream header = new DataOutputStream(out);
+				header.writeInt(MAGIC);
+				header.writeInt(generation);
+			}
+			out.write(batch.toByteArray());
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Replays the journal over the applications read from the catalog file.
+	 * If the journal ends with a damaged record it is cut back to the last
+	 * good one, and if it applies to a different catalog file it is deleted
+	 * without being replayed.
+	 * 
+	 * @param base Applications read from the catalog file
+	 * @param generation Generation of the catalog file
+	 * @return The applications with every good record applied
+	 * @throws IOException If the journal could not be read
+	 */
+	ArrayList<RunnableApp> replay(List<RunnableApp> base, int generation) throws IOException {
+		LinkedHashMap<String, RunnableApp> apps = new LinkedHashMap<String, RunnableApp>(base.size() * 2);
+		for (RunnableApp a : base) {
+			apps.put(a.getComponentKey(), a);
+		}
+
+		if (file.exists() && getGeneration() != generation) {
+			delete();
+		}
+		else if (file.exists()) {
+			long good = HEADER_SIZE;
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			CRC32 crc = new CRC32();
+
+			try {
+				in.skipBytes(HEADER_SIZE);
+				while (true) {
+					int length = in.readInt();
+					int checksum = in.readInt();
+					if (length <= 0 || length > MAX_RECORD_SIZE) {
+						break;
+					}
+
+					byte[] bytes = new byte[length];
+					in.readFully(bytes);
+					crc.reset();
+					crc.update(bytes, 0, length);
+					if ((int) crc.getValue() != checksum) {
+						break;
+					}
+
+					apply(new DataInputStream(new ByteArrayInputStream(bytes)), apps);
+					good += 8 + length;
+				}
+			} catch (EOFException e) {
+				// End of the journal, or a record that was only partly written.
+			} finally {
+				in.close();
+			}
+
+			if (good < file.length()) {
+				truncate(good);
+			}
+		}
+
+		return new ArrayList<RunnableApp>(apps.values());
+	}
+
+	/**
+	 * Applies a single record.
+	 * 
+	 * @param in Contents of the record
+	 * @param apps Applications keyed by component key, in display order
+	 * @throws IOException If the record could not be read
+	 */
+	private static void apply(DataInputStream in, LinkedHashMap<String, RunnableApp> apps)
+			throws IOException {
+		int type = in.readByte();
+		String packageName = in.readUTF();
+		String className = in.readUTF();
+		String key = packageName + "/" + className;
+
+		switch (type) {
+		case PUT:
+			boolean selected = in.readBoolean();
+			// Replacing an existing key keeps its position
+			apps.put(key, new RunnableApp(in.readUTF(), selected, packageName, className));
+			break;
+		case REMOVE:
+			apps.remove(key);
+			break;
+		case SELECT:
+			RunnableApp a = apps.get(key);
+			if (a != null) {
+				a.setSelected(in.readBoolean());
+			}
+			break;
+		default:
+			throw new IOException("Unknown journal record " + type);
+		}
+	}
+
+	/**
+	 * Cuts the journal back to the given length.
+	 * 
+	 * @param length Length of the good records
+	 * @throws IOException If the journal could not be cut back
+	 */
+	private void truncate(long length) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(length);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Writes the package and class name that identify an application.
+	 * 
+	 * @param app The application
+	 * @param out Stream to write to
+	 * @throws IOException If the stream could not be written to
+	 */
+	private static void writeKey(RunnableApp app, DataOutputStream out) throws IOException {
+		out.writeUTF(app.getPackageName());
+		out.writeUTF(app.getClassName());
+	}
+
+	/**
+	 * Writes a record with its length and checksum.
+	 * 
+	 * @param record Contents of the record
+	 * @param crc Checksum to reuse
+	 * @param out Stream to write to
+	 * @throws IOException If the stream could not be written to, or the
+	 *             record is too large to be replayed
+	 */
+	private static void frame(ByteArrayOutputStream record, CRC32 crc, DataOutputStream out)
+			throws IOException {
+		if (record.size() > MAX_RECORD_SIZE) {
+			// Replay would take this for damage and drop every later record
+			throw new IOException("Journal record of " + record.size() + " bytes is too large");
+		}
+
+		byte[] bytes = record.toByteArray();
+		crc.reset();
+		crc.update(bytes, 0, bytes.length);
+
+		out.writeInt(bytes.length);
+		out.writeInt((int) crc.getValue());
+		out.write(bytes);
+	}
+}
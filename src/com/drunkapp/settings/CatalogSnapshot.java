@@ -0,0 +1,150 @@
+package com.drunkapp.settings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Immutable view of the application catalog at a point in time. Snapshots are
+ * published by the AppCatalog and can be read from any thread without
+ * locking, as nothing in a snapshot ever changes after it is created.
+ * 
+ * @author Liam
+ * 
+ */
+public final class CatalogSnapshot {
+
+	/**
+	 * Every application in the catalog, in display order.
+	 */
+	private final List<RunnableApp> apps;
+
+	/**
+	 * Applications that have been selected to be blocked.
+	 */
+	private final List<RunnableApp> blockedApps;
+
+	/**
+	 * Distinct package names of the blocked applications.
+	 */
+	private final String[] blockedPackages;
+
+	/**
+	 * Incremented each time a new snapshot is published.
+	 */
+	private final long version;
+
+	/**
+	 * Parameterised constructor. The applications are copied so that later
+	 * changes made by the caller are not visible through this snapshot.
+	 * 
+	 * @param a Applications in the catalog
+	 * @param v Version of this snapshot
+	 */
+	CatalogSnapshot(List<RunnableApp> a, long v) {
+		ArrayList<RunnableApp> all = new ArrayList<RunnableApp>(a.size());
+		ArrayList<RunnableApp> blocked = new ArrayList<RunnableApp>();
+		LinkedHashSet<String> packages = new LinkedHashSet<String>();
+
+		for (RunnableApp app : a) {
+			RunnableApp copy = new RunnableApp(app);
+			all.add(copy);
+
+			if (copy.isSelected()) {
+				blocked.add(copy);
+				packages.add(copy.getPackageName());
+			}
+		}
+
+		apps = Collections.unmodifiableList(all);
+		blockedApps = Collections.unmodifiableList(blocked);
+		blockedPackages = packages.toArray(new String[packages.size()]);
+		version = v;
+	}
+
+	/**
+	 * The returned applications are shared with every other reader of this
+	 * snapshot and must not be modified.
+	 * 
+	 * @return Every application in the catalog
+	 */
+	public List<RunnableApp> getApps() {
+		return apps;
+	}
+
+	/**
+	 * The returned applications are shared with every other reader of this
+	 * snapshot and must not be modified.
+	 * 
+	 * @return Applications that have been selected to be blocked
+	 */
+	public List<RunnableApp> getBlockedApps() {
+		return blockedApps;
+	}
+
+	/**
+	 * The returned array is shared with every other reader of this snapshot
+	 * and must not be modified.
+	 * 
+	 * @return Distinct package names of the blocked applications
+	 */
+	public String[] getBlockedPackages() {
+		return blockedPackages;
+	}
+
+	/**
+	 * 
+	 * @return Version of this snapshot
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns a mutable copy of the applications in this snapshot, suitable
+	 * for editing in the settings screen.
+	 * 
+	 * @return ArrayList of copied applications
+	 */
+	public ArrayList<RunnableApp> copyApps() {
+		ArrayList<RunnableApp> copy = new ArrayList<RunnableApp>(apps.size());
+
+		for (RunnableApp a : apps) {
+			copy.add(new RunnableApp(a));
+		}
+		return copy;
+	}
+
+	/**
+	 * Compares the given applications with this snapshot, matching them by
+	 * their package and class names.
+	 * 
+	 * @param other Applications to compare against
+	 * @return Component keys of every application that was added, removed,
+	 *         relabelled or had its selection changed, which is empty if
+	 *         nothing would change
+	 */
+	HashSet<String> changedKeys(List<RunnableApp> other) {
+		HashMap<String, RunnableApp> byKey = new HashMap<String, RunnableApp>(apps.size() * 2);
+		for (RunnableApp a : apps) {
+			byKey.put(a.getComponentKey(), a);
+		}
+
+		HashSet<String> changed = new HashSet<String>();
+		for (RunnableApp b : other) {
+			String key = b.getComponentKey();
+			RunnableApp a = byKey.remove(key);
+
+			if (a == null || a.isSelected() != b.isSelected()
+					|| !String.valueOf(a.getLabel()).equals(String.valueOf(b.getLabel()))) {
+				changed.add(key);
+			}
+		}
+
+		changed.addAll(byKey.keySet());
+		return changed;
+	}
+}
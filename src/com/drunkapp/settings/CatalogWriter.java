@@ -0,0 +1,142 @@
+package com.drunkapp.settings;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind persister for the catalog.
+ * 
+ * Snapshots are handed over as soon as they are published and written on
+ * the catalog's background thread a short time later, so that a burst of
+ * changes (e.g. several toggles in the settings screen) only costs a single
+ * write. The applications that changed since the last write are tracked by
+ * their component keys, and only those applications are written to the
+ * journal.
+ * 
+ * @author Liam
+ * 
+ */
+class CatalogWriter {
+
+	/**
+	 * Time in milliseconds to wait for further changes before writing.
+	 */
+	private static final long WRITE_DELAY = 500;
+
+	/**
+	 * RunnableAppHandler that writes the shared file.
+	 */
+	private final RunnableAppHandler handler;
+
+	/**
+	 * Background thread that the writes are done on.
+	 */
+	private final ScheduledExecutorService executor;
+
+	/**
+	 * Component keys of the applications that changed since the last write.
+	 */
+	private final HashSet<String> dirty = new HashSet<String>();
+
+	/**
+	 * Snapshot that was last written, which the journal records are worked
+	 * out against.
+	 */
+	private CatalogSnapshot written;
+
+	/**
+	 * Latest snapshot that has not been written yet, or null if there is
+	 * nothing to write.
+	 */
+	private CatalogSnapshot pending;
+
+	/**
+	 * The scheduled write, or null if none is scheduled.
+	 */
+	private ScheduledFuture<?> scheduled;
+
+	/**
+	 * Writes the pending snapshot, if any.
+	 */
+	private final Runnable writeTask = new Runnable() {
+		@Override
+		public void run() {
+			CatalogSnapshot s;
+			CatalogSnapshot previous;
+			HashSet<String> keys;
+			synchronized (CatalogWriter.this) {
+				s = pending;
+				previous = written;
+				keys = new HashSet<String>(dirty);
+				pending = null;
+				scheduled = null;
+				dirty.clear();
+				if (s != null) {
+					written = s;
+				}
+			}
+
+			if (s != null) {
+				handler.writeChanges(previous.getApps(), s.getApps(), keys);
+			}
+		}
+	};
+
+	/**
+	 * Parameterised constructor.
+	 * 
+	 * @param h RunnableAppHandler that writes the shared file
+	 * @param e Background thread that the writes are done on
+	 */
+	CatalogWriter(RunnableAppHandler h, ScheduledExecutorService e) {
+		handler = h;
+		executor = e;
+	}
+
+	/**
+	 * Schedules a snapshot to be written. If a write is already scheduled it
+	 * will write this snapshot instead of the older one.
+	 * 
+	 * @param previous The snapshot that s replaced
+	 * @param s The snapshot to be written
+	 * @param changed Component keys of the applications that changed
+	 */
+	synchronized void schedule(CatalogSnapshot previous, CatalogSnapshot s, Collection<String> changed) {
+		if (written == null) {
+			// Nothing has been written since the catalog was loaded
+			written = previous;
+		}
+		pending = s;
+		dirty.addAll(changed);
+
+		if (scheduled == null) {
+			scheduled = executor.schedule(writeTask, WRITE_DELAY, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * 
+	 * @return Whether or not there are changes that have not been written
+	 */
+	synchronized boolean isDirty() {
+		return pending != null;
+	}
+
+	/**
+	 * Writes any pending snapshot on the background thread straight away,
+	 * rather than waiting for further changes. Does not wait for the write,
+	 * so it can be called on the UI thread.
+	 */
+	synchronized void flush() {
+		if (pending == null) {
+			return;
+		}
+		if (scheduled != null) {
+			scheduled.cancel(false);
+		}
+		scheduled = executor.schedule(writeTask, 0, TimeUnit.MILLISECONDS);
+	}
+}
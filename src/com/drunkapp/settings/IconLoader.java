@@ -0,0 +1,434 @@
+package com.drunkapp.settings;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.pm.PackageManager.NameNotFoundException;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.LruCache;
+import android.widget.ImageView;
+
+/**
+ * Loads application icons for the settings list in the background.
+ *
+ * Icons are drawn once at the size they are shown at and kept in an LRU
+ * cache that is bounded by the bytes of its bitmaps. Each icon is also saved
+ * to the cache directory under the package's last update time, so after the
+ * first time the list is opened icons are decoded from small files rather
+ * than loaded from their packages. Both caches are keyed by the last update
+ * time as well as the component, so an updated package never shows its old
+ * icon, and the old file is deleted when the new one is saved. Files are
+ * named after their package, so those of an uninstalled package can be
+ * found and deleted too.
+ *
+ * Each row of the list keeps a single Request that is loaded again each
+ * time the row is bound, so showing an icon that is already in memory
+ * allocates nothing.
+ *
+ * @author Liam
+ *
+ */
+class IconLoader {
+
+	/**
+	 * Size that icons are shown at, in density independent pixels. This must
+	 * match the size of the icon in special_list.xml.
+	 */
+	private static final int ICON_SIZE_DIP = 40;
+
+	/**
+	 * Name of the directory in the cache directory that icons are saved in.
+	 */
+	private static final String DIR_NAME = "icons";
+
+	/**
+	 * Separates the package name from the rest of an icon's file name. It
+	 * never appears in a package name.
+	 */
+	private static final char SEPARATOR = '@';
+
+	/**
+	 * Proportion of the heap that the memory cache may use.
+	 */
+	private static final int MEMORY_FRACTION = 16;
+
+	/**
+	 * The single instance used by the whole process.
+	 */
+	private static IconLoader instance;
+
+	/**
+	 * PackageManager that icons are loaded from.
+	 */
+	private final PackageManager pm;
+
+	/**
+	 * Catalog that the last update times are read from.
+	 */
+	private final AppCatalog catalog;
+
+	/**
+	 * Directory that icons are saved in.
+	 */
+	private final File dir;
+
+	/**
+	 * Size of the icons in pixels.
+	 */
+	private final int size;
+
+	/**
+	 * Icons that have been loaded, keyed by icon key.
+	 */
+	private final LruCache<String, Bitmap> memory;
+
+	/**
+	 * Background thread that the icons are loaded on.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Handler used to show the icons on the main thread.
+	 */
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * Shows icons in a single ImageView, e.g. the one in a row of the list.
+	 * Only used on the main thread.
+	 */
+	class Request {
+
+		/**
+		 * View to show the icons in.
+		 */
+		private final ImageView view;
+
+		/**
+		 * Incremented each time the view is given a new icon to show, so
+		 * that a load that finishes late is not shown. Read by the
+		 * background thread to skip loads that are no longer wanted.
+		 */
+		private volatile int generation;
+
+		/**
+		 * The queued load, which can be taken off the queue if a new icon is
+		 * wanted before it starts, or null if there is none.
+		 */
+		private Future<?> pending;
+
+		/**
+		 * Parameterised constructor
+		 *
+		 * @param v View to show the icons in
+		 */
+		private Request(ImageView v) {
+			view = v;
+		}
+
+		/**
+		 * Stops waiting for the icon that was last asked for, e.g. because
+		 * the view is about to show another.
+		 */
+		void cancel() {
+			generation++;
+			if (pending != null) {
+				pending.cancel(false);
+				pending = null;
+			}
+		}
+	}
+
+	/**
+	 * Loads one icon for a Request on the background thread, then shows it
+	 * on the main thread unless the request has moved on in the meantime.
+	 */
+	private class Load implements Runnable {
+
+		/**
+		 * Request that the icon is shown for.
+		 */
+		private final Request request;
+
+		/**
+		 * Application whose icon is loaded.
+		 */
+		private final RunnableApp app;
+
+		/**
+		 * Generation of the request that the icon was asked for in.
+		 */
+		private final int generation;
+
+		/**
+		 * The loaded icon, handed to the main thread.
+		 */
+		private Bitmap icon;
+
+		/**
+		 * Parameterised constructor
+		 *
+		 * @param r Request that the icon is shown for
+		 * @param a Application whose icon is loaded
+		 */
+		Load(Request r, RunnableApp a) {
+			request = r;
+			app = a;
+			generation = r.generation;
+		}
+
+		@Override
+		public void run() {
+			if (icon != null) {
+				if (request.generation == generation) {
+					request.pending = null;
+					request.view.setImageBitmap(icon);
+				}
+				return;
+			}
+			if (request.generation != generation) {
+				return;
+			}
+
+			icon = loadIcon(app);
+			if (icon != null) {
+				memory.put(app.getIconKey(), icon);
+				mainHandler.post(this);
+			}
+		}
+	}
+
+	/**
+	 * Returns the loader for this process.
+	 *
+	 * @param c Any context, only the application context is retained
+	 * @return The shared IconLoader
+	 */
+	static synchronized IconLoader getInstance(Context c) {
+		if (instance == null) {
+			instance = new IconLoader(c.getApplicationContext());
+		}
+		return instance;
+	}
+
+	/**
+	 * Constructor that takes an application context.
+	 *
+	 * @param c Application context
+	 */
+	private IconLoader(Context c) {
+		pm = c.getPackageManager();
+		catalog = AppCatalog.getInstance(c);
+		dir = new File(c.getCacheDir(), DIR_NAME);
+		size = (int) (ICON_SIZE_DIP * c.getResources().getDisplayMetrics().density + 0.5f);
+
+		memory = new LruCache<String, Bitmap>((int) (Runtime.getRuntime().maxMemory() / MEMORY_FRACTION)) {
+			@Override
+			protected int sizeOf(String key, Bitmap value) {
+				return value.getRowBytes() * value.getHeight();
+			}
+		};
+
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(r, "IconLoader");
+			}
+		});
+
+		// Icons saved before the files were named after their package could
+		// never be deleted when the package was uninstalled
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				File[] old = dir.listFiles(new FilenameFilter() {
+					@Override
+					public boolean accept(File d, String name) {
+						return name.indexOf(SEPARATOR) < 0;
+					}
+				});
+				if (old != null) {
+					for (File f : old) {
+						f.delete();
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Makes a request that shows icons in an ImageView, to be kept for as
+	 * long as the view is.
+	 *
+	 * @param view View to show the icons in
+	 * @return The request
+	 */
+	Request newRequest(ImageView view) {
+		return new Request(view);
+	}
+
+	/**
+	 * Shows an application's icon in a request's view, instead of any icon
+	 * it was still waiting for. If the icon is in memory it is shown straight
+	 * away, otherwise the view is cleared and the icon is loaded in the
+	 * background. Only called on the main thread.
+	 *
+	 * @param request Request for the view to show the icon in
+	 * @param app Application whose icon is shown
+	 */
+	void load(Request request, RunnableApp app) {
+		request.cancel();
+
+		Bitmap icon = memory.get(app.getIconKey());
+		if (icon != null) {
+			request.view.setImageBitmap(icon);
+			return;
+		}
+
+		request.view.setImageDrawable(null);
+		request.pending = executor.submit(new Load(request, app));
+	}
+
+	/**
+	 * Deletes the icons of a package that has been uninstalled, from memory
+	 * and from the disk cache.
+	 *
+	 * @param packageName Name of the package
+	 */
+	void onPackageRemoved(String packageName) {
+		final String prefix = packageName + SEPARATOR;
+		final String componentPrefix = packageName + "/";
+
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				for (String key : memory.snapshot().keySet()) {
+					if (key.startsWith(componentPrefix)) {
+						memory.remove(key);
+					}
+				}
+				deleteFiles(prefix, null);
+			}
+		});
+	}
+
+	/**
+	 * Loads an icon from the disk cache, or from its package if it has not
+	 * been saved for the package's current version.
+	 *
+	 * @param app Application whose icon is loaded
+	 * @return The icon, or null if it could not be loaded
+	 */
+	private Bitmap loadIcon(RunnableApp app) {
+		long lastUpdateTime = app.getLastUpdateTime();
+		if (lastUpdateTime == 0) {
+			lastUpdateTime = catalog.getLastUpdateTime(app);
+		}
+		String prefix = app.getPackageName() + SEPARATOR + Long.toHexString(app.getStableId())
+				+ SEPARATOR;
+		File file = new File(dir, prefix + lastUpdateTime + ".png");
+
+		if (lastUpdateTime != 0 && file.exists()) {
+			Bitmap icon = BitmapFactory.decodeFile(file.getPath());
+			if (icon != null) {
+				return icon;
+			}
+		}
+
+		Bitmap icon = drawIcon(app);
+		if (icon != null && lastUpdateTime != 0) {
+			save(icon, file, prefix);
+		}
+		return icon;
+	}
+
+	/**
+	 * Loads an icon from its package and draws it at the size it is shown
+	 * at.
+	 *
+	 * @param app Application whose icon is loaded
+	 * @return The icon, or null if the application is no longer installed
+	 */
+	private Bitmap drawIcon(RunnableApp app) {
+		RunnableAppHandler.noteSlowCall("IconLoader.drawIcon");
+
+		Drawable d;
+		try {
+			d = pm.getActivityIcon(new ComponentName(app.getPackageName(), app.getClassName()));
+		} catch (NameNotFoundException e) {
+			return null;
+		}
+
+		Bitmap icon = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+		d.setBounds(0, 0, size, size);
+		d.draw(new Canvas(icon));
+		return icon;
+	}
+
+	/**
+	 * Saves an icon to the disk cache, deleting any that were saved for
+	 * older versions of its package.
+	 *
+	 * @param icon The icon
+	 * @param file File to save it to
+	 * @param prefix Start of the name of every file saved for the
+	 *            application
+	 */
+	private void save(Bitmap icon, File file, String prefix) {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			return;
+		}
+		deleteFiles(prefix, file.getName());
+
+		// Written to a temporary file first, so a reader never decodes a
+		// partly written icon
+		File temp = new File(dir, file.getName() + ".tmp");
+		try {
+			FileOutputStream out = new FileOutputStream(temp);
+			try {
+				icon.compress(Bitmap.CompressFormat.PNG, 100, out);
+			} finally {
+				out.close();
+			}
+			if (!temp.renameTo(file)) {
+				temp.delete();
+			}
+		} catch (IOException e) {
+			temp.delete();
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Deletes icons from the disk cache.
+	 *
+	 * @param prefix Start of the names of the files to delete
+	 * @param keep Name of a file to keep, or null to delete them all
+	 */
+	private void deleteFiles(final String prefix, final String keep) {
+		File[] files = dir.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File d, String name) {
+				return name.startsWith(prefix) && !name.equals(keep);
+			}
+		});
+		if (files != null) {
+			for (File f : files) {
+				f.delete();
+			}
+		}
+	}
+}
@@ -0,0 +1,306 @@
+package com.drunkapp.settings;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Persistent cache of application labels.
+ * 
+ * Loading a label can mean loading the resources of another package, which
+ * makes it the slowest part of scanning the system. Each label is stored
+ * against the package's last update time and the locale it was loaded in,
+ * so it is only loaded again once the package has been updated or the
+ * locale has changed. The PackageManager is reached through a Loader, so
+ * the cache does not depend on Android.
+ * 
+ * @author Liam
+ * 
+ */
+class LabelCache {
+
+	/**
+	 * Version of the cache file format.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Asks the system about the activities being scanned.
+	 */
+	interface Loader {
+
+		/**
+		 * Called at most once per package between saves.
+		 * 
+		 * @param packageName Name of the package
+		 * @return Last update time of the package, or 0 if it is not known
+		 */
+		long getLastUpdateTime(String packageName);
+
+		/**
+		 * Loads the label of an activity from its package.
+		 * 
+		 * @param packageName Package of the activity
+		 * @param className Class of the activity
+		 * @return The label, which may be null
+		 */
+		CharSequence loadLabel(String packageName, String className);
+	}
+
+	/**
+	 * A cached label.
+	 */
+	private static class Entry {
+
+		/**
+		 * Last update time of the package when the label was loaded.
+		 */
+		final long lastUpdateTime;
+
+		/**
+		 * The label.
+		 */
+		final String label;
+
+		/**
+		 * Whether or not the entry was used since the last save.
+		 */
+		boolean used;
+
+		Entry(long t, String l) {
+			lastUpdateTime = t;
+			label = l;
+		}
+	}
+
+	/**
+	 * The cache file.
+	 */
+	private final File file;
+
+	/**
+	 * Cached labels, keyed by RunnableApp.getComponentKey().
+	 */
+	private final HashMap<String, Entry> entries = new HashMap<String, Entry>();
+
+	/**
+	 * Locale that the cached labels were loaded in.
+	 */
+	private String locale;
+
+	/**
+	 * Last update time of each package seen in the current scan.
+	 */
+	private final HashMap<String, Long> updateTimes = new HashMap<String, Long>();
+
+	/**
+	 * Whether or not the cache has changed since it was saved.
+	 */
+	private boolean dirty;
+
+	/**
+	 * Whether or not the cache file has been read.
+	 */
+	private boolean loaded;
+
+	/**
+	 * Number of labels found in the cache.
+	 */
+	private int hits;
+
+	/**
+	 * Number of labels that had to be loaded.
+	 */
+	private int misses;
+
+	/**
+	 * Parameterised constructor. The cache file is not read until the first
+	 * label is looked up.
+	 * 
+	 * @param f The cache file, which need not exist yet
+	 */
+	LabelCache(File f) {
+		file = f;
+	}
+
+	/**
+	 * Returns the label of a launchable activity, loading it from its
+	 * package only if it is not cached for the package's current version and
+	 * the current locale.
+	 * 
+	 * @param packageName Package of the activity
+	 * @param className Class of the activity
+	 * @param currentLocale The current locale
+	 * @param loader Asks the system about the activity
+	 * @return The label
+	 */
+	synchronized CharSequence getLabel(String packageName, String className,
+			String currentLocale, Loader loader) {
+		if (!loaded) {
+			load();
+		}
+
+		if (!currentLocale.equals(locale)) {
+			entries.clear();
+			locale = currentLocale;
+			dirty = true;
+		}
+
+		String key = packageName + "/" + className;
+		long lastUpdateTime = getLastUpdateTime(packageName, loader);
+
+		Entry e = entries.get(key);
+		if (e != null && e.lastUpdateTime == lastUpdateTime) {
+			hits++;
+		} else {
+			misses++;
+			CharSequence label = loader.loadLabel(packageName, className);
+			e = new Entry(lastUpdateTime, label == null ? "" : label.toString());
+			entries.put(key, e);
+			dirty = true;
+		}
+
+		e.used = true;
+		return e.label;
+	}
+
+	/**
+	 * Returns the last update time of an activity's package when its label
+	 * was last loaded. This only reads the cache, so it never asks the
+	 * PackageManager.
+	 * 
+	 * @param key Component key of the activity
+	 * @return Last update time, or 0 if the label is not cached
+	 */
+	synchronized long getCachedUpdateTime(String key) {
+		if (!loaded) {
+			load();
+		}
+
+		Entry e = entries.get(key);
+		return e == null ? 0 : e.lastUpdateTime;
+	}
+
+	/**
+	 * Saves the cache if it has changed. If a full scan has just been done,
+	 * labels that were not used in it are dropped first.
+	 * 
+	 * @param fullScan Whether or not every launchable activity was looked up
+	 *            since the last save
+	 */
+	synchronized void save(boolean fullScan) {
+		if (fullScan) {
+			Iterator<Entry> it = entries.values().iterator();
+			while (it.hasNext()) {
+				if (!it.next().used) {
+					it.remove();
+					dirty = true;
+				}
+			}
+		}
+		for (Entry e : entries.values()) {
+			e.used = false;
+		}
+		updateTimes.clear();
+
+		if (!dirty) {
+			return;
+		}
+
+		try {
+			FileOutputStream fos = new FileOutputStream(file);
+			DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos));
+			try {
+				dos.writeInt(VERSION);
+				dos.writeUTF(locale);
+				dos.writeInt(entries.size());
+				for (Map.Entry<String, Entry> e : entries.entrySet()) {
+					dos.writeUTF(e.getKey());
+					dos.writeLong(e.getValue().lastUpdateTime);
+					dos.writeUTF(e.getValue().label);
+				}
+			} finally {
+				dos.close();
+			}
+			dirty = false;
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * 
+	 * @return Number of labels found in the cache
+	 */
+	synchronized int getHits() {
+		return hits;
+	}
+
+	/**
+	 * 
+	 * @return Number of labels that had to be loaded
+	 */
+	synchronized int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Reads the cache file, leaving the cache empty if it does not exist or
+	 * cannot be read.
+	 */
+	private void load() {
+		loaded = true;
+
+		if (!file.exists()) {
+			return;
+		}
+
+		try {
+			FileInputStream fis = new FileInputStream(file);
+			DataInputStream dis = new DataInputStream(new BufferedInputStream(fis));
+			try {
+				if (dis.readInt() != VERSION) {
+					return;
+				}
+				locale = dis.readUTF();
+				int count = dis.readInt();
+				for (int i = 0; i < count; i++) {
+					String key = dis.readUTF();
+					long lastUpdateTime = dis.readLong();
+					entries.put(key, new Entry(lastUpdateTime, dis.readUTF()));
+				}
+			} finally {
+				dis.close();
+			}
+		} catch (IOException e) {
+			entries.clear();
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Returns the last update time of a package, asking the Loader only once
+	 * per package per scan.
+	 * 
+	 * @param packageName Name of the package
+	 * @param loader Loader to ask
+	 * @return Last update time, or 0 if it is not known
+	 */
+	private long getLastUpdateTime(String packageName, Loader loader) {
+		Long time = updateTimes.get(packageName);
+
+		if (time == null) {
+			time = Long.valueOf(loader.getLastUpdateTime(packageName));
+			updateTimes.put(packageName, time);
+		}
+		return time.longValue();
+	}
+}
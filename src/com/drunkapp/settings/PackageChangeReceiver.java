@@ -0,0 +1,45 @@
+package com.drunkapp.settings;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Receives broadcasts for packages being installed, removed or changed and
+ * passes them on to the AppCatalog, so that the catalog can be kept up to
+ * date one package at a time rather than by rescanning the whole system.
+ * 
+ * A change of locale is also passed on, as every label needs to be loaded
+ * again in the new language. The saved icons of an uninstalled package are
+ * deleted.
+ * 
+ * @author Liam
+ * 
+ */
+public class PackageChangeReceiver extends BroadcastReceiver {
+
+	@Override
+	public void onReceive(Context context, Intent intent) {
+		if (Intent.ACTION_LOCALE_CHANGED.equals(intent.getAction())) {
+			AppCatalog.getInstance(context).onLocaleChanged();
+			return;
+		}
+
+		if (intent.getData() == null) {
+			return;
+		}
+
+		// A package that is being updated is removed and then added again,
+		// so only the second broadcast needs to be handled.
+		boolean removed = Intent.ACTION_PACKAGE_REMOVED.equals(intent.getAction());
+		if (removed && intent.getBooleanExtra(Intent.EXTRA_REPLACING, false)) {
+			return;
+		}
+
+		String packageName = intent.getData().getSchemeSpecificPart();
+		if (removed) {
+			IconLoader.getInstance(context).onPackageRemoved(packageName);
+		}
+		AppCatalog.getInstance(context).onPackageChanged(packageName);
+	}
+}
@@ -0,0 +1,245 @@
+package com.drunkapp.settings;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.content.Context;
+
+/**
+ * The saved block profiles and which of them is active.
+ * 
+ * The active profile is held in a volatile field, so the monitor reads it
+ * without locking and switching profile is a single reference swap. The
+ * profiles file is only read once, and written on the caller's thread by
+ * save().
+ * 
+ * @author Liam
+ * 
+ */
+class ProfileStore {
+
+	/**
+	 * Name of the profiles file.
+	 */
+	private static final String FILE_NAME = "kidsafe_profiles";
+
+	/**
+	 * Name of the file that new profiles are written to before they replace
+	 * the profiles file.
+	 */
+	private static final String TEMP_FILE_NAME = FILE_NAME + ".tmp";
+
+	/**
+	 * Version of the profiles file format.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The application context.
+	 */
+	private final Context context;
+
+	/**
+	 * Saved profiles by name, in the order they were created.
+	 */
+	private final LinkedHashMap<String, BlockProfile> profiles = new LinkedHashMap<String, BlockProfile>();
+
+	/**
+	 * The active profile, or null if the selections made in the settings
+	 * screen are used.
+	 */
+	private volatile BlockProfile active;
+
+	/**
+	 * Whether or not the profiles file has been read.
+	 */
+	private volatile boolean loaded;
+
+	/**
+	 * Parameterised constructor. The profiles file is not read until load()
+	 * is called.
+	 * 
+	 * @param c Application context
+	 */
+	ProfileStore(Context c) {
+		context = c;
+	}
+
+	/**
+	 * 
+	 * @return Whether or not the profiles file has been read
+	 */
+	boolean isLoaded() {
+		return loaded;
+	}
+
+	/**
+	 * Reads the profiles file, compiling every profile.
+	 * 
+	 * @param rules Extra block rules to compile the profiles with
+	 */
+	synchronized void load(List<String> rules) {
+		if (loaded) {
+			return;
+		}
+
+		File file = context.getFileStreamPath(FILE_NAME);
+		if (file.exists()) {
+			try {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+				try {
+					if (in.readInt() != VERSION) {
+						throw new IOException("Unknown profiles version");
+					}
+					String activeName = in.readUTF();
+					int count = in.readInt();
+
+					for (int i = 0; i < count; i++) {
+						String name = in.readUTF();
+						int size = in.readInt();
+						ArrayList<String> keys = new ArrayList<String>(size);
+						for (int j = 0; j < size; j++) {
+							keys.add(in.readUTF());
+						}
+						profiles.put(name, new BlockProfile(name, keys, rules));
+					}
+					active = profiles.get(activeName);
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		loaded = true;
+	}
+
+	/**
+	 * 
+	 * @return The active profile, or null if the selections made in the
+	 *         settings screen are used
+	 */
+	BlockProfile getActive() {
+		return active;
+	}
+
+	/**
+	 * 
+	 * @return Names of the saved profiles
+	 */
+	synchronized ArrayList<String> getNames() {
+		return new ArrayList<String>(profiles.keySet());
+	}
+
+	/**
+	 * Saves a profile, replacing any profile with the same name. If the
+	 * replaced profile was active the new one becomes active.
+	 * 
+	 * @param name Name of the profile
+	 * @param keys Component keys of the selected applications
+	 * @param rules Extra block rules to compile the profile with
+	 */
+	synchronized void put(String name, Collection<String> keys, List<String> rules) {
+		BlockProfile profile = new BlockProfile(name, keys, rules);
+		BlockProfile old = profiles.put(name, profile);
+
+		if (old != null && old == active) {
+			active = profile;
+		}
+	}
+
+	/**
+	 * Deletes a profile. If it was active, the selections made in the
+	 * settings screen are used instead.
+	 * 
+	 * @param name Name of the profile
+	 */
+	synchronized void remove(String name) {
+		BlockProfile old = profiles.remove(name);
+
+		if (old != null && old == active) {
+			active = null;
+		}
+	}
+
+	/**
+	 * Makes a profile active.
+	 * 
+	 * @param name Name of the profile, or null to use the selections made in
+	 *            the settings screen
+	 * @return Whether or not the profile exists
+	 */
+	synchronized boolean setActive(String name) {
+		if (name == null) {
+			active = null;
+			return true;
+		}
+
+		BlockProfile profile = profiles.get(name);
+		if (profile == null) {
+			return false;
+		}
+		active = profile;
+		return true;
+	}
+
+	/**
+	 * Compiles every profile again after the extra block rules change.
+	 * 
+	 * @param rules The new rules
+	 */
+	synchronized void recompile(List<String> rules) {
+		BlockProfile current = active;
+
+		for (Map.Entry<String, BlockProfile> e : profiles.entrySet()) {
+			BlockProfile profile = e.getValue().withRules(rules);
+			e.setValue(profile);
+			if (e.getKey().equals(current == null ? null : current.getName())) {
+				active = profile;
+			}
+		}
+	}
+
+	/**
+	 * Writes the profiles file. The profiles are written to a temporary file
+	 * which then replaces the profiles file.
+	 */
+	synchronized void save() {
+		try {
+			FileOutputStream fos = context.openFileOutput(TEMP_FILE_NAME, Context.MODE_PRIVATE);
+			DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos));
+			try {
+				dos.writeInt(VERSION);
+				dos.writeUTF(active == null ? "" : active.getName());
+				dos.writeInt(profiles.size());
+				for (BlockProfile p : profiles.values()) {
+					dos.writeUTF(p.getName());
+					dos.writeInt(p.getKeys().length);
+					for (String key : p.getKeys()) {
+						dos.writeUTF(key);
+					}
+				}
+			} finally {
+				dos.close();
+			}
+
+			if (!context.getFileStreamPath(TEMP_FILE_NAME).renameTo(
+					context.getFileStreamPath(FILE_NAME))) {
+				throw new IOException("Could not replace " + FILE_NAME);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -1,140 +1,314 @@
-package com.drunkapp.settings;
-
-import android.annotation.SuppressLint;
-import java.io.Serializable;
-import java.util.Locale;
-
-/**
- * Data class for application information.
- * 
- * @author Liam
- *
- */
-public class RunnableApp implements Serializable, Comparable<RunnableApp> {
-
-	/**
-	 * Object ID for serialisation.
-	 */
-	private static final long serialVersionUID = 1L;
-	
-	/**
-	 * Label to be displayed in the KidSafe launcher.
-	 */
-	private CharSequence label;
-	
-	/**
-	 * Is the application selected as allowed.
-	 */
-	private boolean selected;
-	
-	/**
-	 * Package name for the application.
-	 */
-	private String packageName;
-	
-	/**
-	 * Class name for the application.
-	 */
-	private String className;
-	
-	/**
-	 * Parameterised constructor for RunnableApp class
-	 * 	  
-	 * @param c Label used to identify the application
-	 * @param b Indicates whether an application is allowed
-	 * @param p Package name of the application
-	 * @param n Class name of the application
-	 */
-	public RunnableApp(CharSequence c, boolean b, String p, String n) {
-		label = c;
-		selected = b;
-		packageName = p;
-		className = n;
-	}
-	
-	/**
-	 * Copy constructor
-	 * 
-	 * @param r Application to have its information copied
-	 */
-	public RunnableApp(RunnableApp r) {
-		label = r.label;
-		selected = r.selected;
-		packageName = r.packageName;
-		className = r.className;
-	}
-	/**
-	 *
-	 * @return The label of the application
-	 */
-	public CharSequence getLabel() {
-		return label;
-	}
-	
-	/**
-	 * 
-	 * @return Whether the application is allowed
-	 */
-	public boolean isSelected() {
-		return selected;
-	}
-	
-	/**
-	 * 
-	 * @param b Whether the application should be allowed or not
-	 * @return This RunnableApp instance so that you can stack up method calls
-	 */
-	public RunnableApp setSelected(Boolean b) {
-		selected = b;
-		return this;
-	}
-	
-	/**
-	 * 
-	 * @return Package name of the application
-	 */
-	public String getPackageName() {
-		return packageName;
-	}
-	
-	/**
-	 * 
-	 * @return Class name of the application
-	 */
-	public String getClassName() {
-		return className;
-	}
-	
-	/**
-	 * 
-	 * @param c The new class name for the application
-	 */
-	public void setClassName(String c) {
-		className = c;
-	}
-	
-	/**
-	 * Compares this application against another application based
-	 * on their package name and class name
-	 * 
-	 * @param another Another application to compare to
-	 * @return Whether or not the applications are the same
-	 */
-	public boolean equals(RunnableApp another) {	
-		if(another.packageName.equals(this.packageName) && another.className.equals(this.className)) {
-			return true;
-		}
-		else {
-			return false;
-		}
-	}
-
-	/**
-	 * Overriding the standard compareTo to compare based on the
-	 * lower case label of the application.
-	 */
-	@Override
-	public int compareTo(RunnableApp another) {
-		return label.toString().toLowerCase().compareTo(another.label.toString().toLowerCase());
-	}
-}
+package com.drunkapp.settings;
+
+import java.io.Serializable;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Locale;
+
+/**
+ * Data class for application information.
+ * 
+ * @author Liam
+ *
+ */
+public class RunnableApp implements Serializable, Comparable<RunnableApp> {
+
+	/**
+	 * Object ID for serialisation.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Collator for the current locale, which every sort key is built with.
+	 * Replaced when the locale changes.
+	 */
+	private static volatile Collator collator;
+
+	/**
+	 * Locale that the collator was created for.
+	 */
+	private static volatile Locale collatorLocale;
+	
+	/**
+	 * Label to be displayed in the KidSafe launcher.
+	 */
+	private CharSequence label;
+	
+	/**
+	 * Is the application selected as allowed.
+	 */
+	private boolean selected;
+	
+	/**
+	 * Package name for the application.
+	 */
+	private String packageName;
+	
+	/**
+	 * Class name for the application.
+	 */
+	private String className;
+
+	/**
+	 * Locale-aware key for the label, built the first time the application
+	 * is compared.
+	 */
+	private transient CollationKey sortKey;
+
+	/**
+	 * Collator that the sort key was built with.
+	 */
+	private transient Collator sortCollator;
+
+	/**
+	 * Hash of the package name and class name, or 0 if it has not been
+	 * worked out yet.
+	 */
+	private transient long stableId;
+
+	/**
+	 * Last update time of the application's package when it was scanned,
+	 * or 0 if it is not known.
+	 */
+	private transient long lastUpdateTime;
+
+	/**
+	 * Key of the application's icon, or null if it has not been built yet.
+	 */
+	private transient String iconKey;
+	
+	/**
+	 * Parameterised constructor for RunnableApp class
+	 * 	  
+	 * @param c Label used to identify the application
+	 * @param b Indicates whether an application is allowed
+	 * @param p Package name of the application
+	 * @param n Class name of the application
+	 */
+	public RunnableApp(CharSequence c, boolean b, String p, String n) {
+		label = c;
+		selected = b;
+		packageName = p;
+		className = n;
+	}
+	
+	/**
+	 * Copy constructor
+	 * 
+	 * @param r Application to have its information copied
+	 */
+	public RunnableApp(RunnableApp r) {
+		label = r.label;
+		selected = r.selected;
+		packageName = r.packageName;
+		className = r.className;
+		sortKey = r.sortKey;
+		sortCollator = r.sortCollator;
+		stableId = r.stableId;
+		lastUpdateTime = r.lastUpdateTime;
+		iconKey = r.iconKey;
+	}
+
+	/**
+	 *
+	 * @return The label of the application
+	 */
+	public CharSequence getLabel() {
+		return label;
+	}
+	
+	/**
+	 * 
+	 * @return Whether the application is allowed
+	 */
+	public boolean isSelected() {
+		return selected;
+	}
+	
+	/**
+	 * 
+	 * @param b Whether the application should be allowed or not
+	 * @return This RunnableApp instance so that you can stack up method calls
+	 */
+	public RunnableApp setSelected(Boolean b) {
+		selected = b;
+		return this;
+	}
+	
+	/**
+	 * 
+	 * @return Package name of the application
+	 */
+	public String getPackageName() {
+		return packageName;
+	}
+	
+	/**
+	 * 
+	 * @return Class name of the application
+	 */
+	public String getClassName() {
+		return className;
+	}
+	
+	/**
+	 * 
+	 * @param c The new class name for the application
+	 */
+	public void setClassName(String c) {
+		className = c;
+		stableId = 0;
+		iconKey = null;
+	}
+
+	/**
+	 * 
+	 * @return Last update time of the application's package when it was
+	 *         scanned, or 0 if it is not known
+	 */
+	public long getLastUpdateTime() {
+		return lastUpdateTime;
+	}
+
+	/**
+	 * 
+	 * @param t Last update time of the application's package
+	 */
+	public void setLastUpdateTime(long t) {
+		lastUpdateTime = t;
+		iconKey = null;
+	}
+
+	/**
+	 * Gets a key for the application's icon, which changes when its package
+	 * is updated so that an old icon is never shown for the new version.
+	 * It is built once and kept, so looking it up for each row does not
+	 * allocate.
+	 * 
+	 * @return Key of the icon
+	 */
+	public String getIconKey() {
+		String key = iconKey;
+
+		if (key == null) {
+			key = getComponentKey() + "@" + lastUpdateTime;
+			iconKey = key;
+		}
+		return key;
+	}
+	
+	/**
+	 * 
+	 * @return Key that identifies the application by its package name and
+	 *         class name
+	 */
+	public String getComponentKey() {
+		return packageName + "/" + className;
+	}
+	
+	/**
+	 * Gets an ID that identifies the application by its package name and
+	 * class name, and stays the same wherever the application is in a list.
+	 * It is a 64-bit FNV-1a hash, worked out once without allocating.
+	 * 
+	 * @return ID of the application
+	 */
+	public long getStableId() {
+		long id = stableId;
+
+		if (id == 0) {
+			id = 0xcbf29ce484222325L;
+			id = hash(id, packageName);
+			id = (id ^ '/') * 0x100000001b3L;
+			id = hash(id, className);
+			stableId = id;
+		}
+		return id;
+	}
+
+	/**
+	 * Adds the characters of a string to an FNV-1a hash.
+	 * 
+	 * @param h The hash so far
+	 * @param s String to be added
+	 * @return The new hash
+	 */
+	private static long hash(long h, String s) {
+		for (int i = 0; i < s.length(); i++) {
+			h = (h ^ s.charAt(i)) * 0x100000001b3L;
+		}
+		return h;
+	}
+	
+	/**
+	 * Compares this application against another application based
+	 * on their package name and class name
+	 * 
+	 * @param another Another application to compare to
+	 * @return Whether or not the applications are the same
+	 */
+	public boolean equals(RunnableApp another) {	
+		if(another.packageName.equals(this.packageName) && another.className.equals(this.className)) {
+			return true;
+		}
+		else {
+			return false;
+		}
+	}
+
+	/**
+	 * Compares applications by the sort key of their labels, then by package
+	 * name and class name so that applications with the same label are never
+	 * treated as the same application.
+	 */
+	@Override
+	public int compareTo(RunnableApp another) {
+		int result = getSortKey().compareTo(another.getSortKey());
+
+		if (result == 0) {
+			result = packageName.compareTo(another.packageName);
+		}
+		if (result == 0) {
+			result = className.compareTo(another.className);
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the sort key for the label, building it if it has not been built
+	 * for the current locale yet.
+	 * 
+	 * @return The sort key of the label
+	 */
+	private CollationKey getSortKey() {
+		Collator c = getCollator();
+
+		if (sortKey == null || sortCollator != c) {
+			// Collators are not thread safe
+			synchronized (c) {
+				sortKey = c.getCollationKey(label.toString());
+			}
+			sortCollator = c;
+		}
+		return sortKey;
+	}
+
+	/**
+	 * Gets the collator for the current locale. Case is ignored, but accents
+	 * are not, which matches how the labels are sorted by the launcher.
+	 * 
+	 * @return The collator for the current locale
+	 */
+	private static Collator getCollator() {
+		Locale locale = Locale.getDefault();
+		Collator c = collator;
+
+		if (c == null || !locale.equals(collatorLocale)) {
+			c = Collator.getInstance(locale);
+			c.setStrength(Collator.SECONDARY);
+			collatorLocale = locale;
+			collator = c;
+		}
+		return c;
+	}
+}
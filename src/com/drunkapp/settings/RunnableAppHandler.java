@@ -1,215 +1,520 @@
-package com.drunkapp.settings;
-
-import java.io.EOFException;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.TreeSet;
-
-import android.content.Context;
-import android.content.Intent;
-import android.content.pm.ResolveInfo;
-
-/**
- * Class that handles the applications that have been selected as allowable by
- * the parent. It will access the applications from a shared file, which enables
- * use by any of the classes within this application.
- * 
- * @author Liam
- * 
- */
-public class RunnableAppHandler {
-
-	/**
-	 * Name of the shared file.
-	 */
-	private static final String FILE_NAME = "kidsafe_runnable_apps";
-	
-	/**
-	 * The application context.
-	 */
-	private Context context;
-
-
-	/**
-	 * Constructor that takes an application context and creates the file used
-	 * to store application information.
-	 * 
-	 * @param c Application context
-	 */
-	public RunnableAppHandler(Context c) {
-		context = c;		
-		
-		if (!fileExists()) {
-			writeAppsToFile(getSystemApps());
-		}
-	}
-
-	/**
-	 * Returns all applications that are runnable on the system i.e. they have
-	 * an icon in the application drawer. This will pull all of the application
-	 * information from the shared file.
-	 * 
-	 * @return ArrayList of runnable applications
-	 */
-	public ArrayList<RunnableApp> getAllApps() {
-		ArrayList<RunnableApp> apps = new ArrayList<RunnableApp>();
-		apps.addAll(getAppsFromFile());
-		apps.addAll(getNewApps());
-		
-		return apps;
-	}
-
-	/**
-	 * Returns all applications that have been selected by the user to be blocked.
-	 * This will pull the application information only for allowed applications 
-	 * from the shared file.
-	 * 
-	 * @return ArrayList of blocked applications
-	 */
-	public ArrayList<RunnableApp> getBlockedApps() {
-		ArrayList<RunnableApp> allApps = new ArrayList<RunnableApp>();
-		ArrayList<RunnableApp> blockedApps = new ArrayList<RunnableApp>();
-
-		allApps = getAppsFromFile();
-		
-		for(RunnableApp a : allApps) {
-			if(a.isSelected()) {
-				blockedApps.add(a);
-			}
-		}
-		return blockedApps;
-	}
-
-	/**
-	 * Writes all of the given applications to the shared file.
-	 * 
-	 * @param apps ArrayList of allowed applications to be stored
-	 */
-	public void writeAppsToFile(ArrayList<RunnableApp> apps) {
-		try {
-			
-			FileOutputStream fos = context.openFileOutput(FILE_NAME,
-					Context.MODE_PRIVATE);
-			ObjectOutputStream oos = new ObjectOutputStream(fos);
-
-			for (RunnableApp app : apps) {
-				oos.writeObject(app);
-			}
-
-			oos.close();
-			fos.close();
-
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-	}
-
-	/**
-	 * Checks whether or not the shared file exists in memory.
-	 * 
-	 * @return Whether or not the file exists
-	 */
-	private boolean fileExists() {
-		try {
-			FileInputStream in = context.openFileInput(FILE_NAME);
-			in.close();
-			return true;
-		} catch (Exception e) {
-			return false;
-		}
-	}
-	
-	/**
-	 * Gets all of the application information that is stored on 
-	 * the shared file.
-	 * 
-	 * @return ArrayList of the applications on the file
-	 */
-	private ArrayList<RunnableApp> getAppsFromFile() {
-		ArrayList<RunnableApp> apps = new ArrayList<RunnableApp>();
-
-		if (fileExists()) {
-			try {
-				FileInputStream fis = context.openFileInput(FILE_NAME);
-				ObjectInputStream ois = new ObjectInputStream(fis);
-
-				RunnableApp a = new RunnableApp((RunnableApp) ois.readObject());
-				while (a != null) {
-					apps.add(a);
-					a = new RunnableApp((RunnableApp) ois.readObject());
-				}
-				ois.close();
-				fis.close();
-
-			} catch (EOFException e) {		
-				// Return the applications, this exception will be thrown
-				return apps;
-			} catch (IOException e) {
-				e.printStackTrace();
-			} catch (ClassNotFoundException e) {
-				e.printStackTrace();
-			}
-		}
-		return apps;
-	}
-	
-	/**
-	 * Get all of the applications that can be launched from the 
-	 * Android system i.e. those which sit in the application drawer.
-	 * 
-	 * @return ArrayList of system applications
-	 */
-	private ArrayList<RunnableApp> getSystemApps() {
-		ArrayList<RunnableApp> apps = new ArrayList<RunnableApp>();		
-		TreeSet<RunnableApp> sorted = new TreeSet<RunnableApp>();
-
-		final Intent mainIntent = new Intent(Intent.ACTION_MAIN, null)
-				.addCategory(Intent.CATEGORY_LAUNCHER);
-		final List<ResolveInfo> appInfo = context.getPackageManager()
-				.queryIntentActivities(mainIntent, 0);
-
-		for(ResolveInfo a : appInfo) {
-			sorted.add(new RunnableApp(a.loadLabel(context
-					.getPackageManager()), false,
-					a.activityInfo.packageName,
-					a.activityInfo.name));
-		}
-		
-		apps.addAll(sorted);
-		
-		return apps;
-	}
-
-	/**
-	 * Gets any new applications that have been installed
-	 * 
-	 * @return ArrayList of new applications
-	 */
-	private ArrayList<RunnableApp> getNewApps() {
-		ArrayList<RunnableApp> systemApps = new ArrayList<RunnableApp>();
-		ArrayList<RunnableApp> apps = new ArrayList<RunnableApp>();
-		ArrayList<RunnableApp> newApps = new ArrayList<RunnableApp>();
-		
-		systemApps = getSystemApps();
-		
-		apps.addAll(getAppsFromFile());
-		for(RunnableApp a : systemApps) {
-			boolean isNew = true;
-			
-			for(RunnableApp b : apps) {
-				if(a.equals(b))
-					isNew = false;
-			}
-			if(isNew) {
-				newApps.add(a);
-			}
-		}
-		
-		return newApps;		
-	}
-}
\ No newline at end of file
+package com.drunkapp.settings;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.PushbackInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.PackageManager.NameNotFoundException;
+import android.content.pm.ResolveInfo;
+import android.os.Build;
+import android.os.StrictMode;
+
+import com.drunkapp.diagnostics.MonitorMetrics;
+
+/**
+ * Class that handles the applications that have been selected as allowable by
+ * the parent. It will access the applications from a shared file, which enables
+ * use by any of the classes within this application.
+ * 
+ * @author Liam
+ * 
+ */
+public class RunnableAppHandler {
+
+	/**
+	 * Name of the shared file.
+	 */
+	private static final String FILE_NAME = "kidsafe_catalog";
+
+	/**
+	 * Name of the file that a new catalog is written to before it replaces
+	 * the shared file.
+	 */
+	private static final String TEMP_FILE_NAME = FILE_NAME + ".tmp";
+
+	/**
+	 * Name of the shared file used before the catalog format was introduced.
+	 */
+	private static final String LEGACY_FILE_NAME = "kidsafe_runnable_apps";
+
+	/**
+	 * Name of the journal of changes made since the shared file was last
+	 * written in full.
+	 */
+	private static final String JOURNAL_FILE_NAME = FILE_NAME + ".journal";
+
+	/**
+	 * Size in bytes after which the journal is compacted into the shared
+	 * file.
+	 */
+	private static final long COMPACT_SIZE = 16 * 1024;
+
+	/**
+	 * Name of the file that caches the labels of launchable applications.
+	 */
+	private static final String LABELS_FILE_NAME = "kidsafe_labels";
+
+	/**
+	 * Name of the file holding the extra block rules, one per line.
+	 */
+	private static final String RULES_FILE_NAME = "kidsafe_rules";
+	
+	/**
+	 * The application context.
+	 */
+	private Context context;
+
+	/**
+	 * Cache of the labels of launchable applications.
+	 */
+	private LabelCache labels;
+
+	/**
+	 * Journal of changes made since the shared file was last written.
+	 */
+	private CatalogJournal journal;
+
+
+	/**
+	 * Constructor that takes an application context. The shared file is not
+	 * touched until one of the read or write methods is called.
+	 * 
+	 * @param c Application context
+	 */
+	public RunnableAppHandler(Context c) {
+		context = c;
+		labels = new LabelCache(c.getFileStreamPath(LABELS_FILE_NAME));
+		journal = new CatalogJournal(c.getFileStreamPath(JOURNAL_FILE_NAME));
+	}
+
+	/**
+	 * Writes all of the given applications to the shared file. The
+	 * applications are written to a temporary file which then replaces the
+	 * shared file, so a reader never sees a partly written catalog. The
+	 * journal is then cleared, as the shared file includes all of it. The
+	 * new file has a new generation, so the journal is ignored if the
+	 * process dies before it is cleared.
+	 * 
+	 * @param apps List of applications to be stored
+	 * @return Whether or not the applications were written
+	 */
+	public synchronized boolean writeAppsToFile(List<RunnableApp> apps) {
+		try {
+			int generation = Math.max(getGeneration(), journal.getGeneration()) + 1;
+			
+			FileOutputStream fos = context.openFileOutput(TEMP_FILE_NAME,
+					Context.MODE_PRIVATE);
+			try {
+				CatalogFormat.write(apps, generation, fos);
+				fos.getFD().sync();
+			} finally {
+				fos.close();
+			}
+
+			if (!context.getFileStreamPath(TEMP_FILE_NAME).renameTo(
+					context.getFileStreamPath(FILE_NAME))) {
+				throw new IOException("Could not replace " + FILE_NAME);
+			}
+			journal.delete();
+			return true;
+
+		} catch (Exception e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Saves the applications that changed since the catalog was last saved.
+	 * Normally only a few bytes per change are appended to the journal, but
+	 * once the journal has grown past COMPACT_SIZE the whole catalog is
+	 * written instead and the journal starts again.
+	 * 
+	 * @param previous The catalog as it was last saved
+	 * @param next The catalog to be saved
+	 * @param keys Component keys of the applications that changed
+	 */
+	synchronized void writeChanges(List<RunnableApp> previous, List<RunnableApp> next,
+			Collection<String> keys) {
+		int generation = getGeneration();
+		if (journal.length() >= COMPACT_SIZE || generation < 0) {
+			writeAppsToFile(next);
+			return;
+		}
+
+		try {
+			journal.append(previous, next, keys, generation);
+		} catch (IOException e) {
+			e.printStackTrace();
+			writeAppsToFile(next);
+		}
+	}
+
+	/**
+	 * Writes the extra block rules to their file, one per line.
+	 * 
+	 * @param rules Rules to be stored
+	 */
+	void writeRulesToFile(List<String> rules) {
+		try {
+			
+			FileOutputStream fos = context.openFileOutput(RULES_FILE_NAME,
+					Context.MODE_PRIVATE);
+			try {
+				for (String r : rules) {
+					fos.write((r + "\n").getBytes("UTF-8"));
+				}
+			} finally {
+				fos.close();
+			}
+
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Gets the extra block rules, which are rules that cannot be expressed
+	 * by selecting an application, e.g. "com.facebook.*".
+	 * 
+	 * @return The rules, which is empty if none have been saved
+	 */
+	ArrayList<String> getRulesFromFile() {
+		ArrayList<String> rules = new ArrayList<String>();
+
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(
+					context.openFileInput(RULES_FILE_NAME), "UTF-8"));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					rules.add(line);
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (FileNotFoundException e) {
+			// No rules have been saved.
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return rules;
+	}
+
+	/**
+	 * Checks whether or not the shared file (or a legacy file that can be
+	 * migrated to it) exists in memory.
+	 * 
+	 * @return Whether or not the file exists
+	 */
+	boolean fileExists() {
+		return context.getFileStreamPath(FILE_NAME).exists()
+				|| context.getFileStreamPath(LEGACY_FILE_NAME).exists();
+	}
+	
+	/**
+	 * Gets all of the application information that is stored on 
+	 * the shared file.
+	 * 
+	 * @return ArrayList of the applications on the file
+	 */
+	synchronized ArrayList<RunnableApp> getAppsFromFile() {
+		migrateLegacyFile();
+
+		File file = context.getFileStreamPath(FILE_NAME);
+		if (file.exists()) {
+			MonitorMetrics.getInstance().catalogReloads.increment();
+			try {
+				return journal.replay(CatalogFormat.read(file), CatalogFormat.readGeneration(file));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return new ArrayList<RunnableApp>();
+	}
+
+	/**
+	 * Gets the names of the blocked packages from the shared file, without
+	 * reading any of the other application information.
+	 * 
+	 * @return Names of the blocked packages
+	 */
+	synchronized String[] getBlockedPackagesFromFile() {
+		migrateLegacyFile();
+
+		// The blocked section may be out of date if there are changes in the
+		// journal, so the whole catalog has to be read
+		if (!journal.isEmpty()) {
+			return new CatalogSnapshot(getAppsFromFile(), 0).getBlockedPackages();
+		}
+
+		File file = context.getFileStreamPath(FILE_NAME);
+		if (file.exists()) {
+			MonitorMetrics.getInstance().catalogReloads.increment();
+			try {
+				return CatalogFormat.readBlockedPackages(file);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return new String[0];
+	}
+
+	/**
+	 * 
+	 * @return Generation of the shared file, or -1 if it does not exist or
+	 *         cannot be read
+	 */
+	private int getGeneration() {
+		File file = context.getFileStreamPath(FILE_NAME);
+		if (!file.exists()) {
+			return -1;
+		}
+
+		try {
+			return CatalogFormat.readGeneration(file);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return -1;
+		}
+	}
+
+	/**
+	 * Converts a file written by an older version of the application, which
+	 * stored each RunnableApp with Java serialisation, to the current format.
+	 * This only does any work the first time it is called after an upgrade.
+	 * 
+	 * The old file may be the only copy of the user's selections, so it is
+	 * only deleted once it has been read to the end and the new file has
+	 * been written. Otherwise it is kept and tried again on the next load.
+	 */
+	private void migrateLegacyFile() {
+		File legacy = context.getFileStreamPath(LEGACY_FILE_NAME);
+		if (!legacy.exists()) {
+			return;
+		}
+		if (legacy.length() == 0) {
+			// Nothing was ever saved in it
+			legacy.delete();
+			return;
+		}
+
+		ArrayList<RunnableApp> apps = new ArrayList<RunnableApp>();
+		try {
+			FileInputStream fis = context.openFileInput(LEGACY_FILE_NAME);
+			PushbackInputStream in = new PushbackInputStream(fis);
+
+			try {
+				ObjectInputStream ois = new ObjectInputStream(in);
+
+				// The legacy format has no record count, so a record must
+				// start wherever the file has not ended. A file cut off
+				// part way through a record fails with an EOFException.
+				int next;
+				while ((next = in.read()) >= 0) {
+					in.unread(next);
+					apps.add(new RunnableApp((RunnableApp) ois.readObject()));
+				}
+			} finally {
+				fis.close();
+			}
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		} catch (ClassNotFoundException e) {
+			e.printStackTrace();
+			return;
+		} catch (ClassCastException e) {
+			e.printStackTrace();
+			return;
+		}
+
+		if (writeAppsToFile(apps)) {
+			context.deleteFile(LEGACY_FILE_NAME);
+		}
+	}
+	
+	/**
+	 * Returns the last update time of an application's package, as it was
+	 * when the application was last scanned.
+	 * 
+	 * @param app The application
+	 * @return Last update time, or 0 if it is not known
+	 */
+	long getLastUpdateTime(RunnableApp app) {
+		return labels.getCachedUpdateTime(app.getComponentKey());
+	}
+
+	/**
+	 * 
+	 * @return Number of labels found in the label cache
+	 */
+	int getLabelCacheHits() {
+		return labels.getHits();
+	}
+
+	/**
+	 * 
+	 * @return Number of labels that could not be found in the label cache
+	 */
+	int getLabelCacheMisses() {
+		return labels.getMisses();
+	}
+
+	/**
+	 * Get all of the applications that can be launched from the 
+	 * Android system i.e. those which sit in the application drawer.
+	 * 
+	 * @return ArrayList of system applications
+	 */
+	ArrayList<RunnableApp> getSystemApps() {
+		ArrayList<RunnableApp> apps = getLauncherApps(new Intent(Intent.ACTION_MAIN, null)
+				.addCategory(Intent.CATEGORY_LAUNCHER));
+		labels.save(true);
+
+		return apps;
+	}
+
+	/**
+	 * Get the applications in a single package that can be launched from
+	 * the application drawer.
+	 * 
+	 * @param packageName Name of the package
+	 * @return ArrayList of the package's launchable applications
+	 */
+	ArrayList<RunnableApp> getSystemApps(String packageName) {
+		ArrayList<RunnableApp> apps = getLauncherApps(new Intent(Intent.ACTION_MAIN, null)
+				.addCategory(Intent.CATEGORY_LAUNCHER)
+				.setPackage(packageName));
+		labels.save(false);
+
+		return apps;
+	}
+
+	/**
+	 * Resolves the activities matching a launcher intent and sorts them by
+	 * label. Labels are taken from the LabelCache where possible.
+	 * 
+	 * @param mainIntent Intent to resolve
+	 * @return ArrayList of matching applications
+	 */
+	private ArrayList<RunnableApp> getLauncherApps(Intent mainIntent) {
+		noteSlowCall("RunnableAppHandler.getLauncherApps");
+
+		final List<ResolveInfo> appInfo = context.getPackageManager()
+				.queryIntentActivities(mainIntent, 0);
+		ArrayList<RunnableApp> apps = new ArrayList<RunnableApp>(appInfo.size());
+		ResolveInfoLoader loader = new ResolveInfoLoader(context.getPackageManager());
+		String locale = context.getResources().getConfiguration().locale.toString();
+
+		for(ResolveInfo a : appInfo) {
+			loader.info = a;
+			RunnableApp app = new RunnableApp(labels.getLabel(a.activityInfo.packageName,
+					a.activityInfo.name, locale, loader), false,
+					a.activityInfo.packageName,
+					a.activityInfo.name);
+			app.setLastUpdateTime(labels.getCachedUpdateTime(app.getComponentKey()));
+			apps.add(app);
+		}
+
+		// Each sort key is built once, so sorting does not allocate a string
+		// per comparison.
+		Collections.sort(apps);
+
+		return apps;
+	}
+
+	/**
+	 * Tells StrictMode that a call asks the PackageManager, which it can't
+	 * see for itself. A thread policy that detects custom slow calls then
+	 * catches a scan on the UI thread.
+	 * 
+	 * @param name Name of the call
+	 */
+	static void noteSlowCall(String name) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+			noteSlowCallHoneycomb(name);
+		}
+	}
+
+	/**
+	 * 
+	 * @param name Name of the call
+	 */
+	@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+	private static void noteSlowCallHoneycomb(String name) {
+		StrictMode.noteSlowCall(name);
+	}
+
+	/**
+	 * Loads labels for the LabelCache from the activities being scanned.
+	 */
+	private static class ResolveInfoLoader implements LabelCache.Loader {
+
+		/**
+		 * PackageManager to ask.
+		 */
+		private final PackageManager pm;
+
+		/**
+		 * The activity being looked up, set before each call to the cache.
+		 */
+		ResolveInfo info;
+
+		/**
+		 * Parameterised constructor
+		 * 
+		 * @param p PackageManager to ask
+		 */
+		ResolveInfoLoader(PackageManager p) {
+			pm = p;
+		}
+
+		/**
+		 * Before Gingerbread the modification time of the package's APK is
+		 * used instead.
+		 */
+		@Override
+		public long getLastUpdateTime(String packageName) {
+			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
+				return getPackageUpdateTime(packageName);
+			}
+			return new File(info.activityInfo.applicationInfo.sourceDir).lastModified();
+		}
+
+		@Override
+		public CharSequence loadLabel(String packageName, String className) {
+			return info.loadLabel(pm);
+		}
+
+		/**
+		 * 
+		 * @param packageName Name of the package
+		 * @return Last update time of the package, or 0 if it is not
+		 *         installed
+		 */
+		@TargetApi(Build.VERSION_CODES.GINGERBREAD)
+		private long getPackageUpdateTime(String packageName) {
+			try {
+				return pm.getPackageInfo(packageName, 0).lastUpdateTime;
+			} catch (NameNotFoundException e) {
+				return 0;
+			}
+		}
+	}
+}
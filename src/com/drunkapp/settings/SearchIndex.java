@@ -0,0 +1,274 @@
+package com.drunkapp.settings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.TreeMap;
+
+/**
+ * Index of the words in each application's label and package name, used to
+ * search the application list. Words are kept in a sorted map so that every
+ * word starting with a prefix can be found with a single range lookup,
+ * rather than by scanning every application.
+ * 
+ * Applications are added and removed one at a time as the list changes, so
+ * the index never has to be rebuilt. It is not thread safe.
+ * 
+ * @author Liam
+ * 
+ */
+final class SearchIndex {
+
+	/**
+	 * First character folded by FOLDED.
+	 */
+	private static final char FOLD_START = '\u00c0';
+
+	/**
+	 * Lower case letter without its accent for each character from
+	 * FOLD_START to the end of Latin Extended-A, so a label with an accented
+	 * letter is found by typing the plain letter. Letters with no plain form
+	 * are only lower-cased.
+	 */
+	private static final String FOLDED =
+			"aaaaaa\u00e6ceeeeiiii\u00f0nooooo\u00d7ouuuuy\u00fe\u00df"
+			+ "aaaaaa\u00e6ceeeeiiii\u00f0nooooo\u00f7ouuuuy\u00fey"
+			+ "aaaaaaccccccccddddeeeeeeeeeegggggggghhhhiiiiiiiiii\u0133\u0133jjkk\u0138"
+			+ "llllll\u0140\u0140llnnnnnn\u0149\u014b\u014boooooo\u0153\u0153rrrrrrssssssss"
+			+ "ttttttuuuuuuuuuuuuwwyyyzzzzzz\u017f";
+
+	/**
+	 * Orders sets of applications from the largest to the smallest.
+	 */
+	private static final Comparator<HashSet<RunnableApp>> LARGEST_FIRST = new Comparator<HashSet<RunnableApp>>() {
+		@Override
+		public int compare(HashSet<RunnableApp> a, HashSet<RunnableApp> b) {
+			return b.size() - a.size();
+		}
+	};
+
+	/**
+	 * Applications containing each normalised word.
+	 */
+	private final TreeMap<String, HashSet<RunnableApp>> words = new TreeMap<String, HashSet<RunnableApp>>();
+
+	/**
+	 * Applications in the index, keyed by component key.
+	 */
+	private final HashMap<String, RunnableApp> apps = new HashMap<String, RunnableApp>();
+
+	/**
+	 * Every application sorted by label, or null if the applications have
+	 * changed since it was last sorted. Kept between searches, as the user
+	 * types several letters without the list changing.
+	 */
+	private ArrayList<RunnableApp> sorted;
+
+	/**
+	 * Adds an application to the index, replacing any application with the
+	 * same component key.
+	 * 
+	 * @param app Application to be added
+	 */
+	void add(RunnableApp app) {
+		sorted = null;
+		RunnableApp old = apps.put(app.getComponentKey(), app);
+		if (old != null) {
+			removeWords(old);
+		}
+
+		for (String word : getWords(app)) {
+			HashSet<RunnableApp> matches = words.get(word);
+			if (matches == null) {
+				matches = new HashSet<RunnableApp>();
+				words.put(word, matches);
+			}
+			matches.add(app);
+		}
+	}
+
+	/**
+	 * Removes an application from the index.
+	 * 
+	 * @param key Component key of the application to be removed
+	 */
+	void remove(String key) {
+		RunnableApp old = apps.remove(key);
+		if (old != null) {
+			sorted = null;
+			removeWords(old);
+		}
+	}
+
+	/**
+	 * Finds the applications that have a word starting with each word of the
+	 * query, e.g. "goo ma" finds Google Maps.
+	 * 
+	 * The query word that matches the fewest applications gives the
+	 * candidates, which are checked against the other words. If even that
+	 * word matches a large part of the list, as the first letter typed
+	 * usually does, the matches are picked out of the sorted list instead,
+	 * which is cheaper than sorting them again.
+	 * 
+	 * @param query Text typed by the user
+	 * @return Matching applications, sorted by label
+	 */
+	ArrayList<RunnableApp> search(String query) {
+		ArrayList<String> prefixes = tokenize(query);
+		ArrayList<ArrayList<HashSet<RunnableApp>>> terms = new ArrayList<ArrayList<HashSet<RunnableApp>>>(
+				prefixes.size());
+		ArrayList<HashSet<RunnableApp>> narrowest = null;
+		int narrowestSize = Integer.MAX_VALUE;
+
+		for (String prefix : prefixes) {
+			ArrayList<HashSet<RunnableApp>> sets = new ArrayList<HashSet<RunnableApp>>(
+					words.subMap(prefix, prefix + Character.MAX_VALUE).values());
+			if (sets.isEmpty()) {
+				return new ArrayList<RunnableApp>();
+			}
+			// Most applications are then found in the first set checked
+			Collections.sort(sets, LARGEST_FIRST);
+
+			int size = 0;
+			for (HashSet<RunnableApp> m : sets) {
+				size += m.size();
+			}
+			if (size < narrowestSize) {
+				narrowest = sets;
+				narrowestSize = size;
+			}
+			terms.add(sets);
+		}
+
+		if (sorted == null) {
+			sorted = new ArrayList<RunnableApp>(apps.values());
+			Collections.sort(sorted);
+		}
+		if (terms.isEmpty()) {
+			return new ArrayList<RunnableApp>(sorted);
+		}
+
+		ArrayList<RunnableApp> result = new ArrayList<RunnableApp>();
+		if (narrowestSize > sorted.size() / 8) {
+			for (RunnableApp a : sorted) {
+				if (matchesAll(a, terms)) {
+					result.add(a);
+				}
+			}
+		} else {
+			HashSet<RunnableApp> checked = new HashSet<RunnableApp>(narrowestSize * 2);
+			for (HashSet<RunnableApp> m : narrowest) {
+				for (RunnableApp a : m) {
+					if (checked.add(a) && matchesAll(a, terms)) {
+						result.add(a);
+					}
+				}
+			}
+			Collections.sort(result);
+		}
+		return result;
+	}
+
+	/**
+	 * Checks an application against every word of a query.
+	 * 
+	 * @param app Application to be checked
+	 * @param terms For each word of the query, the sets of the applications
+	 *            with a word starting with it
+	 * @return Whether or not the application is in a set of every word
+	 */
+	private static boolean matchesAll(RunnableApp app,
+			ArrayList<ArrayList<HashSet<RunnableApp>>> terms) {
+		for (ArrayList<HashSet<RunnableApp>> sets : terms) {
+			boolean matched = false;
+			for (int i = 0; i < sets.size() && !matched; i++) {
+				matched = sets.get(i).contains(app);
+			}
+			if (!matched) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Removes an application from the sets of each of its words.
+	 * 
+	 * @param app Application to be removed
+	 */
+	private void removeWords(RunnableApp app) {
+		for (String word : getWords(app)) {
+			HashSet<RunnableApp> matches = words.get(word);
+			if (matches != null) {
+				matches.remove(app);
+				if (matches.isEmpty()) {
+					words.remove(word);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the words that an application is indexed by: the words of its
+	 * label and each part of its package name.
+	 * 
+	 * @param app Application to get the words of
+	 * @return Normalised words of the application
+	 */
+	private static HashSet<String> getWords(RunnableApp app) {
+		HashSet<String> result = new HashSet<String>();
+		result.addAll(tokenize(app.getLabel().toString()));
+		result.addAll(tokenize(app.getPackageName()));
+		return result;
+	}
+
+	/**
+	 * Splits text into lower case words made up of letters and digits, with
+	 * the accents taken off Latin letters.
+	 * 
+	 * @param text Text to be split
+	 * @return Words of the text
+	 */
+	static ArrayList<String> tokenize(String text) {
+		ArrayList<String> result = new ArrayList<String>();
+		String lower = fold(text).toLowerCase(Locale.US);
+		int start = -1;
+
+		for (int i = 0; i <= lower.length(); i++) {
+			boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+
+			if (wordChar && start < 0) {
+				start = i;
+			}
+			else if (!wordChar && start >= 0) {
+				result.add(lower.substring(start, i));
+				start = -1;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Takes the accents off Latin letters, lower-casing them as well.
+	 * 
+	 * @param text Text to be folded
+	 * @return The folded text, or the same text if it has nothing to fold
+	 */
+	private static String fold(String text) {
+		char[] chars = null;
+
+		for (int i = 0; i < text.length(); i++) {
+			int index = text.charAt(i) - FOLD_START;
+			if (index >= 0 && index < FOLDED.length()) {
+				if (chars == null) {
+					chars = text.toCharArray();
+				}
+				chars[i] = FOLDED.charAt(index);
+			}
+		}
+		return chars == null ? text : new String(chars);
+	}
+}
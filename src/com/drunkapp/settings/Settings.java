@@ -1,123 +1,339 @@
-package com.drunkapp.settings;
-
-import java.util.ArrayList;
-
-import android.app.Activity;
-import android.os.AsyncTask;
-import android.os.Bundle;
-import android.view.Menu;
-import android.widget.ListView;
-
-import com.drunkapp.R;
-
-/**
- * Activity that displays and manages the selection of applications that are
- * allowed to run within the KidSafe launcher. It displays a list of installed
- * applications with check boxes.
- * 
- * @author Liam
- * 
- */
-public class Settings extends Activity {
-
-	/**
-	 * Applications to be displayed.
-	 */
-	private ArrayList<RunnableApp> apps;
-
-	/**
-	 * RunnableAppHandler for fetching applications from shared file.
-	 */
-	private RunnableAppHandler appHandler;
-
-	/**
-	 * Adapter that acts as a link between the ListView and the ArrayList of
-	 * applications.
-	 */
-	private AppListAdapter appAdapter;
-
-	/**
-	 * ListView of applications that is used dynamically.
-	 */
-	private ListView appsListView;
-
-	/**
-	 * Sets the list layout for the KidSafe launcher based on the applications
-	 * stored in a shared file.
-	 */
-	@Override
-	public void onCreate(Bundle savedInstanceState) {
-		super.onCreate(savedInstanceState);
-		
-		setContentView(R.layout.activity_settings);
-
-		new PopulateListTask().execute(this);
-	}
-
-	/**
-	 * Once this activity loses focus, save the applications.
-	 */
-	@Override
-	public void onPause() {
-		super.onPause();
-		appHandler.writeAppsToFile(appAdapter.getAllApps());
-	}
-
-	/**
-	 * Prevents the settings menu from being displayed.
-	 */
-	@Override
-	public boolean onCreateOptionsMenu(Menu menu) {
-		return true;
-	}
-
-	/**
-	 * Asynchronous task that populates the application settings list in the
-	 * background to avoid lag in the system.
-	 * 
-	 * @author Liam
-	 * 
-	 */
-	private class PopulateListTask extends
-			AsyncTask<Activity, RunnableApp, Integer> {
-
-		/**
-		 * Instantiates all the UI components
-		 */
-		@Override
-		protected void onPreExecute() {
-			apps = new ArrayList<RunnableApp>();
-			appHandler = new RunnableAppHandler(getApplicationContext());
-			appsListView = (ListView) findViewById(R.id.list);
-		}
-
-		/**
-		 * Loops through the applications that are installed on the system and
-		 * adds them one by one to the ListView by using the publishProgress()
-		 * method.
-		 */
-		@Override
-		protected Integer doInBackground(Activity... params) {
-			appAdapter = new AppListAdapter(params[0], R.layout.special_list,
-					apps);
-
-			for (RunnableApp a : appHandler.getAllApps()) {
-				publishProgress(a);
-			}
-
-			return null;
-		}
-
-		/**
-		 * Updates the ListView with the newly fetched applications.
-		 */
-		@Override
-		protected void onProgressUpdate(RunnableApp... newApps) {
-
-			for (RunnableApp a : newApps) {
-				appAdapter.add(a);
-				appsListView.setAdapter(appAdapter);
-			}
-		}
-	}
+package com.drunkapp.settings;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import android.app.Activity;
+import android.app.AlertDialog;
+import android.content.DialogInterface;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.EditText;
+import android.widget.ListView;
+
+import com.drunkapp.R;
+
+/**
+ * Activity that displays and manages the selection of applications that are
+ * allowed to run within the KidSafe launcher. It displays a list of installed
+ * applications with check boxes.
+ * 
+ * @author Liam
+ * 
+ */
+public class Settings extends Activity {
+
+	/**
+	 * Tag used for logging.
+	 */
+	private static final String TAG = "Settings";
+
+	/**
+	 * Number of applications added to the list at a time.
+	 */
+	private static final int BATCH_SIZE = 50;
+
+	/**
+	 * Applications to be displayed.
+	 */
+	private ArrayList<RunnableApp> apps;
+
+	/**
+	 * Shared catalog that the applications are fetched from and saved to.
+	 */
+	private AppCatalog catalog;
+
+	/**
+	 * Adapter that acts as a link between the ListView and the ArrayList of
+	 * applications.
+	 */
+	private AppListAdapter appAdapter;
+
+	/**
+	 * ListView of applications that is used dynamically.
+	 */
+	private ListView appsListView;
+
+	/**
+	 * Sets the list layout for the KidSafe launcher based on the applications
+	 * stored in a shared file.
+	 */
+	@Override
+	public void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		
+		setContentView(R.layout.activity_settings);
+
+		new PopulateListTask().execute();
+
+		// Filter the list as the user types
+		EditText search = (EditText) findViewById(R.id.search);
+		search.addTextChangedListener(new TextWatcher() {
+			@Override
+			public void afterTextChanged(Editable s) {
+				appAdapter.setQuery(s.toString());
+			}
+
+			@Override
+			public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+			}
+
+			@Override
+			public void onTextChanged(CharSequence s, int start, int before, int count) {
+			}
+		});
+	}
+
+	/**
+	 * Once this activity loses focus, save any applications that were
+	 * toggled. The catalog is updated in memory straight away and written
+	 * to the shared file in the background without waiting for further
+	 * changes, as the process may be killed once the activity is paused.
+	 */
+	@Override
+	public void onPause() {
+		super.onPause();
+
+		if (appAdapter != null) {
+			ArrayList<RunnableApp> changed = appAdapter.takeChangedApps();
+
+			if (!changed.isEmpty()) {
+				catalog.update(changed);
+			}
+		}
+		if (catalog != null) {
+			catalog.flush();
+		}
+	}
+
+	@Override
+	public boolean onCreateOptionsMenu(Menu menu) {
+		getMenuInflater().inflate(R.menu.settings, menu);
+		return true;
+	}
+
+	@Override
+	public boolean onOptionsItemSelected(MenuItem item) {
+		if (item.getItemId() != R.id.action_rules) {
+			return super.onOptionsItemSelected(item);
+		}
+
+		// The rules may not have been read yet
+		new AsyncTask<Void, Void, ArrayList<String>>() {
+			@Override
+			protected ArrayList<String> doInBackground(Void... params) {
+				return catalog.getRules();
+			}
+
+			@Override
+			protected void onPostExecute(ArrayList<String> rules) {
+				if (!isFinishing()) {
+					showRulesDialog(rules);
+				}
+			}
+		}.execute();
+		return true;
+	}
+
+	/**
+	 * Shows the extra block rules, one per line, for the user to edit. They
+	 * block whole groups of packages or single activities, which can't be
+	 * picked from the list.
+	 * 
+	 * @param rules The current rules
+	 */
+	private void showRulesDialog(List<String> rules) {
+		final EditText text = new EditText(this);
+		text.setHint(R.string.block_rules_hint);
+		text.setMinLines(3);
+
+		StringBuilder sb = new StringBuilder();
+		for (String r : rules) {
+			sb.append(r).append('\n');
+		}
+		text.setText(sb);
+
+		new AlertDialog.Builder(this)
+			.setTitle(R.string.block_rules)
+			.setView(text)
+			.setPositiveButton(android.R.string.ok, new DialogInterface.OnClickListener() {
+				@Override
+				public void onClick(DialogInterface dialog, int which) {
+					ArrayList<String> lines = new ArrayList<String>();
+					for (String line : text.getText().toString().split("\n")) {
+						if (line.trim().length() > 0) {
+							lines.add(line.trim());
+						}
+					}
+					catalog.setRules(lines);
+				}
+			})
+			.setNegativeButton(android.R.string.cancel, null)
+			.show();
+	}
+
+	/**
+	 * A batch of changes to the list, applied with a single redraw.
+	 * 
+	 * @author Liam
+	 * 
+	 */
+	private static class Batch {
+
+		/**
+		 * Applications to be added to the end of the list.
+		 */
+		final ArrayList<RunnableApp> added = new ArrayList<RunnableApp>();
+
+		/**
+		 * Component keys of the applications to be removed.
+		 */
+		final HashSet<String> removed = new HashSet<String>();
+	}
+
+	/**
+	 * Asynchronous task that populates the application settings list in the
+	 * background to avoid lag in the system.
+	 * 
+	 * The last saved catalog is shown first. Then, the first time the list is
+	 * opened in each process, the system is scanned for any changes that were
+	 * missed, and the differences are streamed in. Applications are published
+	 * in batches so that the list is only redrawn once per batch.
+	 * 
+	 * @author Liam
+	 * 
+	 */
+	private class PopulateListTask extends
+			AsyncTask<Void, Batch, Void> {
+
+		/**
+		 * Component keys of the applications published so far. Only used on
+		 * the background thread.
+		 */
+		private final HashSet<String> published = new HashSet<String>();
+
+		/**
+		 * Time the task was started, from SystemClock.uptimeMillis().
+		 */
+		private long startTime;
+
+		/**
+		 * Time the first batch was shown, or 0 if it has not been yet.
+		 */
+		private long firstPaintTime;
+
+		/**
+		 * Instantiates all the UI components
+		 */
+		@Override
+		protected void onPreExecute() {
+			startTime = SystemClock.uptimeMillis();
+
+			apps = new ArrayList<RunnableApp>();
+			catalog = AppCatalog.getInstance(getApplicationContext());
+			appsListView = (ListView) findViewById(R.id.list);
+
+			appAdapter = new AppListAdapter(Settings.this, R.layout.special_list,
+					apps);
+			appsListView.setAdapter(appAdapter);
+		}
+
+		/**
+		 * Publishes the saved catalog and then any applications that were
+		 * added or removed since it was saved.
+		 */
+		@Override
+		protected Void doInBackground(Void... params) {
+			publishAdded(catalog.getAllApps());
+
+			if (catalog.reconcileOnce()) {
+				ArrayList<RunnableApp> current = catalog.getAllApps();
+				HashSet<String> keys = new HashSet<String>(current.size() * 2);
+				ArrayList<RunnableApp> added = new ArrayList<RunnableApp>();
+
+				for (RunnableApp a : current) {
+					keys.add(a.getComponentKey());
+					if (!published.contains(a.getComponentKey())) {
+						added.add(a);
+					}
+				}
+
+				Batch removals = new Batch();
+				for (String key : published) {
+					if (!keys.contains(key)) {
+						removals.removed.add(key);
+					}
+				}
+				if (!removals.removed.isEmpty()) {
+					publishProgress(removals);
+				}
+
+				publishAdded(added);
+			}
+
+			return null;
+		}
+
+		/**
+		 * Applies a batch of changes to the ListView with a single redraw, so
+		 * the scroll position is kept.
+		 */
+		@Override
+		protected void onProgressUpdate(Batch... batches) {
+			for (Batch b : batches) {
+				if (!b.removed.isEmpty()) {
+					appAdapter.removeApps(b.removed);
+				}
+				if (!b.added.isEmpty()) {
+					appAdapter.addApps(b.added);
+				}
+			}
+
+			if (firstPaintTime == 0) {
+				firstPaintTime = SystemClock.uptimeMillis();
+			}
+		}
+
+		/**
+		 * Records how long the list took to show and to finish loading.
+		 */
+		@Override
+		protected void onPostExecute(Void result) {
+			long now = SystemClock.uptimeMillis();
+
+			Log.i(TAG, "Application list first shown after "
+					+ (firstPaintTime == 0 ? now - startTime : firstPaintTime - startTime)
+					+ "ms, loaded after " + (now - startTime) + "ms");
+		}
+
+		/**
+		 * Publishes applications to be added in batches of BATCH_SIZE.
+		 * 
+		 * @param newApps Applications to be added
+		 */
+		private void publishAdded(List<RunnableApp> newApps) {
+			Batch batch = new Batch();
+
+			for (RunnableApp a : newApps) {
+				batch.added.add(a);
+				published.add(a.getComponentKey());
+
+				if (batch.added.size() == BATCH_SIZE) {
+					publishProgress(batch);
+					batch = new Batch();
+				}
+			}
+
+			if (!batch.added.isEmpty()) {
+				publishProgress(batch);
+			}
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,132 @@
+package com.drunkapp.simulation;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * Runs tasks at times on a VirtualClock, standing in for a Handler. Tasks
+ * due at the same time run in the order they were posted.
+ *
+ * @author Liam
+ *
+ */
+public class EventQueue {
+
+	/**
+	 * A task waiting to run.
+	 */
+	private static final class Event implements Comparable<Event> {
+
+		/**
+		 * Time in milliseconds that the task is due.
+		 */
+		final long time;
+
+		/**
+		 * Order the task was posted in, to break ties.
+		 */
+		final long sequence;
+
+		/**
+		 * The task.
+		 */
+		final Runnable task;
+
+		Event(long t, long s, Runnable r) {
+			time = t;
+			sequence = s;
+			task = r;
+		}
+
+		@Override
+		public int compareTo(Event another) {
+			if (time != another.time) {
+				return time < another.time ? -1 : 1;
+			}
+			return sequence < another.sequence ? -1 : (sequence == another.sequence ? 0 : 1);
+		}
+	}
+
+	/**
+	 * Clock that is moved on as the tasks run.
+	 */
+	private final VirtualClock clock;
+
+	/**
+	 * Tasks waiting to run.
+	 */
+	private final PriorityQueue<Event> events = new PriorityQueue<Event>();
+
+	/**
+	 * Number of tasks posted so far.
+	 */
+	private long sequence;
+
+	/**
+	 * Parameterised constructor
+	 *
+	 * @param c Clock that is moved on as the tasks run
+	 */
+	public EventQueue(VirtualClock c) {
+		clock = c;
+	}
+
+	/**
+	 *
+	 * @return Clock that is moved on as the tasks run
+	 */
+	public VirtualClock getClock() {
+		return clock;
+	}
+
+	/**
+	 * Runs a task at a given time, or straight after the current task if the
+	 * time has passed.
+	 *
+	 * @param task The task
+	 * @param time Time in milliseconds to run it at
+	 */
+	public void postAt(Runnable task, long time) {
+		events.add(new Event(Math.max(time, clock.currentTimeMillis()), sequence++, task));
+	}
+
+	/**
+	 * Runs a task after a delay.
+	 *
+	 * @param task The task
+	 * @param delay Delay in milliseconds
+	 */
+	public void postDelayed(Runnable task, long delay) {
+		postAt(task, clock.currentTimeMillis() + delay);
+	}
+
+	/**
+	 * Removes every pending run of a task.
+	 *
+	 * @param task The task
+	 */
+	public void removeCallbacks(Runnable task) {
+		Iterator<Event> it = events.iterator();
+		while (it.hasNext()) {
+			if (it.next().task == task) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Runs every task that is due up to and including a time, moving the
+	 * clock to each task as it runs and then to the time itself. Tasks
+	 * posted by tasks are run as well if they are due in time.
+	 *
+	 * @param time Time in milliseconds to run until
+	 */
+	public void runUntil(long time) {
+		while (!events.isEmpty() && events.peek().time <= time) {
+			Event e = events.poll();
+			clock.advanceTo(e.time);
+			e.task.run();
+		}
+		clock.advanceTo(time);
+	}
+}
@@ -0,0 +1,102 @@
+package com.drunkapp.simulation;
+
+/**
+ * Stands in for the ActivityManager, and for the Context that the monitor
+ * starts the home screen with. It only knows which activity is at the top
+ * of the current task.
+ *
+ * @author Liam
+ *
+ */
+public class FakeActivityManager {
+
+	/**
+	 * Package of the top activity.
+	 */
+	private String topPackage = FakePackageManager.HOME_PACKAGE;
+
+	/**
+	 * Class of the top activity.
+	 */
+	private String topClass = FakePackageManager.HOME_CLASS;
+
+	/**
+	 * Number of times the running tasks were asked for.
+	 */
+	private long taskQueries;
+
+	/**
+	 * Number of times the home screen was started.
+	 */
+	private long homeStarts;
+
+	/**
+	 * Brings an activity to the front.
+	 *
+	 * @param packageName Package of the activity
+	 * @param className Fully qualified class of the activity
+	 */
+	public void moveToFront(String packageName, String className) {
+		topPackage = packageName;
+		topClass = className;
+	}
+
+	/**
+	 * Starts the home screen, as the monitor does when it blocks an
+	 * application.
+	 */
+	public void startHome() {
+		homeStarts++;
+		moveToFront(FakePackageManager.HOME_PACKAGE, FakePackageManager.HOME_CLASS);
+	}
+
+	/**
+	 * Stands in for getRunningTasks(1), counting the call.
+	 *
+	 * @return Package of the top activity
+	 */
+	public String queryTopPackage() {
+		taskQueries++;
+		return topPackage;
+	}
+
+	/**
+	 *
+	 * @return Package of the top activity
+	 */
+	public String getTopPackage() {
+		return topPackage;
+	}
+
+	/**
+	 *
+	 * @return Class of the top activity
+	 */
+	public String getTopClass() {
+		return topClass;
+	}
+
+	/**
+	 *
+	 * @return Whether or not the home screen is in front
+	 */
+	public boolean isHomeInFront() {
+		return FakePackageManager.HOME_PACKAGE.equals(topPackage);
+	}
+
+	/**
+	 *
+	 * @return Number of times the running tasks were asked for
+	 */
+	public long getTaskQueries() {
+		return taskQueries;
+	}
+
+	/**
+	 *
+	 * @return Number of times the home screen was started
+	 */
+	public long getHomeStarts() {
+		return homeStarts;
+	}
+}
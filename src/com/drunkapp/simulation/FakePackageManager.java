@@ -0,0 +1,150 @@
+package com.drunkapp.simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Stands in for the PackageManager, listing the launchable activities that
+ * a simulated device has installed, along with its home screen. It also
+ * counts the labels loaded from it, which is the costly part of a real scan.
+ *
+ * @author Liam
+ *
+ */
+public class FakePackageManager {
+
+	/**
+	 * Package of the simulated home screen.
+	 */
+	public static final String HOME_PACKAGE = "com.android.launcher";
+
+	/**
+	 * Activity of the simulated home screen.
+	 */
+	public static final String HOME_CLASS = "com.android.launcher2.Launcher";
+
+	/**
+	 * Launchable activities, each as "package/class".
+	 */
+	private final ArrayList<String> components = new ArrayList<String>();
+
+	/**
+	 * Last update time of each installed package.
+	 */
+	private final HashMap<String, Long> updateTimes = new HashMap<String, Long>();
+
+	/**
+	 * Number of labels loaded.
+	 */
+	private int labelLoads;
+
+	/**
+	 * Makes a device with made up applications, named com.example.app0 to
+	 * com.example.app&lt;count - 1&gt;, each with a single activity.
+	 *
+	 * @param count Number of applications
+	 * @return The package manager
+	 */
+	public static FakePackageManager withApps(int count) {
+		FakePackageManager pm = new FakePackageManager();
+		for (int i = 0; i < count; i++) {
+			pm.install("com.example.app" + i, "com.example.app" + i + ".MainActivity");
+		}
+		return pm;
+	}
+
+	/**
+	 * Installs a launchable activity.
+	 *
+	 * @param packageName Package of the activity
+	 * @param className Fully qualified class of the activity
+	 * @return This package manager
+	 */
+	public FakePackageManager install(String packageName, String className) {
+		components.add(packageName + "/" + className);
+		if (!updateTimes.containsKey(packageName)) {
+			updateTimes.put(packageName, Long.valueOf(1));
+		}
+		return this;
+	}
+
+	/**
+	 * Uninstalls a package and all of its activities.
+	 *
+	 * @param packageName Package to uninstall
+	 * @return This package manager
+	 */
+	public FakePackageManager uninstall(String packageName) {
+		Iterator<String> it = components.iterator();
+		while (it.hasNext()) {
+			if (it.next().startsWith(packageName + "/")) {
+				it.remove();
+			}
+		}
+		updateTimes.remove(packageName);
+		return this;
+	}
+
+	/**
+	 * Updates a package to a new version, moving its last update time on.
+	 *
+	 * @param packageName Package to update
+	 * @return This package manager
+	 */
+	public FakePackageManager update(String packageName) {
+		updateTimes.put(packageName, Long.valueOf(getLastUpdateTime(packageName) + 1));
+		return this;
+	}
+
+	/**
+	 *
+	 * @param packageName Name of a package
+	 * @return Last update time of the package, or 0 if it is not installed
+	 */
+	public long getLastUpdateTime(String packageName) {
+		Long time = updateTimes.get(packageName);
+		return time == null ? 0 : time.longValue();
+	}
+
+	/**
+	 * Loads the label of an activity, counting the load.
+	 *
+	 * @param packageName Package of the activity
+	 * @param className Fully qualified class of the activity
+	 * @return The label, which is the class name without its package
+	 */
+	public CharSequence loadLabel(String packageName, String className) {
+		labelLoads++;
+		return className.substring(className.lastIndexOf('.') + 1);
+	}
+
+	/**
+	 *
+	 * @return Number of labels loaded
+	 */
+	public int getLabelLoads() {
+		return labelLoads;
+	}
+
+	/**
+	 *
+	 * @return The launchable activities, each as "package/class", which
+	 *         must not be modified
+	 */
+	public List<String> getLaunchableComponents() {
+		return Collections.unmodifiableList(components);
+	}
+
+	/**
+	 *
+	 * @param index Index of an activity in the order it was installed
+	 * @return Package of the activity
+	 */
+	public String getPackageName(int index) {
+		String component = components.get(index);
+		return component.substring(0, component.indexOf('/'));
+	}
+}
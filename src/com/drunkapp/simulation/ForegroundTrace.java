@@ -0,0 +1,196 @@
+package com.drunkapp.simulation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A recorded or made up sequence of the activities that a user brought to
+ * the front, with the time of each switch.
+ *
+ * The text form has one switch per line, "&lt;millis&gt; &lt;package&gt;/&lt;class&gt;",
+ * e.g. "1500 com.facebook.katana/.LoginActivity". A class starting with a
+ * dot is relative to the package. Blank lines and lines starting with # are
+ * ignored, and a line with only a time marks the end of the trace.
+ *
+ * @author Liam
+ *
+ */
+public class ForegroundTrace {
+
+	/**
+	 * A user bringing an activity to the front.
+	 */
+	public static final class Switch {
+
+		/**
+		 * Time of the switch in milliseconds.
+		 */
+		public final long time;
+
+		/**
+		 * Package of the activity.
+		 */
+		public final String packageName;
+
+		/**
+		 * Fully qualified class of the activity.
+		 */
+		public final String className;
+
+		/**
+		 * Parameterised constructor
+		 *
+		 * @param t Time of the switch in milliseconds
+		 * @param p Package of the activity
+		 * @param c Fully qualified class of the activity
+		 */
+		Switch(long t, String p, String c) {
+			time = t;
+			packageName = p;
+			className = c;
+		}
+	}
+
+	/**
+	 * The switches in time order.
+	 */
+	private final ArrayList<Switch> switches = new ArrayList<Switch>();
+
+	/**
+	 * Time in milliseconds that the trace ends.
+	 */
+	private long endTime;
+
+	/**
+	 * Adds a switch at or after the last one. The end of the trace is moved
+	 * up to it if need be.
+	 *
+	 * @param time Time of the switch in milliseconds
+	 * @param packageName Package of the activity
+	 * @param className Class of the activity, which may start with a dot
+	 * @return This trace
+	 */
+	public ForegroundTrace add(long time, String packageName, String className) {
+		if (!switches.isEmpty() && time < switches.get(switches.size() - 1).time) {
+			throw new IllegalArgumentException("Switch at " + time + " is out of order");
+		}
+		if (className.startsWith(".")) {
+			className = packageName + className;
+		}
+		switches.add(new Switch(time, packageName, className));
+		endTime = Math.max(endTime, time);
+		return this;
+	}
+
+	/**
+	 * Sets the time that the last activity stays in front until.
+	 *
+	 * @param time End of the trace in milliseconds
+	 * @return This trace
+	 */
+	public ForegroundTrace setEndTime(long time) {
+		if (!switches.isEmpty() && time < switches.get(switches.size() - 1).time) {
+			throw new IllegalArgumentException("Trace cannot end at " + time
+					+ ", before its last switch");
+		}
+		endTime = time;
+		return this;
+	}
+
+	/**
+	 *
+	 * @return The switches in time order, which must not be modified
+	 */
+	public List<Switch> getSwitches() {
+		return Collections.unmodifiableList(switches);
+	}
+
+	/**
+	 *
+	 * @return Time in milliseconds that the trace ends
+	 */
+	public long getEndTime() {
+		return endTime;
+	}
+
+	/**
+	 * Reads a trace in the text form.
+	 *
+	 * @param in Reader to read from, which is not closed
+	 * @return The trace
+	 * @throws IOException If the trace could not be read or is not valid
+	 */
+	public static ForegroundTrace read(BufferedReader in) throws IOException {
+		ForegroundTrace trace = new ForegroundTrace();
+		String line;
+		int lineNumber = 0;
+
+		while ((line = in.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if (line.length() == 0 || line.startsWith("#")) {
+				continue;
+			}
+
+			try {
+				int space = line.indexOf(' ');
+				if (space < 0) {
+					trace.setEndTime(Long.parseLong(line));
+					continue;
+				}
+
+				long time = Long.parseLong(line.substring(0, space));
+				String component = line.substring(space + 1).trim();
+				int slash = component.indexOf('/');
+				if (slash <= 0 || slash == component.length() - 1) {
+					throw new IllegalArgumentException("Expected package/class but got " + component);
+				}
+				trace.add(time, component.substring(0, slash), component.substring(slash + 1));
+			} catch (IllegalArgumentException e) {
+				// Includes NumberFormatException
+				throw new IOException("Line " + lineNumber + ": " + e.getMessage());
+			}
+		}
+		return trace;
+	}
+
+	/**
+	 * Makes up a trace of a user moving between activities at random, each
+	 * staying in front for an exponentially distributed time.
+	 *
+	 * @param seed Seed for the random numbers, so the same trace can be made
+	 *            again
+	 * @param components Activities to choose from, each as "package/class"
+	 * @param count Number of switches
+	 * @param meanDwell Mean time in milliseconds that each activity stays in
+	 *            front
+	 * @return The trace, starting at time 0
+	 */
+	public static ForegroundTrace synthetic(long seed, List<String> components, int count,
+			long meanDwell) {
+		Random random = new Random(seed);
+		ForegroundTrace trace = new ForegroundTrace();
+		String last = null;
+		long time = 0;
+
+		for (int i = 0; i < count; i++) {
+			String component;
+			do {
+				component = components.get(random.nextInt(components.size()));
+			} while (component.equals(last) && components.size() > 1);
+			last = component;
+
+			int slash = component.indexOf('/');
+			trace.add(time, component.substring(0, slash), component.substring(slash + 1));
+
+			// At least a millisecond, so no two switches share a time
+			time += 1 + (long) (-Math.log(1 - random.nextDouble()) * meanDwell);
+		}
+		trace.setEndTime(time);
+		return trace;
+	}
+}
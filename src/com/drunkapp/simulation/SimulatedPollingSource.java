@@ -0,0 +1,133 @@
+package com.drunkapp.simulation;
+
+import com.drunkapp.resources.ForegroundSource;
+import com.drunkapp.resources.PollingConfig;
+
+/**
+ * ForegroundSource that polls a FakeActivityManager on an EventQueue,
+ * following the same PollingConfig schedule as the PollingForegroundSource:
+ * the first poll runs straight away, the interval goes back to the fast
+ * interval after each change and backs off while nothing changes, and a
+ * blocked activity is reported again on every poll until it goes.
+ *
+ * @author Liam
+ *
+ */
+public class SimulatedPollingSource implements ForegroundSource, Runnable {
+
+	/**
+	 * Activity manager that is polled.
+	 */
+	private final FakeActivityManager am;
+
+	/**
+	 * Queue that the polls are posted to.
+	 */
+	private final EventQueue queue;
+
+	/**
+	 * Tuning for the poll intervals.
+	 */
+	private final PollingConfig config;
+
+	/**
+	 * Listener to be told about each change, or null if the source is
+	 * stopped.
+	 */
+	private Listener listener;
+
+	/**
+	 * Interval that was used to schedule the next poll.
+	 */
+	private long interval;
+
+	/**
+	 * Package of the top activity seen by the last poll.
+	 */
+	private String lastPackage;
+
+	/**
+	 * Class of the top activity seen by the last poll.
+	 */
+	private String lastClass;
+
+	/**
+	 * Whether or not the listener said the last reported activity is
+	 * blocked.
+	 */
+	private boolean blocked;
+
+	/**
+	 * Number of polls since the source was created.
+	 */
+	private long pollCount;
+
+	/**
+	 * Parameterised constructor
+	 *
+	 * @param a Activity manager to poll
+	 * @param q Queue to post the polls to
+	 * @param p Tuning for the poll intervals
+	 */
+	public SimulatedPollingSource(FakeActivityManager a, EventQueue q, PollingConfig p) {
+		am = a;
+		queue = q;
+		config = p;
+	}
+
+	@Override
+	public void start(Listener l) {
+		listener = l;
+		queue.removeCallbacks(this);
+		interval = config.getFastInterval();
+		run();
+	}
+
+	@Override
+	public void stop() {
+		queue.removeCallbacks(this);
+		listener = null;
+		lastPackage = null;
+		lastClass = null;
+		blocked = false;
+	}
+
+	@Override
+	public void release() {
+		stop();
+	}
+
+	/**
+	 *
+	 * @return Number of polls since the source was created
+	 */
+	public long getPollCount() {
+		return pollCount;
+	}
+
+	/**
+	 * Polls the top activity, reports it if it differs from the previous
+	 * poll or is still blocked, and schedules the next poll.
+	 */
+	@Override
+	public void run() {
+		String topPackage = am.queryTopPackage();
+		String topClass = am.getTopClass();
+		boolean changed = !topPackage.equals(lastPackage) || !topClass.equals(lastClass);
+		pollCount++;
+
+		if (changed) {
+			lastPackage = topPackage;
+			lastClass = topClass;
+		}
+		if (changed || blocked) {
+			blocked = listener.onForegroundChanged(topPackage, topClass);
+		}
+
+		interval = changed || blocked ? config.getFastInterval() : config.backOff(interval);
+
+		if (listener != null) {
+			queue.postDelayed(this, interval);
+		}
+	}
+}
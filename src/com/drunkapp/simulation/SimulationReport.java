@@ -0,0 +1,222 @@
+package com.drunkapp.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Results of replaying a ForegroundTrace.
+ *
+ * A visit is the time from an activity coming to the front until something
+ * else does. The latency of a block is the time from the start of a visit
+ * to a blocked activity until the home screen replaces it. A blocked visit
+ * that ends without the home screen replacing it is a missed block, and the
+ * home screen replacing an allowed application is a false block.
+ *
+ * @author Liam
+ *
+ */
+public class SimulationReport {
+
+	/**
+	 * Name of the strategy that was simulated.
+	 */
+	private final String name;
+
+	/**
+	 * Latency of each block in milliseconds. Only the first latencyCount
+	 * entries are used.
+	 */
+	private long[] latencies = new long[64];
+
+	/**
+	 * Number of latencies recorded.
+	 */
+	private int latencyCount;
+
+	/**
+	 * Whether or not the latencies are sorted.
+	 */
+	private boolean sorted;
+
+	/**
+	 * Number of switches in the trace.
+	 */
+	long switches;
+
+	/**
+	 * Number of visits to blocked activities.
+	 */
+	long blockedVisits;
+
+	/**
+	 * Number of times the monitor decided to block.
+	 */
+	long blocks;
+
+	/**
+	 * Number of blocks that showed a message.
+	 */
+	long notifications;
+
+	/**
+	 * Number of blocks that were suppressed.
+	 */
+	long suppressed;
+
+	/**
+	 * Number of blocked visits that ended without being blocked.
+	 */
+	long missedBlocks;
+
+	/**
+	 * Number of times the home screen replaced an allowed application.
+	 */
+	long falseBlocks;
+
+	/**
+	 * Number of times the running tasks were asked for.
+	 */
+	long taskQueries;
+
+	/**
+	 * Length of the trace in milliseconds.
+	 */
+	long simulatedTime;
+
+	/**
+	 * Parameterised constructor
+	 *
+	 * @param n Name of the strategy that was simulated
+	 */
+	SimulationReport(String n) {
+		name = n;
+	}
+
+	/**
+	 * Records the latency of a block.
+	 *
+	 * @param millis Latency in milliseconds
+	 */
+	void recordLatency(long millis) {
+		if (latencyCount == latencies.length) {
+			long[] grown = new long[latencies.length * 2];
+			System.arraycopy(latencies, 0, grown, 0, latencyCount);
+			latencies = grown;
+		}
+		latencies[latencyCount++] = millis;
+		sorted = false;
+	}
+
+	/**
+	 * Returns a latency percentile, using the nearest rank.
+	 *
+	 * @param p Percentile from 0 to 100
+	 * @return Latency in milliseconds, or -1 if nothing was blocked
+	 */
+	public long getLatencyPercentile(double p) {
+		if (latencyCount == 0) {
+			return -1;
+		}
+		if (!sorted) {
+			Arrays.sort(latencies, 0, latencyCount);
+			sorted = true;
+		}
+
+		// Rounding error must not push e.g. p99.9 of 1000 up to the next rank
+		int rank = (int) Math.ceil(p * latencyCount / 100 - 1e-9);
+		return latencies[Math.min(Math.max(rank, 1), latencyCount) - 1];
+	}
+
+	/**
+	 *
+	 * @return Name of the strategy that was simulated
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 *
+	 * @return Number of switches in the trace
+	 */
+	public long getSwitches() {
+		return switches;
+	}
+
+	/**
+	 *
+	 * @return Number of visits to blocked activities
+	 */
+	public long getBlockedVisits() {
+		return blockedVisits;
+	}
+
+	/**
+	 *
+	 * @return Number of times the monitor decided to block
+	 */
+	public long getBlocks() {
+		return blocks;
+	}
+
+	/**
+	 *
+	 * @return Number of blocks that showed a message
+	 */
+	public long getNotifications() {
+		return notifications;
+	}
+
+	/**
+	 *
+	 * @return Number of blocks that were suppressed
+	 */
+	public long getSuppressed() {
+		return suppressed;
+	}
+
+	/**
+	 *
+	 * @return Number of blocked visits that ended without being blocked
+	 */
+	public long getMissedBlocks() {
+		return missedBlocks;
+	}
+
+	/**
+	 *
+	 * @return Number of times the home screen replaced an allowed
+	 *         application
+	 */
+	public long getFalseBlocks() {
+		return falseBlocks;
+	}
+
+	/**
+	 *
+	 * @return Number of times the running tasks were asked for
+	 */
+	public long getTaskQueries() {
+		return taskQueries;
+	}
+
+	/**
+	 *
+	 * @return Length of the trace in milliseconds
+	 */
+	public long getSimulatedTime() {
+		return simulatedTime;
+	}
+
+	@Override
+	public String toString() {
+		double minutes = simulatedTime / 60000.0;
+
+		return name + ": " + switches + " switches, " + blockedVisits + " blocked visits, "
+				+ blocks + " blocks (" + notifications + " with a message, "
+				+ suppressed + " suppressed), " + missedBlocks + " missed, "
+				+ falseBlocks + " false, latency p50=" + getLatencyPercentile(50)
+				+ "ms p90=" + getLatencyPercentile(90) + "ms p99=" + getLatencyPercentile(99)
+				+ "ms max=" + getLatencyPercentile(100) + "ms, "
+				+ (minutes == 0 ? 0 : Math.round(taskQueries / minutes)) + " task queries/min";
+	}
+}
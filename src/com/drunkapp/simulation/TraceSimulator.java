@@ -0,0 +1,327 @@
+package com.drunkapp.simulation;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.drunkapp.resources.BlockController;
+import com.drunkapp.resources.BlockMatcher;
+import com.drunkapp.resources.BlockPolicy;
+import com.drunkapp.resources.FakeForegroundSource;
+import com.drunkapp.resources.ForegroundSource;
+import com.drunkapp.resources.PollingConfig;
+
+/**
+ * Replays a ForegroundTrace against the monitor's blocking logic on a
+ * virtual clock, so that polling intervals and strategies can be compared
+ * without a device. Hours of switches replay in milliseconds and the same
+ * trace always gives the same SimulationReport.
+ *
+ * The monitor is simulated by a BlockController fed by either a
+ * SimulatedPollingSource, polling a FakeActivityManager the same way the
+ * PollingForegroundSource does, or a FakeForegroundSource that is told
+ * about each change after a fixed delay, like the accessibility service.
+ * A block takes homeLatency to bring the home screen to the front.
+ *
+ * Can be run from the command line, with no arguments to compare the
+ * standard strategies on a made up trace, or with a trace file followed by
+ * the blocked packages.
+ *
+ * @author Liam
+ *
+ */
+public class TraceSimulator {
+
+	/**
+	 * Time in milliseconds that the home screen takes to come to the front
+	 * after a block, unless another is set.
+	 */
+	public static final long DEFAULT_HOME_LATENCY = 50;
+
+	/**
+	 * The block rules.
+	 */
+	private final BlockMatcher matcher;
+
+	/**
+	 * Tuning for what happens after a block.
+	 */
+	private final BlockPolicy policy;
+
+	/**
+	 * Time in milliseconds that the home screen takes to come to the front.
+	 */
+	private long homeLatency = DEFAULT_HOME_LATENCY;
+
+	/**
+	 * Parameterised constructor
+	 *
+	 * @param m The block rules
+	 * @param p Tuning for what happens after a block
+	 */
+	public TraceSimulator(BlockMatcher m, BlockPolicy p) {
+		matcher = m;
+		policy = p;
+	}
+
+	/**
+	 * Sets the time that the home screen takes to come to the front after a
+	 * block.
+	 *
+	 * @param millis Time in milliseconds
+	 * @return This simulator
+	 */
+	public TraceSimulator setHomeLatency(long millis) {
+		homeLatency = millis;
+		return this;
+	}
+
+	/**
+	 * Replays a trace with the monitor polling for changes.
+	 *
+	 * @param trace The trace
+	 * @param config Tuning for the poll intervals
+	 * @return The results
+	 */
+	public SimulationReport runPolling(ForegroundTrace trace, PollingConfig config) {
+		Run run = new Run(trace, "Polling " + config, -1);
+		run.source = new SimulatedPollingSource(run.am, run.queue, config);
+		return run.replay();
+	}
+
+	/**
+	 * Replays a trace with the monitor told about each change, as it is by
+	 * the accessibility service.
+	 *
+	 * @param trace The trace
+	 * @param deliveryDelay Time in milliseconds from a change to the
+	 *            monitor being told about it
+	 * @return The results
+	 */
+	public SimulationReport runPush(ForegroundTrace trace, long deliveryDelay) {
+		Run run = new Run(trace, "Push after " + deliveryDelay + "ms", deliveryDelay);
+		run.source = new FakeForegroundSource();
+		return run.replay();
+	}
+
+	/**
+	 * The state of a single replay.
+	 */
+	private class Run implements ForegroundSource.Listener {
+
+		/**
+		 * Trace being replayed.
+		 */
+		private final ForegroundTrace trace;
+
+		/**
+		 * Results so far.
+		 */
+		private final SimulationReport report;
+
+		/**
+		 * Delay in milliseconds before a FakeForegroundSource is told about a
+		 * change, or -1 if the source polls.
+		 */
+		private final long deliveryDelay;
+
+		/**
+		 * Queue that everything is run on.
+		 */
+		final EventQueue queue = new EventQueue(new VirtualClock(0));
+
+		/**
+		 * The simulated device.
+		 */
+		final FakeActivityManager am = new FakeActivityManager();
+
+		/**
+		 * Decides what to do about each change, as in the real monitor.
+		 */
+		private final BlockController controller = new BlockController(policy);
+
+		/**
+		 * Source of the changes that the monitor sees.
+		 */
+		ForegroundSource source;
+
+		/**
+		 * Time in milliseconds that the current visit started.
+		 */
+		private long visitStart;
+
+		/**
+		 * Whether or not the activity in front is blocked.
+		 */
+		private boolean visitBlocked;
+
+		/**
+		 * Brings the home screen to the front once a block lands.
+		 */
+		private final Runnable homeTask = new Runnable() {
+			@Override
+			public void run() {
+				if (visitBlocked) {
+					report.recordLatency(queue.getClock().currentTimeMillis() - visitStart);
+					// Caught, so leaving it is not a miss
+					visitBlocked = false;
+				} else if (!am.isHomeInFront()) {
+					report.falseBlocks++;
+				}
+				am.startHome();
+				onMovedToFront();
+			}
+		};
+
+		/**
+		 * Parameterised constructor
+		 *
+		 * @param t Trace to replay
+		 * @param name Name of the strategy
+		 * @param delay Delay before a FakeForegroundSource is told about a
+		 *            change, or -1 if the source polls
+		 */
+		Run(ForegroundTrace t, String name, long delay) {
+			trace = t;
+			report = new SimulationReport(name);
+			deliveryDelay = delay;
+		}
+
+		/**
+		 * Replays the whole trace.
+		 *
+		 * @return The results
+		 */
+		SimulationReport replay() {
+			List<ForegroundTrace.Switch> switches = trace.getSwitches();
+			long start = switches.isEmpty() ? 0 : switches.get(0).time;
+
+			queue.getClock().advanceTo(start);
+			source.start(this);
+
+			for (final ForegroundTrace.Switch s : switches) {
+				queue.postAt(new Runnable() {
+					@Override
+					public void run() {
+						am.moveToFront(s.packageName, s.className);
+						onMovedToFront();
+					}
+				}, s.time);
+			}
+			queue.runUntil(trace.getEndTime());
+
+			if (visitBlocked) {
+				report.missedBlocks++;
+			}
+			source.release();
+
+			report.switches = switches.size();
+			report.taskQueries = am.getTaskQueries();
+			report.simulatedTime = trace.getEndTime() - start;
+			return report;
+		}
+
+		/**
+		 * Ends the current visit and starts one for the activity now in
+		 * front, telling a push source about it after its delay.
+		 */
+		private void onMovedToFront() {
+			if (visitBlocked) {
+				report.missedBlocks++;
+			}
+
+			final String packageName = am.getTopPackage();
+			final String className = am.getTopClass();
+			visitStart = queue.getClock().currentTimeMillis();
+			visitBlocked = matcher.isBlocked(packageName, className);
+			if (visitBlocked) {
+				report.blockedVisits++;
+			}
+
+			if (deliveryDelay >= 0) {
+				queue.postDelayed(new Runnable() {
+					@Override
+					public void run() {
+						((FakeForegroundSource) source).moveToForeground(packageName, className);
+					}
+				}, deliveryDelay);
+			}
+		}
+
+		/**
+		 * Carries out the monitor's decision, as the ActivityHandlerThread
+		 * does.
+		 */
+		@Override
+		public boolean onForegroundChanged(String packageName, String className) {
+			BlockController.Action action = controller.onForegroundChanged(packageName,
+					className, matcher, queue.getClock().currentTimeMillis());
+
+			if (action == BlockController.Action.SUPPRESS) {
+				report.suppressed++;
+			} else if (action != BlockController.Action.ALLOW) {
+				report.blocks++;
+				if (action == BlockController.Action.BLOCK_AND_NOTIFY) {
+					report.notifications++;
+				}
+				queue.postDelayed(homeTask, homeLatency);
+			}
+			return action != BlockController.Action.ALLOW;
+		}
+	}
+
+	/**
+	 * Compares strategies on a trace and prints the results.
+	 *
+	 * @param args Nothing, to use a made up trace, or a trace file followed
+	 *            by the packages to block
+	 * @throws IOException If the trace file could not be read
+	 */
+	public static void main(String[] args) throws IOException {
+		ForegroundTrace trace;
+		String[] blocked;
+
+		if (args.length > 0) {
+			BufferedReader in = new BufferedReader(new FileReader(args[0]));
+			try {
+				trace = ForegroundTrace.read(in);
+			} finally {
+				in.close();
+			}
+			blocked = new String[args.length - 1];
+			System.arraycopy(args, 1, blocked, 0, blocked.length);
+		} else {
+			// A day of switching between 20 apps, 5 of them blocked
+			FakePackageManager pm = FakePackageManager.withApps(20);
+			ArrayList<String> components = new ArrayList<String>(pm.getLaunchableComponents());
+			components.add(FakePackageManager.HOME_PACKAGE + "/" + FakePackageManager.HOME_CLASS);
+			trace = ForegroundTrace.synthetic(1, components, 100000, 5000);
+
+			blocked = new String[5];
+			for (int i = 0; i < blocked.length; i++) {
+				blocked[i] = pm.getPackageName(i);
+			}
+		}
+
+		TraceSimulator simulator = new TraceSimulator(
+				BlockMatcher.compile(blocked, new ArrayList<String>()), BlockPolicy.DEFAULT);
+
+		long startTime = System.nanoTime();
+		SimulationReport[] reports = {
+				simulator.runPolling(trace, PollingConfig.DEFAULT),
+				simulator.runPolling(trace, new PollingConfig(100, 100, 1)),
+				simulator.runPolling(trace, new PollingConfig(250, 2000, 2)),
+				simulator.runPolling(trace, PollingConfig.withIdlePollsPerMinute(100, 20)),
+				simulator.runPush(trace, 30)
+		};
+		long elapsed = (System.nanoTime() - startTime) / 1000000;
+
+		for (SimulationReport r : reports) {
+			System.out.println(r);
+		}
+		System.out.println("Replayed " + reports.length * trace.getSwitches().size()
+				+ " switches in " + elapsed + "ms");
+	}
+}
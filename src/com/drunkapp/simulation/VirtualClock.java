@@ -0,0 +1,44 @@
+package com.drunkapp.simulation;
+
+import com.drunkapp.resources.Clock;
+
+/**
+ * Clock that only moves when the simulation moves it, so that a trace of
+ * hours can be replayed in milliseconds and always gives the same results.
+ *
+ * @author Liam
+ *
+ */
+public class VirtualClock implements Clock {
+
+	/**
+	 * The current time in milliseconds.
+	 */
+	private long now;
+
+	/**
+	 * Parameterised constructor
+	 *
+	 * @param start Time in milliseconds that the clock starts at
+	 */
+	public VirtualClock(long start) {
+		now = start;
+	}
+
+	@Override
+	public long currentTimeMillis() {
+		return now;
+	}
+
+	/**
+	 * Moves the clock forward.
+	 *
+	 * @param time Time in milliseconds to move to
+	 */
+	public void advanceTo(long time) {
+		if (time < now) {
+			throw new IllegalArgumentException("Cannot go back from " + now + " to " + time);
+		}
+		now = time;
+	}
+}
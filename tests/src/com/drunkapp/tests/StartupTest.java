@@ -0,0 +1,100 @@
+package com.drunkapp.tests;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.test.ActivityInstrumentationTestCase2;
+import android.widget.ListView;
+
+import com.drunkapp.BaseActivity;
+import com.drunkapp.R;
+import com.drunkapp.resources.MonitorEngine;
+import com.drunkapp.resources.MonitorService;
+import com.drunkapp.settings.AppCatalog;
+import com.drunkapp.settings.Settings;
+
+/**
+ * Cold start, starting the monitor and opening the settings, run under the
+ * StrictModeTestRunner, so that any disk or PackageManager work left on the
+ * UI thread kills the run. Clear the application's data first
+ * (adb shell pm clear com.drunkapp) to cover the first run, where the
+ * catalog is scanned and written.
+ *
+ * @author Liam
+ *
+ */
+public class StartupTest extends ActivityInstrumentationTestCase2<BaseActivity> {
+
+	/**
+	 * Context of the application under test.
+	 */
+	private Context context;
+
+	public StartupTest() {
+		super(BaseActivity.class);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		context = getInstrumentation().getTargetContext();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		MonitorService.stop(context);
+		super.tearDown();
+	}
+
+	public void testLaunchLeavesTheDiskToTheBackground() {
+		assertNotNull(getActivity());
+
+		// Waits for the bootstrap started by the DrunkApplication
+		assertNotNull(AppCatalog.getInstance(context).getBlockMatcher());
+		getInstrumentation().waitForIdleSync();
+	}
+
+	public void testStartingTheMonitorLeavesTheDiskToTheBackground() throws Exception {
+		final BaseActivity activity = getActivity();
+
+		getInstrumentation().runOnMainSync(new Runnable() {
+			@Override
+			public void run() {
+				activity.onStartClick(null);
+			}
+		});
+		waitFor(MonitorEngine.State.RUNNING);
+		getInstrumentation().waitForIdleSync();
+	}
+
+	public void testOpeningTheSettingsLeavesTheDiskToTheBackground() throws Exception {
+		getActivity();
+
+		Activity settings = getInstrumentation().startActivitySync(
+				new Intent(context, Settings.class).addFlags(Intent.FLAG_ACTIVITY_NEW_TASK));
+		ListView list = (ListView) settings.findViewById(R.id.list);
+
+		// Waits for the whole catalog to be shown, icons and all
+		int size = AppCatalog.getInstance(context).getAllApps().size();
+		for (int i = 0; i < 100 && list.getAdapter().getCount() < size; i++) {
+			Thread.sleep(100);
+		}
+		getInstrumentation().waitForIdleSync();
+
+		settings.finish();
+		getInstrumentation().waitForIdleSync();
+	}
+
+	/**
+	 * Waits up to five seconds for the monitor to reach a state.
+	 * 
+	 * @param state State to wait for
+	 * @throws InterruptedException If the test is interrupted
+	 */
+	private static void waitFor(MonitorEngine.State state) throws InterruptedException {
+		for (int i = 0; i < 50 && MonitorService.getStatus() != state; i++) {
+			Thread.sleep(100);
+		}
+		assertTrue(MonitorService.getStatus() == state);
+	}
+}
@@ -0,0 +1,52 @@
+package com.drunkapp.tests;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.StrictMode;
+import android.test.InstrumentationTestRunner;
+
+/**
+ * Test runner that kills the process if the UI thread reads or writes the
+ * disk or, from Honeycomb, asks the PackageManager for the catalog. The
+ * policy is set before the DrunkApplication is created, so the whole of
+ * startup is covered. A violation shows up as a crashed test run.
+ *
+ * @author Liam
+ *
+ */
+public class StrictModeTestRunner extends InstrumentationTestRunner {
+
+	@Override
+	public void onCreate(Bundle arguments) {
+		// Called on the UI thread, before Application.onCreate()
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
+			enableStrictMode();
+		}
+		super.onCreate(arguments);
+	}
+
+	/**
+	 * Sets a policy on the calling thread that kills the process on any disk
+	 * access or slow call.
+	 */
+	@TargetApi(Build.VERSION_CODES.GINGERBREAD)
+	private static void enableStrictMode() {
+		StrictMode.ThreadPolicy.Builder b = new StrictMode.ThreadPolicy.Builder()
+				.detectDiskReads()
+				.detectDiskWrites();
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+			detectSlowCalls(b);
+		}
+		StrictMode.setThreadPolicy(b.penaltyLog().penaltyDeath().build());
+	}
+
+	/**
+	 * 
+	 * @param b Builder to also detect calls marked as slow
+	 */
+	@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+	private static void detectSlowCalls(StrictMode.ThreadPolicy.Builder b) {
+		b.detectCustomSlowCalls();
+	}
+}